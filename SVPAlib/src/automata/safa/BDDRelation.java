@@ -1,9 +1,12 @@
 package automata.safa;
 
+import java.util.function.Function;
+
 import org.sat4j.specs.TimeoutException;
 
 import automata.safa.booleanexpression.BDDExpression;
 import automata.safa.booleanexpression.BDDExpressionFactory;
+import automata.safa.booleanexpression.BDDExpressionStore;
 import theory.bdd.BDD;
 import theory.bddalgebra.BDDSolver;
 
@@ -11,24 +14,41 @@ public class BDDRelation extends SAFARelation {
 	int size;
 	public BDD similar;
 	public BDDExpressionFactory factory;
-	BooleanExpressionMorphism<BDDExpression> coerce;
+	Function<BooleanExpression, BDDExpression> coerce;
 	public BDDRelation(int size) {
 		this.size = size;
 		this.factory = new BDDExpressionFactory(size);
 		similar = factory.True().bdd;
-		coerce = new BooleanExpressionMorphism<>((x) -> factory.MkState(x), factory);
+		coerce = new BooleanExpressionMorphism<>((x) -> factory.MkState(x), factory)::apply;
+	}
+
+	/**
+	 * A relation whose BDDs live in <code>store</code>, which also caches the BDDs of the configurations. The
+	 * relation must not be used after the scope of <code>store</code> that was open when it was created is closed.
+	 */
+	public BDDRelation(BDDExpressionStore store) {
+		this.factory = store.getFactory();
+		this.size = factory.getSolver().factory.varNum();
+		similar = factory.True().bdd;
+		coerce = store::coerce;
 	}
 
 	@Override
 	public boolean isMember(BooleanExpression p, BooleanExpression q) throws TimeoutException {
 		BDD pair = coerce.apply(p).bdd.biimp(coerce.apply(q).bdd);
-		return similar.and(pair.not()).isZero();
+		BDD notPair = pair.not();
+		BDD counterexample = similar.and(notPair);
+		boolean member = counterexample.isZero();
+		pair.free();
+		notPair.free();
+		counterexample.free();
+		return member;
 	}
 
 	@Override
 	public boolean add(BooleanExpression p, BooleanExpression q) throws TimeoutException {
 		BDD pair = coerce.apply(p).bdd.biimp(coerce.apply(q).bdd);
-		similar = similar.and(pair);
+		similar.andWith(pair);
 		return !similar.isZero();
 	}
 }
@@ -1,6 +1,8 @@
 package automata.safa;
 
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -16,6 +18,26 @@ public class BooleanExpressionMorphism<R> implements LatticeMorphism<BooleanExpr
 		this.cache = new HashMap<>();
 	}
 
+	/**
+	 * A morphism that caches the images of the <code>capacity</code> expressions used most recently
+	 */
+	public BooleanExpressionMorphism(Function<Integer, R> sigma,
+			BooleanExpressionFactory<R> boolexpr, final int capacity) {
+		this.boolexpr = boolexpr;
+		this.sigma = sigma;
+		this.cache = new LinkedHashMap<BooleanExpression, R>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<BooleanExpression, R> eldest) {
+				if (size() <= capacity)
+					return false;
+				release(eldest.getValue());
+				return true;
+			}
+		};
+	}
+
 	public R MkAnd(R left, R right) {
 		return boolexpr.MkAnd(left, right);
 	}
@@ -38,15 +60,39 @@ public class BooleanExpressionMorphism<R> implements LatticeMorphism<BooleanExpr
 	
 	public R apply(BooleanExpression phi) {
 		if (cache.containsKey(phi)) {
-			return cache.get(phi);
+			return reuse(cache.get(phi));
 		} else {
 			R result = phi.apply(this);
-			cache.put(phi, result);
+			cache.put(phi, retain(result));
 			return result;
 		}
 	}
+
+	/**
+	 * The value stored in the cache for <code>result</code>, by default <code>result</code> itself. Images that
+	 * hold resources, such as BDD references, can be copied here so that the cache owns them.
+	 */
+	protected R retain(R result) {
+		return result;
+	}
+
+	/**
+	 * The image returned for a value found in the cache, by default the value itself
+	 */
+	protected R reuse(R cached) {
+		return cached;
+	}
+
+	/**
+	 * Called when a value returned by {@link #retain(Object)} leaves the cache
+	 */
+	protected void release(R cached) {
+	}
 	
 	public void clear() {
-		cache.clear();
+		for (Iterator<R> it = cache.values().iterator(); it.hasNext();) {
+			release(it.next());
+			it.remove();
+		}
 	}
 }
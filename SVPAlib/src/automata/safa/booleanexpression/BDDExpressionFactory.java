@@ -1,43 +1,77 @@
 package automata.safa.booleanexpression;
 
 import automata.safa.BooleanExpressionFactory;
+import theory.bdd.BDD;
+import theory.bdd.ReorderPolicy;
 import theory.bddalgebra.BDDSolver;
 
 public class BDDExpressionFactory extends BooleanExpressionFactory<BDDExpression> {
 
 	private BDDSolver solver;
+	private ReorderPolicy policy;
+	private BDDExpressionStore store;
 	
 	public BDDExpressionFactory(int num) {
 		super();
 		this.solver = new BDDSolver(num);
 	}
 
+	/**
+	 * A factory whose variables are reordered according to <code>policy</code>, also after new states add variables
+	 */
+	public BDDExpressionFactory(int num, ReorderPolicy policy) {
+		super();
+		this.solver = new BDDSolver(num, policy);
+		this.policy = policy;
+	}
+
+	// The factory of a store, whose expressions are tracked by the store's open scope
+	BDDExpressionFactory(int num, BDDExpressionStore store) {
+		super();
+		this.solver = new BDDSolver(num);
+		this.store = store;
+	}
+
+	/**
+	 * The solver whose factory holds the BDDs of the expressions
+	 */
+	public BDDSolver getSolver() {
+		return solver;
+	}
+
 	@Override
 	public BDDExpression MkAnd(BDDExpression left, BDDExpression right) {
-		return new BDDExpression (solver.MkAnd(left.bdd, right.bdd));
+		return wrap(solver.MkAnd(left.bdd, right.bdd));
 	}
 
 	@Override
 	public BDDExpression MkOr(BDDExpression left, BDDExpression right) {
-		return new BDDExpression (solver.MkOr(left.bdd, right.bdd));
+		return wrap(solver.MkOr(left.bdd, right.bdd));
 	}
 
 	@Override
 	public BDDExpression True() {
-		return new BDDExpression (solver.True());
+		return wrap(solver.True());
 	}
 
 	@Override
 	public BDDExpression False() {
-		return new BDDExpression (solver.False());
+		return wrap(solver.False());
 	}
 
 	@Override
 	public BDDExpression MkState(int state) {
 		if (solver.factory.varNum() <= state) {
 			solver.factory.setVarNum(state + 1);
+			if (policy != null)
+				policy.install(solver.factory);
 		}
-		return new BDDExpression (solver.factory.ithVar(state));
+		return wrap(solver.factory.ithVar(state));
 	}
 
+	private BDDExpression wrap(BDD bdd) {
+		if (store != null)
+			store.track(bdd);
+		return new BDDExpression(bdd);
+	}
 }
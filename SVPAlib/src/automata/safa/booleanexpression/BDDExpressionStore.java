@@ -0,0 +1,131 @@
+package automata.safa.booleanexpression;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import automata.safa.BooleanExpression;
+import automata.safa.BooleanExpressionMorphism;
+import theory.bdd.BDD;
+
+/**
+ * A long-lived store of BDD expressions shared by many analyses. All the expressions live in the node table of one
+ * {@link BDDExpressionFactory}, so equal state formulas built by different analyses are the same BDD and the table is
+ * initialized once. The BDDs built while a {@link Scope} is open are released when the scope is closed, and the
+ * coercion of expressions to BDDs keeps the images of the most recently used expressions across scopes.
+ *
+ * A store is not thread safe: every thread creates its own store and passes it to the analyses it runs, for instance
+ * to {@link automata.safa.BDDRelation#BDDRelation(BDDExpressionStore)}.
+ */
+public class BDDExpressionStore {
+
+	// the number of coerced expressions whose images are kept
+	private static final int DEFAULT_CAPACITY = 1 << 14;
+
+	private final BDDExpressionFactory factory;
+	private final BooleanExpressionMorphism<BDDExpression> coerce;
+	private Scope scope = null;
+
+	/**
+	 * A store with <code>numVars</code> initial state variables
+	 */
+	public BDDExpressionStore(int numVars) {
+		this(numVars, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * A store with <code>numVars</code> initial state variables whose coercion keeps the images of
+	 * <code>capacity</code> expressions
+	 */
+	public BDDExpressionStore(int numVars, int capacity) {
+		this.factory = new BDDExpressionFactory(numVars, this);
+		this.coerce = new BooleanExpressionMorphism<BDDExpression>((x) -> factory.MkState(x), factory, capacity) {
+			@Override
+			protected BDDExpression retain(BDDExpression result) {
+				return new BDDExpression(result.bdd.id());
+			}
+
+			@Override
+			protected BDDExpression reuse(BDDExpression cached) {
+				BDD copy = cached.bdd.id();
+				track(copy);
+				return new BDDExpression(copy);
+			}
+
+			@Override
+			protected void release(BDDExpression cached) {
+				cached.bdd.free();
+			}
+		};
+	}
+
+	/**
+	 * The factory of the expressions of this store
+	 */
+	public BDDExpressionFactory getFactory() {
+		return factory;
+	}
+
+	/**
+	 * Maps a boolean expression over states to its BDD, reusing the images of recently coerced expressions
+	 */
+	public BDDExpression coerce(BooleanExpression phi) {
+		return coerce.apply(phi);
+	}
+
+	/**
+	 * Opens a scope: the BDDs built by this store until the scope is closed are released by
+	 * {@link Scope#close()}. Scopes nest, and have to be closed in the reverse order.
+	 */
+	public Scope open() {
+		scope = new Scope(scope);
+		return scope;
+	}
+
+	/**
+	 * Releases the cached images of coerced expressions
+	 */
+	public void clearCache() {
+		coerce.clear();
+	}
+
+	void track(BDD bdd) {
+		if (scope != null)
+			scope.handles.add(bdd);
+	}
+
+	/**
+	 * The BDD references built by a store between {@link BDDExpressionStore#open()} and {@link #close()}
+	 */
+	public class Scope implements AutoCloseable {
+		private final Scope parent;
+		private final List<BDD> handles = new ArrayList<BDD>();
+		private boolean closed = false;
+
+		private Scope(Scope parent) {
+			this.parent = parent;
+		}
+
+		/**
+		 * The number of BDD references this scope will release
+		 */
+		public int size() {
+			return handles.size();
+		}
+
+		/**
+		 * Releases the BDDs built in this scope, which must not be used afterwards
+		 */
+		@Override
+		public void close() {
+			if (closed)
+				return;
+			if (scope != this)
+				throw new IllegalStateException("an inner scope is still open");
+			for (BDD bdd : handles)
+				bdd.free();
+			handles.clear();
+			closed = true;
+			scope = parent;
+		}
+	}
+}
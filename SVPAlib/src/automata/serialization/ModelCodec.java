@@ -0,0 +1,26 @@
+package automata.serialization;
+
+import java.io.IOException;
+
+/**
+ * Writes and reads the values stored in a model file: the guards of the moves, the symbols of SRA registers and SFT
+ * outputs, and the output functions of SFTs. Standard codecs are in {@link ModelCodecs}.
+ *
+ * @param <T>
+ *            type of the encoded values
+ */
+public interface ModelCodec<T> {
+
+	/**
+	 * Appends the encoding of <code>value</code> to <code>out</code>
+	 */
+	void write(T value, ModelWriter out);
+
+	/**
+	 * Reads a value written by {@link #write}
+	 *
+	 * @throws IOException
+	 *             if the input is malformed
+	 */
+	T read(ModelReader in) throws IOException;
+}
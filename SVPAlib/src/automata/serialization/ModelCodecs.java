@@ -0,0 +1,259 @@
+package automata.serialization;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+
+import com.google.common.collect.ImmutableList;
+
+import theory.bdd.BDD;
+import theory.bdd.BDDFactory;
+import theory.characters.BinaryCharPred;
+import theory.characters.CharConstant;
+import theory.characters.CharFunc;
+import theory.characters.CharOffset;
+import theory.characters.CharPred;
+import theory.characters.ICharPred;
+import theory.intervals.IntPred;
+import utilities.Pair;
+
+/**
+ * Codecs for the predicates, symbols and functions of the algebras in this library
+ */
+public class ModelCodecs {
+
+	private ModelCodecs() {
+	}
+
+	public static final ModelCodec<Character> CHARACTER = new ModelCodec<Character>() {
+		public void write(Character value, ModelWriter out) {
+			out.writeVarInt(value);
+		}
+
+		public Character read(ModelReader in) throws IOException {
+			int c = in.readVarInt();
+			if (c > Character.MAX_VALUE)
+				throw new IOException("character out of range " + c);
+			return (char) c;
+		}
+	};
+
+	public static final ModelCodec<Integer> INTEGER = new ModelCodec<Integer>() {
+		public void write(Integer value, ModelWriter out) {
+			out.writeSignedVarInt(value);
+		}
+
+		public Integer read(ModelReader in) throws IOException {
+			return in.readSignedVarInt();
+		}
+	};
+
+	/**
+	 * Character predicates, the intervals are written as the distances between consecutive bounds
+	 */
+	public static final ModelCodec<CharPred> CHAR_PRED = new ModelCodec<CharPred>() {
+		public void write(CharPred value, ModelWriter out) {
+			out.writeBoolean(value.isReturn());
+			out.writeVarInt(value.intervals.size());
+			int previous = 0;
+			for (ImmutablePair<Character, Character> interval : value.intervals) {
+				out.writeSignedVarInt(interval.left - previous);
+				out.writeVarInt(interval.right - interval.left);
+				previous = interval.right;
+			}
+		}
+
+		public CharPred read(ModelReader in) throws IOException {
+			boolean isReturn = in.readBoolean();
+			int count = in.readVarInt();
+			ImmutableList.Builder<ImmutablePair<Character, Character>> intervals = ImmutableList.builder();
+			int previous = 0;
+			for (int i = 0; i < count; i++) {
+				int left = previous + in.readSignedVarInt();
+				int right = left + in.readVarInt();
+				if (left < Character.MIN_VALUE || right > Character.MAX_VALUE)
+					throw new IOException("interval out of range [" + left + "," + right + "]");
+				intervals.add(ImmutablePair.of((char) left, (char) right));
+				previous = right;
+			}
+			return new CharPred(intervals.build(), isReturn);
+		}
+	};
+
+	/**
+	 * The unary and binary character predicates of {@link theory.intervals.EqualitySolver}
+	 */
+	public static final ModelCodec<ICharPred> I_CHAR_PRED = new ModelCodec<ICharPred>() {
+		public void write(ICharPred value, ModelWriter out) {
+			if (value instanceof CharPred) {
+				out.writeByte(0);
+				CHAR_PRED.write((CharPred) value, out);
+			} else {
+				BinaryCharPred binary = (BinaryCharPred) value;
+				out.writeByte(1);
+				CHAR_PRED.write(binary.equals, out);
+				out.writeVarInt(binary.notEqual.size());
+				for (Pair<CharPred, CharPred> cube : binary.notEqual) {
+					CHAR_PRED.write(cube.first, out);
+					CHAR_PRED.write(cube.second, out);
+				}
+			}
+		}
+
+		public ICharPred read(ModelReader in) throws IOException {
+			int kind = in.readByte();
+			if (kind == 0)
+				return CHAR_PRED.read(in);
+			if (kind != 1)
+				throw new IOException("unknown character predicate " + kind);
+
+			CharPred equals = CHAR_PRED.read(in);
+			int count = in.readVarInt();
+			ArrayList<Pair<CharPred, CharPred>> notEqual = new ArrayList<Pair<CharPred, CharPred>>();
+			for (int i = 0; i < count; i++) {
+				CharPred first = CHAR_PRED.read(in);
+				notEqual.add(new Pair<CharPred, CharPred>(first, CHAR_PRED.read(in)));
+			}
+			return new BinaryCharPred(equals, notEqual);
+		}
+	};
+
+	/**
+	 * Integer predicates, an absent bound is an unbounded interval
+	 */
+	public static final ModelCodec<IntPred> INT_PRED = new ModelCodec<IntPred>() {
+		public void write(IntPred value, ModelWriter out) {
+			out.writeVarInt(value.intervals.size());
+			for (ImmutablePair<Integer, Integer> interval : value.intervals) {
+				writeBound(interval.left, out);
+				writeBound(interval.right, out);
+			}
+		}
+
+		private void writeBound(Integer bound, ModelWriter out) {
+			out.writeBoolean(bound != null);
+			if (bound != null)
+				out.writeSignedVarInt(bound);
+		}
+
+		public IntPred read(ModelReader in) throws IOException {
+			int count = in.readVarInt();
+			ImmutableList.Builder<ImmutablePair<Integer, Integer>> intervals = ImmutableList.builder();
+			for (int i = 0; i < count; i++) {
+				Integer left = readBound(in);
+				intervals.add(ImmutablePair.of(left, readBound(in)));
+			}
+			return new IntPred(intervals.build());
+		}
+
+		private Integer readBound(ModelReader in) throws IOException {
+			return in.readBoolean() ? in.readSignedVarInt() : null;
+		}
+	};
+
+	/**
+	 * The output functions of character SFTs
+	 */
+	public static final ModelCodec<CharFunc> CHAR_FUNC = new ModelCodec<CharFunc>() {
+		public void write(CharFunc value, ModelWriter out) {
+			if (value instanceof CharConstant) {
+				out.writeByte(0);
+				out.writeVarInt(((CharConstant) value).c);
+			} else if (value instanceof CharOffset) {
+				out.writeByte(1);
+				out.writeSignedVarLong(((CharOffset) value).increment);
+			} else
+				throw new IllegalArgumentException("unknown character function " + value);
+		}
+
+		public CharFunc read(ModelReader in) throws IOException {
+			int kind = in.readByte();
+			if (kind == 0)
+				return new CharConstant(CHARACTER.read(in));
+			if (kind == 1) {
+				long increment = in.readSignedVarLong();
+				if (Math.abs(increment) > CharPred.MAX_CHAR)
+					throw new IOException("offset out of range " + increment);
+				return new CharOffset(increment);
+			}
+			throw new IOException("unknown character function " + kind);
+		}
+	};
+
+	/**
+	 * BDDs of <code>factory</code>. A BDD is written as its nodes, children first, and every node as its variable and
+	 * the indices of its children, where 0 and 1 are the constants. Nodes shared inside a BDD are written once.
+	 */
+	public static ModelCodec<BDD> bdd(final BDDFactory factory) {
+		return new ModelCodec<BDD>() {
+			public void write(BDD value, ModelWriter out) {
+				List<int[]> nodes = new ArrayList<int[]>();
+				int root = collect(value, new HashMap<Integer, Integer>(), nodes);
+				out.writeVarInt(nodes.size());
+				for (int[] node : nodes) {
+					out.writeVarInt(node[0]);
+					out.writeVarInt(node[1]);
+					out.writeVarInt(node[2]);
+				}
+				out.writeVarInt(root);
+			}
+
+			// The index of p, after the indices of its descendants. The nodes below value are not collected while it
+			// is referenced, so the indices are keyed by node and the children are freed once visited
+			private int collect(BDD p, Map<Integer, Integer> indices, List<int[]> nodes) {
+				if (p.isZero())
+					return 0;
+				if (p.isOne())
+					return 1;
+				Integer node = p.hashCode();
+				Integer index = indices.get(node);
+				if (index == null) {
+					BDD lowNode = p.low();
+					BDD highNode = p.high();
+					int low = collect(lowNode, indices, nodes);
+					int high = collect(highNode, indices, nodes);
+					lowNode.free();
+					highNode.free();
+					index = nodes.size() + 2;
+					nodes.add(new int[] { p.var(), low, high });
+					indices.put(node, index);
+				}
+				return index;
+			}
+
+			public BDD read(ModelReader in) throws IOException {
+				int count = in.readVarInt();
+				List<BDD> built = new ArrayList<BDD>();
+				built.add(factory.zero());
+				built.add(factory.one());
+				try {
+					for (int i = 0; i < count; i++) {
+						int var = in.readVarInt();
+						if (var >= factory.varNum())
+							throw new IOException("variable out of range " + var);
+						BDD low = node(built, in.readVarInt());
+						BDD high = node(built, in.readVarInt());
+						BDD v = factory.ithVar(var);
+						built.add(v.ite(high, low));
+						v.free();
+					}
+					return node(built, in.readVarInt()).id();
+				} finally {
+					// the result references its own nodes
+					for (BDD b : built)
+						b.free();
+				}
+			}
+
+			private BDD node(List<BDD> built, int index) throws IOException {
+				if (index >= built.size())
+					throw new IOException("node " + index + " out of range");
+				return built.get(index);
+			}
+		};
+	}
+}
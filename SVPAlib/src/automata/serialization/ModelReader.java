@@ -0,0 +1,479 @@
+package automata.serialization;
+
+import static automata.serialization.ModelWriter.*;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.sat4j.specs.TimeoutException;
+
+import automata.AutomataException;
+import automata.safa.BooleanExpressionFactory;
+import automata.safa.SAFA;
+import automata.safa.SAFAInputMove;
+import automata.safa.booleanexpression.PositiveBooleanExpression;
+import automata.sfa.SFA;
+import automata.sfa.SFAEpsilon;
+import automata.sfa.SFAInputMove;
+import automata.sfa.SFAMove;
+import automata.sra.SRA;
+import automata.sra.SRACheckMove;
+import automata.sra.SRAFreshMove;
+import automata.sra.SRAMove;
+import automata.sra.SRAStoreMove;
+import automata.svpa.Call;
+import automata.svpa.Internal;
+import automata.svpa.Return;
+import automata.svpa.ReturnBS;
+import automata.svpa.SVPA;
+import automata.svpa.SVPAEpsilon;
+import automata.svpa.SVPAMove;
+import theory.BooleanAlgebra;
+import theory.BooleanAlgebraSubst;
+import transducers.sft.SFT;
+import transducers.sft.SFTEpsilon;
+import transducers.sft.SFTInputMove;
+import transducers.sft.SFTMove;
+
+/**
+ * Reads the models written by {@link ModelWriter}, in the order in which they were written.
+ *
+ * The input is a {@link ByteBuffer}, so a file can be memory mapped with {@link #map(File)} and its models are
+ * decoded directly from the page cache. Models are rebuilt as they were written: no normalization, minimization or
+ * removal of states is applied, except for SVPAs, whose constructor always removes unreachable states. Malformed
+ * input raises an {@link IOException}.
+ */
+public class ModelReader {
+
+	private final ByteBuffer buffer;
+	// the position after the model being read
+	private int modelEnd;
+
+	/**
+	 * A reader of the models in <code>bytes</code>
+	 *
+	 * @throws IOException
+	 *             if <code>bytes</code> does not start with a supported header
+	 */
+	public ModelReader(byte[] bytes) throws IOException {
+		this(ByteBuffer.wrap(bytes));
+	}
+
+	/**
+	 * A reader of the models between the position and the limit of <code>buffer</code>
+	 *
+	 * @throws IOException
+	 *             if <code>buffer</code> does not start with a supported header
+	 */
+	public ModelReader(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if (buffer.remaining() < 4 || buffer.getInt() != MAGIC)
+			throw new IOException("not a model file");
+		int version = readVarInt();
+		if (version != VERSION)
+			throw new IOException("unsupported model file version " + version);
+	}
+
+	/**
+	 * A reader of the models in <code>file</code>, which is memory mapped
+	 *
+	 * @throws IOException
+	 */
+	public static ModelReader map(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			// the mapping stays valid after the channel is closed
+			FileChannel channel = raf.getChannel();
+			return new ModelReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Whether there are more models to read
+	 */
+	public boolean hasNext() {
+		return buffer.hasRemaining();
+	}
+
+	/**
+	 * Skips the next model
+	 *
+	 * @throws IOException
+	 */
+	public void skip() throws IOException {
+		readByte();
+		int length = readLength();
+		buffer.position(buffer.position() + length);
+	}
+
+	private int readLength() throws IOException {
+		int length = readVarInt();
+		if (length > buffer.remaining())
+			throw new EOFException();
+		return length;
+	}
+
+	// Checks that the model just read ends where its length says
+	private void readEnd() throws IOException {
+		if (buffer.position() < modelEnd)
+			throw new IOException("trailing data in model");
+		if (buffer.position() > modelEnd)
+			throw new IOException("model longer than its length");
+	}
+
+	// ------------------------------------------------------
+	// Primitives
+	// ------------------------------------------------------
+
+	public int readByte() throws IOException {
+		if (!buffer.hasRemaining())
+			throw new EOFException();
+		return buffer.get() & 0xFF;
+	}
+
+	public boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	public int readVarInt() throws IOException {
+		int n = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = readByte();
+			n |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				if (n < 0)
+					throw new IOException("malformed varint");
+				return n;
+			}
+		}
+		throw new IOException("malformed varint");
+	}
+
+	public long readSignedVarLong() throws IOException {
+		long zigzag = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			int b = readByte();
+			zigzag |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return (zigzag >>> 1) ^ -(zigzag & 1);
+		}
+		throw new IOException("malformed varint");
+	}
+
+	public int readSignedVarInt() throws IOException {
+		long n = readSignedVarLong();
+		if (n != (int) n)
+			throw new IOException("int out of range " + n);
+		return (int) n;
+	}
+
+	private Integer readState() throws IOException {
+		return readSignedVarInt();
+	}
+
+	private List<Integer> readStates() throws IOException {
+		int count = readVarInt();
+		List<Integer> states = new ArrayList<Integer>();
+		for (int i = 0; i < count; i++)
+			states.add(readState());
+		return states;
+	}
+
+	private <S> List<S> readSymbols(ModelCodec<S> codec) throws IOException {
+		int count = readVarInt();
+		List<S> symbols = new ArrayList<S>();
+		for (int i = 0; i < count; i++)
+			symbols.add(codec.read(this));
+		return symbols;
+	}
+
+	// ------------------------------------------------------
+	// Models
+	// ------------------------------------------------------
+
+	/**
+	 * Reads the next model, which has to be an SFA
+	 *
+	 * @throws IOException
+	 * @throws TimeoutException
+	 */
+	public <P, S> SFA<P, S> readSFA(BooleanAlgebra<P, S> ba, ModelCodec<P> guardCodec)
+			throws IOException, TimeoutException {
+		List<P> guards = readHeader(SFA_MODEL, guardCodec);
+		Integer initialState = readState();
+		List<Integer> finalStates = readStates();
+
+		int moveCount = readVarInt();
+		Collection<SFAMove<P, S>> transitions = new ArrayList<SFAMove<P, S>>();
+		for (int i = 0; i < moveCount; i++) {
+			int kind = readByte();
+			Integer from = readState();
+			Integer to = readState();
+			if (kind == INPUT_MOVE)
+				transitions.add(new SFAInputMove<P, S>(from, to, readGuard(guards)));
+			else if (kind == EPSILON_MOVE)
+				transitions.add(new SFAEpsilon<P, S>(from, to));
+			else
+				throw new IOException("unknown SFA move " + kind);
+		}
+		readEnd();
+		return SFA.MkSFA(transitions, initialState, finalStates, ba, false, false, true);
+	}
+
+	/**
+	 * Reads the next model, which has to be an SAFA
+	 *
+	 * @throws IOException
+	 * @throws TimeoutException
+	 */
+	public <P, S> SAFA<P, S> readSAFA(BooleanAlgebra<P, S> ba, ModelCodec<P> guardCodec)
+			throws IOException, TimeoutException {
+		List<P> guards = readHeader(SAFA_MODEL, guardCodec);
+		BooleanExpressionFactory<PositiveBooleanExpression> bef = SAFA.getBooleanExpressionFactory();
+		PositiveBooleanExpression initialState = readExpression(bef);
+		List<Integer> finalStates = readStates();
+
+		int moveCount = readVarInt();
+		Collection<SAFAInputMove<P, S>> transitions = new ArrayList<SAFAInputMove<P, S>>();
+		for (int i = 0; i < moveCount; i++) {
+			Integer from = readState();
+			PositiveBooleanExpression to = readExpression(bef);
+			transitions.add(new SAFAInputMove<P, S>(from, to, readGuard(guards)));
+		}
+		readEnd();
+		return SAFA.MkSAFA(transitions, initialState, finalStates, ba, false, false, false);
+	}
+
+	private PositiveBooleanExpression readExpression(BooleanExpressionFactory<PositiveBooleanExpression> bef)
+			throws IOException {
+		int kind = readByte();
+		switch (kind) {
+		case EXPR_FALSE:
+			return bef.False();
+		case EXPR_TRUE:
+			return bef.True();
+		case EXPR_STATE:
+			return bef.MkState(readState());
+		case EXPR_AND:
+			return bef.MkAnd(readExpression(bef), readExpression(bef));
+		case EXPR_OR:
+			return bef.MkOr(readExpression(bef), readExpression(bef));
+		default:
+			throw new IOException("unknown boolean expression " + kind);
+		}
+	}
+
+	/**
+	 * Reads the next model, which has to be an SVPA
+	 *
+	 * @throws IOException
+	 * @throws TimeoutException
+	 * @throws AutomataException
+	 */
+	public <P, S> SVPA<P, S> readSVPA(BooleanAlgebra<P, S> ba, ModelCodec<P> guardCodec)
+			throws IOException, TimeoutException, AutomataException {
+		List<P> guards = readHeader(SVPA_MODEL, guardCodec);
+		List<Integer> initialStates = readStates();
+		List<Integer> finalStates = readStates();
+
+		int moveCount = readVarInt();
+		Collection<SVPAMove<P, S>> transitions = new ArrayList<SVPAMove<P, S>>();
+		for (int i = 0; i < moveCount; i++) {
+			int kind = readByte();
+			Integer from = readState();
+			Integer to = readState();
+			switch (kind) {
+			case INPUT_MOVE:
+				transitions.add(new Internal<P, S>(from, to, readGuard(guards)));
+				break;
+			case CALL_MOVE: {
+				Integer stackState = readState();
+				transitions.add(new Call<P, S>(from, to, stackState, readGuard(guards)));
+				break;
+			}
+			case RETURN_MOVE: {
+				Integer stackState = readState();
+				transitions.add(new Return<P, S>(from, to, stackState, readGuard(guards)));
+				break;
+			}
+			case RETURN_BS_MOVE:
+				transitions.add(new ReturnBS<P, S>(from, to, readGuard(guards)));
+				break;
+			case EPSILON_MOVE:
+				transitions.add(new SVPAEpsilon<P, S>(from, to));
+				break;
+			default:
+				throw new IOException("unknown SVPA move " + kind);
+			}
+		}
+		readEnd();
+		return SVPA.MkSVPA(transitions, initialStates, finalStates, ba);
+	}
+
+	/**
+	 * Reads the next model, which has to be an SRA
+	 *
+	 * @throws IOException
+	 * @throws TimeoutException
+	 */
+	public <P, S> SRA<P, S> readSRA(BooleanAlgebra<P, S> ba, ModelCodec<P> guardCodec, ModelCodec<S> symbolCodec)
+			throws IOException, TimeoutException {
+		List<P> guards = readHeader(SRA_MODEL, guardCodec);
+		Integer initialState = readState();
+		List<Integer> finalStates = readStates();
+		int registerCount = readVarInt();
+		LinkedList<S> registers = new LinkedList<S>();
+		for (int i = 0; i < registerCount; i++)
+			registers.add(readBoolean() ? symbolCodec.read(this) : null);
+
+		int moveCount = readVarInt();
+		Collection<SRAMove<P, S>> transitions = new ArrayList<SRAMove<P, S>>();
+		for (int i = 0; i < moveCount; i++) {
+			int kind = readByte();
+			Integer from = readState();
+			Integer to = readState();
+			P guard = readGuard(guards);
+			switch (kind) {
+			case SRA_CHECK_MOVE:
+				transitions.add(new SRACheckMove<P, S>(from, to, guard, readRegister(registerCount)));
+				break;
+			case SRA_STORE_MOVE:
+				transitions.add(new SRAStoreMove<P, S>(from, to, guard, readRegister(registerCount)));
+				break;
+			case SRA_FRESH_MOVE: {
+				Integer register = readRegister(registerCount);
+				transitions.add(new SRAFreshMove<P, S>(from, to, guard, register, readVarInt()));
+				break;
+			}
+			case SRA_MOVE: {
+				Set<Integer> E = readRegisters(registerCount);
+				Set<Integer> I = readRegisters(registerCount);
+				Set<Integer> U = readRegisters(registerCount);
+				transitions.add(new SRAMove<P, S>(from, to, guard, E, I, U));
+				break;
+			}
+			default:
+				throw new IOException("unknown SRA move " + kind);
+			}
+		}
+		readEnd();
+		return SRA.MkSRA(transitions, initialState, finalStates, registers, ba, false, false, true);
+	}
+
+	private Integer readRegister(int registerCount) throws IOException {
+		int register = readVarInt();
+		if (register >= registerCount)
+			throw new IOException("register " + register + " out of range");
+		return register;
+	}
+
+	private Set<Integer> readRegisters(int registerCount) throws IOException {
+		int count = readVarInt();
+		Set<Integer> registers = new HashSet<Integer>();
+		for (int i = 0; i < count; i++)
+			registers.add(readRegister(registerCount));
+		return registers;
+	}
+
+	/**
+	 * Reads the next model, which has to be an SFT
+	 *
+	 * @throws IOException
+	 * @throws TimeoutException
+	 */
+	public <P, F, S> SFT<P, F, S> readSFT(BooleanAlgebraSubst<P, F, S> ba, ModelCodec<P> guardCodec,
+			ModelCodec<F> functionCodec, ModelCodec<S> symbolCodec) throws IOException, TimeoutException {
+		List<P> guards = readHeader(SFT_MODEL, guardCodec);
+		Integer initialState = readState();
+
+		int finalCount = readVarInt();
+		Map<Integer, Set<List<S>>> finalStatesAndTails = new HashMap<Integer, Set<List<S>>>();
+		for (int i = 0; i < finalCount; i++) {
+			Integer state = readState();
+			int tailCount = readVarInt();
+			Set<List<S>> tails = new HashSet<List<S>>();
+			for (int j = 0; j < tailCount; j++)
+				tails.add(readSymbols(symbolCodec));
+			finalStatesAndTails.put(state, tails);
+		}
+
+		int moveCount = readVarInt();
+		Collection<SFTMove<P, F, S>> transitions = new ArrayList<SFTMove<P, F, S>>();
+		for (int i = 0; i < moveCount; i++) {
+			int kind = readByte();
+			Integer from = readState();
+			Integer to = readState();
+			if (kind == INPUT_MOVE) {
+				P guard = readGuard(guards);
+				transitions.add(new SFTInputMove<P, F, S>(from, to, guard, readSymbols(functionCodec)));
+			} else if (kind == EPSILON_MOVE)
+				transitions.add(new SFTEpsilon<P, F, S>(from, to, readSymbols(symbolCodec)));
+			else
+				throw new IOException("unknown SFT move " + kind);
+		}
+		readEnd();
+		return SFT.MkSFT(transitions, initialState, finalStatesAndTails, ba);
+	}
+
+	/**
+	 * Reads the next model, which has to be a BDD variable order written by {@link ModelWriter#writeVarOrder(int[])}
+	 *
+	 * @throws IOException
+	 */
+	public int[] readVarOrder() throws IOException {
+		int kind = readByte();
+		if (kind != VAR_ORDER_MODEL)
+			throw new IOException("expected a model of kind " + VAR_ORDER_MODEL + " but found " + kind);
+		modelEnd = readLength() + buffer.position();
+		if (readVarInt() != 0)
+			throw new IOException("not a variable order");
+		int count = readVarInt();
+		if (count > buffer.remaining())
+			throw new EOFException();
+		int[] order = new int[count];
+		boolean[] seen = new boolean[count];
+		for (int level = 0; level < count; level++) {
+			int var = readVarInt();
+			if (var >= count || seen[var])
+				throw new IOException("not a variable order");
+			seen[var] = true;
+			order[level] = var;
+		}
+		readEnd();
+		return order;
+	}
+
+	// Reads the kind, the length and the guard table of a model
+	private <P> List<P> readHeader(int expectedKind, ModelCodec<P> guardCodec) throws IOException {
+		int kind = readByte();
+		if (kind != expectedKind)
+			throw new IOException("expected a model of kind " + expectedKind + " but found " + kind);
+		modelEnd = readLength() + buffer.position();
+		int guardCount = readVarInt();
+		List<P> guards = new ArrayList<P>();
+		for (int i = 0; i < guardCount; i++)
+			guards.add(guardCodec.read(this));
+		return guards;
+	}
+
+	private <P> P readGuard(List<P> guards) throws IOException {
+		int index = readVarInt();
+		if (index >= guards.size())
+			throw new IOException("guard " + index + " out of range");
+		return guards.get(index);
+	}
+}
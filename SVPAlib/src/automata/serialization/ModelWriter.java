@@ -0,0 +1,455 @@
+package automata.serialization;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import automata.safa.SAFA;
+import automata.safa.SAFAInputMove;
+import automata.safa.booleanexpression.PositiveAnd;
+import automata.safa.booleanexpression.PositiveBooleanExpression;
+import automata.safa.booleanexpression.PositiveFalse;
+import automata.safa.booleanexpression.PositiveId;
+import automata.safa.booleanexpression.PositiveOr;
+import automata.safa.booleanexpression.PositiveTrue;
+import automata.sfa.SFA;
+import automata.sfa.SFAEpsilon;
+import automata.sfa.SFAInputMove;
+import automata.sra.SRA;
+import automata.sra.SRACheckMove;
+import automata.sra.SRAFreshMove;
+import automata.sra.SRAMove;
+import automata.sra.SRAStoreMove;
+import automata.svpa.Call;
+import automata.svpa.Internal;
+import automata.svpa.Return;
+import automata.svpa.ReturnBS;
+import automata.svpa.SVPA;
+import automata.svpa.SVPAEpsilon;
+import automata.svpa.SVPAMove;
+import transducers.sft.SFT;
+import transducers.sft.SFTEpsilon;
+import transducers.sft.SFTInputMove;
+
+/**
+ * Writes automata and transducers in a compact binary format that is read back by {@link ModelReader}.
+ *
+ * A file starts with a magic number and the format version, followed by any number of models. Each model starts with
+ * its kind, its length and a table of its distinct guards, and its moves refer to guards by their index in the table.
+ * State ids, counts and indices are written as varints, so small automata take a few bytes per move. The guards, register
+ * values, outputs and output functions are written by the given {@link ModelCodec}s.
+ */
+public class ModelWriter {
+
+	static final int MAGIC = 0x5356504C; // "SVPL"
+	static final int VERSION = 1;
+
+	// model kinds
+	static final int SFA_MODEL = 1;
+	static final int SAFA_MODEL = 2;
+	static final int SVPA_MODEL = 3;
+	static final int SRA_MODEL = 4;
+	static final int SFT_MODEL = 5;
+	static final int VAR_ORDER_MODEL = 6;
+
+	// move kinds
+	static final int INPUT_MOVE = 0;
+	static final int EPSILON_MOVE = 1;
+	static final int CALL_MOVE = 2;
+	static final int RETURN_MOVE = 3;
+	static final int RETURN_BS_MOVE = 4;
+	static final int SRA_MOVE = 0;
+	static final int SRA_CHECK_MOVE = 1;
+	static final int SRA_FRESH_MOVE = 2;
+	static final int SRA_STORE_MOVE = 3;
+
+	// boolean expression kinds
+	static final int EXPR_FALSE = 0;
+	static final int EXPR_TRUE = 1;
+	static final int EXPR_STATE = 2;
+	static final int EXPR_AND = 3;
+	static final int EXPR_OR = 4;
+
+	private byte[] buffer = new byte[256];
+	private int size = 0;
+
+	/**
+	 * A writer whose output starts with the file header
+	 */
+	public ModelWriter() {
+		this(true);
+	}
+
+	private ModelWriter(boolean withHeader) {
+		if (withHeader) {
+			writeInt(MAGIC);
+			writeVarInt(VERSION);
+		}
+	}
+
+	// ------------------------------------------------------
+	// Output
+	// ------------------------------------------------------
+
+	/**
+	 * The bytes written so far
+	 */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(buffer, size);
+	}
+
+	/**
+	 * Writes the bytes written so far to <code>out</code>
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		out.write(buffer, 0, size);
+	}
+
+	/**
+	 * Writes the bytes written so far to <code>file</code>
+	 */
+	public void writeTo(File file) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			writeTo(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	// ------------------------------------------------------
+	// Primitives
+	// ------------------------------------------------------
+
+	public void writeByte(int b) {
+		if (size == buffer.length)
+			buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+		buffer[size++] = (byte) b;
+	}
+
+	public void writeBoolean(boolean b) {
+		writeByte(b ? 1 : 0);
+	}
+
+	/**
+	 * Writes a non negative int in 1 to 5 bytes, 7 bits per byte
+	 */
+	public void writeVarInt(int n) {
+		if (n < 0)
+			throw new IllegalArgumentException("negative varint " + n);
+		while ((n & ~0x7F) != 0) {
+			writeByte((n & 0x7F) | 0x80);
+			n >>>= 7;
+		}
+		writeByte(n);
+	}
+
+	/**
+	 * Writes any long as a varint, small absolute values take fewer bytes
+	 */
+	public void writeSignedVarLong(long n) {
+		long zigzag = (n << 1) ^ (n >> 63);
+		while ((zigzag & ~0x7FL) != 0) {
+			writeByte((int) ((zigzag & 0x7F) | 0x80));
+			zigzag >>>= 7;
+		}
+		writeByte((int) zigzag);
+	}
+
+	public void writeSignedVarInt(int n) {
+		writeSignedVarLong(n);
+	}
+
+	private void writeInt(int n) {
+		writeByte(n >>> 24);
+		writeByte(n >>> 16);
+		writeByte(n >>> 8);
+		writeByte(n);
+	}
+
+	private void writeBytes(byte[] bytes) {
+		for (byte b : bytes)
+			writeByte(b);
+	}
+
+	private void writeState(Integer state) {
+		writeSignedVarInt(state);
+	}
+
+	private void writeStates(Collection<Integer> states) {
+		writeVarInt(states.size());
+		for (Integer state : states)
+			writeState(state);
+	}
+
+	private <S> void writeSymbols(List<S> symbols, ModelCodec<S> codec) {
+		writeVarInt(symbols.size());
+		for (S symbol : symbols)
+			codec.write(symbol, this);
+	}
+
+	// ------------------------------------------------------
+	// Models
+	// ------------------------------------------------------
+
+	/**
+	 * Appends <code>aut</code>, its guards are written with <code>guardCodec</code>
+	 */
+	public <P, S> void writeSFA(SFA<P, S> aut, ModelCodec<P> guardCodec) {
+		GuardTable<P> guards = new GuardTable<P>(guardCodec);
+		ModelWriter body = new ModelWriter(false);
+		body.writeState(aut.getInitialState());
+		body.writeStates(aut.getFinalStates());
+
+		Collection<SFAInputMove<P, S>> inputMoves = aut.getInputMovesFrom(aut.getStates());
+		Collection<SFAEpsilon<P, S>> epsilons = aut.getEpsilonFrom(aut.getStates());
+		body.writeVarInt(inputMoves.size() + epsilons.size());
+		for (SFAInputMove<P, S> move : inputMoves) {
+			body.writeByte(INPUT_MOVE);
+			body.writeState(move.from);
+			body.writeState(move.to);
+			body.writeVarInt(guards.indexOf(move.guard));
+		}
+		for (SFAEpsilon<P, S> move : epsilons) {
+			body.writeByte(EPSILON_MOVE);
+			body.writeState(move.from);
+			body.writeState(move.to);
+		}
+		writeModel(SFA_MODEL, guards, body);
+	}
+
+	/**
+	 * Appends <code>aut</code>, its guards are written with <code>guardCodec</code>
+	 */
+	public <P, S> void writeSAFA(SAFA<P, S> aut, ModelCodec<P> guardCodec) {
+		GuardTable<P> guards = new GuardTable<P>(guardCodec);
+		ModelWriter body = new ModelWriter(false);
+		body.writeExpression(aut.getInitialState());
+		body.writeStates(aut.getFinalStates());
+
+		Collection<SAFAInputMove<P, S>> moves = aut.getInputMoves();
+		body.writeVarInt(moves.size());
+		for (SAFAInputMove<P, S> move : moves) {
+			body.writeState(move.from);
+			body.writeExpression(move.to);
+			body.writeVarInt(guards.indexOf(move.guard));
+		}
+		writeModel(SAFA_MODEL, guards, body);
+	}
+
+	private void writeExpression(PositiveBooleanExpression expr) {
+		if (expr instanceof PositiveId) {
+			writeByte(EXPR_STATE);
+			writeState(((PositiveId) expr).state);
+		} else if (expr instanceof PositiveAnd) {
+			writeByte(EXPR_AND);
+			writeExpression(((PositiveAnd) expr).left);
+			writeExpression(((PositiveAnd) expr).right);
+		} else if (expr instanceof PositiveOr) {
+			writeByte(EXPR_OR);
+			writeExpression(((PositiveOr) expr).left);
+			writeExpression(((PositiveOr) expr).right);
+		} else if (expr instanceof PositiveTrue) {
+			writeByte(EXPR_TRUE);
+		} else if (expr instanceof PositiveFalse) {
+			writeByte(EXPR_FALSE);
+		} else
+			throw new IllegalArgumentException("unknown boolean expression " + expr);
+	}
+
+	/**
+	 * Appends <code>aut</code>, its guards are written with <code>guardCodec</code>
+	 */
+	public <P, S> void writeSVPA(SVPA<P, S> aut, ModelCodec<P> guardCodec) {
+		GuardTable<P> guards = new GuardTable<P>(guardCodec);
+		ModelWriter body = new ModelWriter(false);
+		body.writeStates(aut.getInitialStates());
+		body.writeStates(aut.getFinalStates());
+
+		Collection<SVPAMove<P, S>> moves = aut.getMovesFrom(aut.getStates());
+		body.writeVarInt(moves.size());
+		for (SVPAMove<P, S> move : moves) {
+			if (move instanceof Internal) {
+				body.writeByte(INPUT_MOVE);
+				body.writeState(move.from);
+				body.writeState(move.to);
+				body.writeVarInt(guards.indexOf(((Internal<P, S>) move).getGuard()));
+			} else if (move instanceof Call) {
+				Call<P, S> call = (Call<P, S>) move;
+				body.writeByte(CALL_MOVE);
+				body.writeState(move.from);
+				body.writeState(move.to);
+				body.writeState(call.getStackState());
+				body.writeVarInt(guards.indexOf(call.getGuard()));
+			} else if (move instanceof Return) {
+				Return<P, S> ret = (Return<P, S>) move;
+				body.writeByte(RETURN_MOVE);
+				body.writeState(move.from);
+				body.writeState(move.to);
+				body.writeState(ret.getStackState());
+				body.writeVarInt(guards.indexOf(ret.getGuard()));
+			} else if (move instanceof ReturnBS) {
+				body.writeByte(RETURN_BS_MOVE);
+				body.writeState(move.from);
+				body.writeState(move.to);
+				body.writeVarInt(guards.indexOf(((ReturnBS<P, S>) move).getGuard()));
+			} else if (move instanceof SVPAEpsilon) {
+				body.writeByte(EPSILON_MOVE);
+				body.writeState(move.from);
+				body.writeState(move.to);
+			} else
+				throw new IllegalArgumentException("unknown move " + move);
+		}
+		writeModel(SVPA_MODEL, guards, body);
+	}
+
+	/**
+	 * Appends <code>aut</code>, its guards are written with <code>guardCodec</code> and the initial register values
+	 * with <code>symbolCodec</code>
+	 */
+	public <P, S> void writeSRA(SRA<P, S> aut, ModelCodec<P> guardCodec, ModelCodec<S> symbolCodec) {
+		GuardTable<P> guards = new GuardTable<P>(guardCodec);
+		ModelWriter body = new ModelWriter(false);
+		body.writeState(aut.getInitialState());
+		body.writeStates(aut.getFinalStates());
+		body.writeVarInt(aut.getRegisters().size());
+		for (S value : aut.getRegisters()) {
+			body.writeBoolean(value != null);
+			if (value != null)
+				symbolCodec.write(value, body);
+		}
+
+		Collection<SRAMove<P, S>> moves = aut.getMoves();
+		body.writeVarInt(moves.size());
+		for (SRAMove<P, S> move : moves) {
+			if (move instanceof SRACheckMove)
+				body.writeByte(SRA_CHECK_MOVE);
+			else if (move instanceof SRAFreshMove)
+				body.writeByte(SRA_FRESH_MOVE);
+			else if (move instanceof SRAStoreMove)
+				body.writeByte(SRA_STORE_MOVE);
+			else
+				body.writeByte(SRA_MOVE);
+			body.writeState(move.from);
+			body.writeState(move.to);
+			body.writeVarInt(guards.indexOf(move.guard));
+
+			if (move instanceof SRACheckMove || move instanceof SRAStoreMove)
+				body.writeVarInt(move.registerIndex);
+			else if (move instanceof SRAFreshMove) {
+				body.writeVarInt(move.registerIndex);
+				body.writeVarInt(move.I.size());
+			} else {
+				body.writeRegisters(move.E);
+				body.writeRegisters(move.I);
+				body.writeRegisters(move.U);
+			}
+		}
+		writeModel(SRA_MODEL, guards, body);
+	}
+
+	private void writeRegisters(Set<Integer> registers) {
+		writeVarInt(registers.size());
+		for (Integer register : registers)
+			writeVarInt(register);
+	}
+
+	/**
+	 * Appends <code>sft</code>, its guards are written with <code>guardCodec</code>, its output functions with
+	 * <code>functionCodec</code> and the outputs of its epsilon moves and final tails with
+	 * <code>symbolCodec</code>
+	 */
+	public <P, F, S> void writeSFT(SFT<P, F, S> sft, ModelCodec<P> guardCodec, ModelCodec<F> functionCodec,
+			ModelCodec<S> symbolCodec) {
+		GuardTable<P> guards = new GuardTable<P>(guardCodec);
+		ModelWriter body = new ModelWriter(false);
+		body.writeState(sft.getInitialState());
+
+		Map<Integer, Set<List<S>>> finalStatesAndTails = sft.getFinalStatesAndTails();
+		body.writeVarInt(finalStatesAndTails.size());
+		for (Map.Entry<Integer, Set<List<S>>> entry : finalStatesAndTails.entrySet()) {
+			body.writeState(entry.getKey());
+			body.writeVarInt(entry.getValue().size());
+			for (List<S> tail : entry.getValue())
+				body.writeSymbols(tail, symbolCodec);
+		}
+
+		Collection<SFTInputMove<P, F, S>> inputMoves = sft.getInputMovesFrom(sft.getStates());
+		Collection<SFTEpsilon<P, F, S>> epsilons = sft.getEpsilonMovesFrom(sft.getStates());
+		body.writeVarInt(inputMoves.size() + epsilons.size());
+		for (SFTInputMove<P, F, S> move : inputMoves) {
+			body.writeByte(INPUT_MOVE);
+			body.writeState(move.from);
+			body.writeState(move.to);
+			body.writeVarInt(guards.indexOf(move.guard));
+			body.writeSymbols(move.outputFunctions, functionCodec);
+		}
+		for (SFTEpsilon<P, F, S> move : epsilons) {
+			body.writeByte(EPSILON_MOVE);
+			body.writeState(move.from);
+			body.writeState(move.to);
+			body.writeSymbols(move.outputs, symbolCodec);
+		}
+		writeModel(SFT_MODEL, guards, body);
+	}
+
+	/**
+	 * Appends a BDD variable order, the variables from the top level down, for instance one learned by
+	 * {@link theory.bdd.ReorderPolicy}. Write it before the models whose guards are BDDs, so that a reader can set
+	 * the order before building them.
+	 */
+	public void writeVarOrder(int[] order) {
+		ModelWriter body = new ModelWriter(false);
+		body.writeVarInt(order.length);
+		for (int var : order)
+			body.writeVarInt(var);
+		writeModel(VAR_ORDER_MODEL, new GuardTable<Object>(null), body);
+	}
+
+	// The kind, then the length of the rest of the model, so that a reader can skip it
+	private void writeModel(int kind, GuardTable<?> guards, ModelWriter body) {
+		ModelWriter table = new ModelWriter(false);
+		table.writeVarInt(guards.encodings.size());
+		for (byte[] encoding : guards.encodings)
+			table.writeBytes(encoding);
+
+		writeByte(kind);
+		writeVarInt(table.size + body.size);
+		writeBytes(table.toByteArray());
+		writeBytes(body.toByteArray());
+	}
+
+	// The distinct guards of a model, two guards are the same if they have the same encoding
+	private static class GuardTable<P> {
+		final ModelCodec<P> codec;
+		final List<byte[]> encodings = new ArrayList<byte[]>();
+		final Map<ByteBuffer, Integer> indices = new HashMap<ByteBuffer, Integer>();
+
+		GuardTable(ModelCodec<P> codec) {
+			this.codec = codec;
+		}
+
+		int indexOf(P guard) {
+			ModelWriter out = new ModelWriter(false);
+			codec.write(guard, out);
+			byte[] encoding = out.toByteArray();
+			ByteBuffer key = ByteBuffer.wrap(encoding);
+			Integer index = indices.get(key);
+			if (index == null) {
+				index = encodings.size();
+				encodings.add(encoding);
+				indices.put(key, index);
+			}
+			return index;
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package automata.sra;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+
+/**
+ * Runs a deterministic SRA on a data word, one symbol at a time.
+ *
+ * Since at most one move is enabled by each symbol, the run keeps a single state and one array of register values
+ * that is updated in place, and reading a symbol stops at the first enabled move. No set of configurations is built.
+ *
+ * @param <P>
+ *            set of predicates over the domain S
+ * @param <S>
+ *            domain of the automaton alphabet
+ */
+public class DeterministicSRARunner<P, S> {
+
+	private static final int REJECTED = -1;
+
+	private final BooleanAlgebra<P, S> ba;
+	private final Object[] initialRegisters;
+	private final int initialState;
+	private final boolean[] isFinal;
+
+	// moves leaving each state, by state index
+	private final List<List<CompiledMove<P>>> movesFrom = new ArrayList<List<CompiledMove<P>>>();
+
+	private int state;
+	private Object[] registers;
+
+	/**
+	 * A runner for <code>aut</code>, which has to be deterministic
+	 *
+	 * @throws TimeoutException
+	 */
+	public DeterministicSRARunner(SRA<P, S> aut, BooleanAlgebra<P, S> ba) throws TimeoutException {
+		if (!aut.isDeterministic(ba))
+			throw new IllegalArgumentException("The SRA has to be deterministic");
+		this.ba = ba;
+		this.initialRegisters = aut.getRegisters().toArray();
+
+		Map<Integer, Integer> stateIndex = new HashMap<Integer, Integer>();
+		for (Integer st : aut.getStates())
+			stateIndex.put(st, stateIndex.size());
+
+		isFinal = new boolean[stateIndex.size()];
+		for (Integer st : aut.getStates()) {
+			isFinal[stateIndex.get(st)] = aut.isFinalState(st);
+			movesFrom.add(null);
+		}
+		for (Integer st : aut.getStates()) {
+			Collection<SRAMove<P, S>> moves = aut.getTransitionsFrom(st);
+			List<CompiledMove<P>> compiled = new ArrayList<CompiledMove<P>>(moves.size());
+			for (SRAMove<P, S> move : moves)
+				compiled.add(new CompiledMove<P>(stateIndex.get(move.to), move.guard, toArray(move.E),
+						toArray(move.I), toArray(move.U)));
+			movesFrom.set(stateIndex.get(st), compiled);
+		}
+		initialState = stateIndex.get(aut.getInitialState());
+		reset();
+	}
+
+	/**
+	 * Goes back to the initial state and register values
+	 */
+	public void reset() {
+		state = initialState;
+		registers = Arrays.copyOf(initialRegisters, initialRegisters.length);
+	}
+
+	/**
+	 * Reads the next symbol, returns false if the input is rejected
+	 *
+	 * @throws TimeoutException
+	 */
+	public boolean read(S input) throws TimeoutException {
+		state = step(state, registers, input);
+		return state != REJECTED;
+	}
+
+	/**
+	 * Whether the symbols read so far are accepted
+	 */
+	public boolean isAccepting() {
+		return state != REJECTED && isFinal[state];
+	}
+
+	/**
+	 * Runs the SRA on <code>input</code> from the initial configuration. The run keeps its own state, so it does not
+	 * change the symbols read so far and several threads can run the same runner.
+	 *
+	 * @throws TimeoutException
+	 */
+	public boolean accepts(List<S> input) throws TimeoutException {
+		int current = initialState;
+		Object[] values = Arrays.copyOf(initialRegisters, initialRegisters.length);
+		for (S el : input) {
+			current = step(current, values, el);
+			if (current == REJECTED)
+				return false;
+		}
+		return isFinal[current];
+	}
+
+	// the state reached from from by reading input, updating registers in place
+	private int step(int from, Object[] registers, S input) throws TimeoutException {
+		if (from == REJECTED)
+			return REJECTED;
+
+		for (CompiledMove<P> move : movesFrom.get(from))
+			if (isEnabled(move, registers, input) && ba.HasModel(move.guard, input)) {
+				for (int r : move.updated)
+					registers[r] = input;
+				return move.to;
+			}
+
+		return REJECTED;
+	}
+
+	// the symbol must be equal to all registers in E and to none in I
+	private boolean isEnabled(CompiledMove<P> move, Object[] registers, S input) {
+		for (int r : move.equal)
+			if (registers[r] == null || !registers[r].equals(input))
+				return false;
+		for (int r : move.notEqual)
+			if (registers[r] != null && registers[r].equals(input))
+				return false;
+		return true;
+	}
+
+	private static int[] toArray(Set<Integer> registers) {
+		int[] array = new int[registers.size()];
+		int i = 0;
+		for (Integer r : registers)
+			array[i++] = r;
+		return array;
+	}
+
+	private static class CompiledMove<P> {
+		final int to;
+		final P guard;
+		final int[] equal;
+		final int[] notEqual;
+		final int[] updated;
+
+		CompiledMove(int to, P guard, int[] equal, int[] notEqual, int[] updated) {
+			this.to = to;
+			this.guard = guard;
+			this.equal = equal;
+			this.notEqual = notEqual;
+			this.updated = updated;
+		}
+	}
+}
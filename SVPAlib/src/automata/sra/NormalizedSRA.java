@@ -0,0 +1,557 @@
+package automata.sra;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+import utilities.Pair;
+
+/**
+ * The normalization of a single-valued SRA, used by the emptiness and simulation checks.
+ *
+ * The minterms of the predicates of the SRA, and of the atoms of its initial register values, are computed once and
+ * numbered. A state of the normalized SRA is a state of the SRA together with a register abstraction, an
+ * <code>int[]</code> holding for every register the id of the minterm its value satisfies, or -1 for an empty
+ * register. States cache their hash, and the normalized moves leaving a state are computed the first time they are
+ * needed and reused by all later queries, as are the answers of
+ * {@link BooleanAlgebra#hasNDistinctWitnesses}. Two SRAs that are compared with each other share their minterms, see
+ * {@link #ofPair}.
+ *
+ * @param <P>
+ *            set of predicates over the domain S
+ * @param <S>
+ *            domain of the automaton alphabet
+ */
+public class NormalizedSRA<P, S> {
+
+	private final SRA<P, S> aut;
+	private final BooleanAlgebra<P, S> ba;
+	private final Minterms<P, S> minterms;
+	private final State initialState;
+	private final Map<State, List<Move>> movesFrom = new ConcurrentHashMap<State, List<Move>>();
+	// dense ids of the states reached so far, used to pack simulation triples
+	private final Map<State, Integer> stateIds = new ConcurrentHashMap<State, Integer>();
+	private final AtomicInteger nextStateId = new AtomicInteger();
+
+	private volatile Boolean isEmpty;
+
+	private NormalizedSRA(SRA<P, S> aut, BooleanAlgebra<P, S> ba, Minterms<P, S> minterms) {
+		this.aut = aut;
+		this.ba = ba;
+		this.minterms = minterms;
+
+		LinkedList<S> registers = aut.getRegisters();
+		int[] initialAbs = new int[registers.size()];
+		for (int r = 0; r < initialAbs.length; r++)
+			initialAbs[r] = registers.get(r) == null ? -1 : minterms.of(ba.MkAtom(registers.get(r)))[0];
+		this.initialState = new State(aut.getInitialState(), initialAbs);
+	}
+
+	/**
+	 * Normalizes <code>aut</code>, which is made single-valued first if needed
+	 *
+	 * @throws TimeoutException
+	 */
+	public static <P, S> NormalizedSRA<P, S> of(SRA<P, S> aut, BooleanAlgebra<P, S> ba, long timeout)
+			throws TimeoutException {
+		SRA<P, S> singleValued = aut.getSingleValued(ba, timeout);
+
+		HashSet<P> predicates = new HashSet<P>();
+		addPredicates(singleValued, ba, predicates, timeout);
+		return new NormalizedSRA<P, S>(singleValued, ba, new Minterms<P, S>(ba, predicates));
+	}
+
+	/**
+	 * Normalizes <code>aut1</code> and <code>aut2</code> over the minterms of the predicates of both
+	 *
+	 * @throws TimeoutException
+	 */
+	public static <P, S> Pair<NormalizedSRA<P, S>, NormalizedSRA<P, S>> ofPair(SRA<P, S> aut1, SRA<P, S> aut2,
+			BooleanAlgebra<P, S> ba, long timeout) throws TimeoutException {
+		SRA<P, S> singleValued1 = aut1.getSingleValued(ba, timeout);
+		SRA<P, S> singleValued2 = aut2.getSingleValued(ba, timeout);
+
+		HashSet<P> predicates = new HashSet<P>();
+		addPredicates(singleValued1, ba, predicates, timeout);
+		addPredicates(singleValued2, ba, predicates, timeout);
+		Minterms<P, S> minterms = new Minterms<P, S>(ba, predicates);
+		return new Pair<NormalizedSRA<P, S>, NormalizedSRA<P, S>>(
+				new NormalizedSRA<P, S>(singleValued1, ba, minterms),
+				new NormalizedSRA<P, S>(singleValued2, ba, minterms));
+	}
+
+	// the guards of aut and the atoms of its initial register values
+	private static <P, S> void addPredicates(SRA<P, S> aut, BooleanAlgebra<P, S> ba, HashSet<P> predicates,
+			long timeout) {
+		predicates.addAll(aut.getAllPredicates(timeout));
+		for (S regVal : aut.getRegisters())
+			if (regVal != null)
+				predicates.add(ba.MkAtom(regVal));
+	}
+
+	/**
+	 * @return the single-valued SRA that was normalized
+	 */
+	public SRA<P, S> getSRA() {
+		return aut;
+	}
+
+	/**
+	 * @return the Boolean algebra the SRA was normalized with
+	 */
+	public BooleanAlgebra<P, S> getAlgebra() {
+		return ba;
+	}
+
+	/**
+	 * @return the number of minterms of the normalization
+	 */
+	public int getMintermCount() {
+		return minterms.predicates.size();
+	}
+
+	/**
+	 * Checks if the language of the SRA is empty, the answer is computed once
+	 *
+	 * @throws TimeoutException
+	 */
+	public boolean isLanguageEmpty(long timeout) throws TimeoutException {
+		if (isEmpty == null)
+			isEmpty = computeIsLanguageEmpty(timeout);
+		return isEmpty;
+	}
+
+	private boolean computeIsLanguageEmpty(long timeout) throws TimeoutException {
+		long startTime = System.currentTimeMillis();
+
+		HashMap<State, Integer> reached = new HashMap<State, Integer>();
+		LinkedList<State> toVisit = new LinkedList<State>();
+		reached.put(initialState, 0);
+		toVisit.add(initialState);
+
+		while (!toVisit.isEmpty()) {
+			State currentState = toVisit.removeFirst();
+
+			if (aut.isFinalState(currentState.state))
+				return false;
+
+			if (System.currentTimeMillis() - startTime > timeout)
+				throw new TimeoutException();
+
+			for (Move move : getMovesFrom(currentState))
+				SRA.getStateId(move.to, reached, toVisit);
+		}
+		return true;
+	}
+
+	/**
+	 * A number identifying <code>state</code> among the states of this normalization, assigned on the first request
+	 */
+	int getStateId(State state) {
+		Integer id = stateIds.get(state);
+		if (id == null) {
+			Integer fresh = nextStateId.getAndIncrement();
+			id = stateIds.putIfAbsent(state, fresh);
+			if (id == null)
+				id = fresh;
+		}
+		return id;
+	}
+
+	boolean sharesMintermsWith(NormalizedSRA<P, S> other) {
+		return minterms == other.minterms;
+	}
+
+	State getInitialState() {
+		return initialState;
+	}
+
+	boolean isFinal(State state) {
+		return aut.isFinalState(state.state);
+	}
+
+	/**
+	 * The normalized moves leaving <code>state</code>, computed on the first request
+	 */
+	List<Move> getMovesFrom(State state) {
+		List<Move> moves = movesFrom.get(state);
+		if (moves == null) {
+			moves = new ArrayList<Move>();
+			for (SRAMove<P, S> move : aut.getMovesFrom(state.state))
+				addNormalizedMoves(state, move, moves);
+			movesFrom.put(state, moves);
+		}
+		return moves;
+	}
+
+	// Breaks down a move of the SRA into minterms
+	private void addNormalizedMoves(State from, SRAMove<P, S> move, List<Move> moves) {
+		int[] guardMinterms = minterms.of(move.guard);
+
+		if (move instanceof SRACheckMove) {
+			int register = move.E.iterator().next();
+			int registerMinterm = from.registers[register];
+
+			if (registerMinterm >= 0 && contains(guardMinterms, registerMinterm))
+				moves.add(new Move(true, register, registerMinterm, new State(move.to, from.registers)));
+		} else {
+			for (int minterm : guardMinterms) {
+				int neededWitnesses = 1 + countRegistersIn(from.registers, minterm);
+
+				if (minterms.hasNDistinctWitnesses(minterm, neededWitnesses)) {
+					int[] registers = Arrays.copyOf(from.registers, from.registers.length);
+					registers[move.registerIndex] = minterm;
+					moves.add(new Move(false, move.registerIndex, minterm, new State(move.to, registers)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks if <code>n1</code> can simulate <code>n2</code>, checks for bisimulation if <code>bisimulation</code> is
+	 * set to true. The two normalizations have to come from {@link #ofPair}.
+	 *
+	 * @throws TimeoutException
+	 */
+	public static <P, S> boolean canSimulate(NormalizedSRA<P, S> n1, NormalizedSRA<P, S> n2, boolean bisimulation,
+			long timeout) throws TimeoutException {
+		if (!n1.sharesMintermsWith(n2))
+			throw new IllegalArgumentException("The SRAs have to be normalized together");
+
+		long startTime = System.currentTimeMillis();
+
+		Triple initTriple = initialTriple(n1, n2);
+
+		// reached contains the triples we have already discovered and maps them to a stateId
+		HashMap<Triple, Integer> reached = new HashMap<Triple, Integer>();
+		// toVisit contains the triples we have not explored yet
+		LinkedList<Triple> toVisit = new LinkedList<Triple>();
+		toVisit.add(initTriple);
+		reached.put(initTriple, 0);
+
+		while (!toVisit.isEmpty()) {
+			if (System.currentTimeMillis() - startTime > timeout)
+				throw new TimeoutException();
+
+			Triple currentTriple = toVisit.removeLast();
+			List<Triple> newTriples = n1.simulationSuccessors(n2, currentTriple, bisimulation);
+			if (newTriples == null)
+				return false;
+
+			for (Triple triple : newTriples)
+				SRA.getStateId(triple, reached, toVisit);
+		}
+		return true;
+	}
+
+	/**
+	 * The triple of the initial states, where registers with the same initial value are mapped to each other
+	 */
+	static <P, S> Triple initialTriple(NormalizedSRA<P, S> n1, NormalizedSRA<P, S> n2) {
+		LinkedList<S> registers1 = n1.aut.getRegisters();
+		LinkedList<S> registers2 = n2.aut.getRegisters();
+		int[] initRegMap = new int[registers1.size()];
+		Arrays.fill(initRegMap, -1);
+		for (int r1 = 0; r1 < registers1.size(); r1++)
+			for (int r2 = 0; r2 < registers2.size(); r2++)
+				if (registers1.get(r1) != null && registers1.get(r1).equals(registers2.get(r2)))
+					initRegMap[r1] = r2;
+
+		return new Triple(n1.initialState, n2.initialState, initRegMap);
+	}
+
+	/**
+	 * The triples that have to be checked after <code>triple</code>, where this SRA simulates <code>other</code>, or
+	 * null if the states in <code>triple</code> are not similar
+	 */
+	List<Triple> simulationSuccessors(NormalizedSRA<P, S> other, Triple triple, boolean bisimulation) {
+		if (isFinal(triple.state1) && !other.isFinal(triple.state2))
+			return null;
+		if (bisimulation && other.isFinal(triple.state2) && !isFinal(triple.state1))
+			return null;
+
+		List<Move> moves1 = getMovesFrom(triple.state1);
+		if (!bisimulation && moves1.isEmpty()) // we don't need to find matching moves from other
+			return new ArrayList<Triple>();
+		List<Move> moves2 = other.getMovesFrom(triple.state2);
+
+		List<Triple> newTriples = normSimSucc(moves1, moves2, triple.regMap, triple.state1.registers,
+				triple.state2.registers);
+		if (newTriples == null)
+			return null;
+
+		if (bisimulation) {
+			if (moves2.isEmpty()) // we don't need to find matching moves from this
+				return new ArrayList<Triple>();
+
+			int[] invRegMap = new int[triple.state2.registers.length];
+			Arrays.fill(invRegMap, -1);
+			for (int r1 = 0; r1 < triple.regMap.length; r1++)
+				if (triple.regMap[r1] >= 0)
+					invRegMap[triple.regMap[r1]] = r1;
+
+			if (normSimSucc(moves2, moves1, invRegMap, triple.state2.registers, triple.state1.registers) == null)
+				return null;
+		}
+		return newTriples;
+	}
+
+	// Returns all reduced bisimulation triples that need to be checked in subsequent steps
+	private List<Triple> normSimSucc(List<Move> moves1, List<Move> moves2, int[] regMap, int[] regAbs1,
+			int[] regAbs2) {
+
+		List<Triple> nextTriples = new ArrayList<Triple>();
+
+		for (Move move1 : moves1) {
+			if (move1.isCheck) {
+				Move matchingMove = null;
+				int[] newRegMap = null;
+
+				if (regMap[move1.register] >= 0) {
+					// Case 1(a) in the paper
+					int r2 = regMap[move1.register];
+					for (Move move2 : moves2)
+						if (move2.isCheck && move2.register == r2) { // Guard is the same by construction
+							matchingMove = move2;
+							newRegMap = regMap;
+							break;
+						}
+				} else {
+					// Case 1(b) in the paper
+					for (Move move2 : moves2)
+						if (!move2.isCheck && move2.guard == move1.guard) {
+							matchingMove = move2;
+							newRegMap = updateRegMap(regMap, move1.register, move2.register);
+							break;
+						}
+				}
+
+				if (matchingMove == null)
+					return null;
+
+				nextTriples.add(new Triple(move1.to, matchingMove.to, newRegMap));
+			} else {
+				// Case 2(a)
+				boolean[] regInImg = new boolean[regAbs2.length];
+				for (int r1 = 0; r1 < regMap.length; r1++)
+					if (regMap[r1] >= 0)
+						regInImg[regMap[r1]] = true;
+
+				for (int r2 = 0; r2 < regAbs2.length; r2++) {
+					if (!regInImg[r2] && regAbs2[r2] == move1.guard) {
+						Move matchingMove = null;
+						for (Move move2 : moves2)
+							if (move2.isCheck && move2.register == r2) // Guard must be the same
+								matchingMove = move2;
+
+						if (matchingMove == null)
+							return null;
+
+						nextTriples.add(new Triple(move1.to, matchingMove.to,
+								updateRegMap(regMap, move1.register, matchingMove.register)));
+					}
+				}
+
+				// Case 2(b)
+				int neededWitnesses = 1 + countRegistersIn(regAbs1, move1.guard)
+						+ countRegistersIn(regAbs2, move1.guard);
+
+				if (minterms.hasNDistinctWitnesses(move1.guard, neededWitnesses)) {
+					Move matchingMove = null;
+					for (Move move2 : moves2)
+						if (!move2.isCheck && move2.guard == move1.guard) { // Guard must be the same
+							matchingMove = move2;
+							break;
+						}
+
+					if (matchingMove == null)
+						return null;
+
+					nextTriples.add(new Triple(move1.to, matchingMove.to,
+							updateRegMap(regMap, move1.register, matchingMove.register)));
+				}
+			}
+		}
+
+		return nextTriples;
+	}
+
+	// Maps r1 to r2, and removes the register previously mapped to r2
+	private static int[] updateRegMap(int[] regMap, int r1, int r2) {
+		int[] newRegMap = Arrays.copyOf(regMap, regMap.length);
+		for (int r = 0; r < newRegMap.length; r++)
+			if (newRegMap[r] == r2) {
+				newRegMap[r] = -1;
+				break;
+			}
+		newRegMap[r1] = r2;
+		return newRegMap;
+	}
+
+	private static int countRegistersIn(int[] registers, int minterm) {
+		int count = 0;
+		for (int registerMinterm : registers)
+			if (registerMinterm == minterm)
+				count++;
+		return count;
+	}
+
+	private static boolean contains(int[] array, int value) {
+		for (int element : array)
+			if (element == value)
+				return true;
+		return false;
+	}
+
+	// ------------------------------------------------------
+	// Minterms, states, moves and simulation triples
+	// ------------------------------------------------------
+
+	/**
+	 * Numbered minterms of a set of predicates
+	 */
+	static class Minterms<P, S> {
+		final BooleanAlgebra<P, S> ba;
+		final List<P> predicates = new ArrayList<P>();
+		// ids of the minterms in which each predicate is not negated
+		final Map<P, int[]> mintermsOf = new HashMap<P, int[]>();
+		final Map<Long, Boolean> distinctWitnesses = new ConcurrentHashMap<Long, Boolean>();
+
+		Minterms(BooleanAlgebra<P, S> ba, Collection<P> allPredicates) {
+			this.ba = ba;
+			ArrayList<P> predicateList = new ArrayList<P>(allPredicates);
+			List<List<Integer>> positive = new ArrayList<List<Integer>>();
+			for (int i = 0; i < predicateList.size(); i++)
+				positive.add(new ArrayList<Integer>());
+
+			for (Pair<P, ArrayList<Integer>> minterm : ba.GetMinterms(predicateList)) {
+				for (int i = 0; i < predicateList.size(); i++)
+					if (minterm.second.get(i) == 1)
+						positive.get(i).add(predicates.size());
+				predicates.add(minterm.first);
+			}
+
+			for (int i = 0; i < predicateList.size(); i++) {
+				int[] ids = new int[positive.get(i).size()];
+				for (int j = 0; j < ids.length; j++)
+					ids[j] = positive.get(i).get(j);
+				mintermsOf.put(predicateList.get(i), ids);
+			}
+		}
+
+		int[] of(P predicate) {
+			return mintermsOf.get(predicate);
+		}
+
+		boolean hasNDistinctWitnesses(int minterm, int n) {
+			Long key = ((long) minterm << 32) | n;
+			Boolean result = distinctWitnesses.get(key);
+			if (result == null) {
+				result = ba.hasNDistinctWitnesses(predicates.get(minterm), n);
+				distinctWitnesses.put(key, result);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * A state of the SRA together with a register abstraction
+	 */
+	static class State {
+		final Integer state;
+		final int[] registers;
+		final int hash;
+
+		State(Integer state, int[] registers) {
+			this.state = state;
+			this.registers = registers;
+			this.hash = 31 * state.hashCode() + Arrays.hashCode(registers);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other)
+				return true;
+			if (!(other instanceof State))
+				return false;
+			State that = (State) other;
+			return hash == that.hash && state.equals(that.state) && Arrays.equals(registers, that.registers);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public String toString() {
+			return "<" + state + " , " + Arrays.toString(registers) + ">";
+		}
+	}
+
+	/**
+	 * A check or fresh move on a single minterm
+	 */
+	static class Move {
+		final boolean isCheck;
+		final int register;
+		final int guard;
+		final State to;
+
+		Move(boolean isCheck, int register, int guard, State to) {
+			this.isCheck = isCheck;
+			this.register = register;
+			this.guard = guard;
+			this.to = to;
+		}
+	}
+
+	/**
+	 * A pair of states of the two SRAs with the map from the registers of the first to the ones of the second, -1
+	 * for unmapped registers
+	 */
+	static class Triple {
+		final State state1;
+		final State state2;
+		final int[] regMap;
+		final int hash;
+
+		Triple(State state1, State state2, int[] regMap) {
+			this.state1 = state1;
+			this.state2 = state2;
+			this.regMap = regMap;
+			this.hash = 31 * (31 * state1.hash + state2.hash) + Arrays.hashCode(regMap);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other)
+				return true;
+			if (!(other instanceof Triple))
+				return false;
+			Triple that = (Triple) other;
+			return hash == that.hash && state1.equals(that.state1) && state2.equals(that.state2)
+					&& Arrays.equals(regMap, that.regMap);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public String toString() {
+			return "[" + state1 + ", " + state2 + ", " + Arrays.toString(regMap) + "]";
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package automata.sra;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+
+import org.sat4j.specs.TimeoutException;
+
+import automata.sra.NormalizedSRA.Triple;
+
+/**
+ * Checks whether a normalized SRA simulates another one using all the cores of a {@link ForkJoinPool}.
+ *
+ * The search explores the same triples as {@link NormalizedSRA#canSimulate}. Every task expands a triple, keeps one
+ * of the new successors for itself and forks the others, so idle workers steal the pending triples of busy ones. The
+ * visited triples are stored in a concurrent set in packed form: the ids of the two states in the first
+ * <code>long</code> and the register map in 16 bits per register in the following ones. As soon as a task finds a
+ * pair of states that are not similar, or runs out of time, all the tasks stop. The Boolean algebra must support
+ * concurrent calls to hasNDistinctWitnesses.
+ */
+public class ParallelSRASimulation {
+
+	/**
+	 * Checks if <code>n1</code> can simulate <code>n2</code> on the common pool, checks for bisimulation if
+	 * <code>bisimulation</code> is set to true. The two normalizations have to come from {@link NormalizedSRA#ofPair}.
+	 *
+	 * @throws TimeoutException
+	 */
+	public static <P, S> boolean canSimulate(NormalizedSRA<P, S> n1, NormalizedSRA<P, S> n2, boolean bisimulation,
+			long timeout) throws TimeoutException {
+		return canSimulate(n1, n2, bisimulation, timeout, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Checks if <code>n1</code> can simulate <code>n2</code> on <code>pool</code>, checks for bisimulation if
+	 * <code>bisimulation</code> is set to true. The two normalizations have to come from {@link NormalizedSRA#ofPair}.
+	 *
+	 * @throws TimeoutException
+	 */
+	public static <P, S> boolean canSimulate(NormalizedSRA<P, S> n1, NormalizedSRA<P, S> n2, boolean bisimulation,
+			long timeout, ForkJoinPool pool) throws TimeoutException {
+		if (!n1.sharesMintermsWith(n2))
+			throw new IllegalArgumentException("The SRAs have to be normalized together");
+		if (n2.getSRA().getRegisters().size() >= 0xFFFF)
+			throw new IllegalArgumentException("Too many registers to pack the register map");
+
+		Search<P, S> search = new Search<P, S>(n1, n2, bisimulation, timeout);
+		Triple initTriple = NormalizedSRA.initialTriple(n1, n2);
+		search.visited.add(search.pack(initTriple));
+		pool.invoke(new Expansion<P, S>(null, search, initTriple));
+
+		if (search.notSimilar)
+			return false;
+		if (search.timedOut)
+			throw new TimeoutException();
+		return true;
+	}
+
+	// State shared by all the tasks of a check
+	private static class Search<P, S> {
+		final NormalizedSRA<P, S> n1;
+		final NormalizedSRA<P, S> n2;
+		final boolean bisimulation;
+		final long startTime;
+		final long timeout;
+		final Set<PackedTriple> visited = ConcurrentHashMap.newKeySet();
+
+		volatile boolean notSimilar;
+		volatile boolean timedOut;
+
+		Search(NormalizedSRA<P, S> n1, NormalizedSRA<P, S> n2, boolean bisimulation, long timeout) {
+			this.n1 = n1;
+			this.n2 = n2;
+			this.bisimulation = bisimulation;
+			this.startTime = System.currentTimeMillis();
+			this.timeout = timeout;
+		}
+
+		boolean isStopped() {
+			return notSimilar || timedOut;
+		}
+
+		PackedTriple pack(Triple triple) {
+			int[] regMap = triple.regMap;
+			long[] words = new long[1 + (regMap.length + 3) / 4];
+			words[0] = ((long) n1.getStateId(triple.state1) << 32) | (n2.getStateId(triple.state2) & 0xFFFFFFFFL);
+			for (int r = 0; r < regMap.length; r++)
+				words[1 + r / 4] |= (long) (regMap[r] + 1) << (16 * (r % 4));
+			return new PackedTriple(words);
+		}
+	}
+
+	// Explores the triples reachable from a triple
+	private static class Expansion<P, S> extends CountedCompleter<Void> {
+		private static final long serialVersionUID = 1L;
+
+		final Search<P, S> search;
+		final Triple triple;
+
+		Expansion(CountedCompleter<?> parent, Search<P, S> search, Triple triple) {
+			super(parent);
+			this.search = search;
+			this.triple = triple;
+		}
+
+		@Override
+		public void compute() {
+			Triple current = triple;
+			while (current != null && !search.isStopped()) {
+				if (System.currentTimeMillis() - search.startTime > search.timeout) {
+					search.timedOut = true;
+					break;
+				}
+
+				List<Triple> newTriples = search.n1.simulationSuccessors(search.n2, current, search.bisimulation);
+				if (newTriples == null) {
+					search.notSimilar = true;
+					break;
+				}
+
+				Triple next = null;
+				for (Triple newTriple : newTriples)
+					if (search.visited.add(search.pack(newTriple))) {
+						if (next == null)
+							next = newTriple;
+						else {
+							addToPendingCount(1);
+							new Expansion<P, S>(this, search, newTriple).fork();
+						}
+					}
+				current = next;
+			}
+			tryComplete();
+		}
+	}
+
+	// A triple encoded as state ids followed by the register map
+	private static class PackedTriple {
+		final long[] words;
+		final int hash;
+
+		PackedTriple(long[] words) {
+			this.words = words;
+			this.hash = Arrays.hashCode(words);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other)
+				return true;
+			if (!(other instanceof PackedTriple))
+				return false;
+			PackedTriple that = (PackedTriple) other;
+			return hash == that.hash && Arrays.equals(words, that.words);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
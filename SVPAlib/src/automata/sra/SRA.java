@@ -9,6 +9,7 @@ package automata.sra;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 import org.sat4j.specs.TimeoutException;
 
@@ -29,7 +30,6 @@ public class SRA<P, S> {
 	// ------------------------------------------------------
 
     protected boolean isEmpty;
-    protected boolean isDeterministic;
     protected boolean isTotal;
 	protected boolean isSingleValued;
 
@@ -50,9 +50,9 @@ public class SRA<P, S> {
     private Integer maxStateId;
 	private Integer transitionCount;
 
-	public void setIsDet(boolean b) {
-		isDeterministic = b;
-	}
+	// facts and copies reused by the language checks, dropped when a transition is added
+	private volatile LanguageCaches<P, S> caches;
+	private volatile int version;
 
 	/**
 	 * Returns the empty SRA for the Boolean algebra <code>ba</code>
@@ -66,7 +66,6 @@ public class SRA<P, S> {
 		aut.initialState = 0;
         aut.registers = new LinkedList<B>();
         aut.registers.add(null);
-		aut.isDeterministic = true;
 		aut.isEmpty = true;
 		aut.isTotal = true;
 		aut.isSingleValued = true;
@@ -89,7 +88,6 @@ public class SRA<P, S> {
 		aut.initialState = 0;
         aut.registers = new LinkedList<B>();
         aut.registers.add(null);
-		aut.isDeterministic = true;
 		aut.isEmpty = false;
 		aut.maxStateId = 1;
 		aut.isSingleValued = false;
@@ -133,7 +131,6 @@ public class SRA<P, S> {
 	// Initializes all the fields of the automaton
 	private SRA() {
         isEmpty = false;
-        isDeterministic = false;
         isTotal = false;
         isSingleValued = false;
 		finalStates = new HashSet<Integer>();
@@ -291,6 +288,8 @@ public class SRA<P, S> {
 	private void addTransition(SRAMove<P, S> transition, BooleanAlgebra<P, S> ba, boolean skipSatCheck) throws TimeoutException {
 		if (skipSatCheck || transition.isSatisfiable(ba)) {
 
+			clearCaches();
+
 			transitionCount++;
 
 			if (transition.from > maxStateId)
@@ -395,21 +394,63 @@ public class SRA<P, S> {
 	 * @throws TimeoutException 
 	 */
 	public boolean accepts(List<S> input, BooleanAlgebra<P, S> ba) throws TimeoutException {
-		Collection<Configuration> currConf = new LinkedList<>();
-		currConf.add(new Configuration(initialState, new LinkedList<>(registers)));
+		// the runner is compiled on the first run and memoized until a transition is added
+		if (isDeterministic(ba)) {
+			LanguageCaches<P, S> cache = getCaches(ba);
+			DeterministicSRARunner<P, S> runner = cache.runner;
+			if (runner == null) {
+				runner = new DeterministicSRARunner<P, S>(this, ba);
+				cache.runner = runner;
+			}
+			return runner.accepts(input);
+		}
 
-		for (S el : input) {
-			currConf = getNextConfigurations(currConf, el, ba);
+		return new SRARunner<P, S>(this, ba).accepts(input);
+	}
 
-			if (currConf.isEmpty()) {
-				return false;
-			}
+	/**
+	 * Returns true if from every state and valuation of the registers at most one move is enabled by each symbol. The
+	 * answer is computed once and reused until a transition is added. Two moves are considered mutually exclusive if
+	 * their guards are disjoint, if one requires the symbol to be equal to a register the other requires it to be
+	 * different from, or if the SRA is single-valued and they test equality with different registers, so the check
+	 * can answer false for some SRAs that can only reach deterministic configurations.
+	 *
+	 * @throws TimeoutException
+	 */
+	public boolean isDeterministic(BooleanAlgebra<P, S> ba) throws TimeoutException {
+		LanguageCaches<P, S> cache = getCaches(ba);
+		Boolean deterministic = cache.deterministic;
+		if (deterministic == null) {
+			deterministic = computeIsDeterministic(ba);
+			cache.deterministic = deterministic;
+		}
+		return deterministic;
+	}
+
+	private boolean computeIsDeterministic(BooleanAlgebra<P, S> ba) throws TimeoutException {
+		for (Integer state : states) {
+			List<SRAMove<P, S>> movesFromState = new ArrayList<SRAMove<P, S>>(getTransitionsFrom(state));
 
-			if (currConf.size() > 1) {
-				isDeterministic = false;
+			for (int i = 0; i < movesFromState.size(); i++) {
+				SRAMove<P, S> t1 = movesFromState.get(i);
+				for (int p = i + 1; p < movesFromState.size(); p++)
+					if (!areExclusive(t1, movesFromState.get(p), ba))
+						return false;
 			}
 		}
-		return isFinalConfiguration(currConf);
+		return true;
+	}
+
+	// Checks if two moves from the same state can never be enabled by the same symbol
+	private boolean areExclusive(SRAMove<P, S> t1, SRAMove<P, S> t2, BooleanAlgebra<P, S> ba) throws TimeoutException {
+		if (!Collections.disjoint(t1.E, t2.I) || !Collections.disjoint(t2.E, t1.I))
+			return true;
+
+		// registers of a single-valued SRA hold distinct values
+		if (isSingleValued && !t1.E.isEmpty() && !t2.E.isEmpty() && !t1.E.equals(t2.E))
+			return true;
+
+		return !ba.IsSatisfiable(ba.MkAnd(t1.guard, t2.guard));
 	}
 
 	// ------------------------------------------------------
@@ -487,44 +528,6 @@ public class SRA<P, S> {
 		return nonFin;
 	}
 
-	private class Configuration {
-		private Integer state;
-		private LinkedList<S> regValues;
-
-		public Configuration(Integer state, LinkedList<S> regValues) {
-			this.state = state;
-			this.regValues = regValues;
-		}
-
-		public String toString() {
-			return "(" + state + "," + regValues + ")";
-		}
-
-		@Override
-		public boolean equals(Object o) {
-			if (this == o) return true;
-			if (o == null || getClass() != o.getClass()) return false;
-			Configuration that = (Configuration) o;
-			return Objects.equals(state, that.state) &&
-					Objects.equals(regValues, that.regValues);
-		}
-
-		@Override
-		public int hashCode() {
-			return Objects.hash(state, regValues);
-		}
-	}
-
-	/**
-	 * @return true if the set <code>conf</code> contains an initial state
-	 */
-	public boolean isInitialConfiguration(Collection<Configuration> conf) {
-		for (Configuration c: conf)
-			if (isInitialState(c.state))
-				return true;
-		return false;
-	}
-
 	/**
 	 * @return true if <code>state</code> is an initial state
 	 */
@@ -532,16 +535,6 @@ public class SRA<P, S> {
 		return getInitialState() == state;
 	}
 
-	/**
-	 * @return true if <code>conf</code> contains a final state
-	 */
-	public boolean isFinalConfiguration(Collection<Configuration> conf) {
-		for (Configuration c: conf)
-			if (isFinalState(c.state))
-				return true;
-		return false;
-	}
-
 	/**
 	 * @return true if <code>state</code> is a final state
 	 */
@@ -549,29 +542,10 @@ public class SRA<P, S> {
 		return getFinalStates().contains(state);
 	}
 
-	protected Collection<Configuration> getNextConfigurations(Collection<Configuration> currConf,
-															  S inputElement, BooleanAlgebra<P, S> ba) throws TimeoutException {
-		Collection<Configuration> nextConfs = new HashSet<>();
-
-		for (Configuration c: currConf) {
-			for (SRAMove<P, S> t : getMovesFrom(c.state)) {
-				if (t.hasModel(inputElement, ba, c.regValues)) {
-					LinkedList<S> updatedReg = new LinkedList<>(c.regValues);
-					for (Integer index : t.U)
-						updatedReg.set(index, inputElement);
-
-					nextConfs.add(new Configuration(t.to, updatedReg));
-				}
-			}
-		}
-
-		return nextConfs;
-	}
-
 	/**
 	 * @return a list of predicates without duplicates
 	 */
-	private HashSet<P> getAllPredicates(long timeout) {
+	HashSet<P> getAllPredicates(long timeout) {
 		HashSet<P> predicatesSet = new HashSet<>();
 
 		HashMap<Integer, Integer> reached = new HashMap<>();
@@ -682,143 +656,6 @@ public class SRA<P, S> {
 
 	}
 
-	protected static class NormSRAMove<P> {
-		public NormSRAState<P> from;
-		public NormSRAState<P> to;
-		public MinTerm<P> guard;
-		public Integer register;
-
-		public NormSRAMove(NormSRAState<P> from, NormSRAState<P> to, MinTerm<P> guard, Integer register) {
-			this.from = from;
-			this.to = to;
-			this.guard = guard;
-			this.register = register;
-		}
-	}
-
-	protected static class NormSRACheckMove<P> extends NormSRAMove<P> {
-
-		public NormSRACheckMove(NormSRAState<P> from, NormSRAState<P> to, MinTerm<P> guard, Integer register) {
-			super(from, to, guard, register);
-		}
-
-	}
-
-	protected static class NormSRAFreshMove<P> extends NormSRAMove<P> {
-
-		public NormSRAFreshMove(NormSRAState<P> from, NormSRAState<P> to, MinTerm<P> guard, Integer register) {
-			super(from, to, guard, register);
-		}
-
-	}
-
-	/**
-	 * Encapsulates a reduced bisimulation triple
-	 */
-	protected  static class NormSimTriple<P> {
-		Triple<NormSRAState<P>, NormSRAState<P>, HashMap<Integer, Integer>> data;
-		NormSimTriple<P> previousTriple;
-		P predicateLeadingTo;
-		String bisimCase;
-
-		NormSimTriple(NormSRAState<P> NormState1,
-					  NormSRAState<P> NormState2,
-					  HashMap<Integer, Integer> regMap,
-					  NormSimTriple<P> previousTriple,
-					  P predicateLeadingTo,
-					  String bisimCase){
-			data = new Triple<>(NormState1, NormState2, regMap);
-			this.previousTriple = previousTriple;
-			this.predicateLeadingTo = predicateLeadingTo;
-			this.bisimCase = bisimCase;
-		}
-
-		NormSRAState<P> getState1() {
-			return data.first;
-		}
-
-		NormSRAState<P> getState2() {
-			return data.second;
-		}
-
-		HashMap<Integer, Integer> getRegMap(){
-			return data.third;
-		}
-
-		@Override
-		public boolean equals(Object o) {
-			if (this == o) return true;
-			if (o == null || getClass() != o.getClass()) return false;
-			NormSimTriple<?> that = (NormSimTriple<?>) o;
-			return Objects.equals(data, that.data);
-		}
-
-		@Override
-		public int hashCode() {
-			return Objects.hash(data);
-		}
-
-		@Override
-		public String toString() {
-			String result = "";
-			if (predicateLeadingTo != null)
-				result = "---" + predicateLeadingTo + "--->";
-
-			result = result + "[ " + data.first + ", " + data.second + ", " + data.third + "] (case" + bisimCase +")";
-			return result;
-		}
-	}
-
-
-
-	/**
-	 * Breaks down a SRA move into minterms.
-	 * Only for single-valued SRAs
-	 * @return a LinkedList of <code>NormSRAMove<P></></code>
-	 */
-	private static <P, S> LinkedList<NormSRAMove<P>> toNormSRAMoves(BooleanAlgebra<P, S> ba,
-																  HashMap<Integer, MinTerm<P>> regAbs,
-																  HashMap<P, LinkedList<MinTerm<P>>> mintermsForPredicate,
-																  SRAMove<P, S> move,
-																  NormSRAState<P> from) {
-
-		LinkedList<NormSRAMove<P>> normMoves = new LinkedList<>();
-		LinkedList<MinTerm<P>> minterms = mintermsForPredicate.get(move.guard);
-
-		if (move instanceof SRACheckMove) {
-            Integer register = move.E.iterator().next();
-			MinTerm<P> registerMintInAbs = regAbs.get(register);
-
-			if (registerMintInAbs != null && minterms.contains(registerMintInAbs)) {
-				HashMap<Integer, MinTerm<P>> newRegAbs = new HashMap<>(regAbs);
-				NormSRAState<P> targetState = new NormSRAState<>(move.to, newRegAbs);
-
-				normMoves.add(new NormSRACheckMove<>(from, targetState, registerMintInAbs, register));
-			}
-		}
-		else {
-			for (MinTerm<P> mint: minterms) {
-				Integer neededWitnessesForMint = 1;
-
-				for (Integer r: regAbs.keySet()) {
-					MinTerm<P> regMint = regAbs.get(r);
-
-					if (regMint != null && regMint.equals(mint))
-						neededWitnessesForMint++;
-				}
-
-				if (ba.hasNDistinctWitnesses(mint.getPredicate(), neededWitnessesForMint)) {
-					HashMap<Integer, MinTerm<P>> newRegAbs = new HashMap<>(regAbs);
-					newRegAbs.put(move.registerIndex, mint);
-					NormSRAState<P> targetState = new NormSRAState<>(move.to, newRegAbs);
-					normMoves.add(new NormSRAFreshMove<>(from, targetState, mint, move.registerIndex));
-				}
-			}
-		}
-
-		return normMoves;
-	}
-
 	/**
 	 * Compute minterms where predicates are non-negated.
 	 */
@@ -883,91 +720,91 @@ public class SRA<P, S> {
 	 * @return true if empty, false if not empty.
 	 */
 	public static <P, S> boolean isLanguageEmpty(SRA<P, S> aut, BooleanAlgebra<P, S> ba, long timeout) throws TimeoutException {
-		long startTime = System.currentTimeMillis();
-
 		if (aut.isEmpty)
 			return true;
 
-		if (!aut.isSingleValued)
-			aut = aut.toSingleValuedSRA(ba, timeout);
-
-
-		// Compute all minterms
-		HashSet<P> allPredicatesSet = aut.getAllPredicates(timeout);
-		// LinkedList<P> initAssAtoms = new LinkedList<>();
-
-
-		for (S regVal : aut.registers) // Add initial register values to predicates
-			if (regVal != null) {
-				P atom = ba.MkAtom(regVal);
-
-				//if (!allPredicates.contains(atom))
-				allPredicatesSet.add(ba.MkAtom(regVal));
-
-				//initAssAtoms.add(atom);
-			}
-
-		ArrayList<P> allPredicates = new ArrayList<>(allPredicatesSet);
-		LinkedList<MinTerm<P>> minTerms = new LinkedList<>();
-
-		for(Pair<P, ArrayList<Integer>> minBA: ba.GetMinterms(allPredicates))
-			minTerms.add(new MinTerm<>(minBA.first, minBA.second));
-
-
-		HashMap<P, LinkedList<MinTerm<P>>> mintermsForPredicates = getMintermsForPredicates(allPredicates, minTerms);
-		HashMap<Integer, MinTerm<P>> initRegAbs = aut.getInitialRegAbs(allPredicates, ba, mintermsForPredicates);
-
-
-
-		// Create initial state of the normalised SRA
-		NormSRAState<P> initNormState = new NormSRAState<>(aut.initialState, initRegAbs);
-
-		// reached contains the product states (p,theta) we discovered and maps
-		// them to a stateId
-		HashMap<NormSRAState<P>, Integer> reached = new HashMap<>();
-		// toVisit contains the product states we still have not explored
-		LinkedList<NormSRAState<P>> toVisit = new LinkedList<>();
-
-		toVisit.add(initNormState);
-		reached.put(initNormState, 0);
-
-		while (!toVisit.isEmpty()) {
-			NormSRAState<P> currentState = toVisit.removeFirst();
-
-			if (aut.finalStates.contains(currentState.getStateId()))
-				return false;
-
-
-			for (SRAMove<P, S> move: aut.getMovesFrom(currentState.getStateId())) {
-				LinkedList<NormSRAMove<P>> normMoves =
-						toNormSRAMoves(ba, currentState.getRegAbs(), mintermsForPredicates, move, null);
-
-				if (System.currentTimeMillis() - startTime > timeout)
-					throw new TimeoutException();
-
-				for (NormSRAMove<P> normMove: normMoves) {
-					NormSRAState<P> nextState = normMove.to;
+		return aut.getNormalization(ba, timeout).isLanguageEmpty(timeout);
+	}
 
-					getStateId(nextState, reached, toVisit);
-				}
+	/**
+	 * Returns the normalization of the SRA, which is computed once and reused by the following language checks.
+	 */
+	public NormalizedSRA<P, S> getNormalization(BooleanAlgebra<P, S> ba, long timeout) throws TimeoutException {
+		LanguageCaches<P, S> cache = getCaches(ba);
+		NormalizedSRA<P, S> normalization = cache.normalization;
+		if (normalization == null) {
+			normalization = NormalizedSRA.of(this, ba, timeout);
+			cache.normalization = normalization;
+		}
+		return normalization;
+	}
 
-			}
-			
+	/**
+	 * Returns the normalizations of the SRA and of <code>aut</code> over the same minterms, which are computed once
+	 * for each <code>aut</code> and reused by the following simulation checks. Only the normalizations with the 16
+	 * most recently used automata are kept.
+	 */
+	public Pair<NormalizedSRA<P, S>, NormalizedSRA<P, S>> getNormalizationWith(SRA<P, S> aut, BooleanAlgebra<P, S> ba,
+			long timeout) throws TimeoutException {
+		LanguageCaches<P, S> cache = getCaches(ba);
+		Triple<Integer, NormalizedSRA<P, S>, NormalizedSRA<P, S>> cached = cache.pairNormalizations.get(aut);
+		int autVersion = aut.version;
+		if (cached == null || cached.first != autVersion) {
+			Pair<NormalizedSRA<P, S>, NormalizedSRA<P, S>> pair = NormalizedSRA.ofPair(this, aut, ba, timeout);
+			cached = new Triple<>(autVersion, pair.first, pair.second);
+			cache.pairNormalizations.put(aut, cached);
 		}
+		return new Pair<>(cached.second, cached.third);
+	}
 
-		return true;
+	/**
+	 * Returns an equivalent single-valued SRA, the SRA itself if it is single-valued. The conversion is computed once
+	 * and reused until a transition is added.
+	 *
+	 * @throws TimeoutException
+	 */
+	public SRA<P, S> getSingleValued(BooleanAlgebra<P, S> ba, long timeout) throws TimeoutException {
+		if (isSingleValued)
+			return this;
+
+		LanguageCaches<P, S> cache = getCaches(ba);
+		SRA<P, S> singleValued = cache.singleValued;
+		if (singleValued == null) {
+			singleValued = toSingleValuedSRA(ba, timeout);
+			cache.singleValued = singleValued;
+		}
+		return singleValued;
 	}
 
-	private static HashMap<Integer, Integer> getRegMapInv(HashMap<Integer, Integer> regMap) {
-		HashMap<Integer, Integer> invRegMap = new HashMap<>();
+	// Single-valued and complete copy of the SRA compared by the language checks
+	private SRA<P, S> getTotalSingleValued(BooleanAlgebra<P, S> ba, long timeout) throws TimeoutException {
+		LanguageCaches<P, S> cache = getCaches(ba);
+		SRA<P, S> totalSingleValued = cache.totalSingleValued;
+		if (totalSingleValued == null) {
+			totalSingleValued = (SRA<P, S>) getSingleValued(ba, timeout).clone();
 
-		for (Integer r: regMap.keySet())
-			invRegMap.put(regMap.get(r), r);
+			if (!totalSingleValued.isTotal)
+				totalSingleValued.complete(ba);
 
-		return invRegMap;
+			cache.totalSingleValued = totalSingleValued;
+		}
+		return totalSingleValued;
 	}
 
+	// The caches for ba, replacing the ones of another algebra
+	private LanguageCaches<P, S> getCaches(BooleanAlgebra<P, S> ba) {
+		LanguageCaches<P, S> cache = caches;
+		if (cache == null || cache.ba != ba) {
+			cache = new LanguageCaches<P, S>(ba);
+			caches = cache;
+		}
+		return cache;
+	}
 
+	private void clearCaches() {
+		caches = null;
+		version++;
+	}
 
 	public HashMap<Pair<Integer, Integer>, P> getPredMap(BooleanAlgebra<P, S> ba) throws TimeoutException {
 		HashMap<Pair<Integer, Integer>, P> predMap = new HashMap<>();
@@ -1067,22 +904,8 @@ public class SRA<P, S> {
 	 * @return true of it is equivalent, false if not.
 	 */
 	public boolean isLanguageEquivalent(SRA<P,S> aut, BooleanAlgebra<P,S> ba, long timeout) throws TimeoutException {
-		SRA<P,S> aut1 = (SRA<P,S>) this.clone();
-		SRA<P,S> aut2 = (SRA<P,S>) aut.clone();
-
-		if (!aut1.isSingleValued)
-			aut1 = aut1.toSingleValuedSRA(ba, timeout);
-
-		if (!aut2.isSingleValued)
-			aut2 = aut2.toSingleValuedSRA(ba, timeout);
-
-
-		if (!aut1.isTotal)
-			aut1.complete(ba);
-
-		if (!aut2.isTotal)
-			aut2.complete(ba);
-
+		SRA<P,S> aut1 = getTotalSingleValued(ba, timeout);
+		SRA<P,S> aut2 = aut.getTotalSingleValued(ba, timeout);
 
 		return canSimulate(aut1, aut2, ba, true, timeout);
 	}
@@ -1092,34 +915,12 @@ public class SRA<P, S> {
 	 * @return true of it includes the language, false if not.
 	 */
 	public boolean languageIncludes(SRA<P,S> aut, BooleanAlgebra<P,S> ba, long timeout) throws TimeoutException {
-		SRA<P,S> aut1 = (SRA<P,S>) this.clone();
-		SRA<P,S> aut2 = (SRA<P,S>) aut.clone();
-
-		if (!aut1.isSingleValued)
-			aut1 = aut1.toSingleValuedSRA(ba, timeout);
-
-		if (!aut2.isSingleValued)
-			aut2 = aut2.toSingleValuedSRA(ba, timeout);
-
-
-		if (!aut1.isTotal)
-			aut1.complete(ba);
-
-		if (!aut2.isTotal)
-			aut2.complete(ba);
-
+		SRA<P,S> aut1 = getTotalSingleValued(ba, timeout);
+		SRA<P,S> aut2 = aut.getTotalSingleValued(ba, timeout);
 
 		return canSimulate(aut2, aut1, ba, false, timeout);
 	}
 
-
-	private static <P> void printTriples(NormSimTriple<P> triple) {
-		if (triple != null) {
-			SRA.printTriples(triple.previousTriple);
-			System.out.println(" " + triple);
-		}
-	}
-
 	/**
 	 * Compiles an SRA (multiple assignment or not), into a Normal SRA.
 	 * @return a Normal SRA
@@ -1175,333 +976,29 @@ public class SRA<P, S> {
 			return true;
 		}
 
-
-		if(!aut1.isSingleValued)
-			aut1 = aut1.toSingleValuedSRA(ba, timeout);
-
-		if(!aut2.isSingleValued)
-			aut2 = aut2.toSingleValuedSRA(ba, timeout);
-
-
-		// Implement synchronised visit
-
-		// Initial register map
-		HashMap<Integer, Integer> initRegMap = new HashMap<>();
-		HashMap<Integer, Integer> initRegMapInv = new HashMap<>();
-
-		for (Integer r1 = 0; r1 < aut1.registers.size(); r1++) {
-			for (Integer r2 = 0; r2 < aut2.registers.size(); r2++) {
-				S r1Content = aut1.registers.get(r1);
-				S r2Content = aut2.registers.get(r2);
-
-				if (r1Content != null && r1Content.equals(r2Content)) {
-					initRegMap.put(r1, r2);
-					initRegMapInv.put(r2, r1);
-				}
-			}
-		}
-
-		// Get all predicates for both SRA
-		HashSet<P> allPredicatesSet = aut1.getAllPredicates(timeout);
-
-		// Integer initValPos1 = allPredicates.size();
-
-		for (P predicate: aut2.getAllPredicates(timeout))
-				allPredicatesSet.add(predicate);
-
-		for (S regVal: aut1.registers) // Add initial register values of aut1 to predicates
-			if (regVal != null) {
-				P atom = ba.MkAtom(regVal);
-				allPredicatesSet.add(atom);
-			}
-
-		// Integer initValPos2 = allPredicates.size();
-
-		for (S regVal: aut2.registers) // Add initial register values of aut2 to predicates
-			if (regVal != null) {
-				P atom = ba.MkAtom(regVal);
-				allPredicatesSet.add(ba.MkAtom(regVal));
-			}
-
-
-		// Compute minterms
-		ArrayList<P> allPredicates = new ArrayList<>(allPredicatesSet);
-		LinkedList<MinTerm<P>> minTerms = new LinkedList<>();
-
-		for(Pair<P, ArrayList<Integer>> minBA: ba.GetMinterms(allPredicates))
-			minTerms.add(new MinTerm<>(minBA.first, minBA.second));
-
-
-		HashMap<P, LinkedList<MinTerm<P>>> mintermsForPredicates = getMintermsForPredicates(allPredicates, minTerms);
-		HashMap<Integer, MinTerm<P>> initRegAbs1 = aut1.getInitialRegAbs(allPredicates, ba, mintermsForPredicates);
-		HashMap<Integer, MinTerm<P>> initRegAbs2 = aut2.getInitialRegAbs(allPredicates, ba, mintermsForPredicates);
-
-
-
-		// Create initial triples
-		NormSRAState<P> initNormState1 = new NormSRAState<>(aut1.initialState, initRegAbs1);
-		NormSRAState<P> initNormState2 = new NormSRAState<>(aut2.initialState, initRegAbs2);
-
-		NormSimTriple<P> initTriple = new NormSimTriple<>(initNormState1, initNormState2, initRegMap,
-				null, null, null);
-
-		// reached contains the triples we have already discovered and maps them to a stateId
-		HashMap<NormSimTriple<P>, Integer> reached = new HashMap<>();
-		// toVisit contains the triples we have not explored yet
-		LinkedList<NormSimTriple<P>> toVisit = new LinkedList<>();
-		// LinkedList<NormSimTriple<P>> toVisitInv = new LinkedList<>();
-
-		toVisit.add(initTriple);
-		// toVisitInv.add()
-		reached.put(initTriple, 0);
-
-
-
-		// Keep track of outgoing normalised transitions that have already been generated
-		HashMap<NormSRAState<P>, LinkedList<NormSRAMove<P>>> aut1NormOut = new HashMap<>();
-		HashMap<NormSRAState<P>, LinkedList<NormSRAMove<P>>> aut2NormOut = new HashMap<>();
-
-
-		while (!toVisit.isEmpty()) {
-			NormSimTriple<P> currentTriple = toVisit.removeLast(); // BFS visit
-
-			NormSRAState<P> aut1NormState = currentTriple.getState1();
-			NormSRAState<P> aut2NormState = currentTriple.getState2();
-			HashMap<Integer, Integer> regMap = currentTriple.getRegMap();
-
-			if (aut1.finalStates.contains(aut1NormState.getStateId()) &&
-					!aut2.finalStates.contains(aut2NormState.getStateId())) {
-//				printTriples(currentTriple);
-				return false;
-			}
-
-
-			if (bisimulation)
-				if (aut2.finalStates.contains(aut2NormState.getStateId()) &&
-						!aut1.finalStates.contains(aut1NormState.getStateId())) {
-
-//					printTriples(currentTriple);
-					return false;
-				}
-
-
-			// int currentStateID = reached.get(currentTriple);
-
-			HashMap<Integer, MinTerm<P>> currentRegAbs1 = aut1NormState.getRegAbs();
-			HashMap<Integer, MinTerm<P>> currentRegAbs2 = aut2NormState.getRegAbs();
-
-			// Compute all the normalised moves from aut1NormState and aut2NormState
-			LinkedList<NormSRAMove<P>> normMovesFromCurrent1;
-			LinkedList<NormSRAMove<P>> normMovesFromCurrent2;
-
-			if (aut1NormOut.containsKey(aut1NormState))
-				normMovesFromCurrent1 = aut1NormOut.get(aut1NormState);
-			else {
-				normMovesFromCurrent1 = new LinkedList<>();
-
-				for (SRAMove<P, S> move : aut1.getMovesFrom(aut1NormState.getStateId())) {
-					LinkedList<NormSRAMove<P>> partialNormMoves = toNormSRAMoves(ba, currentRegAbs1, mintermsForPredicates,
-							move, aut1NormState);
-
-					normMovesFromCurrent1.addAll(partialNormMoves);
-				}
-
-				aut1NormOut.put(aut1NormState, normMovesFromCurrent1);
-			}
-
-			if (!bisimulation && normMovesFromCurrent1.isEmpty()) // we don't need to find matching moves from aut2
-				continue;
-
-			if (aut2NormOut.containsKey(aut2NormState))
-				normMovesFromCurrent2 = aut2NormOut.get(aut2NormState);
-			else {
-				normMovesFromCurrent2 = new LinkedList<>();
-
-				for (SRAMove<P, S> move : aut2.getMovesFrom(aut2NormState.getStateId())) {
-					LinkedList<NormSRAMove<P>> partialNormMoves = toNormSRAMoves(ba, currentRegAbs2, mintermsForPredicates,
-							move, aut2NormState);
-
-					normMovesFromCurrent2.addAll(partialNormMoves);
-				}
-
-				aut2NormOut.put(aut2NormState, normMovesFromCurrent2);
-			}
-
-			// Get new similarity triples
-			LinkedList<NormSimTriple<P>> newTriples = normSimSucc(ba, normMovesFromCurrent1, normMovesFromCurrent2,
-					regMap, currentRegAbs1, currentRegAbs2);
-
-			if (newTriples == null) {
-//				printTriples(currentTriple);
-				return false;
-			}
-
-			if (bisimulation) {
-				if (normMovesFromCurrent2.isEmpty()) // we don't need to find matching moves from aut1
-					continue;
-
-				LinkedList<NormSimTriple<P>> invTriples = normSimSucc(ba, normMovesFromCurrent2, normMovesFromCurrent1,
-						getRegMapInv(regMap), currentRegAbs2, currentRegAbs1);
-
-				if (invTriples == null) {
-//					printTriples(currentTriple);
-					return false;
-				}
-			}
-
-			for (NormSimTriple<P> triple : newTriples) {
-				triple.previousTriple = currentTriple;
-				getStateId(triple, reached, toVisit);
-			}
-
-		}
-
-
-		return true;
+		Pair<NormalizedSRA<P, S>, NormalizedSRA<P, S>> normalizations = aut1.getNormalizationWith(aut2, ba, timeout);
+		return NormalizedSRA.canSimulate(normalizations.first, normalizations.second, bisimulation, timeout);
 	}
 
-	private static HashMap<Integer, Integer> updateRegMap(HashMap<Integer, Integer> regMap, Integer r1, Integer r2) {
-		HashMap<Integer, Integer> newRegMap = new HashMap<>(regMap);
-
-		// First remove pair (x, move2.register)
-		for (Integer r: newRegMap.keySet()) {
-			if (newRegMap.get(r).equals(r2)) {
-				newRegMap.remove(r);
-				break;
-			}
-		}
-
-		newRegMap.put(r1, r2);
-		return newRegMap;
-
-	}
-
-	// Returns all reduced bisimulation triples that need to be checked in subsequent steps
-	private static <P, S> LinkedList<NormSimTriple<P>> normSimSucc(BooleanAlgebra<P, S> ba,
-															   	   LinkedList<NormSRAMove<P>> normMoves1,
-																   LinkedList<NormSRAMove<P>> normMoves2,
-																   HashMap<Integer, Integer> regMap,
-																   HashMap<Integer, MinTerm<P>> regAbs1,
-																   HashMap<Integer, MinTerm<P>> regAbs2) {
-
-		LinkedList<NormSimTriple<P>> nextTriples = new LinkedList<>();
-		String bisimCase = "";
-
-		for (NormSRAMove<P> move1: normMoves1) {
-			if (move1 instanceof NormSRACheckMove) {
-				Integer r1 = move1.register;
-				NormSRAMove<P> matchingMove = null;
-				HashMap<Integer, Integer> newRegMap = null;
-
-				// Case 1(a) in the paper
-				if (regMap.containsKey(r1)){
-					Integer r2 = regMap.get(r1);
-
-					for (NormSRAMove<P> move2: normMoves2) {
-						if (move2 instanceof NormSRACheckMove && move2.register.equals(r2)) { // Guard is the same by construction
-							matchingMove = move2;
-							newRegMap = new HashMap<>(regMap);
-							bisimCase = "read(" + r1 + ") - read(" + r2 +")";
-							break;
-						}
-					}
-				}
-				else {
-					// Case 1(b) in the paper
-					for (NormSRAMove<P> move2: normMoves2) {
-						if (move2 instanceof NormSRAFreshMove && move2.guard.equals(move1.guard)) {
-							matchingMove = move2;
-							newRegMap = updateRegMap(regMap, move1.register, move2.register);
-							bisimCase = "read(" + move1.register + ") - fresh(" + move2.register +")";
-							break;
-						}
-					}
-				}
-
-				if (matchingMove == null)
-					return null;
-
-				nextTriples.add(new NormSimTriple<>(move1.to, matchingMove.to, newRegMap, null,
-						move1.guard.getPredicate(), bisimCase));
-			}
-			else {
-				// Case 2(a)
-
-				// regInImg(r) = false iff r not in img(regMap)
-				Integer regNum2 = regAbs2.size();
-				boolean[] regInImg = new boolean[regNum2];
-				Arrays.fill(regInImg, false);
-
-				for (Integer r1: regMap.keySet())
-					regInImg[regMap.get(r1)] = true;
-
-				for (int r2 = 0; r2 < regNum2; r2++) {
-					MinTerm<P> mintermForReg = regAbs2.get(r2);
-
-					if (mintermForReg != null && !regInImg[r2] && mintermForReg.equals(move1.guard)) {
-						NormSRAMove<P> matchingMove = null;
-						HashMap<Integer, Integer> newRegMap = null;
-
-						for (NormSRAMove<P> move2: normMoves2) {
-							if (move2 instanceof NormSRACheckMove && move2.register.equals(r2)) { // Guard must be the same
-								matchingMove = move2;
-								newRegMap = updateRegMap(regMap, move1.register, move2.register);
-								bisimCase = "fresh(" + move1.register + ") - read(" + move2.register +")";
-							}
-						}
-
-						if (matchingMove == null)
-							return null;
-
-						nextTriples.add(new NormSimTriple<>(move1.to, matchingMove.to, newRegMap, null,
-								move1.guard.getPredicate(), bisimCase));
-					}
-				}
-
-				// Case 2(b)
-				Integer howManyEqualToGuard1 = 1;
-
-				for (Integer reg: regAbs1.keySet()) {
-					MinTerm<P> mintermForReg = regAbs1.get(reg);
-
-					if (mintermForReg != null && regAbs1.get(reg).equals(move1.guard))
-						howManyEqualToGuard1++;
-				}
-
-				for (Integer reg: regAbs2.keySet()) {
-					MinTerm<P> mintermForReg = regAbs2.get(reg);
-
-					if (mintermForReg != null && regAbs2.get(reg).equals(move1.guard))
-						howManyEqualToGuard1++;
-				}
-
-				if (ba.hasNDistinctWitnesses(move1.guard.getPredicate(), howManyEqualToGuard1)) {
-					NormSRAMove<P> matchingMove = null;
-					HashMap<Integer, Integer> newRegMap = null;
-
-					for (NormSRAMove<P> move2: normMoves2) {
-						if (move2 instanceof NormSRAFreshMove && move2.guard.equals(move1.guard)) { // Guard must be the same
-							matchingMove = move2;
-							newRegMap = updateRegMap(regMap, move1.register, move2.register);
-							bisimCase = "fresh(" + move1.register + ") - fresh(" + move2.register +")";
-							break;
-						}
-					}
-
-					if (matchingMove == null)
-						return null;
+	/**
+	 * Checks if <code>aut1</code> can simulate <code>aut2</code> exploring the pairs of states on <code>pool</code>,
+	 * checks for bisimulation if <code>bisimulation</code> is set to true.
+	 * @return true if it simulates, false otherwise.
+	 */
+	public static <P, S> boolean canSimulate(SRA<P,S> aut1, SRA<P,S> aut2, BooleanAlgebra<P, S> ba, boolean bisimulation, long timeout,
+			ForkJoinPool pool) throws TimeoutException {
 
-					nextTriples.add(new NormSimTriple<>(move1.to, matchingMove.to, newRegMap, null,
-							move1.guard.getPredicate(), bisimCase));
-				}
-			}
+		if (aut1.isEmpty) {
+			if (bisimulation && !aut2.isEmpty)
+				return false;
 
+			return true;
 		}
 
-		return nextTriples;
+		Pair<NormalizedSRA<P, S>, NormalizedSRA<P, S>> normalizations = aut1.getNormalizationWith(aut2, ba, timeout);
+		return ParallelSRASimulation.canSimulate(normalizations.first, normalizations.second, bisimulation, timeout, pool);
 	}
 
-
 	/**
 	 * Compiles <code>this</code> down to an equivalent Single-valued SRA
 	 *
@@ -1700,13 +1197,6 @@ public class SRA<P, S> {
 		return isEmpty;
 	}
 
-	/**
-	 * @return the isDeterministic
-	 */
-	public boolean isDeterministic() {
-		return isDeterministic;
-	}
-
     /**
 	 * @return the isTotal
 	 */
@@ -2281,7 +1771,6 @@ public class SRA<P, S> {
 	public Object clone() {
 		SRA<P, S> cl = new SRA<P, S>();
 
-		cl.isDeterministic = isDeterministic;
 		cl.isTotal = isTotal;
 		cl.isEmpty = isEmpty;
 		cl.isSingleValued = isSingleValued;
@@ -2294,19 +1783,59 @@ public class SRA<P, S> {
 		cl.initialState = initialState;
 		cl.finalStates = new HashSet<Integer>(finalStates);
 
-		cl.checkMovesFrom = new HashMap<Integer, Collection<SRACheckMove<P, S>>>(checkMovesFrom);
-		cl.checkMovesTo = new HashMap<Integer, Collection<SRACheckMove<P, S>>>(checkMovesTo);
+		// the move sets are copied so that adding moves to the clone does not change this SRA
+		cl.checkMovesFrom = copyMoves(checkMovesFrom);
+		cl.checkMovesTo = copyMoves(checkMovesTo);
 
-        cl.freshMovesFrom = new HashMap<Integer, Collection<SRAFreshMove<P, S>>>(freshMovesFrom);
-        cl.freshMovesTo = new HashMap<Integer, Collection<SRAFreshMove<P, S>>>(freshMovesTo);
+        cl.freshMovesFrom = copyMoves(freshMovesFrom);
+        cl.freshMovesTo = copyMoves(freshMovesTo);
 
-        cl.storeMovesFrom = new HashMap<Integer, Collection<SRAStoreMove<P, S>>>(storeMovesFrom);
-        cl.storeMovesTo = new HashMap<Integer, Collection<SRAStoreMove<P, S>>>(storeMovesTo);
+        cl.storeMovesFrom = copyMoves(storeMovesFrom);
+        cl.storeMovesTo = copyMoves(storeMovesTo);
 
-        cl.SRAMovesFrom = new HashMap<Integer, Collection<SRAMove<P, S>>>(SRAMovesFrom);
-        cl.SRAMovesTo = new HashMap<Integer, Collection<SRAMove<P, S>>>(SRAMovesTo);
+        cl.SRAMovesFrom = copyMoves(SRAMovesFrom);
+        cl.SRAMovesTo = copyMoves(SRAMovesTo);
 
 		return cl;
 	}
 
+	private static <M> Map<Integer, Collection<M>> copyMoves(Map<Integer, Collection<M>> moves) {
+		Map<Integer, Collection<M>> copy = new HashMap<Integer, Collection<M>>();
+		for (Map.Entry<Integer, Collection<M>> entry : moves.entrySet())
+			copy.put(entry.getKey(), new HashSet<M>(entry.getValue()));
+		return copy;
+	}
+
+	/**
+	 * Facts and copies of an SRA computed for an algebra. The fields are written once their value is computed, so a
+	 * thread reading a field sees either null or a complete value. Two threads asking for the same value at the same
+	 * time may both compute it.
+	 */
+	private static class LanguageCaches<P, S> {
+		static final int PAIR_NORMALIZATIONS = 16;
+
+		final BooleanAlgebra<P, S> ba;
+		// the normalizations with the most recently used other SRAs, which compare by identity; the values refer to
+		// their keys, so the map holds them strongly and is bounded instead of weak
+		final Map<SRA<P, S>, Triple<Integer, NormalizedSRA<P, S>, NormalizedSRA<P, S>>> pairNormalizations =
+				Collections.synchronizedMap(new LinkedHashMap<SRA<P, S>, Triple<Integer, NormalizedSRA<P, S>, NormalizedSRA<P, S>>>(16, 0.75f, true) {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected boolean removeEldestEntry(
+							Map.Entry<SRA<P, S>, Triple<Integer, NormalizedSRA<P, S>, NormalizedSRA<P, S>>> eldest) {
+						return size() > PAIR_NORMALIZATIONS;
+					}
+				});
+
+		volatile Boolean deterministic;
+		volatile DeterministicSRARunner<P, S> runner;
+		volatile SRA<P, S> singleValued;
+		volatile SRA<P, S> totalSingleValued;
+		volatile NormalizedSRA<P, S> normalization;
+
+		LanguageCaches(BooleanAlgebra<P, S> ba) {
+			this.ba = ba;
+		}
+	}
 }
@@ -0,0 +1,249 @@
+package automata.sra;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+
+/**
+ * Simulates an SRA on a data word, one symbol at a time.
+ *
+ * Register values are kept in fixed-size arrays that are never modified once built: a move that does not update any
+ * register shares the array of its source configuration, and the arrays built during a step are interned, so equal
+ * valuations are stored once. Configurations cache their hash and are merged per step. The guards of the SRA are
+ * numbered at construction and evaluated at most once per symbol, and every register of a valuation is compared to
+ * the symbol once per step, whatever the number of moves reading it.
+ *
+ * @param <P>
+ *            set of predicates over the domain S
+ * @param <S>
+ *            domain of the automaton alphabet
+ */
+public class SRARunner<P, S> {
+
+	private final SRA<P, S> aut;
+	private final BooleanAlgebra<P, S> ba;
+	private final RegisterFile initialRegisters;
+
+	// distinct guards of the SRA
+	private final List<P> guards = new ArrayList<P>();
+	// moves leaving each state
+	private final Map<Integer, CompiledMove[]> movesFrom = new HashMap<Integer, CompiledMove[]>();
+
+	private Collection<Configuration> current;
+
+	/**
+	 * A runner for <code>aut</code> that has not read any symbol yet
+	 */
+	public SRARunner(SRA<P, S> aut, BooleanAlgebra<P, S> ba) {
+		this.aut = aut;
+		this.ba = ba;
+		this.initialRegisters = new RegisterFile(aut.getRegisters().toArray());
+
+		Map<P, Integer> guardIds = new HashMap<P, Integer>();
+		for (Integer state : aut.getStates()) {
+			Collection<SRAMove<P, S>> moves = aut.getTransitionsFrom(state);
+			CompiledMove[] compiled = new CompiledMove[moves.size()];
+			int i = 0;
+			for (SRAMove<P, S> move : moves) {
+				Integer guardId = guardIds.get(move.guard);
+				if (guardId == null) {
+					guardId = guards.size();
+					guardIds.put(move.guard, guardId);
+					guards.add(move.guard);
+				}
+				compiled[i++] = new CompiledMove(move.to, guardId, toArray(move.E), toArray(move.I), toArray(move.U));
+			}
+			movesFrom.put(state, compiled);
+		}
+		reset();
+	}
+
+	/**
+	 * Goes back to the initial configuration
+	 */
+	public void reset() {
+		current = new ArrayList<Configuration>(1);
+		current.add(new Configuration(aut.getInitialState(), initialRegisters));
+	}
+
+	/**
+	 * Reads the next symbol, returns false if no configuration is left
+	 *
+	 * @throws TimeoutException
+	 */
+	public boolean read(S input) throws TimeoutException {
+		// 0 not evaluated yet, 1 true, -1 false
+		byte[] guardValues = new byte[guards.size()];
+		Map<Object[], boolean[]> equalities = new IdentityHashMap<Object[], boolean[]>();
+		Map<RegisterFile, RegisterFile> interned = new HashMap<RegisterFile, RegisterFile>();
+		Set<Configuration> next = new LinkedHashSet<Configuration>();
+
+		for (Configuration config : current) {
+			CompiledMove[] moves = movesFrom.get(config.state);
+			if (moves == null || moves.length == 0)
+				continue;
+
+			Object[] values = config.registers.values;
+			boolean[] equal = equalities.get(values);
+			if (equal == null) {
+				equal = new boolean[values.length];
+				for (int r = 0; r < values.length; r++)
+					equal[r] = values[r] != null && values[r].equals(input);
+				equalities.put(values, equal);
+			}
+
+			for (CompiledMove move : moves) {
+				if (!isEnabled(move, equal))
+					continue;
+				if (guardValues[move.guard] == 0)
+					guardValues[move.guard] = (byte) (ba.HasModel(guards.get(move.guard), input) ? 1 : -1);
+				if (guardValues[move.guard] < 0)
+					continue;
+
+				RegisterFile registers = config.registers;
+				if (move.updated.length > 0) {
+					Object[] updated = Arrays.copyOf(values, values.length);
+					for (int r : move.updated)
+						updated[r] = input;
+					RegisterFile fresh = new RegisterFile(updated);
+					registers = interned.get(fresh);
+					if (registers == null) {
+						interned.put(fresh, fresh);
+						registers = fresh;
+					}
+				}
+				next.add(new Configuration(move.to, registers));
+			}
+		}
+
+		current = next;
+		return !current.isEmpty();
+	}
+
+	/**
+	 * Whether the symbols read so far are accepted
+	 */
+	public boolean isAccepting() {
+		for (Configuration config : current)
+			if (aut.isFinalState(config.state))
+				return true;
+		return false;
+	}
+
+	/**
+	 * The number of distinct configurations after the symbols read so far
+	 */
+	public int getConfigurationCount() {
+		return current.size();
+	}
+
+	/**
+	 * Runs the SRA on <code>input</code> from the initial configuration
+	 *
+	 * @throws TimeoutException
+	 */
+	public boolean accepts(List<S> input) throws TimeoutException {
+		reset();
+		for (S el : input)
+			if (!read(el))
+				return false;
+		return isAccepting();
+	}
+
+	// the symbol must be equal to all registers in E and to none in I
+	private static boolean isEnabled(CompiledMove move, boolean[] equal) {
+		for (int r : move.equal)
+			if (!equal[r])
+				return false;
+		for (int r : move.notEqual)
+			if (equal[r])
+				return false;
+		return true;
+	}
+
+	private static int[] toArray(Set<Integer> registers) {
+		int[] array = new int[registers.size()];
+		int i = 0;
+		for (Integer r : registers)
+			array[i++] = r;
+		return array;
+	}
+
+	private static class CompiledMove {
+		final Integer to;
+		final int guard;
+		final int[] equal;
+		final int[] notEqual;
+		final int[] updated;
+
+		CompiledMove(Integer to, int guard, int[] equal, int[] notEqual, int[] updated) {
+			this.to = to;
+			this.guard = guard;
+			this.equal = equal;
+			this.notEqual = notEqual;
+			this.updated = updated;
+		}
+	}
+
+	// An immutable valuation of the registers
+	private static class RegisterFile {
+		final Object[] values;
+		final int hash;
+
+		RegisterFile(Object[] values) {
+			this.values = values;
+			this.hash = Arrays.hashCode(values);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other)
+				return true;
+			if (!(other instanceof RegisterFile))
+				return false;
+			RegisterFile that = (RegisterFile) other;
+			return hash == that.hash && Arrays.equals(values, that.values);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	private static class Configuration {
+		final Integer state;
+		final RegisterFile registers;
+		final int hash;
+
+		Configuration(Integer state, RegisterFile registers) {
+			this.state = state;
+			this.registers = registers;
+			this.hash = 31 * state.hashCode() + registers.hash;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Configuration))
+				return false;
+			Configuration that = (Configuration) other;
+			return hash == that.hash && state.equals(that.state)
+					&& (registers == that.registers || registers.equals(that.registers));
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
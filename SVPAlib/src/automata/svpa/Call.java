@@ -103,5 +103,18 @@ public class Call<U,S> extends SVPAMove<U,S> {
 	public S getWitness(BooleanAlgebra<U, S> ba) throws TimeoutException {
 		return ba.generateWitness(guard);
 	}
-	
+
+	/**
+	 * The guard of the move
+	 */
+	public U getGuard() {
+		return guard;
+	}
+
+	/**
+	 * The state pushed by the move
+	 */
+	public Integer getStackState() {
+		return stackState;
+	}
 }
@@ -104,4 +104,11 @@ public class Internal<U, S> extends SVPAMove<U, S> {
 	public S getWitness(BooleanAlgebra<U, S> ba) throws TimeoutException {
 		return ba.generateWitness(guard);
 	}
+
+	/**
+	 * The guard of the move
+	 */
+	public U getGuard() {
+		return guard;
+	}
 }
@@ -120,4 +120,17 @@ public class Return<U, S> extends SVPAMove<U, S> {
 		return ba.generateWitness(guard);
 	}
 
-}
\ No newline at end of file
+	/**
+	 * The guard of the move
+	 */
+	public U getGuard() {
+		return guard;
+	}
+
+	/**
+	 * The state popped by the move
+	 */
+	public Integer getStackState() {
+		return stackState;
+	}
+}
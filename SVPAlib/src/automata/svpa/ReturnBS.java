@@ -112,5 +112,11 @@ public class ReturnBS<U, S> extends SVPAMove<U, S> {
 	public S getWitness(BooleanAlgebra<U, S> ba) throws TimeoutException {
 		return ba.generateWitness(guard);
 	}
-	
+
+	/**
+	 * The guard of the move
+	 */
+	public U getGuard() {
+		return guard;
+	}
 }
@@ -4,6 +4,7 @@
 package automata.svpa;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -16,7 +17,6 @@ import org.sat4j.specs.TimeoutException;
 
 import automata.AutomataException;
 import theory.BooleanAlgebra;
-import utilities.BitVecUtil;
 import utilities.Pair;
 
 public class SVPA<U, S> extends VPAutomaton<U, S> {
@@ -93,6 +93,10 @@ public class SVPA<U, S> extends VPAutomaton<U, S> {
 	public Integer maxStackStateId;
 	public Integer transitionCount;
 
+	// cached result of determinize and the algebra it was computed with
+	private SVPA<U, S> determinization;
+	private BooleanAlgebra<U, S> determinizationAlgebra;
+
 	protected SVPA() {
 		super();
 
@@ -147,49 +151,8 @@ public class SVPA<U, S> extends VPAutomaton<U, S> {
 	}
 
 	public boolean accepts(List<TaggedSymbol<S>> input, BooleanAlgebra<U, S> ba) throws TimeoutException {
-
-		Collection<Pair<Integer, Stack<Pair<Integer, S>>>> currConf = new HashSet<Pair<Integer, Stack<Pair<Integer, S>>>>();
-
-		for (Integer state : initialStates)
-			currConf.add(new Pair<Integer, Stack<Pair<Integer, S>>>(state,
-					new Stack<Pair<Integer, S>>()));
-
-		currConf = getConfigurationEpsClosure(currConf, ba);
-		for (TaggedSymbol<S> el : input) {
-			currConf = getNextState(currConf, el, ba);
-			currConf = getConfigurationEpsClosure(currConf, ba);
-			if (currConf.isEmpty())
-				return false;
-		}
-
-		for (Pair<Integer, Stack<Pair<Integer, S>>> state : currConf)
-			if (isFinalState(state.first))
-				return true;
-
-		return false;
-	}
-
-	private Collection<Pair<Integer, Stack<Pair<Integer, S>>>> getConfigurationEpsClosure(
-			Collection<Pair<Integer, Stack<Pair<Integer, S>>>> currConf,
-			BooleanAlgebra<U, S> ba) {
-
-		Collection<Pair<Integer, Stack<Pair<Integer, S>>>> currConfEps = currConf;
-		LinkedList<Pair<Integer, Stack<Pair<Integer, S>>>> toVisit = new LinkedList<Pair<Integer, Stack<Pair<Integer, S>>>>(
-				currConf);
-
-		while (toVisit.size() > 0) {
-			Pair<Integer, Stack<Pair<Integer, S>>> visState = toVisit.remove();
-
-			for (SVPAEpsilon<U, S> t : getEpsilonsFrom(visState.first)) {
-				Pair<Integer, Stack<Pair<Integer, S>>> newEl = new Pair<Integer, Stack<Pair<Integer, S>>>(
-						t.to, visState.second);
-				if (!currConfEps.contains(newEl)) {
-					currConfEps.add(newEl);
-					toVisit.add(newEl);
-				}
-			}
-		}
-		return currConfEps;
+		SVPARecognizer<U, S> recognizer = new SVPARecognizer<U, S>(this, ba);
+		return recognizer.readAll(input) && recognizer.isAccepting();
 	}
 
 	private Collection<Integer> getEpsClosure(Integer state,
@@ -720,9 +683,15 @@ public class SVPA<U, S> extends VPAutomaton<U, S> {
 	 */
 	public static <A, B> boolean areEquivalent(SVPA<A, B> aut1,
 			SVPA<A, B> aut2, BooleanAlgebra<A, B> ba) throws TimeoutException {
-		if (!differnce(aut1, aut2, ba).isEmpty)
-			return false;
-		return differnce(aut2, aut1, ba).isEmpty;
+		return new SVPAInclusionChecker<A, B>(ba).areEquivalent(aut1, aut2);
+	}
+
+	/**
+	 * checks whether the language of the current SVPA is included in the one of aut
+	 * @throws TimeoutException 
+	 */
+	public boolean isIncludedIn(SVPA<U, S> aut, BooleanAlgebra<U, S> ba) throws TimeoutException {
+		return new SVPAInclusionChecker<U, S>(ba).isIncluded(this, aut);
 	}
 
 	/**
@@ -734,12 +703,16 @@ public class SVPA<U, S> extends VPAutomaton<U, S> {
 	}
 
 	/**
-	 * return the determinization of aut
+	 * return the determinization of aut. The result is cached on aut and reused when the same algebra is passed
+	 * again
 	 * @throws TimeoutException 
 	 */
 	public static <A, B> SVPA<A, B> determinize(SVPA<A, B> aut1,
 			BooleanAlgebra<A, B> ba) throws TimeoutException {
 
+		if (aut1.determinization != null && aut1.determinizationAlgebra == ba)
+			return aut1.determinization;
+
 		// Remove epsilon before starting		
 		SVPA<A, B> aut = aut1;
 		if (!aut1.isEpsilonFree)
@@ -750,22 +723,25 @@ public class SVPA<U, S> extends VPAutomaton<U, S> {
 		
 		SVPA<A, B> deter = new SVPA<A, B>();
 
-		HashMap<Collection<Pair<Integer, Integer>>, Integer> reachedStates = new HashMap<Collection<Pair<Integer, Integer>>, Integer>();
-		LinkedList<Collection<Pair<Integer, Integer>>> toVisitStates = new LinkedList<Collection<Pair<Integer, Integer>>>();
+		// A state of deter is a set of summaries (q,q'), the summary (q,q') is the bit index(q)*n+index(q')
+		Summaries summaries = new Summaries(aut.states);
 
-		HashMap<Pair<Collection<Pair<Integer, Integer>>, A>, Integer> reachedStackStates = new HashMap<Pair<Collection<Pair<Integer, Integer>>, A>, Integer>();
+		HashMap<BitSet, Integer> reachedStates = new HashMap<BitSet, Integer>();
+		LinkedList<BitSet> toVisitStates = new LinkedList<BitSet>();
+
+		HashMap<Pair<BitSet, A>, Integer> reachedStackStates = new HashMap<Pair<BitSet, A>, Integer>();
 
 		// Add initial state
-		Collection<Pair<Integer, Integer>> currState = new HashSet<Pair<Integer, Integer>>();
+		BitSet currState = new BitSet();
 		for (Integer st : aut.initialStates)
-			currState.add(new Pair<Integer, Integer>(st, st));
+			summaries.add(currState, st, st);
 		deter.initialStates.add(0);
 		deter.states.add(0);
 
 		reachedStates.put(currState, 0);
 		toVisitStates.add(currState);
 
-		Collection<Collection<Pair<Integer, Integer>>> previouslyVisited = new HashSet<Collection<Pair<Integer, Integer>>>();
+		Collection<BitSet> previouslyVisited = new HashSet<BitSet>();
 
 		while (toVisitStates.size() > 0) {
 
@@ -776,170 +752,115 @@ public class SVPA<U, S> extends VPAutomaton<U, S> {
 
 			// for every stackState discovered so far, add (currState,
 			// stackState) to the those to be visited for creating the returns
-			Collection<Pair<Collection<Pair<Integer, Integer>>, Pair<Collection<Pair<Integer, Integer>>, A>>> toVisitPairStateStackStates = new HashSet<Pair<Collection<Pair<Integer, Integer>>, Pair<Collection<Pair<Integer, Integer>>, A>>>();
-			for (Pair<Collection<Pair<Integer, Integer>>, A> stackState : reachedStackStates
-					.keySet())
-				toVisitPairStateStackStates
-						.add(new Pair<Collection<Pair<Integer, Integer>>, Pair<Collection<Pair<Integer, Integer>>, A>>(
-								currState, stackState));
+			Collection<Pair<BitSet, Pair<BitSet, A>>> toVisitPairStateStackStates = new HashSet<Pair<BitSet, Pair<BitSet, A>>>();
+			for (Pair<BitSet, A> stackState : reachedStackStates.keySet())
+				toVisitPairStateStackStates.add(new Pair<BitSet, Pair<BitSet, A>>(currState, stackState));
 
 			// take all the second components of the pairs in currState
-			Collection<Integer> secondComp = projectSecondComponents(currState);
+			Collection<Integer> secondComp = summaries.seconds(currState);
 
 			// if any pair has a final state as second component the current
 			// state is final
 			if (aut.isFinalConfiguration(secondComp))
 				deter.finalStates.add(currStateId);
 
-			// INTERNAL out of currState
+			// INTERNAL out of currState, one move per satisfiable minterm of
+			// the guards
 			ArrayList<Internal<A, B>> internalMovesFromCS = new ArrayList<Internal<A, B>>(
 					aut.getInternalsFrom(secondComp));
-
-			// Start at 1 to avoid case in which they are all false (we are not
-			// building a total SVPA
-			for (int i = 1; i < Math.pow(2, internalMovesFromCS.size()); i++) {
-				A guard = null;
-
-				Collection<Pair<Integer, Integer>> toState = new HashSet<Pair<Integer, Integer>>();
-
-				for (int bit = 0; bit < internalMovesFromCS.size(); bit++) {
-					Internal<A, B> currMove = internalMovesFromCS.get(bit);
-
-					if (BitVecUtil.get_nth_bit(i, bit) == 1) {
-						guard = intersectGuards(guard, currMove.guard, ba);
-
-						for (Pair<Integer, Integer> pair : secondIs(currState,
-								currMove.from))
-							toState.add(new Pair<Integer, Integer>(pair.first,
-									currMove.to));
-
-					} else {
-						guard = intersectGuards(guard,
-								ba.MkNot(currMove.guard), ba);
+			ArrayList<A> internalGuards = new ArrayList<A>();
+			for (Internal<A, B> move : internalMovesFromCS)
+				internalGuards.add(move.guard);
+
+			for (Pair<A, ArrayList<Integer>> minterm : ba.GetMinterms(internalGuards, Long.MAX_VALUE)) {
+				// skip the case in which they are all false (we are not
+				// building a total SVPA)
+				if (!minterm.second.contains(1))
+					continue;
+
+				BitSet toState = new BitSet();
+				for (int bit = 0; bit < internalMovesFromCS.size(); bit++)
+					if (minterm.second.get(bit) == 1) {
+						Internal<A, B> currMove = internalMovesFromCS.get(bit);
+						for (Integer first : summaries.firstsWithSecond(currState, currMove.from))
+							summaries.add(toState, first, currMove.to);
 					}
-				}
 
-				// If guard satisfiable add move to deterministic version
-				if (ba.IsSatisfiable(guard)) {
-					Integer toStateId = reachedStates.get(toState);
-					if (toStateId == null) {
-						toStateId = reachedStates.size();
-						reachedStates.put(toState, toStateId);
-						toVisitStates.add(toState);
-					}
-					deter.addTransition(new Internal<A, B>(currStateId,
-							toStateId, guard), ba, true);
-				}
+				deter.addTransition(new Internal<A, B>(currStateId,
+						getStateId(toState, reachedStates, toVisitStates), minterm.first), ba, true);
 			}
 
 			// RETURNBS out of currState
 			ArrayList<ReturnBS<A, B>> returnBSMovesFromCS = new ArrayList<ReturnBS<A, B>>(
 					aut.getReturnBSFrom(secondComp));
-
-			// Start at 1 to avoid case in which they are all false
-			for (int i = 1; i < Math.pow(2, returnBSMovesFromCS.size()); i++) {
-				A guard = null;
-
-				Collection<Pair<Integer, Integer>> toState = new HashSet<Pair<Integer, Integer>>();
-
-				for (int bit = 0; bit < returnBSMovesFromCS.size(); bit++) {
-					ReturnBS<A, B> currMove = returnBSMovesFromCS.get(bit);
-
-					if (BitVecUtil.get_nth_bit(i, bit) == 1) {
-						guard = intersectGuards(guard, currMove.guard, ba);
-
-						for (Pair<Integer, Integer> pair : secondIs(currState,
-								currMove.from))
-							toState.add(new Pair<Integer, Integer>(pair.first,
-									currMove.to));
-
-					} else {
-						guard = intersectGuards(guard,
-								ba.MkNot(currMove.guard), ba);
+			ArrayList<A> returnBSGuards = new ArrayList<A>();
+			for (ReturnBS<A, B> move : returnBSMovesFromCS)
+				returnBSGuards.add(move.guard);
+
+			for (Pair<A, ArrayList<Integer>> minterm : ba.GetMinterms(returnBSGuards, Long.MAX_VALUE)) {
+				if (!minterm.second.contains(1))
+					continue;
+
+				BitSet toState = new BitSet();
+				for (int bit = 0; bit < returnBSMovesFromCS.size(); bit++)
+					if (minterm.second.get(bit) == 1) {
+						ReturnBS<A, B> currMove = returnBSMovesFromCS.get(bit);
+						for (Integer first : summaries.firstsWithSecond(currState, currMove.from))
+							summaries.add(toState, first, currMove.to);
 					}
-				}
 
-				// If guard satisfiable add move to deterministic version
-				if (ba.IsSatisfiable(guard)) {
-					Integer toStateId = reachedStates.get(toState);
-					if (toStateId == null) {
-						toStateId = reachedStates.size();
-						reachedStates.put(toState, toStateId);
-						toVisitStates.add(toState);
-					}
-					deter.addTransition(new ReturnBS<A, B>(currStateId,
-							toStateId, guard), ba, true);
-				}
+				deter.addTransition(new ReturnBS<A, B>(currStateId,
+						getStateId(toState, reachedStates, toVisitStates), minterm.first), ba, true);
 			}
 
 			// CALLS out of currState
 			ArrayList<Call<A, B>> callsFromCurrState = new ArrayList<Call<A, B>>(
 					aut.getCallsFrom(secondComp));
+			ArrayList<A> callGuards = new ArrayList<A>();
+			for (Call<A, B> move : callsFromCurrState)
+				callGuards.add(move.guard);
 
-			// Start at 1 to avoid case in which they are all false
-			for (int i = 1; i < Math.pow(2, callsFromCurrState.size()); i++) {
-				A a = null;
+			for (Pair<A, ArrayList<Integer>> minterm : ba.GetMinterms(callGuards, Long.MAX_VALUE)) {
+				if (!minterm.second.contains(1))
+					continue;
+				A a = minterm.first;
 
 				// delta_C(S,a)=(S',(S,a)) where
 				// S'={(q'',q'') | (q,q') in S and delta_c(q',a)=q'',p}
+				BitSet sPrime = new BitSet();
+				for (int bit = 0; bit < callsFromCurrState.size(); bit++)
+					if (minterm.second.get(bit) == 1) {
+						Call<A, B> currMove = callsFromCurrState.get(bit);
+						summaries.add(sPrime, currMove.to, currMove.to);
+					}
 
-				// Compute the guard of new move and target state
-				Collection<Pair<Integer, Integer>> sPrime = new HashSet<Pair<Integer, Integer>>();
-				for (int bit = 0; bit < callsFromCurrState.size(); bit++) {
-					// get the ith call in the list
-					Call<A, B> currMove = callsFromCurrState.get(bit);
-
-					// use the predicate positively if i-th bit of i is 1
-					if (BitVecUtil.get_nth_bit(i, bit) == 1) {
-						a = intersectGuards(a, currMove.guard, ba);
-
-						sPrime.add(new Pair<Integer, Integer>(currMove.to,
-								currMove.to));
-					} else
-						a = intersectGuards(a, ba.MkNot(currMove.guard), ba);
-				}
-
-				// If guard satisfiable add move to deterministic version
-				if (ba.IsSatisfiable(a)) {
+				int toStateId = getStateId(sPrime, reachedStates, toVisitStates);
 
-					// Pick the state id
-					Integer toStateId = reachedStates.get(sPrime);
-					if (toStateId == null) {
-						toStateId = reachedStates.size();
-						reachedStates.put(sPrime, toStateId);
-						toVisitStates.add(sPrime);
-					}
+				// Add stack states to be visited by returns
+				Pair<BitSet, A> currStackState = new Pair<BitSet, A>(currState, a);
 
-					// Add stack states to be visited by returns
-					Pair<Collection<Pair<Integer, Integer>>, A> currStackState = new Pair<Collection<Pair<Integer, Integer>>, A>(
-							currState, a);
-
-					Integer stackStateId = reachedStackStates
-							.get(currStackState);
-					if (stackStateId == null) {
-						stackStateId = reachedStackStates.size();
-						reachedStackStates.put(currStackState, stackStateId);
-
-						// Add new discovered stack states to those to be
-						// visited by returns
-						for (Collection<Pair<Integer, Integer>> visitedState : previouslyVisited)
-							toVisitPairStateStackStates
-									.add(new Pair<Collection<Pair<Integer, Integer>>, Pair<Collection<Pair<Integer, Integer>>, A>>(
-											visitedState, currStackState));
-					}
+				Integer stackStateId = reachedStackStates.get(currStackState);
+				if (stackStateId == null) {
+					stackStateId = reachedStackStates.size();
+					reachedStackStates.put(currStackState, stackStateId);
 
-					deter.addTransition(new Call<A, B>(currStateId, toStateId,
-							stackStateId, a), ba, true);
+					// Add new discovered stack states to those to be
+					// visited by returns
+					for (BitSet visitedState : previouslyVisited)
+						toVisitPairStateStackStates.add(new Pair<BitSet, Pair<BitSet, A>>(visitedState, currStackState));
 				}
+
+				deter.addTransition(new Call<A, B>(currStateId, toStateId,
+						stackStateId, a), ba, true);
 			}
 
 			// RETURNS out of every pair in to visit PairStateStackStates
-			for (Pair<Collection<Pair<Integer, Integer>>, Pair<Collection<Pair<Integer, Integer>>, A>> stPair : toVisitPairStateStackStates) {				
+			for (Pair<BitSet, Pair<BitSet, A>> stPair : toVisitPairStateStackStates) {				
 				
 				// adding delta_r(S,(S',a),b)
-				Collection<Pair<Integer, Integer>> S = stPair.first;
-				Pair<Collection<Pair<Integer, Integer>>, A> stackState = stPair.second;
-				Collection<Pair<Integer, Integer>> Sprime = stackState.first;
+				BitSet S = stPair.first;
+				Pair<BitSet, A> stackState = stPair.second;
+				BitSet Sprime = stackState.first;
 				A a = stackState.second;
 				
 				//These transitions are independent from currStateId
@@ -953,13 +874,12 @@ public class SVPA<U, S> extends VPAutomaton<U, S> {
 				// 4) delta_r(q2,b,p)=q''
 
 				HashSet<Pair<A, Pair<Call<A, B>, Return<A, B>>>> callRetGuardTripletHS = new HashSet<Pair<A, Pair<Call<A, B>, Return<A, B>>>>();
-				for (Call<A, B> call : aut
-						.getCallsFrom(projectSecondComponents(Sprime))) {
+				for (Call<A, B> call : aut.getCallsFrom(summaries.seconds(Sprime))) {
 					A callRetGuard = ba.MkAnd(a, call.guard);
 					//if I store all the calls in the stack triplet i can avoid this satisfiability check
 					if (ba.IsSatisfiable(callRetGuard))
 						for (Return<A, B> ret : aut.getReturnsFrom(
-								projectSecondComponents(firstIs(S, call.to)),
+								summaries.secondsWithFirst(S, call.to),
 								call.stackState))
 							if (ba.IsSatisfiable(ba.MkAnd(callRetGuard,
 									ret.guard)))
@@ -971,56 +891,31 @@ public class SVPA<U, S> extends VPAutomaton<U, S> {
 				}
 
 				ArrayList<Pair<A, Pair<Call<A, B>, Return<A, B>>>> callRetGuardTriplet = new ArrayList<Pair<A, Pair<Call<A, B>, Return<A, B>>>>(callRetGuardTripletHS);
-				
-				// Start at 1 to avoid case in which they are all false
-				for (int i = 1; i < Math.pow(2, callRetGuardTriplet.size()); i++) {
-					A b = a;
-
-					Collection<Pair<Integer, Integer>> toState = new HashSet<Pair<Integer, Integer>>();
-
-					for (int bit = 0; bit < callRetGuardTriplet.size(); bit++) {
-						Pair<A, Pair<Call<A, B>, Return<A, B>>> currTriplet = callRetGuardTriplet
-								.get(bit);
-
-						A callRetGuard = currTriplet.first;
-						Call<A, B> currCall = currTriplet.second.first;
-						Return<A, B> currRet = currTriplet.second.second;
-
-						if (BitVecUtil.get_nth_bit(i, bit) == 1) {
-
-							b = intersectGuards(b, callRetGuard, ba);
-
-							for (Pair<Integer, Integer> fst : secondIs(Sprime,
-									currCall.from))
-								if (S.contains(new Pair<Integer, Integer>(
-										currCall.to, currRet.from)))
-									toState.add(new Pair<Integer, Integer>(
-											fst.first, currRet.to));
-						} else {
-							b = intersectGuards(b, ba.MkNot(callRetGuard), ba);
-						}
-					}
-
-					// If guard satisfiable add move to deterministic
-					// version
-					if (ba.IsSatisfiable(b)) {
-						
-						Integer toStateId = reachedStates.get(toState);
-						if (toStateId == null) {
-							toStateId = reachedStates.size();
-							reachedStates.put(toState, toStateId);
-							toVisitStates.add(toState);
+				ArrayList<A> callRetGuards = new ArrayList<A>();
+				for (Pair<A, Pair<Call<A, B>, Return<A, B>>> triplet : callRetGuardTriplet)
+					callRetGuards.add(triplet.first);
+
+				// the minterms are refined starting from the guard a on the stack
+				for (Pair<A, ArrayList<Integer>> minterm : ba.GetMinterms(callRetGuards, a, Long.MAX_VALUE)) {
+					if (!minterm.second.contains(1))
+						continue;
+
+					BitSet toState = new BitSet();
+					for (int bit = 0; bit < callRetGuardTriplet.size(); bit++)
+						if (minterm.second.get(bit) == 1) {
+							Call<A, B> currCall = callRetGuardTriplet.get(bit).second.first;
+							Return<A, B> currRet = callRetGuardTriplet.get(bit).second.second;
+							if (summaries.contains(S, currCall.to, currRet.from))
+								for (Integer first : summaries.firstsWithSecond(Sprime, currCall.from))
+									summaries.add(toState, first, currRet.to);
 						}
 
-						Integer toStackStateId = reachedStackStates
-								.get(stackState);
+					int toStateId = getStateId(toState, reachedStates, toVisitStates);
 
-						if (toStackStateId == null)
-							System.out.println("shouldn't be null");
+					Integer toStackStateId = reachedStackStates.get(stackState);
 
-						deter.addTransition(new Return<A, B>(currStateId,
-								toStateId, toStackStateId, b), ba, true);
-					}
+					deter.addTransition(new Return<A, B>(currStateId,
+							toStateId, toStackStateId, minterm.first), ba, true);
 				}
 
 			}
@@ -1028,50 +923,70 @@ public class SVPA<U, S> extends VPAutomaton<U, S> {
 		}
 		
 		deter.isDeterministic = true;
+		aut1.determinization = deter;
+		aut1.determinizationAlgebra = ba;
 		return deter;
 	}
 
-	private static <A, B> A intersectGuards(A guard, A conjunct,
-			BooleanAlgebra<A, B> ba) throws TimeoutException {
-		if (guard == null)
-			return conjunct;
-		else
-			return ba.MkAnd(guard, conjunct);
-	}
-
-	@SuppressWarnings("unused")
-	private static Collection<Integer> projectFirstComponents(
-			Collection<Pair<Integer, Integer>> state) {
-		HashSet<Integer> fc = new HashSet<Integer>();
-		for (Pair<Integer, Integer> st : state)
-			fc.add(st.first);
-		return fc;
-	}
-
-	private static Collection<Integer> projectSecondComponents(
-			Collection<Pair<Integer, Integer>> state) {
-		HashSet<Integer> sc = new HashSet<Integer>();
-		for (Pair<Integer, Integer> st : state)
-			sc.add(st.second);
-		return sc;
-	}
-
-	private static Collection<Pair<Integer, Integer>> firstIs(
-			Collection<Pair<Integer, Integer>> state, Integer fst) {
-		HashSet<Pair<Integer, Integer>> sc = new HashSet<Pair<Integer, Integer>>();
-		for (Pair<Integer, Integer> st : state)
-			if (st.first == fst)
-				sc.add(st);
-		return sc;
-	}
-
-	private static Collection<Pair<Integer, Integer>> secondIs(
-			Collection<Pair<Integer, Integer>> state, Integer sec) {
-		HashSet<Pair<Integer, Integer>> sc = new HashSet<Pair<Integer, Integer>>();
-		for (Pair<Integer, Integer> st : state)
-			if (st.second == sec)
-				sc.add(st);
-		return sc;
+	// Returns the id of the determinized state, adding it to the states to visit if new
+	private static int getStateId(BitSet state, HashMap<BitSet, Integer> reachedStates,
+			LinkedList<BitSet> toVisitStates) {
+		Integer stateId = reachedStates.get(state);
+		if (stateId == null) {
+			stateId = reachedStates.size();
+			reachedStates.put(state, stateId);
+			toVisitStates.add(state);
+		}
+		return stateId;
+	}
+
+	// Dense encoding of the summaries (q,q') used as states by the determinization
+	static class Summaries {
+		final ArrayList<Integer> stateList;
+		final HashMap<Integer, Integer> index = new HashMap<Integer, Integer>();
+		final int n;
+
+		Summaries(Collection<Integer> states) {
+			stateList = new ArrayList<Integer>(states);
+			for (Integer state : stateList)
+				index.put(state, index.size());
+			n = stateList.size();
+		}
+
+		void add(BitSet summaries, Integer first, Integer second) {
+			summaries.set(index.get(first) * n + index.get(second));
+		}
+
+		boolean contains(BitSet summaries, Integer first, Integer second) {
+			return summaries.get(index.get(first) * n + index.get(second));
+		}
+
+		// second components of the summaries
+		Collection<Integer> seconds(BitSet summaries) {
+			HashSet<Integer> sc = new HashSet<Integer>();
+			for (int i = summaries.nextSetBit(0); i >= 0; i = summaries.nextSetBit(i + 1))
+				sc.add(stateList.get(i % n));
+			return sc;
+		}
+
+		// second components of the summaries with first component fst
+		Collection<Integer> secondsWithFirst(BitSet summaries, Integer fst) {
+			HashSet<Integer> sc = new HashSet<Integer>();
+			int base = index.get(fst) * n;
+			for (int i = summaries.nextSetBit(base); i >= 0 && i < base + n; i = summaries.nextSetBit(i + 1))
+				sc.add(stateList.get(i - base));
+			return sc;
+		}
+
+		// first components of the summaries with second component sec
+		Collection<Integer> firstsWithSecond(BitSet summaries, Integer sec) {
+			HashSet<Integer> fc = new HashSet<Integer>();
+			int secIndex = index.get(sec);
+			for (int i = summaries.nextSetBit(0); i >= 0; i = summaries.nextSetBit(i + 1))
+				if (i % n == secIndex)
+					fc.add(stateList.get(i / n));
+			return fc;
+		}
 	}
 
 	// /////////////////////////////////////////////////////////////////////////////
@@ -0,0 +1,264 @@
+package automata.svpa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+
+/**
+ * Runs an SVPA on a stream of call, return, and internal events, as produced by a SAX or StAX parser, without
+ * building a list of {@link TaggedSymbol}s.
+ *
+ * The SVPA is made epsilon free and deterministic once, then its states and stack states are numbered densely and
+ * the moves leaving each state are stored in arrays, with returns indexed by the stack state they pop. The run keeps
+ * a single state and an int stack of stack states next to the stack of call symbols, which only grow when the nesting
+ * gets deeper than ever before, so an event costs one guard check per candidate move and no allocation. As soon as no
+ * move is enabled the runner is rejected and ignores the following events, so a validator can stop reading.
+ *
+ * @param <U>
+ *            The type of predicates forming the Boolean algebra
+ * @param <S>
+ *            The domain of the Boolean algebra
+ */
+public class SVPAEventRunner<U, S> {
+
+	private static final int REJECTED = -1;
+
+	private final BooleanAlgebra<U, S> ba;
+	private final int initialState;
+	private final boolean[] isFinal;
+
+	// moves leaving each state
+	private final Object[][] internalGuards;
+	private final int[][] internalTargets;
+	private final Object[][] callGuards;
+	private final int[][] callTargets;
+	private final int[][] callStackStates;
+	private final Object[][] returnBSGuards;
+	private final int[][] returnBSTargets;
+	// returns leaving each state, by popped stack state
+	private final Object[][][] returnGuards;
+	private final int[][][] returnTargets;
+
+	private int state;
+	private int depth;
+	private int[] stackStates = new int[16];
+	private Object[] callSymbols = new Object[16];
+
+	/**
+	 * A runner for <code>aut</code>, which is determinized if needed. If <code>aut</code> has no initial states the
+	 * runner is rejected from the start.
+	 *
+	 * @throws TimeoutException
+	 */
+	public SVPAEventRunner(SVPA<U, S> aut, BooleanAlgebra<U, S> ba) throws TimeoutException {
+		this.ba = ba;
+		SVPA<U, S> det = aut;
+		if (!aut.initialStates.isEmpty()) {
+			if (!det.isEpsilonFree)
+				det = SVPA.removeEpsilonMovesFrom(det, ba);
+			if (!det.isDeterministic(ba))
+				det = det.determinize(ba);
+		}
+
+		Map<Integer, Integer> stateIndex = new HashMap<Integer, Integer>();
+		for (Integer st : det.states)
+			stateIndex.put(st, stateIndex.size());
+		Map<Integer, Integer> stackStateIndex = new HashMap<Integer, Integer>();
+		for (Integer st : det.states)
+			for (Call<U, S> move : det.getCallsFrom(st))
+				if (!stackStateIndex.containsKey(move.stackState))
+					stackStateIndex.put(move.stackState, stackStateIndex.size());
+
+		int n = stateIndex.size();
+		int m = stackStateIndex.size();
+		initialState = det.initialStates.isEmpty() ? REJECTED : stateIndex.get(det.initialStates.iterator().next());
+		isFinal = new boolean[n];
+		internalGuards = new Object[n][];
+		internalTargets = new int[n][];
+		callGuards = new Object[n][];
+		callTargets = new int[n][];
+		callStackStates = new int[n][];
+		returnBSGuards = new Object[n][];
+		returnBSTargets = new int[n][];
+		returnGuards = new Object[n][m][];
+		returnTargets = new int[n][m][];
+
+		for (Integer st : det.states) {
+			int from = stateIndex.get(st);
+			isFinal[from] = det.finalStates.contains(st);
+
+			List<Internal<U, S>> internals = new ArrayList<Internal<U, S>>(det.getInternalsFrom(st));
+			internalGuards[from] = new Object[internals.size()];
+			internalTargets[from] = new int[internals.size()];
+			for (int i = 0; i < internals.size(); i++) {
+				internalGuards[from][i] = internals.get(i).guard;
+				internalTargets[from][i] = stateIndex.get(internals.get(i).to);
+			}
+
+			List<Call<U, S>> calls = new ArrayList<Call<U, S>>(det.getCallsFrom(st));
+			callGuards[from] = new Object[calls.size()];
+			callTargets[from] = new int[calls.size()];
+			callStackStates[from] = new int[calls.size()];
+			for (int i = 0; i < calls.size(); i++) {
+				callGuards[from][i] = calls.get(i).guard;
+				callTargets[from][i] = stateIndex.get(calls.get(i).to);
+				callStackStates[from][i] = stackStateIndex.get(calls.get(i).stackState);
+			}
+
+			List<ReturnBS<U, S>> returnsBS = new ArrayList<ReturnBS<U, S>>(det.getReturnBSFrom(st));
+			returnBSGuards[from] = new Object[returnsBS.size()];
+			returnBSTargets[from] = new int[returnsBS.size()];
+			for (int i = 0; i < returnsBS.size(); i++) {
+				returnBSGuards[from][i] = returnsBS.get(i).guard;
+				returnBSTargets[from][i] = stateIndex.get(returnsBS.get(i).to);
+			}
+
+			for (Map.Entry<Integer, Integer> stackState : stackStateIndex.entrySet()) {
+				List<Return<U, S>> returns = new ArrayList<Return<U, S>>(
+						det.getReturnsFrom(st, stackState.getKey()));
+				int gamma = stackState.getValue();
+				returnGuards[from][gamma] = new Object[returns.size()];
+				returnTargets[from][gamma] = new int[returns.size()];
+				for (int i = 0; i < returns.size(); i++) {
+					returnGuards[from][gamma][i] = returns.get(i).guard;
+					returnTargets[from][gamma][i] = stateIndex.get(returns.get(i).to);
+				}
+			}
+		}
+		reset();
+	}
+
+	/**
+	 * Goes back to the initial state with an empty stack
+	 */
+	public void reset() {
+		state = initialState;
+		Arrays.fill(callSymbols, 0, depth, null);
+		depth = 0;
+	}
+
+	/**
+	 * Reads an internal symbol, returns false if the input is rejected
+	 *
+	 * @throws TimeoutException
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean onInternal(S input) throws TimeoutException {
+		if (state == REJECTED)
+			return false;
+
+		Object[] guards = internalGuards[state];
+		for (int i = 0; i < guards.length; i++)
+			if (ba.HasModel((U) guards[i], input)) {
+				state = internalTargets[state][i];
+				return true;
+			}
+		return reject();
+	}
+
+	/**
+	 * Reads a call symbol, returns false if the input is rejected
+	 *
+	 * @throws TimeoutException
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean onCall(S input) throws TimeoutException {
+		if (state == REJECTED)
+			return false;
+
+		Object[] guards = callGuards[state];
+		for (int i = 0; i < guards.length; i++)
+			if (ba.HasModel((U) guards[i], input)) {
+				if (depth == stackStates.length) {
+					stackStates = Arrays.copyOf(stackStates, 2 * depth);
+					callSymbols = Arrays.copyOf(callSymbols, 2 * depth);
+				}
+				stackStates[depth] = callStackStates[state][i];
+				callSymbols[depth] = input;
+				depth++;
+				state = callTargets[state][i];
+				return true;
+			}
+		return reject();
+	}
+
+	/**
+	 * Reads a return symbol, returns false if the input is rejected
+	 *
+	 * @throws TimeoutException
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean onReturn(S input) throws TimeoutException {
+		if (state == REJECTED)
+			return false;
+
+		if (depth == 0) {
+			Object[] guards = returnBSGuards[state];
+			for (int i = 0; i < guards.length; i++)
+				if (ba.HasModel((U) guards[i], input)) {
+					state = returnBSTargets[state][i];
+					return true;
+				}
+			return reject();
+		}
+
+		int gamma = stackStates[depth - 1];
+		S callSymbol = (S) callSymbols[depth - 1];
+		Object[] guards = returnGuards[state][gamma];
+		for (int i = 0; i < guards.length; i++)
+			if (ba.HasModel((U) guards[i], callSymbol, input)) {
+				callSymbols[--depth] = null;
+				state = returnTargets[state][gamma][i];
+				return true;
+			}
+		return reject();
+	}
+
+	/**
+	 * Reads a tagged symbol, returns false if the input is rejected
+	 *
+	 * @throws TimeoutException
+	 */
+	public boolean onSymbol(TaggedSymbol<S> symbol) throws TimeoutException {
+		switch (symbol.tag) {
+		case Internal:
+			return onInternal(symbol.input);
+		case Call:
+			return onCall(symbol.input);
+		default:
+			return onReturn(symbol.input);
+		}
+	}
+
+	/**
+	 * Whether the events read so far form an accepted nested word
+	 */
+	public boolean isAccepting() {
+		return state != REJECTED && isFinal[state];
+	}
+
+	/**
+	 * Whether one of the events read so far enabled no move, in which case no continuation is accepted
+	 */
+	public boolean isRejected() {
+		return state == REJECTED;
+	}
+
+	/**
+	 * The number of pending calls read so far
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	private boolean reject() {
+		state = REJECTED;
+		return false;
+	}
+}
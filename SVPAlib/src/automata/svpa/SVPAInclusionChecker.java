@@ -0,0 +1,396 @@
+package automata.svpa;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.sat4j.specs.TimeoutException;
+
+import automata.svpa.TaggedSymbol.SymbolTag;
+import theory.BooleanAlgebra;
+import utilities.Pair;
+
+/**
+ * Decides language inclusion and equivalence of SVPAs without determinizing and complementing them.
+ *
+ * To check L(A) &sube; L(B), the product of A with the subset construction of B is explored on the fly. A node of the
+ * product is a state of A together with a set of summaries (q,q') of B, encoded as a bitset as in
+ * {@link SVPA#determinize}. Reachability in the product is computed by saturating well-matched summaries: a fact
+ * (e,x) says that node x is reachable from the entry node e by a well-matched word, and two special entries stand for
+ * the top level with an empty stack and with pending calls. Since the subset construction is monotone, a node whose
+ * summary set contains the one of an already reached node with the same state of A and the same entry cannot lead to
+ * new counterexamples, and is pruned. Every fact remembers how it was derived, so a counterexample is rebuilt as soon
+ * as an accepting state of A is reached together with a summary set that B does not accept.
+ *
+ * @param <U>
+ *            The type of predicates forming the Boolean algebra
+ * @param <S>
+ *            The domain of the Boolean algebra
+ */
+public class SVPAInclusionChecker<U, S> {
+
+	private final BooleanAlgebra<U, S> ba;
+	private final long timeout;
+
+	/**
+	 * A checker with no timeout
+	 */
+	public SVPAInclusionChecker(BooleanAlgebra<U, S> ba) {
+		this(ba, Long.MAX_VALUE);
+	}
+
+	/**
+	 * A checker that gives up after <code>timeout</code> milliseconds
+	 */
+	public SVPAInclusionChecker(BooleanAlgebra<U, S> ba, long timeout) {
+		this.ba = ba;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Returns a nested word accepted by <code>aut1</code> and rejected by <code>aut2</code>, null if L(aut1) is
+	 * included in L(aut2)
+	 *
+	 * @throws TimeoutException
+	 */
+	public List<TaggedSymbol<S>> counterexample(SVPA<U, S> aut1, SVPA<U, S> aut2) throws TimeoutException {
+		return new Search(aut1, aut2).run();
+	}
+
+	/**
+	 * Checks whether L(aut1) is included in L(aut2)
+	 *
+	 * @throws TimeoutException
+	 */
+	public boolean isIncluded(SVPA<U, S> aut1, SVPA<U, S> aut2) throws TimeoutException {
+		return counterexample(aut1, aut2) == null;
+	}
+
+	/**
+	 * Returns a nested word accepted by exactly one of <code>aut1</code> and <code>aut2</code>, null if they are
+	 * equivalent
+	 *
+	 * @throws TimeoutException
+	 */
+	public List<TaggedSymbol<S>> distinguishingWord(SVPA<U, S> aut1, SVPA<U, S> aut2) throws TimeoutException {
+		List<TaggedSymbol<S>> witness = counterexample(aut1, aut2);
+		if (witness == null)
+			witness = counterexample(aut2, aut1);
+		return witness;
+	}
+
+	/**
+	 * Checks whether <code>aut1</code> and <code>aut2</code> accept the same language
+	 *
+	 * @throws TimeoutException
+	 */
+	public boolean areEquivalent(SVPA<U, S> aut1, SVPA<U, S> aut2) throws TimeoutException {
+		return distinguishingWord(aut1, aut2) == null;
+	}
+
+	// the entries standing for the top level with an empty stack and with pending calls
+	private static final int TOP = -1;
+	private static final int TOP_PENDING = -2;
+
+	// How a fact was derived
+	private enum Rule {
+		INIT, INTERNAL, RETURN_BS, PENDING_CALL, MATCHED
+	}
+
+	private class Derivation {
+		final Rule rule;
+		// the fact the new one extends
+		final Pair<Integer, Integer> previous;
+		// the fact reached inside a matched call
+		final Pair<Integer, Integer> inner;
+		// the predicate the symbols are drawn from, over pairs of symbols for matched calls
+		final U guard;
+
+		Derivation(Rule rule, Pair<Integer, Integer> previous, Pair<Integer, Integer> inner, U guard) {
+			this.rule = rule;
+			this.previous = previous;
+			this.inner = inner;
+			this.guard = guard;
+		}
+	}
+
+	// A call waiting for returns: the fact (entry, node) it is made from, the stack state of aut1 and the predicate
+	// on the call symbol
+	private class Caller {
+		final Pair<Integer, Integer> fact;
+		final Integer stackState;
+		final U guard;
+
+		Caller(Pair<Integer, Integer> fact, Integer stackState, U guard) {
+			this.fact = fact;
+			this.stackState = stackState;
+			this.guard = guard;
+		}
+	}
+
+	// A move of the product together with the predicate it is enabled on
+	private class Edge {
+		final U guard;
+		final int to;
+		final Integer stackState;
+
+		Edge(U guard, int to, Integer stackState) {
+			this.guard = guard;
+			this.to = to;
+			this.stackState = stackState;
+		}
+	}
+
+	private class Search {
+		final SVPA<U, S> aut1;
+		final SVPA<U, S> aut2;
+		final SVPA.Summaries summaries;
+		final long startTime = System.currentTimeMillis();
+
+		// interned nodes of the product
+		final List<Pair<Integer, BitSet>> nodes = new ArrayList<Pair<Integer, BitSet>>();
+		final Map<Pair<Integer, BitSet>, Integer> nodeIds = new HashMap<Pair<Integer, BitSet>, Integer>();
+
+		final Map<Pair<Integer, Integer>, Derivation> facts = new HashMap<Pair<Integer, Integer>, Derivation>();
+		final Map<Integer, List<Integer>> factsOfEntry = new HashMap<Integer, List<Integer>>();
+		// for every entry and state of aut1, the minimal summary sets reached so far
+		final Map<Pair<Integer, Integer>, List<BitSet>> antichains = new HashMap<Pair<Integer, Integer>, List<BitSet>>();
+		final Map<Integer, List<Caller>> callers = new HashMap<Integer, List<Caller>>();
+		final LinkedList<Pair<Integer, Integer>> toVisit = new LinkedList<Pair<Integer, Integer>>();
+
+		Search(SVPA<U, S> aut1, SVPA<U, S> aut2) throws TimeoutException {
+			this.aut1 = aut1.isEpsilonFree ? aut1 : SVPA.removeEpsilonMovesFrom(aut1, ba);
+			this.aut2 = aut2.isEpsilonFree ? aut2 : SVPA.removeEpsilonMovesFrom(aut2, ba);
+			this.summaries = new SVPA.Summaries(this.aut2.states);
+		}
+
+		List<TaggedSymbol<S>> run() throws TimeoutException {
+			BitSet initial = new BitSet();
+			for (Integer state : aut2.initialStates)
+				summaries.add(initial, state, state);
+			for (Integer state : aut1.initialStates)
+				addFact(TOP, node(state, initial), new Derivation(Rule.INIT, null, null, null));
+
+			while (!toVisit.isEmpty()) {
+				if (System.currentTimeMillis() - startTime > timeout)
+					throw new TimeoutException("Timeout in the inclusion check");
+
+				Pair<Integer, Integer> fact = toVisit.removeFirst();
+				int entry = fact.first;
+				int node = fact.second;
+
+				if (entry < 0 && isCounterexample(node))
+					return witness(fact);
+
+				for (Edge edge : internals(node))
+					addFact(entry, edge.to, new Derivation(Rule.INTERNAL, fact, null, edge.guard));
+
+				if (entry == TOP)
+					for (Edge edge : returnsBS(node))
+						addFact(entry, edge.to, new Derivation(Rule.RETURN_BS, fact, null, edge.guard));
+
+				for (Edge edge : calls(node)) {
+					addFact(edge.to, edge.to, new Derivation(Rule.INIT, null, null, null));
+					if (entry < 0)
+						addFact(TOP_PENDING, edge.to, new Derivation(Rule.PENDING_CALL, fact, null, edge.guard));
+
+					Caller caller = new Caller(fact, edge.stackState, edge.guard);
+					getOrCreate(callers, edge.to).add(caller);
+					for (Integer inner : new ArrayList<Integer>(getOrCreate(factsOfEntry, edge.to)))
+						matchReturns(caller, edge.to, inner);
+				}
+
+				if (entry >= 0)
+					for (Caller caller : new ArrayList<Caller>(getOrCreate(callers, entry)))
+						matchReturns(caller, entry, node);
+			}
+			return null;
+		}
+
+		// node accepted by aut1 and not by aut2
+		boolean isCounterexample(int node) {
+			Pair<Integer, BitSet> pair = nodes.get(node);
+			return aut1.finalStates.contains(pair.first)
+					&& !containsFinal(summaries.seconds(pair.second));
+		}
+
+		boolean containsFinal(Collection<Integer> states) {
+			for (Integer state : states)
+				if (aut2.finalStates.contains(state))
+					return true;
+			return false;
+		}
+
+		void addFact(int entry, int node, Derivation derivation) {
+			Pair<Integer, Integer> fact = new Pair<Integer, Integer>(entry, node);
+			if (facts.containsKey(fact))
+				return;
+
+			// prune the node if a node with a smaller summary set was already reached
+			Pair<Integer, BitSet> pair = nodes.get(node);
+			List<BitSet> antichain = getOrCreate(antichains, new Pair<Integer, Integer>(entry, pair.first));
+			for (BitSet reached : antichain) {
+				BitSet diff = (BitSet) reached.clone();
+				diff.andNot(pair.second);
+				if (diff.isEmpty())
+					return;
+			}
+			antichain.add(pair.second);
+
+			facts.put(fact, derivation);
+			getOrCreate(factsOfEntry, entry).add(node);
+			toVisit.add(fact);
+		}
+
+		// returns from the node inner, reached from entry, that match the call of caller
+		void matchReturns(Caller caller, int entry, int inner) throws TimeoutException {
+			Pair<Integer, BitSet> callerNode = nodes.get(caller.fact.second);
+			Pair<Integer, BitSet> returnNode = nodes.get(inner);
+
+			for (Return<U, S> ret1 : aut1.getReturnsFrom(returnNode.first, caller.stackState)) {
+				U start = ba.MkAnd(caller.guard, ret1.guard);
+				if (!ba.IsSatisfiable(start))
+					continue;
+
+				// calls and returns of aut2 that can match
+				ArrayList<Pair<Call<U, S>, Return<U, S>>> matches = new ArrayList<Pair<Call<U, S>, Return<U, S>>>();
+				ArrayList<U> guards = new ArrayList<U>();
+				for (Call<U, S> call : aut2.getCallsFrom(summaries.seconds(callerNode.second))) {
+					if (!ba.IsSatisfiable(ba.MkAnd(call.guard, start)))
+						continue;
+					for (Return<U, S> ret2 : aut2.getReturnsFrom(
+							summaries.secondsWithFirst(returnNode.second, call.to), call.stackState)) {
+						matches.add(new Pair<Call<U, S>, Return<U, S>>(call, ret2));
+						guards.add(ba.MkAnd(call.guard, ret2.guard));
+					}
+				}
+
+				for (Pair<U, ArrayList<Integer>> minterm : ba.GetMinterms(guards, start, Long.MAX_VALUE)) {
+					BitSet to = new BitSet();
+					for (int bit = 0; bit < matches.size(); bit++)
+						if (minterm.second.get(bit) == 1) {
+							Call<U, S> call = matches.get(bit).first;
+							Return<U, S> ret2 = matches.get(bit).second;
+							if (summaries.contains(returnNode.second, call.to, ret2.from))
+								for (Integer first : summaries.firstsWithSecond(callerNode.second, call.from))
+									summaries.add(to, first, ret2.to);
+						}
+					addFact(caller.fact.first, node(ret1.to, to), new Derivation(Rule.MATCHED, caller.fact,
+							new Pair<Integer, Integer>(entry, inner), minterm.first));
+				}
+			}
+		}
+
+		List<Edge> internals(int node) throws TimeoutException {
+			Pair<Integer, BitSet> pair = nodes.get(node);
+			List<Edge> edges = new ArrayList<Edge>();
+			ArrayList<Internal<U, S>> moves2 = new ArrayList<Internal<U, S>>(
+					aut2.getInternalsFrom(summaries.seconds(pair.second)));
+			ArrayList<U> guards = new ArrayList<U>();
+			for (Internal<U, S> move : moves2)
+				guards.add(move.guard);
+
+			for (Internal<U, S> move1 : aut1.getInternalsFrom(pair.first))
+				for (Pair<U, ArrayList<Integer>> minterm : ba.GetMinterms(guards, move1.guard, Long.MAX_VALUE)) {
+					BitSet to = new BitSet();
+					for (int bit = 0; bit < moves2.size(); bit++)
+						if (minterm.second.get(bit) == 1)
+							for (Integer first : summaries.firstsWithSecond(pair.second, moves2.get(bit).from))
+								summaries.add(to, first, moves2.get(bit).to);
+					edges.add(new Edge(minterm.first, node(move1.to, to), null));
+				}
+			return edges;
+		}
+
+		List<Edge> returnsBS(int node) throws TimeoutException {
+			Pair<Integer, BitSet> pair = nodes.get(node);
+			List<Edge> edges = new ArrayList<Edge>();
+			ArrayList<ReturnBS<U, S>> moves2 = new ArrayList<ReturnBS<U, S>>(
+					aut2.getReturnBSFrom(summaries.seconds(pair.second)));
+			ArrayList<U> guards = new ArrayList<U>();
+			for (ReturnBS<U, S> move : moves2)
+				guards.add(move.guard);
+
+			for (ReturnBS<U, S> move1 : aut1.getReturnBSFrom(pair.first))
+				for (Pair<U, ArrayList<Integer>> minterm : ba.GetMinterms(guards, move1.guard, Long.MAX_VALUE)) {
+					BitSet to = new BitSet();
+					for (int bit = 0; bit < moves2.size(); bit++)
+						if (minterm.second.get(bit) == 1)
+							for (Integer first : summaries.firstsWithSecond(pair.second, moves2.get(bit).from))
+								summaries.add(to, first, moves2.get(bit).to);
+					edges.add(new Edge(minterm.first, node(move1.to, to), null));
+				}
+			return edges;
+		}
+
+		List<Edge> calls(int node) throws TimeoutException {
+			Pair<Integer, BitSet> pair = nodes.get(node);
+			List<Edge> edges = new ArrayList<Edge>();
+			ArrayList<Call<U, S>> moves2 = new ArrayList<Call<U, S>>(
+					aut2.getCallsFrom(summaries.seconds(pair.second)));
+			ArrayList<U> guards = new ArrayList<U>();
+			for (Call<U, S> move : moves2)
+				guards.add(move.guard);
+
+			for (Call<U, S> move1 : aut1.getCallsFrom(pair.first))
+				for (Pair<U, ArrayList<Integer>> minterm : ba.GetMinterms(guards, move1.guard, Long.MAX_VALUE)) {
+					BitSet to = new BitSet();
+					for (int bit = 0; bit < moves2.size(); bit++)
+						if (minterm.second.get(bit) == 1)
+							summaries.add(to, moves2.get(bit).to, moves2.get(bit).to);
+					edges.add(new Edge(minterm.first, node(move1.to, to), move1.stackState));
+				}
+			return edges;
+		}
+
+		int node(Integer state, BitSet summarySet) {
+			Pair<Integer, BitSet> pair = new Pair<Integer, BitSet>(state, summarySet);
+			Integer id = nodeIds.get(pair);
+			if (id == null) {
+				id = nodes.size();
+				nodes.add(pair);
+				nodeIds.put(pair, id);
+			}
+			return id;
+		}
+
+		// rebuilds the word that derived fact
+		LinkedList<TaggedSymbol<S>> witness(Pair<Integer, Integer> fact) throws TimeoutException {
+			Derivation derivation = facts.get(fact);
+			if (derivation.rule == Rule.INIT)
+				return new LinkedList<TaggedSymbol<S>>();
+
+			LinkedList<TaggedSymbol<S>> word = witness(derivation.previous);
+			switch (derivation.rule) {
+			case INTERNAL:
+				word.add(new TaggedSymbol<S>(ba.generateWitness(derivation.guard), SymbolTag.Internal));
+				break;
+			case RETURN_BS:
+				word.add(new TaggedSymbol<S>(ba.generateWitness(derivation.guard), SymbolTag.Return));
+				break;
+			case PENDING_CALL:
+				word.add(new TaggedSymbol<S>(ba.generateWitness(derivation.guard), SymbolTag.Call));
+				break;
+			default:
+				Pair<S, S> symbols = ba.generateWitnesses(derivation.guard);
+				word.add(new TaggedSymbol<S>(symbols.first, SymbolTag.Call));
+				word.addAll(witness(derivation.inner));
+				word.add(new TaggedSymbol<S>(symbols.second, SymbolTag.Return));
+			}
+			return word;
+		}
+
+		<K, V> List<V> getOrCreate(Map<K, List<V>> map, K key) {
+			List<V> list = map.get(key);
+			if (list == null) {
+				list = new ArrayList<V>();
+				map.put(key, list);
+			}
+			return list;
+		}
+	}
+}
@@ -0,0 +1,256 @@
+package automata.svpa;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+
+/**
+ * Reads a nested word one symbol at a time and tells whether the prefix read so far is accepted by an SVPA.
+ *
+ * Instead of the set of reachable configurations, whose stacks are as deep as the input, the recognizer keeps the
+ * summaries of the current nesting level: the pairs (q,q') such that the SVPA can go from q at the beginning of the
+ * level to q' now. A call pushes a frame holding the call symbol and the summaries of the enclosing level and starts a
+ * new level from the targets of the enabled calls. A return pops the frame and stitches the two levels together. The
+ * frames form a persistent linked stack, so the work per symbol only depends on the size of the SVPA and not on the
+ * nesting depth, and {@link #copy} is constant time.
+ *
+ * @param <U>
+ *            The type of predicates forming the Boolean algebra
+ * @param <S>
+ *            The domain of the Boolean algebra
+ */
+public class SVPARecognizer<U, S> {
+
+	private final SVPA<U, S> aut;
+	private final BooleanAlgebra<U, S> ba;
+	private final SVPA.Summaries summaries;
+
+	// moves and epsilon closure of every state, by state index
+	private final List<List<Internal<U, S>>> internals;
+	private final List<List<Call<U, S>>> calls;
+	private final List<List<Return<U, S>>> returns;
+	private final List<List<ReturnBS<U, S>>> returnsBS;
+	private final List<Collection<Integer>> epsClosures;
+
+	// summaries of the current level, never modified once built
+	private BitSet current;
+	private Frame<U, S> top;
+	private int depth;
+
+	/**
+	 * A recognizer for <code>aut</code> that has not read any symbol yet
+	 */
+	public SVPARecognizer(SVPA<U, S> aut, BooleanAlgebra<U, S> ba) {
+		this.aut = aut;
+		this.ba = ba;
+		this.summaries = new SVPA.Summaries(aut.states);
+		this.internals = new ArrayList<List<Internal<U, S>>>();
+		this.calls = new ArrayList<List<Call<U, S>>>();
+		this.returns = new ArrayList<List<Return<U, S>>>();
+		this.returnsBS = new ArrayList<List<ReturnBS<U, S>>>();
+		this.epsClosures = new ArrayList<Collection<Integer>>();
+
+		for (Integer state : summaries.stateList) {
+			internals.add(new ArrayList<Internal<U, S>>(aut.getInternalsFrom(state)));
+			calls.add(new ArrayList<Call<U, S>>(aut.getCallsFrom(state)));
+			returns.add(new ArrayList<Return<U, S>>(aut.getReturnsFrom(state)));
+			returnsBS.add(new ArrayList<ReturnBS<U, S>>(aut.getReturnBSFrom(state)));
+			epsClosures.add(epsClosure(state));
+		}
+		reset();
+	}
+
+	private SVPARecognizer(SVPARecognizer<U, S> other) {
+		this.aut = other.aut;
+		this.ba = other.ba;
+		this.summaries = other.summaries;
+		this.internals = other.internals;
+		this.calls = other.calls;
+		this.returns = other.returns;
+		this.returnsBS = other.returnsBS;
+		this.epsClosures = other.epsClosures;
+		this.current = other.current;
+		this.top = other.top;
+		this.depth = other.depth;
+	}
+
+	/**
+	 * Goes back to the state before reading any symbol
+	 */
+	public void reset() {
+		BitSet initial = new BitSet();
+		for (Integer state : aut.initialStates)
+			summaries.add(initial, state, state);
+		current = closeUnderEpsilon(initial);
+		top = null;
+		depth = 0;
+	}
+
+	/**
+	 * A recognizer in the same state as this one, reading symbols in one does not affect the other
+	 */
+	public SVPARecognizer<U, S> copy() {
+		return new SVPARecognizer<U, S>(this);
+	}
+
+	/**
+	 * Reads the next symbol, returns false if no continuation of the input read so far can be accepted
+	 *
+	 * @throws TimeoutException
+	 */
+	public boolean read(TaggedSymbol<S> symbol) throws TimeoutException {
+		if (isDead())
+			return false;
+
+		switch (symbol.tag) {
+		case Internal:
+			current = closeUnderEpsilon(readInternal(symbol.input));
+			break;
+		case Call:
+			readCall(symbol.input);
+			break;
+		default:
+			if (top == null)
+				current = closeUnderEpsilon(readReturnBS(symbol.input));
+			else
+				readReturn(symbol.input);
+		}
+		return !isDead();
+	}
+
+	/**
+	 * Reads all the symbols of input, returns false if no continuation of the input read so far can be accepted
+	 *
+	 * @throws TimeoutException
+	 */
+	public boolean readAll(Iterable<TaggedSymbol<S>> input) throws TimeoutException {
+		for (TaggedSymbol<S> symbol : input)
+			if (!read(symbol))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Whether the input read so far is accepted
+	 */
+	public boolean isAccepting() {
+		for (int i = current.nextSetBit(0); i >= 0; i = current.nextSetBit(i + 1))
+			if (aut.finalStates.contains(summaries.stateList.get(i % summaries.n)))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Whether no continuation of the input read so far can be accepted
+	 */
+	public boolean isDead() {
+		return current.isEmpty();
+	}
+
+	/**
+	 * The number of pending calls read so far
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	private BitSet readInternal(S input) throws TimeoutException {
+		BitSet next = new BitSet();
+		for (int i = current.nextSetBit(0); i >= 0; i = current.nextSetBit(i + 1))
+			for (Internal<U, S> move : internals.get(i % summaries.n))
+				if (ba.HasModel(move.guard, input))
+					summaries.add(next, summaries.stateList.get(i / summaries.n), move.to);
+		return next;
+	}
+
+	private BitSet readReturnBS(S input) throws TimeoutException {
+		BitSet next = new BitSet();
+		for (int i = current.nextSetBit(0); i >= 0; i = current.nextSetBit(i + 1))
+			for (ReturnBS<U, S> move : returnsBS.get(i % summaries.n))
+				if (ba.HasModel(move.guard, input))
+					summaries.add(next, summaries.stateList.get(i / summaries.n), move.to);
+		return next;
+	}
+
+	private void readCall(S input) throws TimeoutException {
+		// the calls enabled from the current level, each one at most once
+		List<Call<U, S>> enabled = new ArrayList<Call<U, S>>();
+		BitSet seen = new BitSet();
+		BitSet next = new BitSet();
+		for (int i = current.nextSetBit(0); i >= 0; i = current.nextSetBit(i + 1)) {
+			int second = i % summaries.n;
+			if (seen.get(second))
+				continue;
+			seen.set(second);
+			for (Call<U, S> move : calls.get(second))
+				if (ba.HasModel(move.guard, input)) {
+					enabled.add(move);
+					summaries.add(next, move.to, move.to);
+				}
+		}
+		top = new Frame<U, S>(top, input, current, enabled);
+		current = closeUnderEpsilon(next);
+		depth++;
+	}
+
+	private void readReturn(S input) throws TimeoutException {
+		BitSet next = new BitSet();
+		for (Call<U, S> call : top.enabledCalls) {
+			Collection<Integer> callers = summaries.firstsWithSecond(top.callerSummaries, call.from);
+			for (Integer exit : summaries.secondsWithFirst(current, call.to))
+				for (Return<U, S> move : returns.get(summaries.index.get(exit)))
+					if (move.stackState.equals(call.stackState) && ba.HasModel(move.guard, top.callSymbol, input))
+						for (Integer caller : callers)
+							summaries.add(next, caller, move.to);
+		}
+		top = top.parent;
+		current = closeUnderEpsilon(next);
+		depth--;
+	}
+
+	private BitSet closeUnderEpsilon(BitSet pairs) {
+		if (aut.isEpsilonFree)
+			return pairs;
+		BitSet closed = new BitSet();
+		for (int i = pairs.nextSetBit(0); i >= 0; i = pairs.nextSetBit(i + 1)) {
+			Integer first = summaries.stateList.get(i / summaries.n);
+			for (Integer second : epsClosures.get(i % summaries.n))
+				summaries.add(closed, first, second);
+		}
+		return closed;
+	}
+
+	private Collection<Integer> epsClosure(Integer state) {
+		HashSet<Integer> reached = new HashSet<Integer>();
+		LinkedList<Integer> toVisit = new LinkedList<Integer>();
+		reached.add(state);
+		toVisit.add(state);
+		while (!toVisit.isEmpty())
+			for (SVPAEpsilon<U, S> move : aut.getEpsilonsFrom(toVisit.removeFirst()))
+				if (reached.add(move.to))
+					toVisit.add(move.to);
+		return reached;
+	}
+
+	// A pending call: the symbol, the summaries of the enclosing level and the calls it enabled
+	private static class Frame<U, S> {
+		final Frame<U, S> parent;
+		final S callSymbol;
+		final BitSet callerSummaries;
+		final List<Call<U, S>> enabledCalls;
+
+		Frame(Frame<U, S> parent, S callSymbol, BitSet callerSummaries, List<Call<U, S>> enabledCalls) {
+			this.parent = parent;
+			this.callSymbol = callSymbol;
+			this.callerSummaries = callerSummaries;
+			this.enabledCalls = enabledCalls;
+		}
+	}
+}
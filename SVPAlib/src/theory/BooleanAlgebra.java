@@ -157,8 +157,16 @@ public abstract class BooleanAlgebra<P, S> {
 			ArrayList<P> predicates, long timeout) throws TimeoutException {
 		return GetMinterms(predicates, True(), timeout);
 	}
-	
-	private Collection<Pair<P, ArrayList<Integer>>> GetMinterms(
+
+	/**
+	 * Given a set of <code>predicates</code>, returns all the satisfiable
+	 * Boolean combinations that are contained in <code>startPred</code>
+	 * 
+	 * @return a set of pairs (p,{i1,..,in}) where p is and ij is 0 or 1 base on
+	 *         whether pij is used positively or negatively
+	 * @throws TimeoutException 
+	 */
+	public Collection<Pair<P, ArrayList<Integer>>> GetMinterms(
 			ArrayList<P> predicates, P startPred, long timeout) throws TimeoutException {
 		HashSet<Pair<P, ArrayList<Integer>>> minterms = new HashSet<Pair<P, ArrayList<Integer>>>();
 		GetMintermsRec(predicates, 0, startPred, new ArrayList<Integer>(),
@@ -11,34 +11,64 @@ import java.util.Set;
 
 import org.sat4j.specs.TimeoutException;
 
+import theory.cartesian.CachedAlgebra;
 import theory.cartesian.CartesianProduct;
 import utilities.Pair;
 
+/**
+ * ProductAlgebra: the algebra of unions of products of predicates of two algebras. The results of the component
+ * algebras are cached, and the predicates this algebra builds are normalized (see
+ * {@link CartesianProduct#isNormalized()}), so that negation, union and satisfiability work cube by cube instead of
+ * renormalizing every product.
+ */
 public class ProductAlgebra<P1, S1, P2, S2> extends BooleanAlgebra<CartesianProduct<P1, P2>, Pair<S1, S2>> {
 
-	private BooleanAlgebra<P1,S1> ba1;
-	private BooleanAlgebra<P2,S2> ba2;
+	private CachedAlgebra<P1,S1> ba1;
+	private CachedAlgebra<P2,S2> ba2;
 	
 	public ProductAlgebra(BooleanAlgebra<P1,S1> ba1, BooleanAlgebra<P2,S2> ba2) {
-		this.ba1 = ba1;
-		this.ba2 = ba2;
+		this.ba1 = new CachedAlgebra<P1,S1>(ba1);
+		this.ba2 = new CachedAlgebra<P2,S2>(ba2);
 	}
 
 	@Override
 	public CartesianProduct<P1, P2> MkAtom(Pair<S1, S2> s) {
-		return new CartesianProduct<>(ba1.MkAtom(s.first), ba2.MkAtom(s.second));
+		List<Pair<P1, P2>> atom = new ArrayList<Pair<P1, P2>>();
+		atom.add(new Pair<P1, P2>(ba1.MkAtom(s.first), ba2.MkAtom(s.second)));
+		return new CartesianProduct<>(atom, true);
 	}
 
+	/**
+	 * The complement of disjoint cubes (a_i, b_i) is the union of the disjoint cubes (a_i, not b_i) and
+	 * (not (a_1 or ... or a_n), true)
+	 */
 	@Override
-	public CartesianProduct<P1, P2> MkNot(CartesianProduct<P1, P2> p) throws TimeoutException {						
-		ArrayList<CartesianProduct<P1, P2>> conjuncts = new ArrayList<>();
-		for (Pair<P1, P2> pair : p.getProducts()) {
-			List<Pair<P1, P2>> temp = new ArrayList<Pair<P1, P2>>();
-			temp.add(new Pair<P1, P2>(ba1.MkNot(pair.first), ba2.True()));
-			temp.add(new Pair<P1, P2>(ba1.True(), ba2.MkNot(pair.second)));
-			conjuncts.add(new CartesianProduct<P1, P2>(temp));
+	public CartesianProduct<P1, P2> MkNot(CartesianProduct<P1, P2> p) throws TimeoutException {
+		CartesianProduct<P1, P2> cubes = normalized(p);
+		List<Pair<P1, P2>> complement = new ArrayList<Pair<P1, P2>>();
+		P1 covered = ba1.False();
+		for (Pair<P1, P2> cube : cubes.getProducts()) {
+			P2 rest = ba2.MkNot(cube.second);
+			if (ba2.IsSatisfiable(rest))
+				complement.add(new Pair<P1, P2>(cube.first, rest));
+			covered = ba1.MkOr(covered, cube.first);
 		}
-		return MkAnd(conjuncts);
+		P1 uncovered = ba1.MkNot(covered);
+		if (ba1.IsSatisfiable(uncovered))
+			complement.add(new Pair<P1, P2>(uncovered, ba2.True()));
+		return new CartesianProduct<>(complement, true);
+	}
+
+	// p if it is normalized, otherwise a normalized copy
+	private CartesianProduct<P1, P2> normalized(CartesianProduct<P1, P2> p) throws TimeoutException {
+		if (p.isNormalized())
+			return p;
+		List<Pair<P1, P2>> products = new ArrayList<Pair<P1, P2>>();
+		for (Pair<P1, P2> pair : p.getProducts())
+			products.add(new Pair<P1, P2>(pair.first, pair.second));
+		CartesianProduct<P1, P2> copy = new CartesianProduct<>(products);
+		copy.normalize(ba1, ba2);
+		return copy;
 	}
 
 	@Override
@@ -54,10 +84,14 @@ public class ProductAlgebra<P1, S1, P2, S2> extends BooleanAlgebra<CartesianProd
 	public CartesianProduct<P1, P2> MkOr(CartesianProduct<P1, P2> p1, CartesianProduct<P1, P2> p2)
 			throws TimeoutException {
 			
-		ArrayList<Pair<P1, P2>> newProducts = new ArrayList<>(p1.getProducts());
-		newProducts.addAll(p2.getProducts());
-		CartesianProduct<P1, P2> pp= new CartesianProduct<>(newProducts);
-		pp.normalize(ba1, ba2);
+		// the cubes of p2 are inserted into copies of the cubes of p1
+		List<Pair<P1, P2>> cubes = new ArrayList<Pair<P1, P2>>();
+		for (Pair<P1, P2> cube : normalized(p1).getProducts())
+			cubes.add(new Pair<P1, P2>(cube.first, cube.second));
+		for (Pair<P1, P2> cube : normalized(p2).getProducts())
+			CartesianProduct.insert(cubes, cube.first, cube.second, ba1, ba2);
+		CartesianProduct<P1, P2> pp = new CartesianProduct<>(cubes, true);
+		pp.reduce(ba1, ba2);
 		return pp;
 	}
 
@@ -85,12 +119,15 @@ public class ProductAlgebra<P1, S1, P2, S2> extends BooleanAlgebra<CartesianProd
 				}
 			}
 
-		return new CartesianProduct<>(newProducts);
+		// the intersections of disjoint cubes are disjoint
+		return new CartesianProduct<>(newProducts, p1.isNormalized() && p2.isNormalized());
 	}
 
 	@Override
 	public CartesianProduct<P1, P2> True() {
-		return new CartesianProduct<>(ba1.True(),ba2.True());
+		List<Pair<P1, P2>> all = new ArrayList<Pair<P1, P2>>();
+		all.add(new Pair<P1, P2>(ba1.True(), ba2.True()));
+		return new CartesianProduct<>(all, true);
 	}
 
 	@Override
@@ -100,11 +137,13 @@ public class ProductAlgebra<P1, S1, P2, S2> extends BooleanAlgebra<CartesianProd
 
 	@Override
 	public boolean AreEquivalent(CartesianProduct<P1, P2> p1, CartesianProduct<P1, P2> p2) throws TimeoutException {
-		return IsSatisfiable(MkAnd(p1, MkNot(p2))) || IsSatisfiable(MkAnd(MkNot(p1), p2));
+		return !IsSatisfiable(MkAnd(p1, MkNot(p2))) && !IsSatisfiable(MkAnd(MkNot(p1), p2));
 	}
 
 	@Override
 	public boolean IsSatisfiable(CartesianProduct<P1, P2> p1) throws TimeoutException {
+		if (p1.isNormalized())
+			return !p1.getProducts().isEmpty();
 		for(Pair<P1,P2> p: p1.getProducts())
 			if(ba1.IsSatisfiable(p.first) && ba2.IsSatisfiable(p.second))
 				return true;
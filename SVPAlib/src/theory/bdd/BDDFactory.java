@@ -57,7 +57,8 @@ public abstract class BDDFactory {
     /**
      * <p>Initializes a BDD factory of the given type with the given initial
      * node table size and operation cache size.  The type is a string that
-     * can be "buddy", "cudd", "cal", "j", "java", "jdd", "test", "typed", or
+     * can be "buddy", "cudd", "cal", "j", "java", "jdd", "concurrent",
+     * "offheap", "test", "typed", or
      * a name of a class that has an init() method that returns a BDDFactory.
      * If it fails, it falls back to the "java" factory.</p>
      * 
@@ -74,6 +75,10 @@ public abstract class BDDFactory {
                 return MicroFactory.init(nodenum, cachesize);
             if (bddpackage.equals("jdd"))
                 return JDDFactory.init(nodenum, cachesize);
+            if (bddpackage.equals("concurrent"))
+                return ConcurrentFactory.init(nodenum, cachesize);
+            if (bddpackage.equals("offheap"))
+                return OffHeapFactory.init(nodenum, cachesize);
             if (bddpackage.equals("test"))
                 return TestBDDFactory.init(nodenum, cachesize);
         } catch (LinkageError e) {
@@ -283,6 +288,43 @@ public abstract class BDDFactory {
      * <p>Compare to bdd_done.</p>
      */
     public abstract void done();
+
+    /**
+     * <p>Frees every node except the constants and the variables, so that
+     * the factory can be reused for an unrelated computation without
+     * reallocating its node table.  BDD objects created before this call
+     * must not be used after it.  Returns false if the factory does not
+     * support this operation.</p>
+     * 
+     * @return  true if the nodes were freed
+     */
+    public boolean clearNodes() {
+        return false;
+    }
+
+    /**
+     * The token polled by the operations of this factory, or null.
+     */
+    protected Cancellation cancellation;
+
+    /**
+     * <p>Sets the token polled by the following operations of this factory,
+     * or null to go back to the global {@link utilities.Timers}.  An
+     * operation that finds the token cancelled stops and returns null.
+     * Factories that do not poll for timeouts ignore the token.</p>
+     * 
+     * @param cancellation  the token, or null
+     */
+    public void setCancellation(Cancellation cancellation) {
+        this.cancellation = cancellation;
+    }
+
+    /**
+     * <p>Returns the token set with {@link #setCancellation(Cancellation)}.</p>
+     */
+    public Cancellation getCancellation() {
+        return cancellation;
+    }
     
     /**
      * <p>Sets the error condition.  This will cause the BDD package to throw an
@@ -976,7 +1018,7 @@ public abstract class BDDFactory {
      * 
      * <p>Compare to bdd_anodecount.</p>
      */
-    public abstract int nodeCount(Collection/*BDD*/ r);
+    public abstract int nodeCount(Collection<BDD> r);
 
     /**
      * <p>Get the number of allocated nodes.  This includes both dead and active
@@ -0,0 +1,95 @@
+package theory.bdd;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>A pool of initialized BDD factories with the same variables.  A
+ * factory is confined to the thread that acquired it until it is released,
+ * so threads never share a node table, and a released factory is cleared
+ * with {@link BDDFactory#clearNodes()} and handed to the next thread
+ * instead of allocating a new node table.  Factories that cannot be
+ * cleared are discarded on release.</p>
+ *
+ * <p>The pool itself is thread safe.</p>
+ */
+public class BDDFactoryPool {
+
+    private final String bddpackage;
+    private final int varNum;
+    private final int nodeNum;
+    private final int cacheSize;
+
+    private final ConcurrentLinkedQueue<BDDFactory> idle = new ConcurrentLinkedQueue<BDDFactory>();
+    private final AtomicInteger created = new AtomicInteger();
+
+    /**
+     * <p>A pool of {@link JFactory} factories with <code>varNum</code>
+     * variables, the given initial node table size and cache size.</p>
+     */
+    public BDDFactoryPool(int varNum, int nodeNum, int cacheSize) {
+        this("java", varNum, nodeNum, cacheSize);
+    }
+
+    /**
+     * <p>A pool of factories of the given package, see
+     * {@link BDDFactory#init(String, int, int)}.</p>
+     */
+    public BDDFactoryPool(String bddpackage, int varNum, int nodeNum, int cacheSize) {
+        this.bddpackage = bddpackage;
+        this.varNum = varNum;
+        this.nodeNum = nodeNum;
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * <p>Returns a factory that only the calling thread may use until it is
+     * released.</p>
+     */
+    public BDDFactory acquire() {
+        BDDFactory factory = idle.poll();
+        if (factory == null) {
+            factory = BDDFactory.init(bddpackage, nodeNum, cacheSize);
+            factory.setVarNum(varNum);
+            created.incrementAndGet();
+        }
+        return factory;
+    }
+
+    /**
+     * <p>Returns a factory whose operations poll <code>cancellation</code>.</p>
+     */
+    public BDDFactory acquire(Cancellation cancellation) {
+        BDDFactory factory = acquire();
+        factory.setCancellation(cancellation);
+        return factory;
+    }
+
+    /**
+     * <p>Gives back a factory obtained from {@link #acquire()}.  The BDDs
+     * built with it must not be used after this call.</p>
+     */
+    public void release(BDDFactory factory) {
+        factory.setCancellation(null);
+        if (factory.clearNodes())
+            idle.offer(factory);
+        else
+            factory.done();
+    }
+
+    /**
+     * <p>The number of factories created so far.</p>
+     */
+    public int getCreatedCount() {
+        return created.get();
+    }
+
+    /**
+     * <p>Frees the factories that are not in use.</p>
+     */
+    public void clear() {
+        BDDFactory factory;
+        while ((factory = idle.poll()) != null)
+            factory.done();
+    }
+}
@@ -0,0 +1,69 @@
+package theory.bdd;
+
+import org.sat4j.specs.TimeoutException;
+
+/**
+ * A token that stops the BDD operations of the factories it is given to, see
+ * {@link BDDFactory#setCancellation(Cancellation)}. A token is cancelled explicitly with {@link #cancel()}, possibly
+ * from another thread, or when its deadline passes. Unlike {@link utilities.Timers}, a token only affects the
+ * factories it is given to, so concurrent queries can be cancelled independently.
+ */
+public class Cancellation {
+
+	// the clock is read once every CLOCK_PERIOD polls
+	private static final int CLOCK_PERIOD = 1024;
+
+	private final long deadline;
+	private volatile boolean cancelled = false;
+	private int polls = 0;
+
+	/**
+	 * A token without deadline, cancelled only by {@link #cancel()}
+	 */
+	public Cancellation() {
+		this.deadline = Long.MAX_VALUE;
+	}
+
+	private Cancellation(long deadline) {
+		this.deadline = deadline;
+	}
+
+	/**
+	 * A token that is cancelled <code>timeout</code> milliseconds from now
+	 */
+	public static Cancellation withTimeout(long timeout) {
+		if (timeout >= Long.MAX_VALUE / 1000000L)
+			return new Cancellation();
+		return new Cancellation(System.nanoTime() + timeout * 1000000L);
+	}
+
+	/**
+	 * Cancels the operations that poll this token
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Whether the token was cancelled or its deadline has passed
+	 */
+	public boolean isCancelled() {
+		if (cancelled)
+			return true;
+		if (deadline == Long.MAX_VALUE || ++polls % CLOCK_PERIOD != 0)
+			return false;
+		if (System.nanoTime() - deadline > 0)
+			cancelled = true;
+		return cancelled;
+	}
+
+	/**
+	 * Throws a {@link TimeoutException} if the token is cancelled
+	 */
+	public void check() throws TimeoutException {
+		if (cancelled || (deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0)) {
+			cancelled = true;
+			throw new TimeoutException("cancelled");
+		}
+	}
+}
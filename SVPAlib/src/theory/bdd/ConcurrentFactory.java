@@ -0,0 +1,485 @@
+package theory.bdd;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <p>A BDD factory that can be shared by several threads.  The unique node
+ * table and the operation cache are open-addressed arrays updated with
+ * compare-and-set, so threads build nodes without taking locks, and the
+ * recursive <code>and</code>, <code>or</code>, <code>exist</code> and
+ * <code>relprod</code> operations split the two cofactors of their first
+ * levels into fork-join tasks.</p>
+ *
+ * <p>Nodes are reclaimed by a mark-and-sweep collection that starts when an
+ * operation runs out of nodes.  The operation is abandoned, the collection
+ * waits for the operations of the other threads to end, marks the nodes
+ * reachable from the live BDD objects and from the variables, and the
+ * operation is restarted.  As in {@link JFactory} a BDD object is live until
+ * it is freed.</p>
+ *
+ * <p>The variable order is fixed: the level of a variable is its index and
+ * the reordering operations throw {@link BDDException}.</p>
+ */
+public class ConcurrentFactory extends NodeTableFactory {
+
+    public static final String REVISION = "$Revision: 1.0 $";
+
+    public String getVersion() {
+        return "ConcurrentFactory "+REVISION.substring(11, REVISION.length()-2);
+    }
+
+    /**
+     * <p>Creates a factory with the given initial node table size and cache
+     * size.  Its operations use as many threads as there are
+     * processors.</p>
+     */
+    public static BDDFactory init(int nodenum, int cachesize) {
+        BDDFactory f = new ConcurrentFactory();
+        f.initialize(nodenum, cachesize);
+        return f;
+    }
+
+    private ConcurrentFactory() { }
+
+    // the unique table has four buckets per node, indexed by an int
+    static final int MAX_NODES = 1 << 28;
+
+    // a cache key that is being written
+    static final long LOCKED = -1L;
+
+    // the longs of a cache entry: the operation and first operand, the
+    // other two operands, and the result
+    static final int ENTRY = 3;
+
+    // the nodes, the constants are 0 and 1
+    private int[] level;
+    private int[] low;
+    private int[] high;
+    private AtomicIntegerArray refs;
+
+    // the unique table, a bucket holds the index of a node or 0
+    private AtomicIntegerArray buckets;
+
+    // entries of ENTRY longs, see lookup() and store()
+    private AtomicLongArray cache;
+
+    // nodes are taken from freeList, then from top
+    private final AtomicInteger top = new AtomicInteger();
+    private int[] freeList;
+    private final AtomicInteger freeNext = new AtomicInteger();
+
+    // operations hold the read lock, collections the write lock
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private ForkJoinPool pool;
+    private int parallelism;
+
+    int level(int f) {
+        return level[f];
+    }
+
+    int low(int f) {
+        return low[f];
+    }
+
+    int high(int f) {
+        return high[f];
+    }
+
+    void ref(int f) {
+        refs.incrementAndGet(f);
+    }
+
+    void deref(int f) {
+        refs.decrementAndGet(f);
+    }
+
+    boolean referenced(int f) {
+        return refs.get(f) > 0;
+    }
+
+    int used() {
+        return Math.min(top.get(), level.length);
+    }
+
+    // operations hold the read lock
+    void enter() {
+        lock.readLock().lock();
+    }
+
+    void exit() {
+        lock.readLock().unlock();
+    }
+
+    /**
+     * Runs a parallel operation in the worker pool.
+     */
+    int invoke(Operation op) {
+        if (op.parallel && parallelDepth > 0) {
+            op.reinitialize();
+            return pool.invoke(op);
+        }
+        return super.invoke(op);
+    }
+
+    /**** UNIQUE TABLE ****/
+
+    private int allocate(int lev, int lo, int hi) {
+        int id;
+        int i = freeNext.getAndIncrement();
+        if (i < freeList.length)
+            id = freeList[i];
+        else {
+            id = top.getAndIncrement();
+            if (id >= level.length)
+                throw TABLE_FULL;
+        }
+        level[id] = lev;
+        low[id] = lo;
+        high[id] = hi;
+        return id;
+    }
+
+    /**
+     * The node with the given level and children.  A new node is written
+     * before it is published in the table, and a node allocated by a thread
+     * that loses the race for a bucket is left to the next collection.
+     */
+    int mk(int lev, int lo, int hi) {
+        if (lo == hi)
+            return lo;
+        AtomicIntegerArray table = buckets;
+        int mask = table.length() - 1;
+        int h = hash(lev, lo, hi) & mask;
+        int slot = -1;
+        for (int probes = 0; probes <= mask; ) {
+            int id = table.get(h);
+            if (id == 0) {
+                if (slot < 0)
+                    slot = allocate(lev, lo, hi);
+                if (table.compareAndSet(h, 0, slot))
+                    return slot;
+                continue;
+            }
+            if (level[id] == lev && low[id] == lo && high[id] == hi)
+                return id;
+            h = (h + 1) & mask;
+            probes++;
+        }
+        throw TABLE_FULL;
+    }
+
+    /**** OPERATION CACHE ****/
+
+    private static long key(int op, int a) {
+        return ((long) op << 32) | (a & 0xFFFFFFFFL);
+    }
+
+    private static long operands(int b, int c) {
+        return ((long) b << 32) | (c & 0xFFFFFFFFL);
+    }
+
+    private static int entry(int op, int a, int b, int c, AtomicLongArray entries) {
+        long h = (key(op, a) * 31 + operands(b, c)) * 0x9E3779B97F4A7C15L;
+        return ((int) (h >>> 32) & (entries.length() / ENTRY - 1)) * ENTRY;
+    }
+
+    /**
+     * The cached result of <code>op</code> on <code>a</code>,
+     * <code>b</code> and <code>c</code>, or -1.  The entry is locked while
+     * it is read, so that an entry written concurrently is not taken.
+     */
+    int lookup(int op, int a, int b, int c) {
+        long key = key(op, a);
+        AtomicLongArray entries = cache;
+        int i = entry(op, a, b, c, entries);
+        if (!entries.compareAndSet(i, key, LOCKED))
+            return -1;
+        long operands = entries.get(i + 1);
+        long value = entries.get(i + 2);
+        entries.set(i, key);
+        return operands == operands(b, c) ? (int) value : -1;
+    }
+
+    /**
+     * Caches <code>res</code> unless another thread is using the entry,
+     * and returns it.
+     */
+    int store(int op, int a, int b, int c, int res) {
+        AtomicLongArray entries = cache;
+        int i = entry(op, a, b, c, entries);
+        long old = entries.get(i);
+        if (old == LOCKED || !entries.compareAndSet(i, old, LOCKED))
+            return res;
+        entries.set(i + 1, operands(b, c));
+        entries.set(i + 2, res);
+        entries.set(i, key(op, a));
+        return res;
+    }
+
+    /**** GARBAGE COLLECTION ****/
+
+    /**
+     * Collects the nodes unless another thread did so after
+     * <code>epoch</code>, and grows the node table if fewer than
+     * <code>minFreeNodes</code> nodes were freed or if <code>grow</code>.
+     */
+    void collect(int epoch, boolean grow) {
+        lock.writeLock().lock();
+        try {
+            if (gcCount == epoch)
+                collect(grow);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // the caller holds the write lock
+    private void collect(boolean grow) {
+        int used = Math.min(top.get(), level.length);
+        boolean[] marked = new boolean[used];
+        int[] stack = new int[used];
+        for (int i = 2; i < used; i++)
+            if (refs.get(i) > 0)
+                mark(i, marked, stack);
+        for (int v = 0; v < varnum; v++) {
+            mark(vars[v], marked, stack);
+            mark(nvars[v], marked, stack);
+        }
+
+        int free = 0;
+        for (int i = 2; i < used; i++)
+            if (!marked[i])
+                free++;
+        int[] freed = new int[free];
+        free = 0;
+        for (int i = 2; i < used; i++)
+            if (!marked[i])
+                freed[free++] = i;
+
+        if (grow || free + level.length - used < minFreeNodes * level.length)
+            grow();
+
+        buckets = new AtomicIntegerArray(tableSize(level.length));
+        for (int i = 2; i < used; i++)
+            if (marked[i])
+                insert(i);
+        cache = new AtomicLongArray(cache.length());
+        freeList = freed;
+        freeNext.set(0);
+        top.set(used);
+        gcCount++;
+    }
+
+    private void mark(int root, boolean[] marked, int[] stack) {
+        if (root < 2 || marked[root])
+            return;
+        int sp = 0;
+        marked[root] = true;
+        stack[sp++] = root;
+        while (sp > 0) {
+            int f = stack[--sp];
+            if (low[f] >= 2 && !marked[low[f]]) {
+                marked[low[f]] = true;
+                stack[sp++] = low[f];
+            }
+            if (high[f] >= 2 && !marked[high[f]]) {
+                marked[high[f]] = true;
+                stack[sp++] = high[f];
+            }
+        }
+    }
+
+    // adds a live node to a table being rebuilt, the caller holds the write lock
+    private void insert(int id) {
+        int mask = buckets.length() - 1;
+        int h = hash(level[id], low[id], high[id]) & mask;
+        while (buckets.get(h) != 0)
+            h = (h + 1) & mask;
+        buckets.set(h, id);
+    }
+
+    private static int tableSize(int capacity) {
+        return Integer.highestOneBit(Math.max(capacity, 8) - 1) << 2;
+    }
+
+    // the caller holds the write lock and rebuilds the unique table
+    private void grow() {
+        resize(grownCapacity(level.length, MAX_NODES));
+    }
+
+    private void resize(int capacity) {
+        level = Arrays.copyOf(level, capacity);
+        low = Arrays.copyOf(low, capacity);
+        high = Arrays.copyOf(high, capacity);
+        AtomicIntegerArray counts = new AtomicIntegerArray(capacity);
+        for (int i = 0; i < refs.length(); i++)
+            counts.set(i, refs.get(i));
+        refs = counts;
+        if (cacheRatio > 0)
+            cache = new AtomicLongArray(ENTRY * cacheEntries((int) (capacity * cacheRatio)));
+    }
+
+    /**** FACTORY ****/
+
+    protected void initialize(int nodenum, int cachesize) {
+        int capacity = Math.min(Math.max(nodenum, 16), MAX_NODES);
+        level = new int[capacity];
+        low = new int[capacity];
+        high = new int[capacity];
+        refs = new AtomicIntegerArray(capacity);
+        level[0] = level[1] = TERMINAL_LEVEL;
+        high[1] = low[1] = 1;
+        buckets = new AtomicIntegerArray(tableSize(capacity));
+        cache = new AtomicLongArray(ENTRY * cacheEntries(cachesize));
+        freeList = new int[0];
+        freeNext.set(0);
+        top.set(2);
+        varnum = 0;
+        vars = new int[0];
+        nvars = new int[0];
+        setParallelism(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * <p>Sets the number of threads that run the cofactors of a single
+     * <code>and</code>, <code>or</code>, <code>exist</code> or
+     * <code>relprod</code> operation.  With one thread the operations run in
+     * the calling thread.</p>
+     *
+     * @param threads  the number of threads
+     * @return the previous number of threads
+     */
+    public int setParallelism(int threads) {
+        int old = parallelism;
+        lock.writeLock().lock();
+        try {
+            if (pool != null)
+                pool.shutdown();
+            parallelism = Math.max(threads, 1);
+            pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+            // split the first levels into about 8 tasks per thread
+            parallelDepth = parallelism > 1 ? 35 - Integer.numberOfLeadingZeros(parallelism - 1) : 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return old;
+    }
+
+    /**
+     * <p>Returns the number of threads of a single operation.</p>
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public boolean isInitialized() {
+        return level != null;
+    }
+
+    public void done() {
+        lock.writeLock().lock();
+        try {
+            if (pool != null)
+                pool.shutdown();
+            pool = null;
+            parallelism = 0;
+            parallelDepth = 0;
+            level = low = high = null;
+            refs = null;
+            buckets = null;
+            cache = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean clearNodes() {
+        lock.writeLock().lock();
+        try {
+            for (int i = 2; i < refs.length(); i++)
+                refs.set(i, 0);
+            collect(false);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int setNodeTableSize(int n) {
+        lock.writeLock().lock();
+        try {
+            int old = level.length;
+            if (n > old) {
+                resize(Math.min(n, MAX_NODES));
+                collect(false);
+            }
+            return old;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int setCacheSize(int n) {
+        lock.writeLock().lock();
+        try {
+            int old = cache.length() / ENTRY;
+            cache = new AtomicLongArray(ENTRY * cacheEntries(n));
+            return old;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int setVarNum(int num) {
+        lock.writeLock().lock();
+        try {
+            int old = varnum;
+            if (num < varnum)
+                throw new BDDException("Trying to decrease the number of variables");
+            if (num == varnum)
+                return old;
+            // the variable nodes must fit without a collection
+            while (level.length - Math.min(top.get(), level.length) < 2 * (num - varnum) + 2)
+                collect(true);
+            vars = Arrays.copyOf(vars, num);
+            nvars = Arrays.copyOf(nvars, num);
+            for (int v = varnum; v < num; v++) {
+                vars[v] = mk(v, 0, 1);
+                nvars[v] = mk(v, 1, 0);
+            }
+            varnum = num;
+            return old;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int getNodeTableSize() {
+        return level.length;
+    }
+
+    public int getNodeNum() {
+        lock.readLock().lock();
+        try {
+            int used = Math.min(top.get(), level.length);
+            return used - 2 - Math.max(freeList.length - freeNext.get(), 0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getCacheSize() {
+        return cache.length() / ENTRY;
+    }
+
+    public void printStat() {
+        super.printStat();
+        System.out.println("Threads:         "+getParallelism());
+    }
+}
@@ -15,9 +15,13 @@ import java.math.BigInteger;
 /**
  * FindBestOrder
  * 
+ * @deprecated  trials are aborted with <tt>Thread.stop</tt>; use
+ *              {@link ReorderPolicy#searchOrder(BDDFactory, java.util.Collection, long)},
+ *              which stops cooperatively.
  * @author jwhaley
  * @version $Id: FindBestOrder.java,v 1.1 2004/10/16 02:58:57 joewhaley Exp $
  */
+@Deprecated
 public class FindBestOrder {
 
     static BDDFactory bdd = null;
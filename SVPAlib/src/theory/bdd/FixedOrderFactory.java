@@ -0,0 +1,78 @@
+package theory.bdd;
+
+/**
+ * <p>The variable order operations of a factory whose order is fixed: the
+ * level of a variable is its index, so the order cannot be changed and a
+ * variable cannot be duplicated at the next level.  These operations throw
+ * {@link BDDException}, and the variable blocks are ignored.</p>
+ */
+public abstract class FixedOrderFactory extends BDDFactory {
+
+    public int level2Var(int level) {
+        return level;
+    }
+
+    public int var2Level(int var) {
+        return var;
+    }
+
+    public void reorder(ReorderMethod m) {
+        throw new BDDException();
+    }
+
+    public void autoReorder(ReorderMethod method) {
+        throw new BDDException();
+    }
+
+    public void autoReorder(ReorderMethod method, int max) {
+        throw new BDDException();
+    }
+
+    public ReorderMethod getReorderMethod() {
+        return REORDER_NONE;
+    }
+
+    public int getReorderTimes() {
+        return 0;
+    }
+
+    public void disableReorder() { }
+
+    public void enableReorder() { }
+
+    public int reorderVerbose(int v) {
+        return 0;
+    }
+
+    public int reorderGain() {
+        return 0;
+    }
+
+    public void setVarOrder(int[] neworder) {
+        for (int i = 0; i < neworder.length; i++)
+            if (neworder[i] != i)
+                throw new BDDException();
+    }
+
+    public void swapVar(int v1, int v2) {
+        throw new BDDException();
+    }
+
+    public int duplicateVar(int var) {
+        throw new BDDException();
+    }
+
+    public void addVarBlock(BDD var, boolean fixed) { }
+
+    public void addVarBlock(int first, int last, boolean fixed) { }
+
+    public void varBlockAll() { }
+
+    public void clearVarBlocks() { }
+
+    public void printOrder() {
+        for (int v = 0; v < varNum(); v++)
+            System.out.print(v+" ");
+        System.out.println();
+    }
+}
@@ -707,6 +707,7 @@ public class JFactory extends BDDFactory {
     int cachesize; /* Size of the operator caches */
     long gbcclock; /* Clock ticks used in GBC */
     int usednodes_nextreorder; /* When to do reorder next time */
+    int reordergrowth = 200; /* Used nodes, in percent of the last reorder, before the next */
 
     static final int BDD_MEMORY = (-1); /* Out of memory */
     static final int BDD_VAR = (-2); /* Unknown variable */
@@ -979,7 +980,7 @@ public class JFactory extends BDDFactory {
     }
 
     int not_rec(int r) throws TimeoutException {
-    	 if(Timers.fullTO())
+    	 if(isCancelled())
          	throw new TimeoutException("timeout");
     	
         BddCacheDataI entry;
@@ -1051,6 +1052,9 @@ public class JFactory extends BDDFactory {
         BddCacheDataI entry;
         int res;
 
+        if(isCancelled())
+        	throw new TimeoutException("timeout");
+
         if (ISONE(f))
             return g;
         if (ISZERO(f))
@@ -1342,7 +1346,7 @@ public class JFactory extends BDDFactory {
         BddCacheDataI entry;
         int res;
 
-        if(Timers.fullTO())
+        if(isCancelled())
         	throw new TimeoutException("timeout");
         
         if (l == r)
@@ -2941,6 +2945,24 @@ public class JFactory extends BDDFactory {
         return size;
     }
 
+    // The token of the caller if there is one, the global timer otherwise
+    private boolean isCancelled() {
+        return cancellation != null ? cancellation.isCancelled() : Timers.fullTO();
+    }
+
+    /* (non-Javadoc)
+     * @see net.sf.javabdd.BDDFactory#clearNodes()
+     */
+    public boolean clearNodes() {
+        // the variable nodes have the maximal reference count and survive
+        for (int n = 2; n < bddnodesize; n++)
+            if (LOW(n) != INVALID_BDD && (bddnodes[n*__node_size + offset__refcou_and_level] & REF_MASK) != REF_MASK)
+                CLEARREF(n);
+        bddrefstacktop = 0;
+        bdd_gbc();
+        return true;
+    }
+
     void bdd_gbc() {
         int r;
         int n;
@@ -3777,8 +3799,10 @@ public class JFactory extends BDDFactory {
     void bdd_checkreorder() {
         bdd_reorder_auto();
 
-        /* Do not reorder before twice as many nodes have been used */
-        usednodes_nextreorder = 2 * (bddnodesize - bddfreenum);
+        /* Do not reorder before reordergrowth percent as many nodes have
+         * been used, twice as many by default */
+        usednodes_nextreorder =
+            (int) Math.min(Integer.MAX_VALUE, (long) (bddnodesize - bddfreenum) * reordergrowth / 100);
 
         /* And if very little was gained this time (< 20%) then wait until
          * even more nodes (upto twice as many again) have been used */
@@ -3788,6 +3812,18 @@ public class JFactory extends BDDFactory {
                 / 20;
     }
 
+    /**
+     * <p>Automatic reordering starts when <code>usednodes</code> nodes are in
+     * use and, after every reordering, when the number of nodes in use grows
+     * to <code>growth</code> percent of what it was after the reordering.</p>
+     */
+    void setReorderThreshold(int usednodes, int growth) {
+        if (usednodes < 0 || growth <= 100)
+            throw new BDDException("invalid reorder threshold");
+        usednodes_nextreorder = usednodes;
+        reordergrowth = growth;
+    }
+
     boolean bdd_reorder_ready() {
         if ((bddreordermethod == BDD_REORDER_NONE)
             || (vartree == null)
@@ -4353,6 +4389,7 @@ public class JFactory extends BDDFactory {
             int v;
 
             /* Accumulate number of nodes for each block */
+            p[n] = new sizePair();
             p[n].val = 0;
             for (v = dis.first; v <= dis.last; v++)
                 p[n].val -= levels[v].nodenum;
@@ -6598,6 +6635,7 @@ public class JFactory extends BDDFactory {
         INSTANCE.cachesize = this.cachesize;
         INSTANCE.gbcclock = this.gbcclock;
         INSTANCE.usednodes_nextreorder = this.usednodes_nextreorder;
+        INSTANCE.reordergrowth = this.reordergrowth;
         
         INSTANCE.bddrefstacktop = this.bddrefstacktop;
         INSTANCE.bddresized = this.bddresized;
@@ -0,0 +1,1257 @@
+package theory.bdd;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import utilities.Timers;
+
+/**
+ * <p>The operations of a factory whose nodes are integer indices into a
+ * node table, with the constants at 0 and 1, and whose variable order is
+ * fixed.  A subclass stores the nodes and reads them through
+ * {@link #level(int)}, {@link #low(int)} and {@link #high(int)}, builds
+ * them with {@link #mk(int, int, int)}, caches the results with
+ * {@link #lookup(int, int, int, int)} and
+ * {@link #store(int, int, int, int, int)}, and counts the references of
+ * the BDD objects.</p>
+ *
+ * <p>An operation that finds no free node throws {@link #TABLE_FULL}; it is
+ * abandoned, {@link #collect(int, boolean)} reclaims the nodes and the
+ * operation is restarted.  The nodes are read between {@link #enter()} and
+ * {@link #exit()}, which a subclass shared by several threads uses to
+ * exclude its collections.  The recursions of <code>apply</code>,
+ * <code>exist</code> and <code>relprod</code> split their cofactors into
+ * fork-join tasks above <code>parallelDepth</code>.</p>
+ */
+abstract class NodeTableFactory extends FixedOrderFactory {
+
+    // the level of the constants, below every variable
+    static final int TERMINAL_LEVEL = Integer.MAX_VALUE;
+
+    // operation codes of the cache, the binary operations use OP_APPLY + id
+    static final int OP_NOT = 1;
+    static final int OP_APPLY = 2;
+    static final int OP_ITE = 12;
+    static final int OP_QUANT = 13;
+    static final int OP_RELPROD = 14;
+    static final int OP_RESTRICT = 15;
+    static final int OP_CONSTRAIN = 16;
+    static final int OP_SIMPLIFY = 17;
+    static final int OP_REPLACE = 18;
+
+    static final int AND = 0;
+    static final int XOR = 1;
+    static final int OR = 2;
+
+    // the value of every BDDOp on the constants l and r, at index (l << 1) | r
+    static final int[][] TRUTH = {
+        { 0, 0, 0, 1 }, // and
+        { 0, 1, 1, 0 }, // xor
+        { 0, 1, 1, 1 }, // or
+        { 1, 1, 1, 0 }, // nand
+        { 1, 0, 0, 0 }, // nor
+        { 1, 1, 0, 1 }, // imp
+        { 1, 0, 0, 1 }, // biimp
+        { 0, 0, 1, 0 }, // diff
+        { 0, 1, 0, 0 }, // less
+        { 1, 0, 1, 1 }, // invimp
+    };
+
+    static final boolean[] COMMUTATIVE = {
+        true, true, true, true, true, false, true, false, false, false
+    };
+
+    /**
+     * <p>Thrown by an operation that finds no free node, after which the
+     * nodes are collected and the operation restarted.</p>
+     */
+    static final class TableFull extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private TableFull() { super(null, null, false, false); }
+    }
+
+    /**
+     * <p>Thrown by an operation whose cancellation token is cancelled.</p>
+     */
+    static final class Cancelled extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private Cancelled() { super(null, null, false, false); }
+    }
+
+    static final TableFull TABLE_FULL = new TableFull();
+    static final Cancelled CANCELLED = new Cancelled();
+
+    int varnum;
+    int[] vars;
+    int[] nvars;
+
+    int gcCount;
+
+    // the recursions above this depth fork their cofactors
+    int parallelDepth;
+
+    private final AtomicInteger pairings = new AtomicInteger();
+
+    int maxNodeNum = 0;
+    double minFreeNodes = 0.20;
+    int maxIncrease = 50000000;
+    double increaseFactor = 2;
+    double cacheRatio = 0;
+
+    /**** NODE TABLE ****/
+
+    abstract int level(int f);
+
+    abstract int low(int f);
+
+    abstract int high(int f);
+
+    /**
+     * The node with the given level and children, or <code>lo</code> if
+     * they are equal.  Throws {@link #TABLE_FULL} if there is no free
+     * node.
+     */
+    abstract int mk(int lev, int lo, int hi);
+
+    /**
+     * The cached result of <code>op</code> on <code>a</code>,
+     * <code>b</code> and <code>c</code>, or -1.
+     */
+    abstract int lookup(int op, int a, int b, int c);
+
+    /**
+     * Caches <code>res</code> as the result of <code>op</code> on
+     * <code>a</code>, <code>b</code> and <code>c</code>, and returns it.
+     */
+    abstract int store(int op, int a, int b, int c, int res);
+
+    // counts a reference of a BDD object to f
+    abstract void ref(int f);
+
+    abstract void deref(int f);
+
+    // whether a BDD object refers to f
+    abstract boolean referenced(int f);
+
+    // the nodes are below this index
+    abstract int used();
+
+    /**
+     * Reclaims the nodes unless they were collected after
+     * <code>epoch</code>, and grows the node table if too few were freed
+     * or if <code>grow</code>.
+     */
+    abstract void collect(int epoch, boolean grow);
+
+    // brackets the reads of the nodes
+    void enter() { }
+
+    void exit() { }
+
+    /**
+     * Runs <code>op</code>, between {@link #enter()} and {@link #exit()}.
+     */
+    int invoke(Operation op) {
+        return op.run(parallelDepth);
+    }
+
+    static int hash(int lev, int lo, int hi) {
+        int h = lev * 0x9E3779B1 + lo * 0x85EBCA6B + hi * 0xC2B2AE35;
+        return h ^ (h >>> 15);
+    }
+
+    static int cacheEntries(int size) {
+        return Integer.highestOneBit(Math.max(size, 8) - 1) << 1;
+    }
+
+    /**
+     * The size the node table grows to from <code>capacity</code>, at
+     * most <code>maxNodes</code>.
+     */
+    int grownCapacity(int capacity, int maxNodes) {
+        long size = (long) (capacity * increaseFactor);
+        if (maxIncrease > 0)
+            size = Math.min(size, (long) capacity + maxIncrease);
+        if (maxNodeNum > 0)
+            size = Math.min(size, maxNodeNum);
+        size = Math.min(size, maxNodes);
+        if (size <= capacity)
+            throw new BDDException("BDD node table full");
+        return (int) size;
+    }
+
+    /**** BDD OBJECTS ****/
+
+    /**
+     * Wrapper for the index of a node.
+     */
+    class bdd extends BDD {
+        int _index;
+
+        static final int INVALID_BDD = -1;
+
+        // the caller is between enter() and exit() or holds an object of the node
+        bdd(int index) {
+            this._index = index;
+            ref(index);
+        }
+
+        public BDDFactory getFactory() {
+            return NodeTableFactory.this;
+        }
+
+        public boolean isZero() {
+            return _index == 0;
+        }
+
+        public boolean isOne() {
+            return _index == 1;
+        }
+
+        public int var() {
+            enter();
+            try {
+                return NodeTableFactory.this.level(_index);
+            } finally {
+                exit();
+            }
+        }
+
+        public BDD high() {
+            enter();
+            try {
+                return new bdd(NodeTableFactory.this.high(_index));
+            } finally {
+                exit();
+            }
+        }
+
+        public BDD low() {
+            enter();
+            try {
+                return new bdd(NodeTableFactory.this.low(_index));
+            } finally {
+                exit();
+            }
+        }
+
+        public BDD id() {
+            enter();
+            try {
+                return new bdd(_index);
+            } finally {
+                exit();
+            }
+        }
+
+        public BDD not() {
+            final int x = _index;
+            return perform(new Operation(false) {
+                int run(int depth) {
+                    return notRec(x);
+                }
+            }, null);
+        }
+
+        public BDD ite(BDD thenBDD, BDD elseBDD) {
+            final int x = _index;
+            final int y = ((bdd) thenBDD)._index;
+            final int z = ((bdd) elseBDD)._index;
+            return perform(new Operation(false) {
+                int run(int depth) {
+                    return iteRec(x, y, z);
+                }
+            }, null);
+        }
+
+        public BDD relprod(BDD that, BDD var) {
+            final int x = _index;
+            final int y = ((bdd) that)._index;
+            final int z = ((bdd) var)._index;
+            return perform(new Operation(true) {
+                int run(int depth) {
+                    return relprodRec(x, y, z, depth);
+                }
+            }, null);
+        }
+
+        public BDD compose(BDD g, int var) {
+            final int x = _index;
+            final int y = ((bdd) g)._index;
+            final int v = var;
+            return perform(new Operation(false) {
+                int run(int depth) {
+                    return iteRec(y, restrictRec(x, vars[v]), restrictRec(x, nvars[v]));
+                }
+            }, null);
+        }
+
+        public BDD veccompose(BDDPairing pair) {
+            return replace(pair);
+        }
+
+        public BDD constrain(BDD that) {
+            final int x = _index;
+            final int y = ((bdd) that)._index;
+            return perform(new Operation(false) {
+                int run(int depth) {
+                    return constrainRec(x, y);
+                }
+            }, null);
+        }
+
+        public BDD exist(BDD var) {
+            return quant(var, OR);
+        }
+
+        public BDD forAll(BDD var) {
+            return quant(var, AND);
+        }
+
+        public BDD unique(BDD var) {
+            return quant(var, XOR);
+        }
+
+        private BDD quant(BDD var, final int op) {
+            final int x = _index;
+            final int y = ((bdd) var)._index;
+            return perform(new Operation(true) {
+                int run(int depth) {
+                    return quantRec(x, y, op, depth);
+                }
+            }, null);
+        }
+
+        public BDD restrict(BDD var) {
+            return restrict(var, null);
+        }
+
+        public BDD restrictWith(BDD var) {
+            BDD res = restrict(var, this);
+            if (this != var)
+                var.free();
+            return res;
+        }
+
+        private BDD restrict(BDD var, bdd target) {
+            final int x = _index;
+            final int y = ((bdd) var)._index;
+            return perform(new Operation(false) {
+                int run(int depth) {
+                    return restrictRec(x, y);
+                }
+            }, target);
+        }
+
+        public BDD simplify(BDD d) {
+            final int x = _index;
+            final int y = ((bdd) d)._index;
+            return perform(new Operation(false) {
+                int run(int depth) {
+                    return simplifyRec(x, y);
+                }
+            }, null);
+        }
+
+        public BDD support() {
+            final int x = _index;
+            return perform(new Operation(false) {
+                int run(int depth) {
+                    boolean[] used = new boolean[varnum];
+                    markSupport(x, used, new BitSet());
+                    int res = 1;
+                    for (int v = varnum - 1; v >= 0; v--)
+                        if (used[v])
+                            res = mk(v, 0, res);
+                    return res;
+                }
+            }, null);
+        }
+
+        public BDD apply(BDD that, BDDFactory.BDDOp opr) {
+            return apply(that, opr, null);
+        }
+
+        public BDD applyWith(BDD that, BDDFactory.BDDOp opr) {
+            BDD res = apply(that, opr, this);
+            if (this != that)
+                that.free();
+            return res;
+        }
+
+        private BDD apply(BDD that, BDDFactory.BDDOp opr, bdd target) {
+            final int x = _index;
+            final int y = ((bdd) that)._index;
+            final int op = opr.id;
+            return perform(new Operation(true) {
+                int run(int depth) {
+                    return applyRec(op, x, y, depth);
+                }
+            }, target);
+        }
+
+        public BDD applyAll(BDD that, BDDFactory.BDDOp opr, BDD var) {
+            return applyQuant(that, opr, var, AND);
+        }
+
+        public BDD applyEx(BDD that, BDDFactory.BDDOp opr, BDD var) {
+            if (opr == BDDFactory.and)
+                return relprod(that, var);
+            return applyQuant(that, opr, var, OR);
+        }
+
+        public BDD applyUni(BDD that, BDDFactory.BDDOp opr, BDD var) {
+            return applyQuant(that, opr, var, XOR);
+        }
+
+        private BDD applyQuant(BDD that, BDDFactory.BDDOp opr, BDD var, final int quantOp) {
+            final int x = _index;
+            final int y = ((bdd) that)._index;
+            final int z = ((bdd) var)._index;
+            final int op = opr.id;
+            return perform(new Operation(true) {
+                int run(int depth) {
+                    return quantRec(applyRec(op, x, y, depth), z, quantOp, depth);
+                }
+            }, null);
+        }
+
+        public BDD satOne() {
+            final int x = _index;
+            return perform(new Operation(false) {
+                int run(int depth) {
+                    return satOneRec(x);
+                }
+            }, null);
+        }
+
+        public BDD fullSatOne() {
+            final int x = _index;
+            return perform(new Operation(false) {
+                int run(int depth) {
+                    if (x == 0)
+                        return 0;
+                    return buildCube(pathValues(x, null, 0));
+                }
+            }, null);
+        }
+
+        public BDD satOne(BDD var, boolean pol) {
+            final int x = _index;
+            final int y = ((bdd) var)._index;
+            final int value = pol ? 1 : 0;
+            return perform(new Operation(false) {
+                int run(int depth) {
+                    if (x == 0)
+                        return 0;
+                    return buildCube(pathValues(x, cubeVars(y), value));
+                }
+            }, null);
+        }
+
+        public List<byte[]> allsat() {
+            enter();
+            try {
+                List<byte[]> result = new ArrayList<byte[]>();
+                byte[] values = new byte[varnum];
+                Arrays.fill(values, (byte) -1);
+                allsatRec(_index, values, result);
+                return result;
+            } finally {
+                exit();
+            }
+        }
+
+        public BDD replace(BDDPairing pair) {
+            return replace(pair, null);
+        }
+
+        public BDD replaceWith(BDDPairing pair) {
+            return replace(pair, this);
+        }
+
+        private BDD replace(BDDPairing pair, bdd target) {
+            final int x = _index;
+            final bddPairing p = (bddPairing) pair;
+            return perform(new Operation(false) {
+                int run(int depth) {
+                    return replaceRec(x, p.nodes(), p.serial);
+                }
+            }, target);
+        }
+
+        public int nodeCount() {
+            enter();
+            try {
+                return countNodes(new int[] { _index }, null);
+            } finally {
+                exit();
+            }
+        }
+
+        public double pathCount() {
+            enter();
+            try {
+                return pathCountRec(_index, new HashMap<Integer, Double>());
+            } finally {
+                exit();
+            }
+        }
+
+        public double satCount() {
+            enter();
+            try {
+                if (_index < 2)
+                    return _index * Math.pow(2, varnum);
+                return Math.pow(2, NodeTableFactory.this.level(_index)) * satCountRec(_index, new HashMap<Integer, Double>());
+            } finally {
+                exit();
+            }
+        }
+
+        public int[] varProfile() {
+            enter();
+            try {
+                int[] profile = new int[varnum];
+                countNodes(new int[] { _index }, profile);
+                return profile;
+            } finally {
+                exit();
+            }
+        }
+
+        public boolean equals(BDD that) {
+            return this._index == ((bdd) that)._index;
+        }
+
+        public int hashCode() {
+            return _index;
+        }
+
+        public void free() {
+            enter();
+            try {
+                if (_index != INVALID_BDD)
+                    deref(_index);
+            } finally {
+                exit();
+            }
+            _index = INVALID_BDD;
+        }
+    }
+
+    /**
+     * <p>The body of an operation.  A parallel operation may run in a
+     * worker pool, see {@link NodeTableFactory#invoke(Operation)}.</p>
+     */
+    abstract class Operation extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        final boolean parallel;
+
+        Operation(boolean parallel) {
+            this.parallel = parallel;
+        }
+
+        protected Integer compute() {
+            return run(0);
+        }
+
+        abstract int run(int depth);
+    }
+
+    /**
+     * <p>One cofactor of a parallel operation.</p>
+     */
+    private final class Branch extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        final int kind, op, a, b, c, depth;
+
+        Branch(int kind, int op, int a, int b, int c, int depth) {
+            this.kind = kind;
+            this.op = op;
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            this.depth = depth;
+        }
+
+        protected Integer compute() {
+            if (kind == OP_QUANT)
+                return quantRec(a, b, op, depth);
+            if (kind == OP_RELPROD)
+                return relprodRec(a, b, c, depth);
+            return applyRec(op, a, b, depth);
+        }
+    }
+
+    /**
+     * Runs <code>op</code>, collecting the nodes and restarting it as long
+     * as it runs out of nodes.  The result is stored in <code>target</code>
+     * if not null, or in a new object.  Returns null if the operation is
+     * cancelled.
+     */
+    BDD perform(Operation op, bdd target) {
+        boolean grow = false;
+        while (true) {
+            enter();
+            int epoch = gcCount;
+            try {
+                int res = invoke(op);
+                if (target == null)
+                    return new bdd(res);
+                ref(res);
+                deref(target._index);
+                target._index = res;
+                return target;
+            } catch (TableFull e) {
+            } catch (Cancelled e) {
+                return null;
+            } finally {
+                exit();
+            }
+            // a second failure means the collected nodes were not enough
+            collect(epoch, grow);
+            grow = true;
+        }
+    }
+
+    void poll() {
+        Cancellation token = cancellation;
+        if (token != null ? token.isCancelled() : Timers.fullTO())
+            throw CANCELLED;
+    }
+
+    /**
+     * Computes <code>low</code> in the calling thread and
+     * <code>high</code> in a forked task, and waits for both even if one
+     * fails, so that no task outlives its operation.
+     */
+    private static int[] both(Branch low, Branch high) {
+        high.fork();
+        int l;
+        try {
+            l = low.compute();
+        } catch (RuntimeException e) {
+            try {
+                high.join();
+            } catch (RuntimeException ignored) { }
+            throw e;
+        }
+        return new int[] { l, high.join() };
+    }
+
+    /**** OPERATIONS ****/
+
+    int notRec(int r) {
+        if (r < 2)
+            return r ^ 1;
+        poll();
+        int res = lookup(OP_NOT, r, 0, 0);
+        if (res >= 0)
+            return res;
+        return store(OP_NOT, r, 0, 0, mk(level(r), notRec(low(r)), notRec(high(r))));
+    }
+
+    int applyRec(int op, int a, int b, int depth) {
+        if (a < 2 && b < 2)
+            return TRUTH[op][(a << 1) | b];
+        if (op == AND) {
+            if (a == 0 || b == 0)
+                return 0;
+            if (a == 1)
+                return b;
+            if (b == 1 || a == b)
+                return a;
+        } else if (op == OR) {
+            if (a == 1 || b == 1)
+                return 1;
+            if (a == 0)
+                return b;
+            if (b == 0 || a == b)
+                return a;
+        } else if (op == XOR) {
+            if (a == b)
+                return 0;
+            if (a == 0)
+                return b;
+            if (b == 0)
+                return a;
+        }
+        if (COMMUTATIVE[op] && a > b) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        poll();
+        int res = lookup(OP_APPLY + op, a, b, 0);
+        if (res >= 0)
+            return res;
+
+        int la = level(a), lb = level(b);
+        int m = Math.min(la, lb);
+        int a0 = la == m ? low(a) : a;
+        int a1 = la == m ? high(a) : a;
+        int b0 = lb == m ? low(b) : b;
+        int b1 = lb == m ? high(b) : b;
+        int r0, r1;
+        if (depth < parallelDepth) {
+            int[] r = both(new Branch(OP_APPLY, op, a0, b0, 0, depth + 1),
+                           new Branch(OP_APPLY, op, a1, b1, 0, depth + 1));
+            r0 = r[0];
+            r1 = r[1];
+        } else {
+            r0 = applyRec(op, a0, b0, depth + 1);
+            r1 = applyRec(op, a1, b1, depth + 1);
+        }
+        return store(OP_APPLY + op, a, b, 0, mk(m, r0, r1));
+    }
+
+    int iteRec(int f, int g, int h) {
+        if (f == 1)
+            return g;
+        if (f == 0)
+            return h;
+        if (g == h)
+            return g;
+        if (g == 1 && h == 0)
+            return f;
+        if (g == 0 && h == 1)
+            return notRec(f);
+        if (g == 1 || f == g)
+            return applyRec(OR, f, h, parallelDepth);
+        if (h == 0 || f == h)
+            return applyRec(AND, f, g, parallelDepth);
+        poll();
+        int res = lookup(OP_ITE, f, g, h);
+        if (res >= 0)
+            return res;
+
+        int lf = level(f), lg = level(g), lh = level(h);
+        int m = Math.min(lf, Math.min(lg, lh));
+        int r0 = iteRec(lf == m ? low(f) : f, lg == m ? low(g) : g, lh == m ? low(h) : h);
+        int r1 = iteRec(lf == m ? high(f) : f, lg == m ? high(g) : g, lh == m ? high(h) : h);
+        return store(OP_ITE, f, g, h, mk(m, r0, r1));
+    }
+
+    /**
+     * Quantifies the variables of the cube <code>cube</code> in
+     * <code>f</code>, combining the two cofactors with the binary
+     * operation <code>op</code>: or for exist, and for forAll, xor for
+     * unique.
+     */
+    int quantRec(int f, int cube, int op, int depth) {
+        if (f < 2 || cube < 2)
+            return f;
+        int lf = level(f);
+        while (level(cube) < lf) {
+            cube = high(cube);
+            if (cube < 2)
+                return f;
+        }
+        poll();
+        int res = lookup(OP_QUANT, f, cube, op);
+        if (res >= 0)
+            return res;
+
+        int next = level(cube) == lf ? high(cube) : cube;
+        int r0, r1;
+        if (depth < parallelDepth) {
+            int[] r = both(new Branch(OP_QUANT, op, low(f), next, 0, depth + 1),
+                           new Branch(OP_QUANT, op, high(f), next, 0, depth + 1));
+            r0 = r[0];
+            r1 = r[1];
+        } else {
+            r0 = quantRec(low(f), next, op, depth + 1);
+            r1 = quantRec(high(f), next, op, depth + 1);
+        }
+        if (next != cube)
+            res = applyRec(op, r0, r1, depth + 1);
+        else
+            res = mk(lf, r0, r1);
+        return store(OP_QUANT, f, cube, op, res);
+    }
+
+    /**
+     * <code>exist cube. f and g</code> without building the conjunction.
+     */
+    int relprodRec(int f, int g, int cube, int depth) {
+        if (f == 0 || g == 0)
+            return 0;
+        if (f == 1 && g == 1)
+            return 1;
+        if (cube < 2)
+            return applyRec(AND, f, g, depth);
+        if (f == 1)
+            return quantRec(g, cube, OR, depth);
+        if (g == 1 || f == g)
+            return quantRec(f, cube, OR, depth);
+        if (f > g) {
+            int t = f;
+            f = g;
+            g = t;
+        }
+        int lf = level(f), lg = level(g);
+        int m = Math.min(lf, lg);
+        while (level(cube) < m) {
+            cube = high(cube);
+            if (cube < 2)
+                return applyRec(AND, f, g, depth);
+        }
+        poll();
+        int res = lookup(OP_RELPROD, f, g, cube);
+        if (res >= 0)
+            return res;
+
+        int f0 = lf == m ? low(f) : f;
+        int f1 = lf == m ? high(f) : f;
+        int g0 = lg == m ? low(g) : g;
+        int g1 = lg == m ? high(g) : g;
+        int next = level(cube) == m ? high(cube) : cube;
+        int r0, r1;
+        if (depth < parallelDepth) {
+            int[] r = both(new Branch(OP_RELPROD, 0, f0, g0, next, depth + 1),
+                           new Branch(OP_RELPROD, 0, f1, g1, next, depth + 1));
+            r0 = r[0];
+            r1 = r[1];
+        } else {
+            r0 = relprodRec(f0, g0, next, depth + 1);
+            if (next != cube && r0 == 1)
+                return store(OP_RELPROD, f, g, cube, 1);
+            r1 = relprodRec(f1, g1, next, depth + 1);
+        }
+        if (next != cube)
+            res = applyRec(OR, r0, r1, depth + 1);
+        else
+            res = mk(m, r0, r1);
+        return store(OP_RELPROD, f, g, cube, res);
+    }
+
+    // the rest of a cube after its first literal
+    int rest(int cube) {
+        return low(cube) == 0 ? high(cube) : low(cube);
+    }
+
+    int restrictRec(int f, int cube) {
+        if (f < 2 || cube < 2)
+            return f;
+        int lf = level(f);
+        while (level(cube) < lf) {
+            cube = rest(cube);
+            if (cube < 2)
+                return f;
+        }
+        poll();
+        int res = lookup(OP_RESTRICT, f, cube, 0);
+        if (res >= 0)
+            return res;
+
+        if (level(cube) == lf)
+            res = restrictRec(low(cube) == 0 ? high(f) : low(f), rest(cube));
+        else
+            res = mk(lf, restrictRec(low(f), cube), restrictRec(high(f), cube));
+        return store(OP_RESTRICT, f, cube, 0, res);
+    }
+
+    int constrainRec(int f, int c) {
+        if (c == 1 || f < 2)
+            return f;
+        if (c == 0)
+            return 0;
+        if (f == c)
+            return 1;
+        poll();
+        int res = lookup(OP_CONSTRAIN, f, c, 0);
+        if (res >= 0)
+            return res;
+
+        int lf = level(f), lc = level(c);
+        int m = Math.min(lf, lc);
+        int f0 = lf == m ? low(f) : f;
+        int f1 = lf == m ? high(f) : f;
+        int c0 = lc == m ? low(c) : c;
+        int c1 = lc == m ? high(c) : c;
+        if (c0 == 0)
+            res = constrainRec(f1, c1);
+        else if (c1 == 0)
+            res = constrainRec(f0, c0);
+        else
+            res = mk(m, constrainRec(f0, c0), constrainRec(f1, c1));
+        return store(OP_CONSTRAIN, f, c, 0, res);
+    }
+
+    int simplifyRec(int f, int d) {
+        if (d == 1 || f < 2)
+            return f;
+        if (d == 0)
+            return 0;
+        poll();
+        int res = lookup(OP_SIMPLIFY, f, d, 0);
+        if (res >= 0)
+            return res;
+
+        int lf = level(f), ld = level(d);
+        if (lf == ld) {
+            if (low(d) == 0)
+                res = simplifyRec(high(f), high(d));
+            else if (high(d) == 0)
+                res = simplifyRec(low(f), low(d));
+            else
+                res = mk(lf, simplifyRec(low(f), low(d)), simplifyRec(high(f), high(d)));
+        } else if (lf < ld)
+            res = mk(lf, simplifyRec(low(f), d), simplifyRec(high(f), d));
+        else
+            res = simplifyRec(f, applyRec(OR, low(d), high(d), parallelDepth));
+        return store(OP_SIMPLIFY, f, d, 0, res);
+    }
+
+    /**
+     * Replaces every variable <code>v</code> of <code>f</code> with the
+     * function <code>table[v]</code>; <code>serial</code> identifies the
+     * table in the cache.
+     */
+    int replaceRec(int f, int[] table, int serial) {
+        if (f < 2)
+            return f;
+        poll();
+        int res = lookup(OP_REPLACE, f, serial, 0);
+        if (res >= 0)
+            return res;
+
+        int r0 = replaceRec(low(f), table, serial);
+        int r1 = replaceRec(high(f), table, serial);
+        return store(OP_REPLACE, f, serial, 0, iteRec(table[level(f)], r1, r0));
+    }
+
+    int satOneRec(int f) {
+        if (f < 2)
+            return f;
+        if (low(f) != 0)
+            return mk(level(f), satOneRec(low(f)), 0);
+        return mk(level(f), 0, satOneRec(high(f)));
+    }
+
+    /**
+     * The values of a path of <code>f</code> to 1, -1 for the variables
+     * not on the path, or <code>value</code> for those in
+     * <code>set</code> if not null, 0 for all the others if null.
+     */
+    int[] pathValues(int f, boolean[] set, int value) {
+        int[] values = new int[varnum];
+        for (int v = 0; v < varnum; v++)
+            values[v] = set == null ? 0 : set[v] ? value : -1;
+        while (f >= 2) {
+            if (low(f) != 0) {
+                values[level(f)] = 0;
+                f = low(f);
+            } else {
+                values[level(f)] = 1;
+                f = high(f);
+            }
+        }
+        return values;
+    }
+
+    int buildCube(int[] values) {
+        int res = 1;
+        for (int v = varnum - 1; v >= 0; v--) {
+            if (values[v] == 1)
+                res = mk(v, 0, res);
+            else if (values[v] == 0)
+                res = mk(v, res, 0);
+        }
+        return res;
+    }
+
+    boolean[] cubeVars(int cube) {
+        boolean[] set = new boolean[varnum];
+        while (cube >= 2) {
+            set[level(cube)] = true;
+            cube = rest(cube);
+        }
+        return set;
+    }
+
+    void markSupport(int f, boolean[] used, BitSet visited) {
+        if (f < 2 || visited.get(f))
+            return;
+        visited.set(f);
+        used[level(f)] = true;
+        markSupport(low(f), used, visited);
+        markSupport(high(f), used, visited);
+    }
+
+    void allsatRec(int f, byte[] values, List<byte[]> result) {
+        if (f == 0)
+            return;
+        if (f == 1) {
+            result.add(values.clone());
+            return;
+        }
+        int lf = level(f);
+        values[lf] = 0;
+        allsatRec(low(f), values, result);
+        values[lf] = 1;
+        allsatRec(high(f), values, result);
+        values[lf] = -1;
+    }
+
+    /**
+     * The number of nodes reachable from <code>roots</code>, counted by
+     * level in <code>profile</code> if not null.
+     */
+    int countNodes(int[] roots, int[] profile) {
+        BitSet visited = new BitSet();
+        int count = 0;
+        for (int root : roots)
+            count += countNodes(root, profile, visited);
+        return count;
+    }
+
+    private int countNodes(int f, int[] profile, BitSet visited) {
+        if (f < 2 || visited.get(f))
+            return 0;
+        visited.set(f);
+        if (profile != null)
+            profile[level(f)]++;
+        return 1 + countNodes(low(f), profile, visited) + countNodes(high(f), profile, visited);
+    }
+
+    double pathCountRec(int f, Map<Integer, Double> memo) {
+        if (f < 2)
+            return f;
+        Double res = memo.get(f);
+        if (res == null) {
+            res = pathCountRec(low(f), memo) + pathCountRec(high(f), memo);
+            memo.put(f, res);
+        }
+        return res;
+    }
+
+    // the number of assignments of the variables from the level of f satisfying f
+    double satCountRec(int f, Map<Integer, Double> memo) {
+        if (f < 2)
+            return f;
+        Double res = memo.get(f);
+        if (res == null) {
+            int lf = level(f);
+            res = satCountRec(low(f), memo) * Math.pow(2, levelOf(low(f)) - lf - 1)
+                + satCountRec(high(f), memo) * Math.pow(2, levelOf(high(f)) - lf - 1);
+            memo.put(f, res);
+        }
+        return res;
+    }
+
+    private int levelOf(int f) {
+        return f < 2 ? varnum : level(f);
+    }
+
+    /**** FACTORY ****/
+
+    /**
+     * <p>Returns the number of collections so far.</p>
+     */
+    public int getGCCount() {
+        enter();
+        try {
+            return gcCount;
+        } finally {
+            exit();
+        }
+    }
+
+    public BDD zero() {
+        return new bdd(0);
+    }
+
+    public BDD one() {
+        return new bdd(1);
+    }
+
+    public void setError(int code) { }
+
+    public void clearError() { }
+
+    public int setMaxNodeNum(int size) {
+        int old = maxNodeNum;
+        maxNodeNum = size;
+        return old;
+    }
+
+    public double setMinFreeNodes(double x) {
+        double old = minFreeNodes;
+        minFreeNodes = x;
+        return old;
+    }
+
+    public int setMaxIncrease(int x) {
+        int old = maxIncrease;
+        maxIncrease = x;
+        return old;
+    }
+
+    public double setIncreaseFactor(double x) {
+        double old = increaseFactor;
+        increaseFactor = x;
+        return old;
+    }
+
+    public double setCacheRatio(double x) {
+        double old = cacheRatio;
+        cacheRatio = x;
+        return old;
+    }
+
+    public int varNum() {
+        return varnum;
+    }
+
+    public BDD ithVar(int var) {
+        if (var < 0 || var >= varnum)
+            throw new BDDException("Illegal variable number: "+var);
+        return new bdd(vars[var]);
+    }
+
+    public BDD nithVar(int var) {
+        if (var < 0 || var >= varnum)
+            throw new BDDException("Illegal variable number: "+var);
+        return new bdd(nvars[var]);
+    }
+
+    public void printAll() {
+        enter();
+        try {
+            int used = used();
+            for (int i = 2; i < used; i++)
+                if (referenced(i))
+                    System.out.println("["+i+"] "+level(i)+": "+low(i)+" "+high(i));
+        } finally {
+            exit();
+        }
+    }
+
+    public void printTable(BDD b) {
+        enter();
+        try {
+            int root = ((bdd) b)._index;
+            System.out.println("ROOT: "+root);
+            printTable(root, new BitSet());
+        } finally {
+            exit();
+        }
+    }
+
+    private void printTable(int f, BitSet visited) {
+        if (f < 2 || visited.get(f))
+            return;
+        visited.set(f);
+        System.out.println("["+f+"] "+level(f)+": "+low(f)+" "+high(f));
+        printTable(low(f), visited);
+        printTable(high(f), visited);
+    }
+
+    public BDDPairing makePair() {
+        return new bddPairing();
+    }
+
+    /**
+     * Maps variables to BDDs, the variables not set are mapped to
+     * themselves.
+     */
+    private class bddPairing extends BDDPairing {
+        BDD[] table = new BDD[0];
+        int serial = nextSerial();
+
+        private int nextSerial() {
+            return pairings.incrementAndGet();
+        }
+
+        public void set(int oldvar, int newvar) {
+            set(oldvar, ithVar(newvar));
+        }
+
+        public void set(int oldvar, BDD newvar) {
+            if (oldvar >= table.length)
+                table = Arrays.copyOf(table, oldvar + 1);
+            if (table[oldvar] != null)
+                table[oldvar].free();
+            table[oldvar] = newvar.id();
+            serial = nextSerial();
+        }
+
+        public void reset() {
+            for (BDD b : table)
+                if (b != null)
+                    b.free();
+            table = new BDD[0];
+            serial = nextSerial();
+        }
+
+        // the caller is between enter() and exit()
+        int[] nodes() {
+            int[] nodes = new int[varnum];
+            for (int v = 0; v < varnum; v++)
+                nodes[v] = v < table.length && table[v] != null ? ((bdd) table[v])._index : vars[v];
+            return nodes;
+        }
+    }
+
+    public int nodeCount(Collection<BDD> r) {
+        enter();
+        try {
+            int[] roots = new int[r.size()];
+            int i = 0;
+            for (BDD b : r)
+                roots[i++] = ((bdd) b)._index;
+            return countNodes(roots, null);
+        } finally {
+            exit();
+        }
+    }
+
+    public void printStat() {
+        System.out.println("Node table size: "+getNodeTableSize());
+        System.out.println("Allocated nodes: "+getNodeNum());
+        System.out.println("Cache size:      "+getCacheSize());
+        System.out.println("Collections:     "+getGCCount());
+    }
+
+    protected BDDDomain createDomain(int a, BigInteger b) {
+        return new bddDomain(a, b);
+    }
+
+    private class bddDomain extends BDDDomain {
+
+        bddDomain(int a, BigInteger b) {
+            super(a, b);
+        }
+
+        public BDDFactory getFactory() {
+            return NodeTableFactory.this;
+        }
+    }
+
+    protected BDDBitVector createBitVector(int a) {
+        return new bvec(a);
+    }
+
+    private class bvec extends BDDBitVector {
+
+        bvec(int bitnum) {
+            super(bitnum);
+        }
+
+        public BDDFactory getFactory() {
+            return NodeTableFactory.this;
+        }
+    }
+}
@@ -0,0 +1,487 @@
+package theory.bdd;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>A BDD factory whose node table, unique table, reference counts and
+ * operation cache live outside of the Java heap, in direct or memory-mapped
+ * buffers, so that large tables neither slow down nor are limited by the
+ * garbage collector of the JVM.</p>
+ *
+ * <p>Nodes are reference counted explicitly: a BDD object holds a reference
+ * until it is freed.  When an operation runs out of nodes it is abandoned,
+ * the nodes that are not reachable from a referenced node, a variable or a
+ * loaded root are swept, the table grows if too few were freed, and the
+ * operation is restarted.</p>
+ *
+ * <p>{@link #save(File, List)} writes the whole node store to a file and
+ * {@link #load(File, int)} maps it back privately, so a library of
+ * precomputed BDDs is available without rebuilding or rehashing it and its
+ * pages are only read when used.  The variable order is fixed.  Like
+ * {@link JFactory}, a factory must be used by one thread at a time.</p>
+ */
+public class OffHeapFactory extends NodeTableFactory {
+
+    public static final String REVISION = "$Revision: 1.0 $";
+
+    public String getVersion() {
+        return "OffHeapFactory "+REVISION.substring(11, REVISION.length()-2);
+    }
+
+    /**
+     * <p>Creates a factory with the given initial node table size and cache
+     * size.</p>
+     */
+    public static BDDFactory init(int nodenum, int cachesize) {
+        BDDFactory f = new OffHeapFactory();
+        f.initialize(nodenum, cachesize);
+        return f;
+    }
+
+    private OffHeapFactory() { }
+
+    static final int MAGIC = 0x53444442;
+    static final int VERSION = 1;
+
+    // the level of free nodes
+    static final int FREE_LEVEL = -1;
+
+    static final int MAX_NODES = 1 << 30;
+
+    // a node is three ints: level, low, high
+    static final int NODE_SIZE = 3;
+    // a cache entry is five ints: op, a, b, c, result
+    static final int ENTRY_SIZE = 5;
+
+    // reference counts saturate at MAX_REF, MARK is set during collections
+    static final int MARK = 0x40000000;
+    static final int MAX_REF = MARK - 1;
+
+    private OffHeapInts nodes;
+    private OffHeapInts refs;
+    private OffHeapInts table;
+    private OffHeapInts cache;
+
+    private int capacity;
+    // nodes are taken from the free list, chained through their low field, then from top
+    private int top;
+    private int freeHead;
+    private int freeNum;
+
+    // the roots of a loaded file, never collected
+    private int[] roots = new int[0];
+
+    int level(int f) {
+        return nodes.get((long) f * NODE_SIZE);
+    }
+
+    int low(int f) {
+        return nodes.get((long) f * NODE_SIZE + 1);
+    }
+
+    int high(int f) {
+        return nodes.get((long) f * NODE_SIZE + 2);
+    }
+
+    private void setNode(int f, int lev, int lo, int hi) {
+        long i = (long) f * NODE_SIZE;
+        nodes.set(i, lev);
+        nodes.set(i + 1, lo);
+        nodes.set(i + 2, hi);
+    }
+
+    void ref(int f) {
+        int r = refs.get(f);
+        if ((r & MAX_REF) < MAX_REF)
+            refs.set(f, r + 1);
+    }
+
+    void deref(int f) {
+        int r = refs.get(f);
+        if ((r & MAX_REF) > 0 && (r & MAX_REF) < MAX_REF)
+            refs.set(f, r - 1);
+    }
+
+    boolean referenced(int f) {
+        return (refs.get(f) & MAX_REF) > 0;
+    }
+
+    int used() {
+        return top;
+    }
+
+    /**** UNIQUE TABLE ****/
+
+    private int allocate(int lev, int lo, int hi) {
+        int id;
+        if (freeHead != 0) {
+            id = freeHead;
+            freeHead = low(id);
+            freeNum--;
+        } else if (top < capacity)
+            id = top++;
+        else
+            throw TABLE_FULL;
+        setNode(id, lev, lo, hi);
+        return id;
+    }
+
+    int mk(int lev, int lo, int hi) {
+        if (lo == hi)
+            return lo;
+        long mask = table.length() - 1;
+        long h = hash(lev, lo, hi) & mask;
+        while (true) {
+            int id = table.get(h);
+            if (id == 0) {
+                id = allocate(lev, lo, hi);
+                table.set(h, id);
+                return id;
+            }
+            if (level(id) == lev && low(id) == lo && high(id) == hi)
+                return id;
+            h = (h + 1) & mask;
+        }
+    }
+
+    /**** OPERATION CACHE ****/
+
+    private long entry(int op, int a, int b) {
+        long entries = cache.length() / ENTRY_SIZE;
+        return (hash(op, a, b) & (entries - 1)) * ENTRY_SIZE;
+    }
+
+    int lookup(int op, int a, int b, int c) {
+        long i = entry(op, a, b);
+        if (cache.get(i) != op || cache.get(i + 1) != a || cache.get(i + 2) != b || cache.get(i + 3) != c)
+            return -1;
+        return cache.get(i + 4);
+    }
+
+    int store(int op, int a, int b, int c, int res) {
+        long i = entry(op, a, b);
+        cache.set(i, op);
+        cache.set(i + 1, a);
+        cache.set(i + 2, b);
+        cache.set(i + 3, c);
+        cache.set(i + 4, res);
+        return res;
+    }
+
+    /**** GARBAGE COLLECTION ****/
+
+    // a factory is used by one thread, so no other collection can intervene
+    void collect(int epoch, boolean grow) {
+        collect(grow);
+    }
+
+    /**
+     * Frees the nodes that are not reachable from a referenced node, a
+     * variable or a loaded root, and grows the node table if fewer than
+     * <code>minFreeNodes</code> nodes are free or if <code>grow</code>.
+     */
+    private void collect(boolean grow) {
+        for (int i = 2; i < top; i++)
+            if ((refs.get(i) & MAX_REF) > 0 && level(i) != FREE_LEVEL)
+                mark(i);
+        for (int v = 0; v < varnum; v++) {
+            mark(vars[v]);
+            mark(nvars[v]);
+        }
+        for (int root : roots)
+            mark(root);
+
+        freeHead = 0;
+        freeNum = 0;
+        for (int i = top - 1; i >= 2; i--) {
+            int r = refs.get(i);
+            if ((r & MARK) != 0)
+                refs.set(i, r & ~MARK);
+            else {
+                setNode(i, FREE_LEVEL, freeHead, 0);
+                freeHead = i;
+                freeNum++;
+            }
+        }
+
+        if (grow || freeNum + capacity - top < minFreeNodes * capacity)
+            grow();
+        rehash();
+        cache.clear(cache.length());
+        gcCount++;
+    }
+
+    private void mark(int f) {
+        while (f >= 2) {
+            int r = refs.get(f);
+            if ((r & MARK) != 0)
+                return;
+            refs.set(f, r | MARK);
+            mark(low(f));
+            f = high(f);
+        }
+    }
+
+    // rebuilds the unique table from the live nodes
+    private void rehash() {
+        long size = tableSize(capacity);
+        if (table.length() == size)
+            table.clear(size);
+        else
+            table = new OffHeapInts(size);
+        long mask = size - 1;
+        for (int i = 2; i < top; i++) {
+            int lev = level(i);
+            if (lev == FREE_LEVEL)
+                continue;
+            long h = hash(lev, low(i), high(i)) & mask;
+            while (table.get(h) != 0)
+                h = (h + 1) & mask;
+            table.set(h, i);
+        }
+    }
+
+    private void grow() {
+        resize(grownCapacity(capacity, MAX_NODES));
+    }
+
+    private void resize(int newCapacity) {
+        nodes.grow((long) newCapacity * NODE_SIZE);
+        refs.grow(newCapacity);
+        capacity = newCapacity;
+        if (cacheRatio > 0)
+            cache = new OffHeapInts((long) cacheEntries((int) (capacity * cacheRatio)) * ENTRY_SIZE);
+    }
+
+    private static long tableSize(int capacity) {
+        return (long) Integer.highestOneBit(Math.max(capacity, 8) - 1) << 2;
+    }
+
+    /**** PERSISTENCE ****/
+
+    /**
+     * <p>Collects the nodes and writes the node store to <code>file</code>,
+     * with <code>roots</code> as the BDDs that {@link #getRoots()} returns
+     * after the file is loaded.</p>
+     */
+    public void save(File file, List<BDD> roots) throws IOException {
+        int[] saved = new int[roots.size()];
+        for (int i = 0; i < saved.length; i++)
+            saved[i] = ((bdd) roots.get(i))._index;
+        int[] pinned = this.roots;
+        this.roots = Arrays.copyOf(pinned, pinned.length + saved.length);
+        System.arraycopy(saved, 0, this.roots, pinned.length, saved.length);
+        try {
+            collect(false);
+        } finally {
+            this.roots = pinned;
+        }
+
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.setLength(0);
+            FileChannel channel = out.getChannel();
+            OffHeapInts header = new OffHeapInts(headerSize(saved.length, varnum));
+            int i = 0;
+            header.set(i++, MAGIC);
+            header.set(i++, VERSION);
+            header.set(i++, varnum);
+            header.set(i++, top);
+            header.set(i++, freeHead);
+            header.set(i++, freeNum);
+            header.set(i++, Long.numberOfTrailingZeros(table.length()));
+            header.set(i++, saved.length);
+            for (int root : saved)
+                header.set(i++, root);
+            for (int v = 0; v < varnum; v++) {
+                header.set(i++, vars[v]);
+                header.set(i++, nvars[v]);
+            }
+            header.write(channel, header.length());
+            nodes.write(channel, (long) top * NODE_SIZE);
+            table.write(channel, table.length());
+        } finally {
+            out.close();
+        }
+    }
+
+    private static int headerSize(int roots, int varnum) {
+        return 8 + roots + 2 * varnum;
+    }
+
+    /**
+     * <p>Maps a node store written by {@link #save(File, List)}.  The nodes
+     * and the unique table are read from the file when they are used, and
+     * are copied on write, so the file is not changed.  The saved roots are
+     * never collected.</p>
+     *
+     * @param file  the file
+     * @param cachesize  the operation cache size
+     * @return the factory of the stored BDDs
+     */
+    public static OffHeapFactory load(File file, int cachesize) throws IOException {
+        // a private mapping needs a channel open for writing, and opening
+        // one would create a missing file
+        if (!file.isFile())
+            throw new FileNotFoundException(file.getPath());
+        RandomAccessFile in = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = in.getChannel();
+            ByteBuffer fixed = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+            while (fixed.hasRemaining() && channel.read(fixed) >= 0) { }
+            if (fixed.hasRemaining())
+                throw new IOException("truncated BDD store");
+            fixed.flip();
+            IntBuffer ints = fixed.asIntBuffer();
+            if (ints.get(0) != MAGIC)
+                throw new IOException("not a BDD store");
+            if (ints.get(1) != VERSION)
+                throw new IOException("unsupported BDD store version " + ints.get(1));
+            int varnum = ints.get(2);
+            int top = ints.get(3);
+            int rootNum = ints.get(7);
+            int logTable = ints.get(6);
+            long tableSize = 1L << logTable;
+            if (varnum < 0 || top < 2 || rootNum < 0 || logTable < 3 || logTable > 32 || tableSize < 2L * top)
+                throw new IOException("corrupted BDD store");
+            long headerBytes = 4L * headerSize(rootNum, varnum);
+            long nodeBytes = 4L * top * NODE_SIZE;
+            if (channel.size() != headerBytes + nodeBytes + 4 * tableSize)
+                throw new IOException("truncated BDD store");
+
+            OffHeapInts header = OffHeapInts.map(channel, 0, headerBytes / 4);
+            OffHeapFactory f = new OffHeapFactory();
+            f.nodes = OffHeapInts.map(channel, headerBytes, nodeBytes / 4);
+            f.table = OffHeapInts.map(channel, headerBytes + nodeBytes, tableSize);
+            f.capacity = top;
+            f.top = top;
+            f.freeHead = ints.get(4);
+            f.freeNum = ints.get(5);
+            f.refs = new OffHeapInts(top);
+            f.cache = new OffHeapInts((long) cacheEntries(cachesize) * ENTRY_SIZE);
+            f.varnum = varnum;
+            int i = 8;
+            f.roots = new int[rootNum];
+            for (int r = 0; r < rootNum; r++)
+                f.roots[r] = f.checkNode(header.get(i++));
+            f.vars = new int[varnum];
+            f.nvars = new int[varnum];
+            for (int v = 0; v < varnum; v++) {
+                f.vars[v] = f.checkNode(header.get(i++));
+                f.nvars[v] = f.checkNode(header.get(i++));
+            }
+            return f;
+        } finally {
+            in.close();
+        }
+    }
+
+    private int checkNode(int f) throws IOException {
+        if (f < 0 || f >= top)
+            throw new IOException("node " + f + " out of range");
+        return f;
+    }
+
+    /**
+     * <p>The roots of the loaded file, in the order they were saved, or an
+     * empty list.</p>
+     */
+    public List<BDD> getRoots() {
+        List<BDD> res = new ArrayList<BDD>();
+        for (int root : roots)
+            res.add(new bdd(root));
+        return res;
+    }
+
+    /**** FACTORY ****/
+
+    protected void initialize(int nodenum, int cachesize) {
+        capacity = Math.min(Math.max(nodenum, 16), MAX_NODES);
+        nodes = new OffHeapInts((long) capacity * NODE_SIZE);
+        refs = new OffHeapInts(capacity);
+        table = new OffHeapInts(tableSize(capacity));
+        cache = new OffHeapInts((long) cacheEntries(cachesize) * ENTRY_SIZE);
+        setNode(0, TERMINAL_LEVEL, 0, 0);
+        setNode(1, TERMINAL_LEVEL, 1, 1);
+        top = 2;
+        freeHead = 0;
+        freeNum = 0;
+        varnum = 0;
+        vars = new int[0];
+        nvars = new int[0];
+        roots = new int[0];
+    }
+
+    public boolean isInitialized() {
+        return nodes != null;
+    }
+
+    public void done() {
+        nodes = null;
+        refs = null;
+        table = null;
+        cache = null;
+    }
+
+    public boolean clearNodes() {
+        refs.clear(refs.length());
+        collect(false);
+        return true;
+    }
+
+    public int setNodeTableSize(int n) {
+        int old = capacity;
+        if (n > old) {
+            resize(Math.min(n, MAX_NODES));
+            rehash();
+        }
+        return old;
+    }
+
+    public int setCacheSize(int n) {
+        int old = (int) (cache.length() / ENTRY_SIZE);
+        cache = new OffHeapInts((long) cacheEntries(n) * ENTRY_SIZE);
+        return old;
+    }
+
+    public int setVarNum(int num) {
+        int old = varnum;
+        if (num < varnum)
+            throw new BDDException("Trying to decrease the number of variables");
+        if (num == varnum)
+            return old;
+        // the variable nodes must fit without a collection
+        while (freeNum + capacity - top < 2 * (num - varnum))
+            collect(true);
+        vars = Arrays.copyOf(vars, num);
+        nvars = Arrays.copyOf(nvars, num);
+        for (int v = varnum; v < num; v++) {
+            vars[v] = mk(v, 0, 1);
+            nvars[v] = mk(v, 1, 0);
+        }
+        varnum = num;
+        return old;
+    }
+
+    public int getNodeTableSize() {
+        return capacity;
+    }
+
+    public int getNodeNum() {
+        return top - 2 - freeNum;
+    }
+
+    public int getCacheSize() {
+        return (int) (cache.length() / ENTRY_SIZE);
+    }
+}
@@ -0,0 +1,130 @@
+package theory.bdd;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * <p>An array of ints outside of the Java heap, split into direct or mapped
+ * buffers of <code>SEGMENT</code> ints so that it can hold more than 2^31
+ * bytes and grow by copying at most its last segment.</p>
+ */
+final class OffHeapInts {
+
+    static final int SHIFT = 24;
+    static final int SEGMENT = 1 << SHIFT;
+    static final int MASK = SEGMENT - 1;
+
+    private static final int[] ZEROES = new int[4096];
+
+    private IntBuffer[] segments;
+    private long length;
+
+    /**
+     * <p>A zeroed array of <code>length</code> ints.</p>
+     */
+    OffHeapInts(long length) {
+        segments = new IntBuffer[0];
+        this.length = 0;
+        grow(length);
+    }
+
+    private OffHeapInts(IntBuffer[] segments, long length) {
+        this.segments = segments;
+        this.length = length;
+    }
+
+    /**
+     * <p>The <code>length</code> ints of <code>channel</code> starting at
+     * <code>position</code>, mapped privately: the array can be written but
+     * the file is not changed.</p>
+     */
+    static OffHeapInts map(FileChannel channel, long position, long length) throws IOException {
+        int count = (int) ((length + SEGMENT - 1) >>> SHIFT);
+        IntBuffer[] segments = new IntBuffer[count];
+        for (int s = 0; s < count; s++) {
+            long size = Math.min(SEGMENT, length - ((long) s << SHIFT));
+            segments[s] = channel.map(FileChannel.MapMode.PRIVATE, position + ((long) s << (SHIFT + 2)), size << 2)
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        }
+        return new OffHeapInts(segments, length);
+    }
+
+    long length() {
+        return length;
+    }
+
+    int get(long i) {
+        return segments[(int) (i >>> SHIFT)].get((int) i & MASK);
+    }
+
+    void set(long i, int value) {
+        segments[(int) (i >>> SHIFT)].put((int) i & MASK, value);
+    }
+
+    /**
+     * <p>Extends the array with zeroes to <code>newLength</code> ints.  Only
+     * the last segment is copied, to a larger direct buffer.</p>
+     */
+    void grow(long newLength) {
+        if (newLength <= length)
+            return;
+        int count = (int) ((newLength + SEGMENT - 1) >>> SHIFT);
+        int old = segments.length;
+        segments = Arrays.copyOf(segments, count);
+        for (int s = Math.max(old - 1, 0); s < count; s++) {
+            int size = (int) Math.min(SEGMENT, newLength - ((long) s << SHIFT));
+            IntBuffer segment = segments[s];
+            if (segment != null && segment.capacity() >= size)
+                continue;
+            IntBuffer larger = ByteBuffer.allocateDirect(size << 2).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            if (segment != null) {
+                IntBuffer content = segment.duplicate();
+                content.clear();
+                larger.put(content);
+                larger.clear();
+            }
+            segments[s] = larger;
+        }
+        length = newLength;
+    }
+
+    /**
+     * <p>Sets the first <code>count</code> ints to zero.</p>
+     */
+    void clear(long count) {
+        for (int s = 0; s < segments.length && ((long) s << SHIFT) < count; s++) {
+            IntBuffer segment = segments[s].duplicate();
+            int size = (int) Math.min(segment.capacity(), count - ((long) s << SHIFT));
+            segment.clear();
+            while (size > 0) {
+                int n = Math.min(size, ZEROES.length);
+                segment.put(ZEROES, 0, n);
+                size -= n;
+            }
+        }
+    }
+
+    /**
+     * <p>Writes the first <code>count</code> ints to <code>channel</code> in
+     * little-endian order.</p>
+     */
+    void write(FileChannel channel, long count) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        IntBuffer ints = bytes.asIntBuffer();
+        for (long i = 0; i < count; ) {
+            int n = (int) Math.min(ints.capacity(), count - i);
+            ints.clear();
+            for (int k = 0; k < n; k++)
+                ints.put(get(i + k));
+            bytes.clear();
+            bytes.limit(n << 2);
+            while (bytes.hasRemaining())
+                channel.write(bytes);
+            i += n;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package theory.bdd;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * <p>A variable reordering policy for a BDD factory.  Once installed, the
+ * factory sifts its variables (or applies another reordering method)
+ * whenever the number of nodes in use grows past a threshold, and keeps the
+ * variables of a {@link BDDDomain}, of a {@link BDDBitVector} or of an
+ * explicit group together while doing so.  The policy counts the reorderings
+ * and the time spent in them.</p>
+ *
+ * <p>Only {@link JFactory} reorders dynamically.  For the other factories
+ * {@link #install(BDDFactory)} does nothing, but a better static order can
+ * still be searched with {@link #searchOrder(BDDFactory, Collection, long)}
+ * and applied before the BDDs are built.</p>
+ */
+public class ReorderPolicy {
+
+    private static final Method CALLBACK;
+    static {
+        try {
+            CALLBACK = ReorderPolicy.class.getMethod("reorderDone", Integer.class, BDDFactory.ReorderStats.class);
+        } catch (NoSuchMethodException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final BDDFactory.ReorderMethod method;
+    private int firstReorder = -1;
+    private int growth = 200;
+    private final List<int[]> groups = new ArrayList<int[]>();
+
+    private int reorderCount = 0;
+    private long reorderTime = 0;
+    private int lastGain = 0;
+
+    /**
+     * <p>A policy that sifts the variables.</p>
+     */
+    public ReorderPolicy() {
+        this(BDDFactory.REORDER_SIFT);
+    }
+
+    /**
+     * <p>A policy that reorders the variables with <code>method</code>.</p>
+     */
+    public ReorderPolicy(BDDFactory.ReorderMethod method) {
+        this.method = method;
+    }
+
+    /**
+     * <p>Reorders for the first time when <code>usedNodes</code> nodes are
+     * in use and then whenever the number of nodes in use grows to
+     * <code>growth</code> percent of what it was after the last reordering.
+     * By default the first reordering happens when the initial node table
+     * is full and the growth is 200 percent.  Takes effect on the next
+     * {@link #install(BDDFactory)}.</p>
+     */
+    public void setThreshold(int usedNodes, int growth) {
+        if (usedNodes < 0 || growth <= 100)
+            throw new IllegalArgumentException("invalid reorder threshold");
+        this.firstReorder = usedNodes;
+        this.growth = growth;
+    }
+
+    /**
+     * <p>Keeps the variables <code>first</code> to <code>last</code>
+     * together.  Groups must be declared before {@link #install(BDDFactory)};
+     * a group that shares variables with an earlier one is ignored, and so
+     * are groups whose variables are not consecutive in the current order.</p>
+     */
+    public void group(int first, int last) {
+        if (first < 0 || last < first)
+            throw new IllegalArgumentException("invalid group " + first + ".." + last);
+        int[] vars = new int[last - first + 1];
+        for (int i = 0; i < vars.length; i++)
+            vars[i] = first + i;
+        groups.add(vars);
+    }
+
+    /**
+     * <p>Keeps the variables that the bits of <code>vector</code> depend on
+     * together.</p>
+     */
+    public void group(BDDBitVector vector) {
+        if (vector.size() == 0)
+            return;
+        BDD support = vector.getBit(0).support();
+        for (int i = 1; i < vector.size(); i++)
+            support.andWith(vector.getBit(i).support());
+        int[] vars = support.scanSet();
+        support.free();
+        if (vars != null && vars.length > 0)
+            groups.add(vars);
+    }
+
+    /**
+     * <p>Installs the policy on <code>factory</code>.  Variables and domains
+     * added later are not reordered until the policy is installed again.
+     * Returns false if the factory cannot reorder its variables
+     * dynamically.</p>
+     */
+    public boolean install(BDDFactory factory) {
+        if (!(factory instanceof JFactory))
+            return false;
+        JFactory f = (JFactory) factory;
+        // installing again, for instance after new variables, must not count twice
+        f.unregisterCallback(f.reorder_callbacks, this, CALLBACK);
+        f.registerReorderCallback(this, CALLBACK);
+        f.clearVarBlocks();
+        addBlocks(f);
+        f.setReorderThreshold(firstReorder >= 0 ? firstReorder : f.usednodes_nextreorder, growth);
+        f.autoReorder(method);
+        return true;
+    }
+
+    /**
+     * <p>Stops reordering the variables of <code>factory</code>.</p>
+     */
+    public void uninstall(BDDFactory factory) {
+        if (!(factory instanceof JFactory))
+            return;
+        factory.autoReorder(BDDFactory.REORDER_NONE);
+        factory.unregisterReorderCallback(this, CALLBACK);
+    }
+
+    /**
+     * <p>Called by the factory before (<code>pre</code> is 1) and after
+     * (<code>pre</code> is 0) every reordering.</p>
+     */
+    public void reorderDone(Integer pre, BDDFactory.ReorderStats stats) {
+        if (pre.intValue() != 0)
+            return;
+        reorderCount++;
+        reorderTime += stats.time;
+        lastGain = stats.gain();
+    }
+
+    /**
+     * <p>The number of reorderings done since the policy was created,
+     * including the ones caused by {@link #setVarOrder(BDDFactory, int[])}.</p>
+     */
+    public int getReorderCount() {
+        return reorderCount;
+    }
+
+    /**
+     * <p>The time spent reordering, in milliseconds.</p>
+     */
+    public long getReorderTime() {
+        return reorderTime;
+    }
+
+    /**
+     * <p>The percentage of nodes saved by the last reordering.</p>
+     */
+    public int getLastGain() {
+        return lastGain;
+    }
+
+    /**
+     * <p>The variables of <code>factory</code> from the top level down.</p>
+     */
+    public static int[] getVarOrder(BDDFactory factory) {
+        int[] order = new int[factory.varNum()];
+        for (int level = 0; level < order.length; level++)
+            order[level] = factory.level2Var(level);
+        return order;
+    }
+
+    /**
+     * <p>Sets the variable order of <code>factory</code>, for instance to an
+     * order found by {@link #searchOrder(BDDFactory, Collection, long)} or
+     * saved with the model.  The groups of an installed policy are kept.</p>
+     */
+    public void setVarOrder(BDDFactory factory, int[] order) {
+        if (!(factory instanceof JFactory)) {
+            factory.setVarOrder(order);
+            return;
+        }
+        factory.clearVarBlocks();
+        factory.setVarOrder(order);
+        addBlocks(factory);
+    }
+
+    /**
+     * <p>Searches for a variable order under which <code>roots</code> have
+     * fewer nodes, for at most <code>budget</code> milliseconds.  The BDDs are
+     * copied to a private factory before this method returns, and the search
+     * runs there on a daemon thread, so <code>factory</code> can be used
+     * meanwhile.  The search alternates random permutations of the groups
+     * with the policy's reordering method, and stops between two rounds when
+     * the budget is exhausted or the future is cancelled.  The future
+     * returns the best order found, the current order if none is better.</p>
+     */
+    public Future<int[]> searchOrder(BDDFactory factory, Collection<BDD> roots, final long budget) {
+        final int varNum = factory.varNum();
+        final int[] start = getVarOrder(factory);
+        final List<int[]> blocks = blocks(factory);
+        final List<String> saved = new ArrayList<String>();
+        try {
+            for (BDD root : roots) {
+                StringWriter out = new StringWriter();
+                BufferedWriter writer = new BufferedWriter(out);
+                factory.save(writer, root);
+                writer.flush();
+                saved.add(out.toString());
+            }
+        } catch (IOException e) {
+            throw new BDDException(e.toString());
+        }
+        final long deadline = System.nanoTime() + budget * 1000000L;
+        FutureTask<int[]> task = new FutureTask<int[]>(new Callable<int[]>() {
+            public int[] call() throws IOException {
+                return search(varNum, start, blocks, saved, deadline);
+            }
+        });
+        Thread thread = new Thread(task, "bdd-order-search");
+        thread.setDaemon(true);
+        thread.start();
+        return task;
+    }
+
+    private int[] search(int varNum, int[] start, List<int[]> blocks, List<String> saved, long deadline)
+            throws IOException {
+        BDDFactory scratch = JFactory.init(10000, 1000);
+        try {
+            scratch.registerReorderCallback(new ReorderPolicy(), CALLBACK);
+            scratch.setVarNum(varNum);
+            scratch.setVarOrder(start);
+            List<BDD> copies = new ArrayList<BDD>();
+            for (String s : saved)
+                copies.add(scratch.load(new BufferedReader(new StringReader(s))));
+            for (int[] block : blocks)
+                scratch.addVarBlock(block[0], block[1], false);
+
+            int[] best = start;
+            int bestSize = scratch.nodeCount(copies);
+            boolean random = false;
+            while (System.nanoTime() - deadline < 0 && !Thread.currentThread().isInterrupted()) {
+                if (random)
+                    scratch.reorder(BDDFactory.REORDER_RANDOM);
+                scratch.reorder(method);
+                random = true;
+                int size = scratch.nodeCount(copies);
+                if (size < bestSize) {
+                    bestSize = size;
+                    best = getVarOrder(scratch);
+                }
+            }
+            return best;
+        } finally {
+            scratch.done();
+        }
+    }
+
+    // Adds a block for every group, every domain and every remaining variable
+    private void addBlocks(BDDFactory factory) {
+        for (int[] block : blocks(factory))
+            factory.addVarBlock(block[0], block[1], false);
+    }
+
+    // The variable ranges to keep together: the groups and domains whose variables
+    // are consecutive both by index and by level, then every remaining variable alone
+    private List<int[]> blocks(BDDFactory factory) {
+        List<int[]> blocks = new ArrayList<int[]>();
+        boolean[] grouped = new boolean[factory.varNum()];
+        for (int[] vars : groups)
+            addBlock(factory, vars, grouped, blocks);
+        for (int i = 0; i < factory.numberOfDomains(); i++)
+            addBlock(factory, factory.getDomain(i).vars(), grouped, blocks);
+        for (int v = 0; v < grouped.length; v++)
+            if (!grouped[v])
+                blocks.add(new int[] { v, v });
+        return blocks;
+    }
+
+    private static void addBlock(BDDFactory factory, int[] vars, boolean[] grouped, List<int[]> blocks) {
+        int first = Integer.MAX_VALUE, last = -1;
+        int top = Integer.MAX_VALUE, bottom = -1;
+        for (int v : vars) {
+            if (v >= grouped.length || grouped[v])
+                return;
+            first = Math.min(first, v);
+            last = Math.max(last, v);
+            top = Math.min(top, factory.var2Level(v));
+            bottom = Math.max(bottom, factory.var2Level(v));
+        }
+        if (last - first + 1 != vars.length || bottom - top + 1 != vars.length)
+            return;
+        for (int v : vars)
+            grouped[v] = true;
+        blocks.add(new int[] { first, last });
+    }
+}
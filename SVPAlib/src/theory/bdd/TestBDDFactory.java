@@ -839,8 +839,8 @@ public class TestBDDFactory extends BDDFactory {
      * @see net.sf.javabdd.BDDFactory#nodeCount(java.util.Collection)
      */
     public int nodeCount(Collection r) {
-        LinkedList a1 = new LinkedList();
-        LinkedList a2 = new LinkedList();
+        LinkedList<BDD> a1 = new LinkedList<BDD>();
+        LinkedList<BDD> a2 = new LinkedList<BDD>();
         for (Iterator i=r.iterator(); i.hasNext();) {
             TestBDD b = (TestBDD)i.next();
             a1.add(b.b1);
@@ -17,9 +17,13 @@ import java.math.BigInteger;
 /**
  * TryVarOrder
  * 
+ * @deprecated  trials are aborted with <tt>Thread.stop</tt>; use
+ *              {@link ReorderPolicy#searchOrder(BDDFactory, java.util.Collection, long)},
+ *              which stops cooperatively.
  * @author jwhaley
  * @version $Id: TryVarOrder.java,v 1.2 2004/10/19 04:34:48 joewhaley Exp $
  */
+@Deprecated
 public class TryVarOrder {
 
     /** BDD Factory, reused if possible. */
@@ -7,12 +7,19 @@
  */
 package theory.bddalgebra;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
 
 import java.lang.UnsupportedOperationException;
 import theory.BooleanAlgebra;
 import theory.bdd.BDD;
 import theory.bdd.BDDFactory;
+import theory.bdd.ReorderPolicy;
 import utilities.Pair;
 
 /**
@@ -21,6 +28,9 @@ import utilities.Pair;
 public class BDDSolver extends BooleanAlgebra<BDD, BDD> {
 
 	public BDDFactory factory;
+
+	private boolean polarity = true;
+	private Random random = null;
 	
 	public BDDSolver(int numVars) {
 		super();		
@@ -34,6 +44,26 @@ public class BDDSolver extends BooleanAlgebra<BDD, BDD> {
 		factory.setVarNum(numVars);
 	}
 
+	/**
+	 * A solver whose factory reorders its variables according to <code>policy</code>. The factory is a
+	 * {@link theory.bdd.JFactory}, the only one that reorders dynamically.
+	 */
+	public BDDSolver(int numVars, ReorderPolicy policy) {
+		super();
+		factory = BDDFactory.init("java", 500000, 125000);
+		factory.setVarNum(numVars);
+		policy.install(factory);
+	}
+
+	/**
+	 * A solver over the variables of <code>factory</code>, for instance a factory borrowed from a
+	 * {@link theory.bdd.BDDFactoryPool}. The solver is confined to the thread that uses the factory.
+	 */
+	public BDDSolver(BDDFactory factory) {
+		super();
+		this.factory = factory;
+	}
+
 	@Override
 	public BDD MkNot(BDD p) {
 		return p.not();
@@ -96,46 +126,261 @@ public class BDDSolver extends BooleanAlgebra<BDD, BDD> {
 		throw new UnsupportedOperationException();
 	}
 
-	private BDD extractWitness(BDD p) {
-		BDD res = factory.one();
-		BDD copy = p;
-		//res = res.and(factory.ithVar(0));
-		//res.and(factory.ithVar(1));
-		//res.printDot();
-		//factory.ithVar(1).and(factory.ithVar(0)).printDot();
-		Integer index = 0;
-		res = factory.one();
-		for (int i = 0; i < factory.varNum(); i++) {
-			if (!factory.ithVar(i).and(copy).equals(factory.zero())) {
-				res = res.and(factory.ithVar(index));			;
-				copy = copy.and(factory.ithVar(index));
-			} else {
-				res = res.and(factory.nithVar(index));
-				copy = copy.and(factory.nithVar(index));
-			}
-			index ++;
-		}
-		return res;
+	/**
+	 * The value given to the variables a witness is free to choose, true by default
+	 */
+	public void setDefaultPolarity(boolean polarity) {
+		this.polarity = polarity;
 	}
-	
+
+	/**
+	 * If <code>random</code> is not null, witnesses are sampled uniformly among the models of the predicate,
+	 * otherwise they follow the default polarity
+	 */
+	public void setRandom(Random random) {
+		this.random = random;
+	}
+
 	@Override
 	public BDD generateWitness(BDD p1) {
-		BDD sat = extractWitness(p1);//p1.satOne();
-		/*
-		sat.not().printDot();
-		if (!sat.not().and(p1).equals(factory.zero())) {
-			throw new AssertionError("Witness is buggy 1");
-		}
-		if (sat.and(p1).equals(factory.zero())) {
-			throw new AssertionError("Witness is buggy 2");
-		}*/		
-		return sat;
+		if (p1.isZero())
+			return null;
+		if (random != null)
+			return sample(p1, random, new HashMap<Integer, Double>());
+		return satOne(p1, polarity);
 	}
 
+	/**
+	 * The BDDs of this algebra are unary predicates, so the pair consists of two models of <code>p1</code>, which are
+	 * distinct if <code>p1</code> has more than one model
+	 */
 	@Override
 	public Pair<BDD, BDD> generateWitnesses(BDD p1) {
-		// TODO Auto-generated method stub
-		throw new UnsupportedOperationException();
+		BDD first = generateWitness(p1);
+		if (first == null)
+			return null;
+		BDD second = generateWitness(p1.and(first.not()));
+		return new Pair<BDD, BDD>(first, second == null ? first : second);
+	}
+
+	/**
+	 * The minterm of <code>p</code> found by walking a single path of its BDD, taking the <code>polarity</code> branch
+	 * whenever it is satisfiable and giving <code>polarity</code> to the variables not on the path. Builds one node per
+	 * variable.
+	 */
+	public BDD satOne(BDD p, boolean polarity) {
+		if (p.isZero())
+			return null;
+		boolean[] values = new boolean[factory.varNum()];
+		Arrays.fill(values, polarity);
+		BDD node = p.id();
+		while (!node.isOne()) {
+			BDD next = polarity ? node.high() : node.low();
+			if (next.isZero()) {
+				next.free();
+				next = polarity ? node.low() : node.high();
+				values[node.var()] = !polarity;
+			}
+			node.free();
+			node = next;
+		}
+		node.free();
+		return mkMinterm(values);
+	}
+
+	/**
+	 * The disjoint cubes of <code>p</code>, one per path to true of its BDD, computed while iterating. A cube gives
+	 * every variable the value 0, 1, or -1 when it is not constrained.
+	 */
+	public Iterator<byte[]> cubes(BDD p) {
+		return new CubeIterator(p);
+	}
+
+	/**
+	 * The minterms of <code>p</code>, computed while iterating
+	 */
+	public Iterator<BDD> minterms(BDD p) {
+		final Iterator<byte[]> cubes = cubes(p);
+		return new Iterator<BDD>() {
+			byte[] cube;
+			int[] free;
+			long next, count;
+
+			public boolean hasNext() {
+				return next < count || cubes.hasNext();
+			}
+
+			public BDD next() {
+				if (next == count) {
+					cube = cubes.next();
+					int size = 0;
+					for (byte b : cube)
+						if (b < 0)
+							size++;
+					if (size >= 63)
+						throw new UnsupportedOperationException("too many minterms in a cube");
+					free = new int[size];
+					size = 0;
+					for (int v = 0; v < cube.length; v++)
+						if (cube[v] < 0)
+							free[size++] = v;
+					next = 0;
+					count = 1L << size;
+				}
+				boolean[] values = new boolean[cube.length];
+				for (int v = 0; v < cube.length; v++)
+					values[v] = cube[v] == 1;
+				for (int i = 0; i < free.length; i++)
+					values[free[i]] = (next >>> i & 1) == 1;
+				next++;
+				return mkMinterm(values);
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * An endless sequence of minterms of the satisfiable predicate <code>p</code>, each drawn uniformly among its
+	 * models
+	 */
+	public Iterator<BDD> samples(final BDD p, final Random random) {
+		if (p.isZero())
+			throw new IllegalArgumentException("samples: unsat");
+		final Map<Integer, Double> densities = new HashMap<Integer, Double>();
+		return new Iterator<BDD>() {
+			public boolean hasNext() {
+				return true;
+			}
+
+			public BDD next() {
+				return sample(p, random, densities);
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	// Walks a path of p taking each branch with probability proportional to its number of models
+	private BDD sample(BDD p, Random random, Map<Integer, Double> densities) {
+		boolean[] values = new boolean[factory.varNum()];
+		for (int v = 0; v < values.length; v++)
+			values[v] = random.nextBoolean();
+		BDD node = p.id();
+		while (!node.isOne()) {
+			BDD low = node.low();
+			BDD high = node.high();
+			double d0 = density(low, densities);
+			double d1 = density(high, densities);
+			boolean takeHigh = random.nextDouble() * (d0 + d1) < d1;
+			values[node.var()] = takeHigh;
+			(takeHigh ? low : high).free();
+			node.free();
+			node = takeHigh ? high : low;
+		}
+		node.free();
+		return mkMinterm(values);
+	}
+
+	// The fraction of the assignments that satisfy p. The nodes below a referenced BDD are not collected, so the
+	// densities are keyed by node and the children are freed once visited
+	private double density(BDD p, Map<Integer, Double> densities) {
+		if (p.isZero())
+			return 0;
+		if (p.isOne())
+			return 1;
+		Integer key = p.hashCode();
+		Double d = densities.get(key);
+		if (d == null) {
+			BDD low = p.low();
+			BDD high = p.high();
+			d = (density(low, densities) + density(high, densities)) / 2;
+			low.free();
+			high.free();
+			densities.put(key, d);
+		}
+		return d;
+	}
+
+	// The conjunction of the literals, built from the last level so that every step adds a single node
+	private BDD mkMinterm(boolean[] values) {
+		BDD res = factory.one();
+		for (int level = values.length - 1; level >= 0; level--) {
+			int v = factory.level2Var(level);
+			res = (values[v] ? factory.ithVar(v) : factory.nithVar(v)).andWith(res);
+		}
+		return res;
+	}
+
+	/**
+	 * Depth-first iteration of the paths to true, keeping the current path on a stack
+	 */
+	private class CubeIterator implements Iterator<byte[]> {
+		private final BDD[] path = new BDD[factory.varNum()];
+		private final byte[] values = new byte[factory.varNum()];
+		private int depth = 0;
+		private boolean hasNext;
+
+		CubeIterator(BDD p) {
+			Arrays.fill(values, (byte) -1);
+			hasNext = !p.isZero();
+			if (hasNext)
+				descend(p.id());
+		}
+
+		// follows the low branches that are satisfiable down to true
+		private void descend(BDD node) {
+			while (!node.isOne()) {
+				path[depth++] = node;
+				BDD next = node.low();
+				if (next.isZero()) {
+					next.free();
+					next = node.high();
+					values[node.var()] = 1;
+				} else
+					values[node.var()] = 0;
+				node = next;
+			}
+			node.free();
+		}
+
+		public boolean hasNext() {
+			return hasNext;
+		}
+
+		public byte[] next() {
+			if (!hasNext)
+				throw new NoSuchElementException();
+			byte[] cube = values.clone();
+			// backtrack to the last node whose high branch is satisfiable and unexplored
+			hasNext = false;
+			while (depth > 0) {
+				BDD node = path[--depth];
+				int v = node.var();
+				if (values[v] == 0) {
+					BDD high = node.high();
+					if (!high.isZero()) {
+						values[v] = 1;
+						path[depth++] = node;
+						descend(high);
+						hasNext = true;
+						break;
+					}
+					high.free();
+				}
+				values[v] = -1;
+				node.free();
+			}
+			return cube;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
 	}
 
 	@Override
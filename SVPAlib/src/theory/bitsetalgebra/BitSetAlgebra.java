@@ -0,0 +1,239 @@
+package theory.bitsetalgebra;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+import utilities.Pair;
+
+/**
+ * BitSetAlgebra: the theory of the subsets of a finite alphabet. A predicate is a bit vector with one bit per symbol,
+ * so the Boolean operations, satisfiability and witnesses are word operations, and automata over small alphabets run
+ * at the speed of their explicit counterparts while using the symbolic API.
+ */
+public class BitSetAlgebra<S> extends BooleanAlgebra<BitSetPred<S>, S> {
+
+	private final List<S> alphabet;
+	private final Map<S, Integer> indices;
+	private final int wordCount;
+	// the bits of the last word that stand for symbols
+	private final long lastMask;
+
+	private final BitSetPred<S> falsePred;
+	private final BitSetPred<S> truePred;
+
+	/**
+	 * The algebra over the distinct elements of <code>alphabet</code>, numbered in iteration order
+	 */
+	public BitSetAlgebra(Collection<S> alphabet) {
+		this.alphabet = new ArrayList<S>();
+		this.indices = new HashMap<S, Integer>();
+		for (S s : alphabet)
+			if (!indices.containsKey(s)) {
+				indices.put(s, this.alphabet.size());
+				this.alphabet.add(s);
+			}
+		int n = this.alphabet.size();
+		this.wordCount = (n + 63) >>> 6;
+		this.lastMask = (n & 63) == 0 ? -1L : (1L << n) - 1;
+
+		this.falsePred = new BitSetPred<S>(new long[wordCount], this.alphabet);
+		long[] all = new long[wordCount];
+		Arrays.fill(all, -1L);
+		if (wordCount > 0)
+			all[wordCount - 1] = lastMask;
+		this.truePred = new BitSetPred<S>(all, this.alphabet);
+	}
+
+	/**
+	 * The symbols of the alphabet, the <code>i</code>-th symbol is bit <code>i</code> of the predicates
+	 */
+	public List<S> getAlphabet() {
+		return Collections.unmodifiableList(alphabet);
+	}
+
+	/**
+	 * The predicate that contains exactly the elements of <code>symbols</code>
+	 */
+	public BitSetPred<S> MkSet(Collection<S> symbols) {
+		long[] words = new long[wordCount];
+		for (S s : symbols) {
+			int i = indexOf(s);
+			words[i >>> 6] |= 1L << i;
+		}
+		return new BitSetPred<S>(words, alphabet);
+	}
+
+	private int indexOf(S s) {
+		Integer i = indices.get(s);
+		if (i == null)
+			throw new IllegalArgumentException("symbol " + s + " is not in the alphabet");
+		return i;
+	}
+
+	@Override
+	public BitSetPred<S> MkAtom(S s) {
+		int i = indexOf(s);
+		long[] words = new long[wordCount];
+		words[i >>> 6] = 1L << i;
+		return new BitSetPred<S>(words, alphabet);
+	}
+
+	@Override
+	public BitSetPred<S> MkNot(BitSetPred<S> p) {
+		long[] words = new long[wordCount];
+		for (int w = 0; w < wordCount; w++)
+			words[w] = ~p.words[w];
+		if (wordCount > 0)
+			words[wordCount - 1] &= lastMask;
+		return new BitSetPred<S>(words, alphabet);
+	}
+
+	@Override
+	public BitSetPred<S> MkOr(Collection<BitSetPred<S>> pset) {
+		long[] words = new long[wordCount];
+		for (BitSetPred<S> p : pset)
+			for (int w = 0; w < wordCount; w++)
+				words[w] |= p.words[w];
+		return new BitSetPred<S>(words, alphabet);
+	}
+
+	@Override
+	public BitSetPred<S> MkOr(BitSetPred<S> p1, BitSetPred<S> p2) {
+		long[] words = new long[wordCount];
+		for (int w = 0; w < wordCount; w++)
+			words[w] = p1.words[w] | p2.words[w];
+		return new BitSetPred<S>(words, alphabet);
+	}
+
+	@Override
+	public BitSetPred<S> MkAnd(Collection<BitSetPred<S>> pset) {
+		long[] words = truePred.words.clone();
+		for (BitSetPred<S> p : pset)
+			for (int w = 0; w < wordCount; w++)
+				words[w] &= p.words[w];
+		return new BitSetPred<S>(words, alphabet);
+	}
+
+	@Override
+	public BitSetPred<S> MkAnd(BitSetPred<S> p1, BitSetPred<S> p2) {
+		long[] words = new long[wordCount];
+		for (int w = 0; w < wordCount; w++)
+			words[w] = p1.words[w] & p2.words[w];
+		return new BitSetPred<S>(words, alphabet);
+	}
+
+	@Override
+	public BitSetPred<S> True() {
+		return truePred;
+	}
+
+	@Override
+	public BitSetPred<S> False() {
+		return falsePred;
+	}
+
+	@Override
+	public boolean AreEquivalent(BitSetPred<S> p1, BitSetPred<S> p2) {
+		return Arrays.equals(p1.words, p2.words);
+	}
+
+	@Override
+	public boolean IsSatisfiable(BitSetPred<S> p1) {
+		for (long word : p1.words)
+			if (word != 0)
+				return true;
+		return false;
+	}
+
+	@Override
+	public boolean HasModel(BitSetPred<S> p1, S el) {
+		Integer i = indices.get(el);
+		return i != null && p1.get(i);
+	}
+
+	@Override
+	public boolean HasModel(BitSetPred<S> p1, S el1, S el2) {
+		return false;
+	}
+
+	@Override
+	public S generateWitness(BitSetPred<S> p1) {
+		int i = p1.nextSetBit(0);
+		return i < 0 ? null : alphabet.get(i);
+	}
+
+	@Override
+	public Pair<S, S> generateWitnesses(BitSetPred<S> p1) {
+		return null;
+	}
+
+	/**
+	 * Computes the minterms by refining a partition of <code>startPred</code> with one predicate at a time: every
+	 * class is split into its intersections with the predicate and with its complement, 64 symbols per word
+	 * operation, and empty parts are dropped. A class is never split into more parts than it has symbols, so there
+	 * are at most as many classes as symbols in <code>startPred</code>.
+	 */
+	@Override
+	public Collection<Pair<BitSetPred<S>, ArrayList<Integer>>> GetMinterms(ArrayList<BitSetPred<S>> predicates,
+			BitSetPred<S> startPred, long timeout) throws TimeoutException {
+		long startTime = System.currentTimeMillis();
+		int k = predicates.size();
+		List<long[]> classes = new ArrayList<long[]>();
+		List<long[]> signatures = new ArrayList<long[]>();
+		if (IsSatisfiable(startPred)) {
+			classes.add(startPred.words);
+			signatures.add(new long[(k + 63) >>> 6]);
+		}
+
+		for (int j = 0; j < k; j++) {
+			if (System.currentTimeMillis() - startTime > timeout)
+				throw new TimeoutException("Minterm construction timeout");
+			long[] p = predicates.get(j).words;
+			List<long[]> refined = new ArrayList<long[]>(classes.size() * 2);
+			List<long[]> refinedSignatures = new ArrayList<long[]>(classes.size() * 2);
+			for (int c = 0; c < classes.size(); c++) {
+				long[] members = classes.get(c);
+				long[] in = new long[wordCount], out = new long[wordCount];
+				long anyIn = 0, anyOut = 0;
+				for (int w = 0; w < wordCount; w++) {
+					in[w] = members[w] & p[w];
+					out[w] = members[w] & ~p[w];
+					anyIn |= in[w];
+					anyOut |= out[w];
+				}
+				long[] signature = signatures.get(c);
+				if (anyIn != 0) {
+					long[] inSignature = signature.clone();
+					inSignature[j >>> 6] |= 1L << j;
+					refined.add(in);
+					refinedSignatures.add(inSignature);
+				}
+				if (anyOut != 0) {
+					refined.add(out);
+					refinedSignatures.add(signature);
+				}
+			}
+			classes = refined;
+			signatures = refinedSignatures;
+		}
+
+		List<Pair<BitSetPred<S>, ArrayList<Integer>>> minterms = new ArrayList<Pair<BitSetPred<S>, ArrayList<Integer>>>();
+		for (int c = 0; c < classes.size(); c++) {
+			long[] signature = signatures.get(c);
+			ArrayList<Integer> setBits = new ArrayList<Integer>(k);
+			for (int j = 0; j < k; j++)
+				setBits.add((signature[j >>> 6] & (1L << j)) != 0 ? 1 : 0);
+			minterms.add(new Pair<BitSetPred<S>, ArrayList<Integer>>(new BitSetPred<S>(classes.get(c), alphabet),
+					setBits));
+		}
+		return minterms;
+	}
+}
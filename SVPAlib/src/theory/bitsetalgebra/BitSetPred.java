@@ -0,0 +1,77 @@
+package theory.bitsetalgebra;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * BitSetPred: a set of symbols of a finite alphabet, stored as a bit vector in <code>long</code> words where bit
+ * <code>i</code> stands for the <code>i</code>-th symbol of the alphabet of its {@link BitSetAlgebra}. Predicates
+ * are immutable.
+ */
+public class BitSetPred<S> {
+
+	final long[] words;
+	private final List<S> alphabet;
+
+	BitSetPred(long[] words, List<S> alphabet) {
+		this.words = words;
+		this.alphabet = alphabet;
+	}
+
+	/**
+	 * The number of symbols in the set
+	 */
+	public int size() {
+		int size = 0;
+		for (long word : words)
+			size += Long.bitCount(word);
+		return size;
+	}
+
+	/**
+	 * Whether the set contains the <code>i</code>-th symbol of the alphabet
+	 */
+	public boolean get(int i) {
+		return (words[i >>> 6] & (1L << i)) != 0;
+	}
+
+	/**
+	 * The index of the first symbol in the set starting from <code>from</code>, or -1 if there is none
+	 */
+	public int nextSetBit(int from) {
+		int w = from >>> 6;
+		if (w >= words.length)
+			return -1;
+		long word = words[w] & (-1L << from);
+		while (true) {
+			if (word != 0)
+				return (w << 6) + Long.numberOfTrailingZeros(word);
+			if (++w == words.length)
+				return -1;
+			word = words[w];
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof BitSetPred)
+			return Arrays.equals(words, ((BitSetPred<?>) obj).words);
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(words);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+		for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1)) {
+			if (sb.length() > 1)
+				sb.append(',');
+			sb.append(alphabet.get(i));
+		}
+		return sb.append('}').toString();
+	}
+}
@@ -0,0 +1,193 @@
+package theory.cartesian;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+import utilities.Pair;
+
+/**
+ * CachedAlgebra: a view of a Boolean algebra that remembers the results of the Boolean operations, of satisfiability
+ * and of equivalence for the most recently used predicates. Results are looked up with the <code>equals</code> of the
+ * predicates, so predicates without structural equality are only found again when the same object is passed.
+ */
+public class CachedAlgebra<P, S> extends BooleanAlgebra<P, S> {
+
+	private final BooleanAlgebra<P, S> ba;
+
+	private final Map<P, Boolean> satisfiable;
+	private final Map<P, P> negations;
+	private final Map<Pair<P, P>, P> conjunctions;
+	private final Map<Pair<P, P>, P> disjunctions;
+	private final Map<Pair<P, P>, Boolean> equivalences;
+
+	/**
+	 * A view of <code>ba</code> that keeps up to 16384 results of every kind
+	 */
+	public CachedAlgebra(BooleanAlgebra<P, S> ba) {
+		this(ba, 1 << 14);
+	}
+
+	/**
+	 * A view of <code>ba</code> that keeps up to <code>capacity</code> results of every kind
+	 */
+	public CachedAlgebra(BooleanAlgebra<P, S> ba, int capacity) {
+		this.ba = ba;
+		this.satisfiable = lru(capacity);
+		this.negations = lru(capacity);
+		this.conjunctions = lru(capacity);
+		this.disjunctions = lru(capacity);
+		this.equivalences = lru(capacity);
+	}
+
+	private static <K, V> Map<K, V> lru(final int capacity) {
+		return new LinkedHashMap<K, V>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * The algebra this view caches
+	 */
+	public BooleanAlgebra<P, S> getAlgebra() {
+		return ba;
+	}
+
+	/**
+	 * Forgets every result
+	 */
+	public void clear() {
+		satisfiable.clear();
+		negations.clear();
+		conjunctions.clear();
+		disjunctions.clear();
+		equivalences.clear();
+	}
+
+	@Override
+	public P MkAtom(S s) {
+		return ba.MkAtom(s);
+	}
+
+	@Override
+	public P MkNot(P p) throws TimeoutException {
+		P not = negations.get(p);
+		if (not == null) {
+			not = ba.MkNot(p);
+			negations.put(p, not);
+			negations.put(not, p);
+		}
+		return not;
+	}
+
+	@Override
+	public P MkOr(Collection<P> pset) throws TimeoutException {
+		P or = ba.False();
+		for (P p : pset)
+			or = MkOr(or, p);
+		return or;
+	}
+
+	@Override
+	public P MkOr(P p1, P p2) throws TimeoutException {
+		Pair<P, P> key = new Pair<P, P>(p1, p2);
+		P or = disjunctions.get(key);
+		if (or == null) {
+			or = ba.MkOr(p1, p2);
+			disjunctions.put(key, or);
+		}
+		return or;
+	}
+
+	@Override
+	public P MkAnd(Collection<P> pset) throws TimeoutException {
+		P and = ba.True();
+		for (P p : pset)
+			and = MkAnd(and, p);
+		return and;
+	}
+
+	@Override
+	public P MkAnd(P p1, P p2) throws TimeoutException {
+		Pair<P, P> key = new Pair<P, P>(p1, p2);
+		P and = conjunctions.get(key);
+		if (and == null) {
+			and = ba.MkAnd(p1, p2);
+			conjunctions.put(key, and);
+		}
+		return and;
+	}
+
+	@Override
+	public P True() {
+		return ba.True();
+	}
+
+	@Override
+	public P False() {
+		return ba.False();
+	}
+
+	@Override
+	public boolean AreEquivalent(P p1, P p2) throws TimeoutException {
+		Pair<P, P> key = new Pair<P, P>(p1, p2);
+		Boolean equivalent = equivalences.get(key);
+		if (equivalent == null) {
+			equivalent = ba.AreEquivalent(p1, p2);
+			equivalences.put(key, equivalent);
+			equivalences.put(new Pair<P, P>(p2, p1), equivalent);
+		}
+		return equivalent;
+	}
+
+	@Override
+	public boolean IsSatisfiable(P p) throws TimeoutException {
+		Boolean sat = satisfiable.get(p);
+		if (sat == null) {
+			sat = ba.IsSatisfiable(p);
+			satisfiable.put(p, sat);
+		}
+		return sat;
+	}
+
+	@Override
+	public boolean HasModel(P p1, S el) throws TimeoutException {
+		return ba.HasModel(p1, el);
+	}
+
+	@Override
+	public boolean HasModel(P p1, S el1, S el2) throws TimeoutException {
+		return ba.HasModel(p1, el1, el2);
+	}
+
+	@Override
+	public S generateWitness(P p1) throws TimeoutException {
+		return ba.generateWitness(p1);
+	}
+
+	@Override
+	public Pair<S, S> generateWitnesses(P p1) throws TimeoutException {
+		return ba.generateWitnesses(p1);
+	}
+
+	@Override
+	public Collection<Pair<P, ArrayList<Integer>>> GetMinterms(ArrayList<P> predicates, P startPred, long timeout)
+			throws TimeoutException {
+		return ba.GetMinterms(predicates, startPred, timeout);
+	}
+
+	@Override
+	public ArrayList<P> GetSeparatingPredicates(ArrayList<Collection<S>> groups, long timeout)
+			throws TimeoutException {
+		return ba.GetSeparatingPredicates(groups, timeout);
+	}
+}
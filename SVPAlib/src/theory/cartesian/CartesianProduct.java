@@ -1,7 +1,6 @@
 package theory.cartesian;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 
 import org.sat4j.specs.TimeoutException;
@@ -12,9 +11,12 @@ import utilities.Pair;
 public class CartesianProduct<P1,P2> {
 	
 	List<Pair<P1,P2>> products;
+	// whether the products are disjoint cubes, see isNormalized()
+	boolean normalized;
 	
 	public CartesianProduct(){
 		products = new ArrayList<>();
+		normalized = true;
 	}
 	
 	/**
@@ -24,37 +26,72 @@ public class CartesianProduct<P1,P2> {
 		this();
 		products = new ArrayList<>();
 		products.add(new Pair<>(p1,p2));
+		normalized = false;
 	}	
 	
 	public CartesianProduct(List<Pair<P1,P2>> products) {
+		this(products, false);
+	}
+	
+	/**
+	 * The union of <code>products</code>, which the caller guarantees to be normalized if <code>normalized</code>
+	 */
+	public CartesianProduct(List<Pair<P1,P2>> products, boolean normalized) {
 		this.products = products;
+		this.normalized = normalized;
+	}
+	
+	/**
+	 * Whether the products are disjoint cubes: both components of every product are satisfiable and the first
+	 * components are pairwise disjoint. Holds after {@link #normalize(BooleanAlgebra, BooleanAlgebra)}.
+	 */
+	public boolean isNormalized() {
+		return normalized;
 	}
 	
+	/**
+	 * Makes the products disjoint cubes by inserting them one at a time with
+	 * {@link #insert(List, Object, Object, BooleanAlgebra, BooleanAlgebra)}, then merges the cubes with equivalent
+	 * second components
+	 */
 	public <S1,S2> void normalize(BooleanAlgebra<P1,S1> ba1,BooleanAlgebra<P2,S2> ba2) throws TimeoutException{
-		ArrayList<Pair<P1,P2>> newProducts = new ArrayList<Pair<P1,P2>>();
-		
-		ArrayList<P1> firstProj = new ArrayList<>();
-		for(Pair<P1,P2> pair: products)
-			firstProj.add(pair.first);
-		
-		Collection<Pair<P1, ArrayList<Integer>>> minterms = ba1.GetMinterms(firstProj);		
-		for(Pair<P1, ArrayList<Integer>> minterm:minterms){
-			P1 currA = minterm.first;
-			P2 currB = ba2.False();
-			boolean addflag = false;
-			for (int bit = 0; bit < products.size(); bit++) {
-				if (minterm.second.get(bit) == 1) {
-					addflag = true;
-					currB = ba2.MkOr(currB, products.get(bit).second);
-				}
-			}
-
-			if (addflag) //avoid adding unsat regions
-				newProducts.add(new Pair<>(currA, currB));
-		}
-		
-		products = newProducts;
+		if (normalized)
+			return;
+		List<Pair<P1,P2>> cubes = new ArrayList<Pair<P1,P2>>();
+		for (Pair<P1,P2> pair : products)
+			insert(cubes, pair.first, pair.second, ba1, ba2);
+		products = cubes;
 		reduce(ba1, ba2);
+		normalized = true;
+	}
+	
+	/**
+	 * Adds the product of <code>a</code> and <code>b</code> to the disjoint <code>cubes</code>, keeping them
+	 * disjoint: every cube that overlaps <code>a</code> is split into the overlap, which also gets <code>b</code>, and
+	 * the rest, and the part of <code>a</code> outside all cubes becomes a new cube
+	 */
+	public static <P1,P2,S1,S2> void insert(List<Pair<P1,P2>> cubes, P1 a, P2 b, BooleanAlgebra<P1,S1> ba1,
+			BooleanAlgebra<P2,S2> ba2) throws TimeoutException {
+		if (!ba1.IsSatisfiable(a) || !ba2.IsSatisfiable(b))
+			return;
+		int n = cubes.size();
+		for (int i = 0; i < n; i++) {
+			Pair<P1,P2> cube = cubes.get(i);
+			P1 common = ba1.MkAnd(cube.first, a);
+			if (!ba1.IsSatisfiable(common))
+				continue;
+			P2 union = ba2.MkOr(cube.second, b);
+			P1 rest = ba1.MkAnd(cube.first, ba1.MkNot(a));
+			if (ba1.IsSatisfiable(rest)) {
+				cubes.set(i, new Pair<>(rest, cube.second));
+				cubes.add(new Pair<>(common, union));
+			} else
+				cubes.set(i, new Pair<>(cube.first, union));
+			a = ba1.MkAnd(a, ba1.MkNot(cube.first));
+			if (!ba1.IsSatisfiable(a))
+				return;
+		}
+		cubes.add(new Pair<>(a, b));
 	}
 	
 	public <S1,S2> void reduce(BooleanAlgebra<P1, S1> ba1, BooleanAlgebra<P2, S2> ba2) throws TimeoutException {
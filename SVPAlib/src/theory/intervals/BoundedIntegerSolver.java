@@ -94,6 +94,24 @@ public class BoundedIntegerSolver extends BooleanAlgebra<IntPred, Integer> {
 		return ba.generateWitnesses(p1);
 	}
 	
+	/**
+	 * Computes the minterms within the domain with {@link IntegerSolver#GetMintermTable(ArrayList, IntPred, long)}
+	 */
+	@Override
+	public Collection<Pair<IntPred, ArrayList<Integer>>> GetMinterms(ArrayList<IntPred> predicates,
+			IntPred startPred, long timeout) throws TimeoutException {
+		return GetMintermTable(predicates, startPred, timeout).toPairs();
+	}
+
+	/**
+	 * Computes the minterms of <code>predicates</code> within <code>startPred</code> and the domain, see
+	 * {@link IntegerSolver#GetMintermTable(ArrayList, IntPred, long)}
+	 */
+	public IntervalMinterms<IntPred> GetMintermTable(ArrayList<IntPred> predicates, IntPred startPred,
+			long timeout) throws TimeoutException {
+		return ba.GetMintermTable(predicates, ba.MkAnd(domain, startPred), timeout);
+	}
+
 	@Override
 	public ArrayList<IntPred> GetSeparatingPredicates(
 			ArrayList<Collection<Integer>> groups, long timeout) throws TimeoutException {
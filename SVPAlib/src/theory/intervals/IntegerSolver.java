@@ -152,6 +152,47 @@ public class IntegerSolver extends BooleanAlgebra<IntPred, Integer> {
 		throw new UnsupportedOperationException("Not supported yet.");
 	}
 	
+	/**
+	 * Computes the minterms with {@link #GetMintermTable(ArrayList, IntPred, long)}
+	 */
+	@Override
+	public Collection<Pair<IntPred, ArrayList<Integer>>> GetMinterms(ArrayList<IntPred> predicates,
+			IntPred startPred, long timeout) throws TimeoutException {
+		return GetMintermTable(predicates, startPred, timeout).toPairs();
+	}
+
+	/**
+	 * Computes the minterms of <code>predicates</code> within <code>startPred</code> by sweeping their interval
+	 * endpoints. The positions of the table are the integers themselves.
+	 */
+	public IntervalMinterms<IntPred> GetMintermTable(ArrayList<IntPred> predicates, IntPred startPred,
+			long timeout) throws TimeoutException {
+		List<long[]> intervals = new ArrayList<long[]>(predicates.size());
+		for (IntPred p : predicates)
+			intervals.add(positions(p));
+		return new IntervalMinterms<IntPred>(intervals, positions(startPred),
+				new IntervalMinterms.Decoder<IntPred>() {
+					public IntPred decode(List<long[]> segments) {
+						ImmutableList.Builder<ImmutablePair<Integer, Integer>> builder = ImmutableList.builder();
+						for (long[] segment : segments)
+							builder.add(ImmutablePair.of(segment[0] == Long.MIN_VALUE ? null : (int) segment[0],
+									segment[1] == Long.MAX_VALUE ? null : (int) (segment[1] - 1)));
+						return new IntPred(builder.build());
+					}
+				}, timeout);
+	}
+
+	// the intervals of p as half-open ranges, an unbounded side is Long.MIN_VALUE or Long.MAX_VALUE
+	private static long[] positions(IntPred p) {
+		long[] ranges = new long[2 * p.intervals.size()];
+		for (int i = 0; i < p.intervals.size(); i++) {
+			ImmutablePair<Integer, Integer> interval = p.intervals.get(i);
+			ranges[2 * i] = interval.left == null ? Long.MIN_VALUE : interval.left;
+			ranges[2 * i + 1] = interval.right == null ? Long.MAX_VALUE : interval.right + 1L;
+		}
+		return ranges;
+	}
+
 	/**
 	 * Returns a list of disjoint predicates [p1,...,pn] that accepts the elements [S1...SN] and that has union equal to true.
 	 */
@@ -0,0 +1,207 @@
+package theory.intervals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sat4j.specs.TimeoutException;
+
+import utilities.Pair;
+
+/**
+ * The minterms of a list of interval predicates, computed by a sweep over the sorted interval endpoints instead of
+ * the up to 2^n conjunctions of {@link theory.BooleanAlgebra#GetMinterms(ArrayList)}.
+ *
+ * The solvers encode their intervals as half-open ranges <code>[start, end)</code> of <code>long</code> positions.
+ * The endpoints of all the predicates cut the line into elementary segments, every segment is visited once while
+ * keeping the set of predicates that contain it, and the segments with the same set, the signature, form a minterm.
+ * The sorted segments with the index of their minterm are an alphabet compression table: {@link #mintermAt(long)}
+ * classifies a position with a binary search, and {@link #getClassTable(int)} expands the table for small domains.
+ */
+public class IntervalMinterms<P> {
+
+	/**
+	 * Builds the predicate of a minterm from its sorted, non adjacent segments
+	 */
+	interface Decoder<P> {
+		P decode(List<long[]> segments);
+	}
+
+	private final int predicateCount;
+	private final List<P> minterms = new ArrayList<P>();
+	private final List<long[]> signatures = new ArrayList<long[]>();
+	// the start of every segment and its minterm, -1 outside the start predicate; the last entry is the end of the
+	// last segment, with minterm -1
+	private final long[] segmentStarts;
+	private final int[] segmentMinterms;
+
+	/**
+	 * Sweeps the intervals of the predicates, <code>intervals.get(j)</code> holds the starts and ends of the disjoint
+	 * intervals of predicate <code>j</code> in alternation, and <code>start</code> those of the start predicate
+	 */
+	IntervalMinterms(List<long[]> intervals, long[] start, Decoder<P> decoder, long timeout) throws TimeoutException {
+		long startTime = System.currentTimeMillis();
+		int k = intervals.size();
+		this.predicateCount = k;
+
+		// the distinct endpoints, in order
+		int endpointCount = start.length;
+		for (long[] ranges : intervals)
+			endpointCount += ranges.length;
+		long[] boundaries = new long[endpointCount];
+		int n = 0;
+		for (long[] ranges : intervals)
+			for (long position : ranges)
+				boundaries[n++] = position;
+		for (long position : start)
+			boundaries[n++] = position;
+		Arrays.sort(boundaries);
+		int b = 0;
+		for (int i = 0; i < n; i++)
+			if (b == 0 || boundaries[i] != boundaries[b - 1])
+				boundaries[b++] = boundaries[i];
+		boundaries = Arrays.copyOf(boundaries, b);
+
+		// the predicates entering or leaving at every boundary, as linked lists; the start predicate is k
+		int[] head = new int[b];
+		Arrays.fill(head, -1);
+		int[] next = new int[endpointCount];
+		int[] toggled = new int[endpointCount];
+		int e = 0;
+		for (int j = 0; j <= k; j++) {
+			long[] ranges = j < k ? intervals.get(j) : start;
+			for (long position : ranges) {
+				int at = Arrays.binarySearch(boundaries, position);
+				toggled[e] = j;
+				next[e] = head[at];
+				head[at] = e++;
+			}
+		}
+
+		// the segment from boundaries[t] to boundaries[t + 1] has the signature of the predicates entered so far
+		long[] current = new long[(k + 64) >>> 6];
+		Map<Signature, Integer> indices = new HashMap<Signature, Integer>();
+		List<List<long[]>> segments = new ArrayList<List<long[]>>();
+		this.segmentStarts = boundaries;
+		this.segmentMinterms = new int[b];
+		if (b > 0)
+			segmentMinterms[b - 1] = -1;
+		for (int t = 0; t + 1 < b; t++) {
+			if ((t & 1023) == 0 && System.currentTimeMillis() - startTime > timeout)
+				throw new TimeoutException("Minterm construction timeout");
+			for (int x = head[t]; x >= 0; x = next[x])
+				current[toggled[x] >>> 6] ^= 1L << toggled[x];
+			if ((current[k >>> 6] & (1L << k)) == 0) {
+				segmentMinterms[t] = -1;
+				continue;
+			}
+			long[] signature = current.clone();
+			signature[k >>> 6] &= ~(1L << k);
+			Signature key = new Signature(signature);
+			Integer index = indices.get(key);
+			if (index == null) {
+				index = signatures.size();
+				indices.put(key, index);
+				signatures.add(signature);
+				segments.add(new ArrayList<long[]>());
+			}
+			segmentMinterms[t] = index;
+			List<long[]> own = segments.get(index);
+			long[] last = own.isEmpty() ? null : own.get(own.size() - 1);
+			if (last != null && last[1] == boundaries[t])
+				last[1] = boundaries[t + 1];
+			else
+				own.add(new long[] { boundaries[t], boundaries[t + 1] });
+		}
+		for (List<long[]> own : segments)
+			minterms.add(decoder.decode(own));
+	}
+
+	/**
+	 * The number of minterms
+	 */
+	public int size() {
+		return minterms.size();
+	}
+
+	/**
+	 * The <code>i</code>-th minterm, in the order of the first segment of each minterm
+	 */
+	public P getMinterm(int i) {
+		return minterms.get(i);
+	}
+
+	/**
+	 * The signature of the <code>i</code>-th minterm: bit <code>j</code> is set iff the minterm is contained in
+	 * predicate <code>j</code>
+	 */
+	public long[] getSignature(int i) {
+		return signatures.get(i).clone();
+	}
+
+	/**
+	 * The minterm that contains <code>position</code>, or -1 if no minterm does
+	 */
+	public int mintermAt(long position) {
+		int at = Arrays.binarySearch(segmentStarts, position);
+		if (at < 0)
+			at = -at - 2;
+		return at < 0 ? -1 : segmentMinterms[at];
+	}
+
+	/**
+	 * The minterm of every position from 0 to <code>size</code> - 1, for instance the 65536 characters of
+	 * {@link UnaryCharIntervalSolver}
+	 */
+	public int[] getClassTable(int size) {
+		int[] table = new int[size];
+		Arrays.fill(table, -1);
+		for (int t = 0; t + 1 < segmentStarts.length; t++) {
+			long from = Math.max(segmentStarts[t], 0);
+			long to = Math.min(segmentStarts[t + 1], size);
+			if (from < to)
+				Arrays.fill(table, (int) from, (int) to, segmentMinterms[t]);
+		}
+		return table;
+	}
+
+	/**
+	 * The minterms as pairs of a predicate and the list of 1s and 0s of
+	 * {@link theory.BooleanAlgebra#GetMinterms(ArrayList)}
+	 */
+	public Collection<Pair<P, ArrayList<Integer>>> toPairs() {
+		List<Pair<P, ArrayList<Integer>>> pairs = new ArrayList<Pair<P, ArrayList<Integer>>>();
+		for (int i = 0; i < minterms.size(); i++) {
+			long[] signature = signatures.get(i);
+			ArrayList<Integer> setBits = new ArrayList<Integer>(predicateCount);
+			for (int j = 0; j < predicateCount; j++)
+				setBits.add((signature[j >>> 6] & (1L << j)) != 0 ? 1 : 0);
+			pairs.add(new Pair<P, ArrayList<Integer>>(minterms.get(i), setBits));
+		}
+		return pairs;
+	}
+
+	// a signature as a hash key
+	private static final class Signature {
+		final long[] bits;
+		final int hash;
+
+		Signature(long[] bits) {
+			this.bits = bits;
+			this.hash = Arrays.hashCode(bits);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Signature && Arrays.equals(bits, ((Signature) obj).bits);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
@@ -13,6 +13,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import theory.BooleanAlgebra;
 import utilities.Pair;
@@ -194,6 +195,71 @@ public class RealSolver extends BooleanAlgebra<RealPred, Double> {
 		throw new UnsupportedOperationException("Not supported yet.");
 	}
 	
+	/**
+	 * Computes the minterms of <code>predicates</code> within <code>startPred</code> by sweeping their interval
+	 * endpoints, see {@link IntervalMinterms}. The positions are the ranks of the distinct endpoints: position
+	 * <code>2i + 1</code> is the <code>i</code>-th endpoint and position <code>2i</code> the open interval before it.
+	 */
+	@Override
+	public Collection<Pair<RealPred, ArrayList<Integer>>> GetMinterms(ArrayList<RealPred> predicates,
+			RealPred startPred, long timeout) throws TimeoutException {
+		double[] values = new double[0];
+		int n = 0;
+		List<RealPred> all = new ArrayList<RealPred>(predicates);
+		all.add(startPred);
+		for (RealPred p : all)
+			for (Quadruple<Double,Boolean,Double,Boolean> interval : p.intervals) {
+				if (n + 2 > values.length)
+					values = Arrays.copyOf(values, 2 * n + 2);
+				if (interval.first != null)
+					values[n++] = interval.first + 0.0; // -0.0 is 0.0
+				if (interval.third != null)
+					values[n++] = interval.third + 0.0;
+			}
+		Arrays.sort(values, 0, n);
+		int r = 0;
+		for (int i = 0; i < n; i++)
+			if (r == 0 || values[i] != values[r - 1])
+				values[r++] = values[i];
+		final double[] endpoints = Arrays.copyOf(values, r);
+
+		List<long[]> intervals = new ArrayList<long[]>(predicates.size());
+		for (RealPred p : predicates)
+			intervals.add(positions(p, endpoints));
+		return new IntervalMinterms<RealPred>(intervals, positions(startPred, endpoints),
+				new IntervalMinterms.Decoder<RealPred>() {
+					public RealPred decode(List<long[]> segments) {
+						List<Quadruple<Double,Boolean,Double,Boolean>> decoded =
+								new ArrayList<Quadruple<Double,Boolean,Double,Boolean>>();
+						for (long[] segment : segments) {
+							int from = (int) segment[0], to = (int) segment[1];
+							Double lo = from == 0 ? null : endpoints[(from - 1) / 2];
+							Double hi = to == 2 * endpoints.length + 1 ? null : endpoints[(to - 1) / 2];
+							decoded.add(new Quadruple<Double,Boolean,Double,Boolean>(lo, from % 2 == 0, hi, to % 2 == 1));
+						}
+						return new RealPred(ImmutableList.copyOf(decoded));
+					}
+				}, timeout).toPairs();
+	}
+
+	// the intervals of p as half-open ranges of positions over the sorted endpoints
+	private static long[] positions(RealPred p, double[] endpoints) {
+		long[] ranges = new long[2 * p.intervals.size()];
+		int n = 0;
+		for (Quadruple<Double,Boolean,Double,Boolean> interval : p.intervals) {
+			long from = 0, to = 2L * endpoints.length + 1;
+			if (interval.first != null)
+				from = 2L * Arrays.binarySearch(endpoints, interval.first + 0.0) + (interval.second ? 2 : 1);
+			if (interval.third != null)
+				to = 2L * Arrays.binarySearch(endpoints, interval.third + 0.0) + (interval.fourth ? 1 : 2);
+			if (from < to) {
+				ranges[n++] = from;
+				ranges[n++] = to;
+			}
+		}
+		return Arrays.copyOf(ranges, n);
+	}
+
 	/**
 	 * Returns a list of disjoint predicates [p1,...,pn] that accepts the elements [S1...SN] and that has union equal to true.
 	 */
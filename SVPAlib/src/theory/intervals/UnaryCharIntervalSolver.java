@@ -15,6 +15,7 @@ import java.util.List;
 import java.util.Random;
 
 import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.sat4j.specs.TimeoutException;
 
 import com.google.common.collect.ImmutableList;
 
@@ -248,6 +249,46 @@ public class UnaryCharIntervalSolver extends BooleanAlgebraSubst<CharPred, CharF
 		return sb.toString();
 	}
 
+	/**
+	 * Computes the minterms with {@link #GetMintermTable(ArrayList, CharPred, long)}
+	 */
+	@Override
+	public Collection<Pair<CharPred, ArrayList<Integer>>> GetMinterms(ArrayList<CharPred> predicates,
+			CharPred startPred, long timeout) throws TimeoutException {
+		return GetMintermTable(predicates, startPred, timeout).toPairs();
+	}
+
+	/**
+	 * Computes the minterms of <code>predicates</code> within <code>startPred</code> by sweeping their interval
+	 * endpoints. The positions of the table are the character codes, so
+	 * <code>getClassTable(CharPred.MAX_CHAR + 1)</code> maps every character to its minterm.
+	 */
+	public IntervalMinterms<CharPred> GetMintermTable(ArrayList<CharPred> predicates, CharPred startPred,
+			long timeout) throws TimeoutException {
+		List<long[]> intervals = new ArrayList<long[]>(predicates.size());
+		for (CharPred p : predicates)
+			intervals.add(positions(p));
+		return new IntervalMinterms<CharPred>(intervals, positions(startPred),
+				new IntervalMinterms.Decoder<CharPred>() {
+					public CharPred decode(List<long[]> segments) {
+						ImmutableList.Builder<ImmutablePair<Character, Character>> builder = ImmutableList.builder();
+						for (long[] segment : segments)
+							builder.add(ImmutablePair.of((char) segment[0], (char) (segment[1] - 1)));
+						return new CharPred(builder.build());
+					}
+				}, timeout);
+	}
+
+	// the intervals of p as half-open ranges of character codes
+	private static long[] positions(CharPred p) {
+		long[] ranges = new long[2 * p.intervals.size()];
+		for (int i = 0; i < p.intervals.size(); i++) {
+			ranges[2 * i] = p.intervals.get(i).left;
+			ranges[2 * i + 1] = p.intervals.get(i).right + 1L;
+		}
+		return ranges;
+	}
+
 	@Override
 	public CharPred MkAtom(Character s) {
 		return new CharPred(s);
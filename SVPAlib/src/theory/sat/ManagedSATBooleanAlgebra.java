@@ -0,0 +1,417 @@
+package theory.sat;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+import org.sat4j.core.VecInt;
+import org.sat4j.minisat.SolverFactory;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.ISolver;
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebra;
+import utilities.Pair;
+
+/**
+ * ManagedSATBooleanAlgebra: the algebra of {@link SATBooleanAlgebra} for long sessions. Every conjunction and
+ * disjunction is still named by a fresh variable, but its defining clauses belong to the innermost open
+ * {@link Generation} and are guarded by that generation's activation literal. Queries assume the activation literals
+ * of the open generations, so the solver keeps its learned clauses from one query to the next. Closing a generation
+ * switches its definitions off and forgets them, and once the retired clauses outnumber the live ones the solver is
+ * rebuilt from the live definitions only.
+ */
+public class ManagedSATBooleanAlgebra extends BooleanAlgebra<Integer, boolean[]> {
+
+	private final Supplier<ISolver> solvers;
+	private ISolver solver;
+	private int maxid; // next fresh variable, {1, ..., universe} are the members of the universe and universe+1 is true
+	private final int universe;
+
+	// Hash consing, as in SATBooleanAlgebra
+	private final HashMap<Set<Integer>, Integer> andCache = new HashMap<>();
+	private final HashMap<Set<Integer>, Integer> orCache = new HashMap<>();
+	private final HashMap<Integer, Pair<Boolean, TreeSet<Integer>>> reverseCache = new HashMap<>();
+	// the generation of every definition
+	private final HashMap<Integer, Generation> owners = new HashMap<>();
+
+	private final Generation root;
+	private Generation current;
+
+	private int rebuildMinimum = 10000;
+	private long liveClauses = 0;
+	private long retiredClauses = 0;
+	private int rebuildCount = 0;
+	private long solveCount = 0;
+	private long solveTime = 0;
+
+	/**
+	 * A scope for definitions. Definitions made while the generation is the innermost open one belong to it, and are
+	 * retired when it is closed unless they were kept.
+	 */
+	public class Generation implements AutoCloseable {
+		private final Generation parent;
+		private final int activation; // 0 for the root, whose clauses are not guarded
+		private final LinkedHashSet<Integer> definitions = new LinkedHashSet<>();
+		private boolean closed = false;
+
+		private Generation(Generation parent, int activation) {
+			this.parent = parent;
+			this.activation = activation;
+		}
+
+		/**
+		 * Moves <code>p</code> and the definitions it depends on to the enclosing generation, so that it survives
+		 * {@link #close()}
+		 */
+		public void keep(Integer p) {
+			checkInnermost();
+			Deque<Integer> todo = new ArrayDeque<>();
+			todo.push(Math.abs(p));
+			while (!todo.isEmpty()) {
+				Integer name = todo.pop();
+				if (owners.get(name) != this)
+					continue;
+				Pair<Boolean, TreeSet<Integer>> definition = reverseCache.get(name);
+				definitions.remove(name);
+				parent.definitions.add(name);
+				owners.put(name, parent);
+				// the copy guarded by this generation dies when it is closed
+				emit(name, definition, parent.activation);
+				retiredClauses += definition.getSecond().size() + 1;
+				for (Integer operand : definition.getSecond())
+					todo.push(Math.abs(operand));
+			}
+		}
+
+		/**
+		 * Retires the definitions of this generation, the predicates that use them must not be used afterwards
+		 */
+		@Override
+		public void close() {
+			if (closed)
+				return;
+			checkInnermost();
+			closed = true;
+			current = parent;
+			for (Integer name : definitions) {
+				Pair<Boolean, TreeSet<Integer>> definition = reverseCache.remove(name);
+				(definition.getFirst() ? andCache : orCache).remove(definition.getSecond());
+				owners.remove(name);
+				liveClauses -= definition.getSecond().size() + 1;
+				retiredClauses += definition.getSecond().size() + 1;
+			}
+			definitions.clear();
+			// satisfies every clause guarded by this generation, including the learned ones
+			VecInt off = new VecInt();
+			off.push(-activation);
+			addClause(off);
+			if (retiredClauses > Math.max(rebuildMinimum, liveClauses))
+				rebuild();
+		}
+
+		private void checkInnermost() {
+			if (closed || this != current || parent == null)
+				throw new IllegalStateException("not the innermost open generation");
+		}
+	}
+
+	public ManagedSATBooleanAlgebra(Supplier<ISolver> solvers, int universeSize) {
+		if (universeSize < 0) {
+			throw new IllegalArgumentException("Universe size must be >= 0");
+		}
+		this.solvers = solvers;
+		this.universe = universeSize;
+		this.maxid = universeSize + 2;
+		this.root = new Generation(null, 0);
+		this.current = root;
+		reverseCache.put(universe + 1, new Pair<>(true, new TreeSet<Integer>()));
+		newSolver();
+	}
+
+	public ManagedSATBooleanAlgebra(int universeSize) {
+		this(SolverFactory::newDefault, universeSize);
+	}
+
+	/**
+	 * Opens a generation nested in the current one
+	 */
+	public Generation open() {
+		current = new Generation(current, fresh());
+		return current;
+	}
+
+	/**
+	 * Rebuilds the solver automatically once more than <code>minimum</code> retired clauses, and more retired than
+	 * live clauses, are left in it. The default minimum is 10000.
+	 */
+	public void setRebuildThreshold(int minimum) {
+		if (minimum < 0)
+			throw new IllegalArgumentException("invalid rebuild threshold");
+		this.rebuildMinimum = minimum;
+	}
+
+	/**
+	 * Replaces the solver by a new one with the clauses of the live definitions only. Learned clauses are lost.
+	 */
+	public void rebuild() {
+		newSolver();
+		for (Map.Entry<Integer, Generation> owner : owners.entrySet())
+			emit(owner.getKey(), reverseCache.get(owner.getKey()), owner.getValue().activation);
+		retiredClauses = 0;
+		rebuildCount++;
+	}
+
+	private void newSolver() {
+		solver = solvers.get();
+		solver.newVar(maxid);
+		VecInt trueClause = new VecInt();
+		trueClause.push(universe + 1);
+		addClause(trueClause);
+	}
+
+	/**
+	 * The number of clauses of the live definitions
+	 */
+	public long getLiveClauseCount() {
+		return liveClauses;
+	}
+
+	/**
+	 * The number of switched off clauses still in the solver
+	 */
+	public long getRetiredClauseCount() {
+		return retiredClauses;
+	}
+
+	/**
+	 * The number of live definitions
+	 */
+	public int getDefinitionCount() {
+		return owners.size();
+	}
+
+	public int getRebuildCount() {
+		return rebuildCount;
+	}
+
+	public long getSolveCount() {
+		return solveCount;
+	}
+
+	/**
+	 * The time spent in the solver, in milliseconds
+	 */
+	public long getSolveTime() {
+		return solveTime / 1000000;
+	}
+
+	public ISolver getSolver() {
+		return solver;
+	}
+
+	private int fresh() {
+		int fresh = maxid;
+		maxid++;
+		solver.registerLiteral(fresh);
+		return fresh;
+	}
+
+	// The literals of a conjunction (and) or disjunction (!and) equivalent to p
+	private Set<Integer> flatten(Integer p, boolean and) {
+		Pair<Boolean, TreeSet<Integer>> definition = reverseCache.get(p);
+		if (definition != null && definition.getFirst() == and)
+			return definition.getSecond();
+		definition = reverseCache.get(-p);
+		if (definition != null && definition.getFirst() != and) {
+			TreeSet<Integer> result = new TreeSet<>();
+			for (Integer q : definition.getSecond())
+				result.add(-q);
+			return result;
+		}
+		TreeSet<Integer> singleton = new TreeSet<>();
+		singleton.add(p);
+		return singleton;
+	}
+
+	private Integer define(boolean and, TreeSet<Integer> operands) {
+		Integer cached = (and ? andCache : orCache).get(operands);
+		if (cached != null)
+			return cached;
+		int name = fresh();
+		Pair<Boolean, TreeSet<Integer>> definition = new Pair<>(and, operands);
+		emit(name, definition, current.activation);
+		(and ? andCache : orCache).put(operands, name);
+		reverseCache.put(name, definition);
+		owners.put(name, current);
+		current.definitions.add(name);
+		liveClauses += operands.size() + 1;
+		return name;
+	}
+
+	// Adds the clauses name <=> And/Or(operands), guarded by the activation literal
+	private void emit(int name, Pair<Boolean, TreeSet<Integer>> definition, int activation) {
+		int sign = definition.getFirst() ? 1 : -1;
+		VecInt back = new VecInt();
+		back.push(sign * name);
+		for (Integer literal : definition.getSecond()) {
+			// name => literal for a conjunction, literal => name for a disjunction
+			VecInt forth = new VecInt();
+			forth.push(-sign * name);
+			forth.push(sign * literal);
+			if (activation != 0)
+				forth.push(-activation);
+			addClause(forth);
+			back.push(-sign * literal);
+		}
+		if (activation != 0)
+			back.push(-activation);
+		addClause(back);
+	}
+
+	private void addClause(VecInt clause) {
+		try {
+			solver.addClause(clause);
+		} catch (ContradictionException ex) {
+			// definitions and activation literals are fresh variables
+			throw new IllegalStateException("Contradiction when adding clause: " + clause.toString(), ex);
+		}
+	}
+
+	private boolean solve(int... literals) throws TimeoutException {
+		VecInt assumptions = new VecInt();
+		for (int literal : literals)
+			assumptions.push(literal);
+		for (Generation g = current; g.parent != null; g = g.parent)
+			assumptions.push(g.activation);
+		long start = System.nanoTime();
+		try {
+			return solver.isSatisfiable(assumptions, false);
+		} finally {
+			solveCount++;
+			solveTime += System.nanoTime() - start;
+		}
+	}
+
+	@Override
+	public Integer MkAnd(Collection<Integer> subnormalCube) {
+		TreeSet<Integer> cube = new TreeSet<>();
+		for (Integer p : subnormalCube)
+			cube.addAll(flatten(p, true));
+		for (Integer p : cube)
+			if (cube.contains(-p))
+				return False();
+		if (cube.isEmpty())
+			return True();
+		if (cube.size() == 1)
+			return cube.iterator().next();
+		return define(true, cube);
+	}
+
+	@Override
+	public Integer MkAnd(Integer left, Integer right) {
+		Set<Integer> conjuncts = new TreeSet<>();
+		conjuncts.add(left);
+		conjuncts.add(right);
+		return MkAnd(conjuncts);
+	}
+
+	@Override
+	public Integer MkOr(Collection<Integer> subnormalClause) {
+		TreeSet<Integer> clause = new TreeSet<>();
+		for (Integer p : subnormalClause)
+			clause.addAll(flatten(p, false));
+		for (Integer p : clause)
+			if (clause.contains(-p))
+				return True();
+		if (clause.isEmpty())
+			return False();
+		if (clause.size() == 1)
+			return clause.iterator().next();
+		return define(false, clause);
+	}
+
+	@Override
+	public Integer MkOr(Integer left, Integer right) {
+		Set<Integer> disjuncts = new TreeSet<>();
+		disjuncts.add(left);
+		disjuncts.add(right);
+		return MkOr(disjuncts);
+	}
+
+	@Override
+	public Integer False() {
+		return -(universe + 1);
+	}
+
+	@Override
+	public Integer True() {
+		return universe + 1;
+	}
+
+	@Override
+	public Integer MkNot(Integer id) {
+		return -id;
+	}
+
+	/**
+	 * Two assumption-based queries, so that no definition is added
+	 */
+	@Override
+	public boolean AreEquivalent(Integer p, Integer q) throws TimeoutException {
+		return !solve(p, -q) && !solve(-p, q);
+	}
+
+	@Override
+	public boolean IsSatisfiable(Integer p) throws TimeoutException {
+		return solve(p);
+	}
+
+	@Override
+	public boolean HasModel(Integer p, boolean[] model) throws TimeoutException {
+		if (model.length != universe) {
+			throw new IllegalArgumentException("Model size not equal to universe size");
+		}
+		int[] assumption = new int[universe + 1];
+		for (int i = 0; i < model.length; i++)
+			assumption[i] = model[i] ? i + 1 : -(i + 1);
+		assumption[universe] = -p;
+		return !solve(assumption);
+	}
+
+	@Override
+	public boolean HasModel(Integer p1, boolean[] el1, boolean[] el2) {
+		throw new UnsupportedOperationException("ManagedSATBooleanAlgebra.HasModel(_,_,_) is not implemented");
+	}
+
+	@Override
+	public boolean[] generateWitness(Integer p) throws TimeoutException {
+		if (!IsSatisfiable(p)) {
+			throw new IllegalArgumentException("Cannot generate witness (unsatisfiable)");
+		}
+		boolean[] model = new boolean[universe];
+		for (int i = 0; i < universe; i++) {
+			model[i] = solver.model(i + 1);
+		}
+		return model;
+	}
+
+	@Override
+	public Pair<boolean[], boolean[]> generateWitnesses(Integer p) {
+		throw new UnsupportedOperationException("ManagedSATBooleanAlgebra.generateWitnesses is not implemented");
+	}
+
+	@Override
+	public Integer MkAtom(boolean[] s) {
+		Integer phi = True();
+		for (int i = 0; i < s.length; i++)
+			phi = MkAnd(phi, s[i] ? i + 1 : -(i + 1));
+		return phi;
+	}
+}
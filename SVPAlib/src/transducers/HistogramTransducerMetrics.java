@@ -0,0 +1,71 @@
+package transducers;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link TransducerMetrics} that also records the distribution of configuration widths and output lengths. Values are
+ * grouped in power-of-two buckets: bucket 0 holds 0, bucket i > 0 holds values in [2^(i-1), 2^i).
+ */
+public class HistogramTransducerMetrics extends TransducerMetrics {
+
+	public static final int BUCKETS = 32;
+
+	private final LongAdder[] configurationWidths = newBuckets();
+	private final LongAdder[] outputLengths = newBuckets();
+
+	@Override
+	public void onConfigurationWidth(int width) {
+		super.onConfigurationWidth(width);
+		configurationWidths[bucket(width)].increment();
+	}
+
+	@Override
+	public void onOutput(int length) {
+		super.onOutput(length);
+		outputLengths[bucket(length)].increment();
+	}
+
+	/**
+	 * Number of steps whose configuration width fell in each bucket
+	 */
+	public long[] getConfigurationWidthHistogram() {
+		return sums(configurationWidths);
+	}
+
+	/**
+	 * Number of runs whose output length fell in each bucket
+	 */
+	public long[] getOutputLengthHistogram() {
+		return sums(outputLengths);
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		for (LongAdder bucket : configurationWidths)
+			bucket.reset();
+		for (LongAdder bucket : outputLengths)
+			bucket.reset();
+	}
+
+	/**
+	 * Bucket of <code>value</code>
+	 */
+	public static int bucket(int value) {
+		return value <= 0 ? 0 : 32 - Integer.numberOfLeadingZeros(value);
+	}
+
+	private static LongAdder[] newBuckets() {
+		LongAdder[] buckets = new LongAdder[BUCKETS];
+		for (int i = 0; i < buckets.length; i++)
+			buckets[i] = new LongAdder();
+		return buckets;
+	}
+
+	private static long[] sums(LongAdder[] buckets) {
+		long[] values = new long[buckets.length];
+		for (int i = 0; i < buckets.length; i++)
+			values[i] = buckets[i].sum();
+		return values;
+	}
+}
@@ -0,0 +1,182 @@
+package transducers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebraSubst;
+import utilities.Pair;
+
+/**
+ * Wraps a {@link BooleanAlgebraSubst} and reports every guard evaluation, solver query and output function
+ * application to a {@link TransducerListener}. All operations are delegated unchanged, including the ones
+ * {@link theory.BooleanAlgebra} implements generically, so that the wrapped algebra's specialized versions are used;
+ * each of those counts as one solver call.
+ * @param <P> The type of predicates forming the Boolean algebra
+ * @param <F> The type of functions S->S in the Boolean Algebra
+ * @param <S> The domain of the Boolean algebra
+ */
+public class InstrumentedAlgebra<P, F, S> extends BooleanAlgebraSubst<P, F, S> {
+
+	private final BooleanAlgebraSubst<P, F, S> ba;
+	private final TransducerListener listener;
+
+	public InstrumentedAlgebra(BooleanAlgebraSubst<P, F, S> ba, TransducerListener listener) {
+		this.ba = ba;
+		this.listener = listener;
+	}
+
+	/**
+	 * Returns <code>ba</code> instrumented with <code>listener</code>, or <code>ba</code> itself if the listener is
+	 * {@link TransducerListener#NOOP}
+	 */
+	public static <P, F, S> BooleanAlgebraSubst<P, F, S> wrap(BooleanAlgebraSubst<P, F, S> ba,
+			TransducerListener listener) {
+		if (listener == TransducerListener.NOOP)
+			return ba;
+		return new InstrumentedAlgebra<P, F, S>(ba, listener);
+	}
+
+	/**
+	 * The wrapped algebra
+	 */
+	public BooleanAlgebraSubst<P, F, S> getAlgebra() {
+		return ba;
+	}
+
+	@Override
+	public F MkSubstFuncFunc(F f1, F f2) {
+		return ba.MkSubstFuncFunc(f1, f2);
+	}
+
+	@Override
+	public S MkSubstFuncConst(F f, S c) {
+		listener.onOutputFunctionApplication();
+		return ba.MkSubstFuncConst(f, c);
+	}
+
+	@Override
+	public P MkSubstFuncPred(F f, P p) {
+		return ba.MkSubstFuncPred(f, p);
+	}
+
+	@Override
+	public F MkFuncConst(S s) {
+		return ba.MkFuncConst(s);
+	}
+
+	@Override
+	public boolean CheckGuardedEquality(P p, F f1, F f2) {
+		listener.onSolverCall();
+		return ba.CheckGuardedEquality(p, f1, f2);
+	}
+
+	@Override
+	public P getRestrictedOutput(P p, F f) {
+		return ba.getRestrictedOutput(p, f);
+	}
+
+	@Override
+	public P MkAtom(S s) {
+		return ba.MkAtom(s);
+	}
+
+	@Override
+	public P MkNot(P p) throws TimeoutException {
+		return ba.MkNot(p);
+	}
+
+	@Override
+	public P MkOr(Collection<P> pset) throws TimeoutException {
+		return ba.MkOr(pset);
+	}
+
+	@Override
+	public P MkOr(P p1, P p2) throws TimeoutException {
+		return ba.MkOr(p1, p2);
+	}
+
+	@Override
+	public P MkAnd(Collection<P> pset) throws TimeoutException {
+		return ba.MkAnd(pset);
+	}
+
+	@Override
+	public P MkAnd(P p1, P p2) throws TimeoutException {
+		return ba.MkAnd(p1, p2);
+	}
+
+	@Override
+	public P True() {
+		return ba.True();
+	}
+
+	@Override
+	public P False() {
+		return ba.False();
+	}
+
+	@Override
+	public boolean AreEquivalent(P p1, P p2) throws TimeoutException {
+		listener.onSolverCall();
+		return ba.AreEquivalent(p1, p2);
+	}
+
+	@Override
+	public boolean IsSatisfiable(P p1) throws TimeoutException {
+		listener.onSolverCall();
+		return ba.IsSatisfiable(p1);
+	}
+
+	@Override
+	public boolean HasModel(P p1, S el) throws TimeoutException {
+		listener.onGuardEvaluation();
+		return ba.HasModel(p1, el);
+	}
+
+	@Override
+	public boolean HasModel(P p1, S el1, S el2) throws TimeoutException {
+		listener.onGuardEvaluation();
+		return ba.HasModel(p1, el1, el2);
+	}
+
+	@Override
+	public S generateWitness(P p1) throws TimeoutException {
+		listener.onSolverCall();
+		return ba.generateWitness(p1);
+	}
+
+	@Override
+	public Pair<S, S> generateWitnesses(P p1) throws TimeoutException {
+		listener.onSolverCall();
+		return ba.generateWitnesses(p1);
+	}
+
+	@Override
+	public boolean hasNDistinctWitnesses(P predicate, Integer numOfWitnesses) {
+		listener.onSolverCall();
+		return ba.hasNDistinctWitnesses(predicate, numOfWitnesses);
+	}
+
+	@Override
+	public Collection<Pair<P, ArrayList<Integer>>> GetMinterms(ArrayList<P> predicates, P startPred, long timeout)
+			throws TimeoutException {
+		listener.onSolverCall();
+		return ba.GetMinterms(predicates, startPred, timeout);
+	}
+
+	@Override
+	public ArrayList<P> GetSeparatingPredicates(ArrayList<Collection<S>> characterGroups, long timeout)
+			throws TimeoutException {
+		listener.onSolverCall();
+		return ba.GetSeparatingPredicates(characterGroups, timeout);
+	}
+
+	@Override
+	public ArrayList<P> GetSeparatingPredicatesFromPredicates(ArrayList<Collection<P>> predicateGroups, long timeout)
+			throws TimeoutException {
+		listener.onSolverCall();
+		return ba.GetSeparatingPredicatesFromPredicates(predicateGroups, timeout);
+	}
+}
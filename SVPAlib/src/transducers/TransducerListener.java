@@ -0,0 +1,69 @@
+package transducers;
+
+/**
+ * Receives profiling events from runs and constructions of symbolic transducers. Implementations must be cheap and
+ * thread-safe, since the same listener may be shared by concurrent runs.
+ */
+public interface TransducerListener {
+
+	/**
+	 * The listener that ignores every event, used when no listener is given
+	 */
+	TransducerListener NOOP = new TransducerListener() {
+		public void onTransition() {
+		}
+
+		public void onGuardEvaluation() {
+		}
+
+		public void onSolverCall() {
+		}
+
+		public void onOutputFunctionApplication() {
+		}
+
+		public void onCacheHit() {
+		}
+
+		public void onConfigurationWidth(int width) {
+		}
+
+		public void onOutput(int length) {
+		}
+	};
+
+	/**
+	 * A transition was taken while reading an input symbol
+	 */
+	void onTransition();
+
+	/**
+	 * A guard was evaluated on a concrete symbol
+	 */
+	void onGuardEvaluation();
+
+	/**
+	 * A satisfiability or equivalence query was sent to the Boolean algebra
+	 */
+	void onSolverCall();
+
+	/**
+	 * An output function was applied to a concrete symbol
+	 */
+	void onOutputFunctionApplication();
+
+	/**
+	 * A memoized result was reused
+	 */
+	void onCacheHit();
+
+	/**
+	 * The run has <code>width</code> configurations after reading a symbol
+	 */
+	void onConfigurationWidth(int width);
+
+	/**
+	 * The run produced an output of <code>length</code> symbols
+	 */
+	void onOutput(int length);
+}
@@ -0,0 +1,110 @@
+package transducers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link TransducerListener} that counts events using striped counters, so it can be shared by concurrent runs
+ * without contention. {@link #snapshot()} exposes the counters by name for export to a metrics system.
+ */
+public class TransducerMetrics implements TransducerListener {
+
+	private final LongAdder transitions = new LongAdder();
+	private final LongAdder guardEvaluations = new LongAdder();
+	private final LongAdder solverCalls = new LongAdder();
+	private final LongAdder outputFunctionApplications = new LongAdder();
+	private final LongAdder cacheHits = new LongAdder();
+	private final LongAdder outputSymbols = new LongAdder();
+	private final LongAccumulator peakConfigurationWidth = new LongAccumulator(Math::max, 0);
+
+	public void onTransition() {
+		transitions.increment();
+	}
+
+	public void onGuardEvaluation() {
+		guardEvaluations.increment();
+	}
+
+	public void onSolverCall() {
+		solverCalls.increment();
+	}
+
+	public void onOutputFunctionApplication() {
+		outputFunctionApplications.increment();
+	}
+
+	public void onCacheHit() {
+		cacheHits.increment();
+	}
+
+	public void onConfigurationWidth(int width) {
+		peakConfigurationWidth.accumulate(width);
+	}
+
+	public void onOutput(int length) {
+		outputSymbols.add(length);
+	}
+
+	public long getTransitions() {
+		return transitions.sum();
+	}
+
+	public long getGuardEvaluations() {
+		return guardEvaluations.sum();
+	}
+
+	public long getSolverCalls() {
+		return solverCalls.sum();
+	}
+
+	public long getOutputFunctionApplications() {
+		return outputFunctionApplications.sum();
+	}
+
+	public long getCacheHits() {
+		return cacheHits.sum();
+	}
+
+	public long getOutputSymbols() {
+		return outputSymbols.sum();
+	}
+
+	public long getPeakConfigurationWidth() {
+		return peakConfigurationWidth.get();
+	}
+
+	/**
+	 * Current value of every counter, keyed by name
+	 */
+	public Map<String, Long> snapshot() {
+		Map<String, Long> values = new LinkedHashMap<String, Long>();
+		values.put("transitions", getTransitions());
+		values.put("guardEvaluations", getGuardEvaluations());
+		values.put("solverCalls", getSolverCalls());
+		values.put("outputFunctionApplications", getOutputFunctionApplications());
+		values.put("cacheHits", getCacheHits());
+		values.put("outputSymbols", getOutputSymbols());
+		values.put("peakConfigurationWidth", getPeakConfigurationWidth());
+		return values;
+	}
+
+	/**
+	 * Resets every counter to 0
+	 */
+	public void reset() {
+		transitions.reset();
+		guardEvaluations.reset();
+		solverCalls.reset();
+		outputFunctionApplications.reset();
+		cacheHits.reset();
+		outputSymbols.reset();
+		peakConfigurationWidth.reset();
+	}
+
+	@Override
+	public String toString() {
+		return snapshot().toString();
+	}
+}
@@ -0,0 +1,169 @@
+package transducers.sft;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebraSubst;
+
+/**
+ * Runs a deterministic SFT on long inputs using all the cores of a {@link ForkJoinPool}.
+ *
+ * The input is split in chunks. For every chunk and every state q, a task computes the state reached reading the
+ * chunk from q together with the output produced along the way. A sequential pass then stitches the summaries
+ * starting from the initial state. The first chunk is only summarized from the initial state. The Boolean algebra
+ * must support concurrent calls to HasModel and MkSubstFuncConst.
+ *
+ * @param <P>
+ *            The type of predicates forming the Boolean algebra
+ * @param <F>
+ *            The type of functions S->S in the Boolean Algebra
+ * @param <S>
+ *            The domain of the Boolean algebra
+ */
+public class ParallelSFTRunner<P, F, S> {
+
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+	private final SFT<P, F, S> sft;
+	private final BooleanAlgebraSubst<P, F, S> ba;
+	private final int chunkSize;
+	private final ForkJoinPool pool;
+
+	// dense numbering of the states and the moves leaving each of them
+	private final List<Integer> states;
+	private final Map<Integer, Integer> stateIndex = new HashMap<Integer, Integer>();
+	private final List<List<SFTInputMove<P, F, S>>> movesFrom = new ArrayList<List<SFTInputMove<P, F, S>>>();
+
+	/**
+	 * A runner for <code>sftWithEps</code> with the default chunk size on the common pool
+	 */
+	public ParallelSFTRunner(SFT<P, F, S> sftWithEps, BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
+		this(sftWithEps, ba, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * A runner for <code>sftWithEps</code>, which has to be deterministic once its epsilon moves are removed, that
+	 * splits the input in chunks of <code>chunkSize</code> symbols and runs them on <code>pool</code>
+	 */
+	public ParallelSFTRunner(SFT<P, F, S> sftWithEps, BooleanAlgebraSubst<P, F, S> ba, int chunkSize,
+			ForkJoinPool pool) throws TimeoutException {
+		if (chunkSize <= 0)
+			throw new IllegalArgumentException("The chunk size has to be positive");
+		this.sft = sftWithEps.removeEpsilonMoves(ba);
+		if (!sft.isDeterministic())
+			throw new IllegalArgumentException("The SFT has to be deterministic");
+		this.ba = ba;
+		this.chunkSize = chunkSize;
+		this.pool = pool;
+
+		states = new ArrayList<Integer>(sft.getStates());
+		for (Integer state : states) {
+			stateIndex.put(state, stateIndex.size());
+			movesFrom.add(new ArrayList<SFTInputMove<P, F, S>>(sft.getInputMovesFrom(state)));
+		}
+	}
+
+	/**
+	 * Computes the output produced when reading input. Null if no such output exists
+	 *
+	 * @throws TimeoutException
+	 */
+	public List<S> outputOn(final List<S> input) throws TimeoutException {
+		final int initialIndex = stateIndex.get(sft.getInitialState());
+
+		List<Callable<ChunkSummary<S>>> tasks = new ArrayList<Callable<ChunkSummary<S>>>();
+		for (int from = 0; from < input.size(); from += chunkSize) {
+			final List<S> chunk = input.subList(from, Math.min(from + chunkSize, input.size()));
+			final boolean first = from == 0;
+			tasks.add(new Callable<ChunkSummary<S>>() {
+				public ChunkSummary<S> call() throws TimeoutException {
+					ChunkSummary<S> summary = new ChunkSummary<S>(states.size());
+					if (first)
+						summarize(chunk, initialIndex, summary);
+					else
+						for (int start = 0; start < states.size(); start++)
+							summarize(chunk, start, summary);
+					return summary;
+				}
+			});
+		}
+
+		// prefix pass
+		List<S> output = new ArrayList<S>();
+		int current = initialIndex;
+		for (Future<ChunkSummary<S>> future : pool.invokeAll(tasks)) {
+			ChunkSummary<S> summary = get(future);
+			if (summary.end[current] < 0)
+				return null;
+			output.addAll(summary.output.get(current));
+			current = summary.end[current];
+		}
+
+		Integer state = states.get(current);
+		if (!sft.isFinalState(state))
+			return null;
+		Set<List<S>> tails = sft.getFinalStatesAndTails().get(state);
+		if (!tails.isEmpty())
+			output.addAll(tails.iterator().next());
+		return output;
+	}
+
+	// Runs the chunk from the state with index start
+	private void summarize(List<S> chunk, int start, ChunkSummary<S> summary) throws TimeoutException {
+		List<S> output = new ArrayList<S>();
+		int current = start;
+		for (S el : chunk) {
+			SFTInputMove<P, F, S> enabled = null;
+			for (SFTInputMove<P, F, S> move : movesFrom.get(current))
+				if (ba.HasModel(move.guard, el)) {
+					enabled = move;
+					break;
+				}
+			if (enabled == null)
+				return;
+
+			for (F outputFunc : enabled.outputFunctions)
+				output.add(ba.MkSubstFuncConst(outputFunc, el));
+			current = stateIndex.get(enabled.to);
+		}
+		summary.end[start] = current;
+		summary.output.set(start, output);
+	}
+
+	private static <T> T get(Future<T> future) throws TimeoutException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TimeoutException(e.getMessage());
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof TimeoutException)
+				throw (TimeoutException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	// For every start state, the end state (-1 if the run dies) and the output produced on a chunk
+	private static class ChunkSummary<S> {
+		final int[] end;
+		final List<List<S>> output;
+
+		ChunkSummary(int stateCount) {
+			end = new int[stateCount];
+			output = new ArrayList<List<S>>(stateCount);
+			for (int i = 0; i < stateCount; i++) {
+				end[i] = -1;
+				output.add(null);
+			}
+		}
+	}
+}
@@ -16,7 +16,6 @@ import java.util.HashSet;
 import java.util.Collection;
 
 import org.sat4j.specs.TimeoutException;
-import static com.google.common.base.Preconditions.checkNotNull;
 
 import automata.Automaton;
 import automata.Move;
@@ -25,6 +24,8 @@ import automata.sfa.SFAMove;
 import automata.sfa.SFAEpsilon;
 import automata.sfa.SFAInputMove;
 import theory.BooleanAlgebraSubst;
+import transducers.InstrumentedAlgebra;
+import transducers.TransducerListener;
 import utilities.Pair;
 
 
@@ -153,6 +154,11 @@ public class SFT<P, F, S> extends Automaton<P, S> {
 		return outputOn(this, input, ba);
 	}
 
+	public List<S> outputOn(List<S> input, BooleanAlgebraSubst<P, F, S> ba, TransducerListener listener)
+			throws TimeoutException {
+		return outputOn(this, input, ba, listener);
+	}
+
 	/**
 	 * Computes one of the outputs produced when reading input. Null if no such output exists
 	 *
@@ -163,6 +169,19 @@ public class SFT<P, F, S> extends Automaton<P, S> {
 	 */
 	public static <P, F, S> List<S> outputOn(SFT<P, F, S> sftWithEps, List<S> input,
 												 BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
+		return outputOn(sftWithEps, input, ba, TransducerListener.NOOP);
+	}
+
+	/**
+	 * Computes one of the outputs produced when reading input, reporting transitions, guard evaluations, output
+	 * function applications and the output length to <code>listener</code>. Null if no such output exists
+	 *
+	 * @return one output sequence, null if undefined
+	 * @throws TimeoutException
+	 */
+	public static <P, F, S> List<S> outputOn(SFT<P, F, S> sftWithEps, List<S> input,
+												 BooleanAlgebraSubst<P, F, S> ba, TransducerListener listener)
+			throws TimeoutException {
 
 		// codes for nondeterministic but single-valued symbolic finite transducers
 		List<List<S>> outputs = new ArrayList<List<S>>();
@@ -170,20 +189,23 @@ public class SFT<P, F, S> extends Automaton<P, S> {
 		SFT<P, F, S> sft = sftWithEps.removeEpsilonMoves(ba);
 		// guarantee that there are no epsilon transitions for now
 
-		backtrack(outputs, new ArrayList<S>(), sft, sft.getInitialState(), input, 0, ba);
+		backtrack(outputs, new ArrayList<S>(), sft, sft.getInitialState(), input, 0,
+				InstrumentedAlgebra.wrap(ba, listener), listener);
 
 		// if you want the method to be adapt to non single-valued symbolic finite transducers, you could just return
 		// the whole outputs.
-		if (outputs.size() != 0)
+		if (outputs.size() != 0) {
+			listener.onOutput(outputs.get(0).size());
 			return outputs.get(0);
-		else
+		} else
 			return null;
 	}
 
 	// use backtrack method to get all possible outputs
 	private static <P, F, S> void backtrack(List<List<S>> outputs, List<S> tempList, SFT<P, F, S> sft,
 											Integer currentState, List<S> input, int position,
-											BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
+											BooleanAlgebraSubst<P, F, S> ba, TransducerListener listener)
+			throws TimeoutException {
 
 		if (position > input.size())
 			return;
@@ -205,9 +227,10 @@ public class SFT<P, F, S> extends Automaton<P, S> {
 			boolean canMove = false;
 			for (SFTInputMove<P, F, S> transition: transitions) {
 				if (ba.HasModel(transition.guard, input.get(position))) {
+					listener.onTransition();
 					for (F outputFunc: transition.outputFunctions)
 						tempList.add(ba.MkSubstFuncConst(outputFunc, input.get(position)));
-					backtrack(outputs, tempList, sft, transition.to, input, position + 1, ba);
+					backtrack(outputs, tempList, sft, transition.to, input, position + 1, ba, listener);
 					for (int i = 0; i < transition.outputFunctions.size(); i++)
 						tempList.remove(tempList.size() - 1);
 					canMove = true;
@@ -236,6 +259,19 @@ public class SFT<P, F, S> extends Automaton<P, S> {
 	 */
 	public static <P, F, S> SFT<P, F, S> compose(SFT<P, F, S> sft1withEps, SFT<P, F, S> sft2withEps,
 													   BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
+		return compose(sft1withEps, sft2withEps, ba, TransducerListener.NOOP);
+	}
+
+	/**
+	 * Computes the composition of <code>sft1withEps</code> and <code>sft2withEps</code>, reporting the solver calls
+	 * and the explored product transitions to <code>listener</code>
+	 *
+	 * @throws TimeoutException
+	 */
+	public static <P, F, S> SFT<P, F, S> compose(SFT<P, F, S> sft1withEps, SFT<P, F, S> sft2withEps,
+													   BooleanAlgebraSubst<P, F, S> ba, TransducerListener listener)
+			throws TimeoutException {
+		ba = InstrumentedAlgebra.wrap(ba, listener);
 		// Remove epsilons
 		SFT<P, F, S> sft1 = sft1withEps.removeEpsilonMoves(ba);
 		SFT<P, F, S> sft2 = sft2withEps.removeEpsilonMoves(ba);
@@ -338,6 +374,7 @@ public class SFT<P, F, S> extends Automaton<P, S> {
 									intersGuard, outputFunctions);
 
 							transitions.add(newTrans);
+							listener.onTransition();
 						}
 					}
 				} else { // t1.outputFunctions.size() == 0
@@ -349,6 +386,7 @@ public class SFT<P, F, S> extends Automaton<P, S> {
 								t1.guard, new LinkedList<F>());
 
 						transitions.add(newTrans);
+						listener.onTransition();
 					}
 				}
 			}
@@ -547,145 +585,7 @@ public class SFT<P, F, S> extends Automaton<P, S> {
 	public static <P, F, S> boolean decide1equality(SFT<P, F, S> sft1withEps,
 													SFT<P, F, S> sft2withEps,
 													BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
-		// Figure 3 line 1: C := A  \times B;
-		SFTProduct<P, F, S> product = SFTProduct.MkSFTProduct(sft1withEps, sft2withEps, ba);
-		// <code>product</code> is a product without epsilon transitions.
-
-		// Figure 3 line 1: Q := \{q_c^0 \mapsto (\epsilon, \epsilon)\};
-		HashMap<Integer, Pair<List<S>, List<S>>> reached = new HashMap<Integer, Pair<List<S>, List<S>>>();
-		reached.put(product.getInitialState(), new Pair(new ArrayList<S>(), new ArrayList<S>()));
-
-		// Figure 3 line 1: S := stack(q_c^0);
-		LinkedList<Integer> toVisit = new LinkedList<Integer>();
-		toVisit.add(product.getInitialState());
-
-		// Figure 3 line 2: \textbf{while} \ S \neq \emptyset
-		while (!toVisit.isEmpty()) {
-
-			// Figure 3 line 3: p := pop(S);
-			Integer currState = toVisit.pop();
-
-			// Figure 3 line 3: (\alpha, \beta) := Q(p);
-			Pair<List<S>, List<S>> promise = reached.get(currState);
-
-			// Figure 3 line 4: \textbf{foreach} \  (p, \varphi, (\textbf f, \textbf g), q) \in R_C(p)
-			for (SFTProductInputMove transition: product.getInputMovesFrom(currState)) {
-
-				// Figure 3 line 5: (u, v) := (\alpha \cdot \textbf f,\beta \cdot \textbf g);
-				List<F> u = new ArrayList<F>();
-				List<F> v = new ArrayList<F>();
-				for (S a: promise.first)
-					u.add(ba.MkFuncConst(a));
-				for (S b: promise.second)
-					v.add(ba.MkFuncConst(b));
-				u.addAll(transition.outputFunctions1);
-				v.addAll(transition.outputFunctions2);
-
-				// Figure 3 line 6: \textbf{if} \ q \in F_C \wedge |u| \neq |v| \ \textbf{return} \ f;
-				/* the following code is the precise implementation of Figure 3 line 6.
-				if (product.isFinalState(currState) && u.size() != v.size())
-					return false;
-				*/
-				// However, we add tails for final states, so the SFT here is different from the SFT described on paper.
-				// Here is the modification of Figure 3 line 6 so that the method decide1equality adapts to SFT with tails
-				if (product.isFinalState(currState)) {
-					Set<List<S>> tails1 = checkNotNull(product.getFinalStatesAndTails().get(currState).first);
-					Set<List<S>> tails2 = checkNotNull(product.getFinalStatesAndTails().get(currState).second);
-					// since product is constructed by 2 SFTs in MkSFTProduct in SFTProduct.java, tails1 and tails2
-					// could not be null pointers.
-					if (tails1.size() > 1 || tails2.size() > 1) // if any final state in any SFT has many tails, their
-						// outputs are uncertain, so 2 SFTs cannot be 1-equality
-						return false;
-					List<F> finalU = new ArrayList<F>(u);
-					List<F> finalV = new ArrayList<F>(v);
-					for (List<S> tail: tails1)
-						for (S element: tail)
-							finalU.add(ba.MkFuncConst(element));
-					for (List<S> tail: tails2)
-						for (S element: tail)
-							finalV.add(ba.MkFuncConst(element));
-					if (finalU.size() != finalV.size())
-						return false;
-					for (int i = 0; i < finalU.size(); i++)
-						if (!ba.CheckGuardedEquality((P) transition.guard, finalU.get(i), finalV.get(i)))
-							return false;
-				}
-
-				// Figure 3 line 7: \textbf{if} \ |u| \geq |v|
-				if (u.size() >= v.size()) {
-
-					// Figure 3 line 8: \textbf{if} \ \vee_{i=0}^{|v|-1}u_i \not\equiv_\varphi v_i \ \textbf{return} \ f;
-					for (int i = 0; i < v.size(); i++)
-						if (!ba.CheckGuardedEquality((P) transition.guard, u.get(i), v.get(i)))
-							return false;
-
-					// Figure 3 line 9: w := [u_{|v|,\dots,u_{|u|-1}}];
-					List<F> w = new ArrayList<F>();
-					for (int i = v.size(); i < u.size(); i++)
-						w.add(u.get(i));
-
-					// Figure 3 line 9: c := [\![ w]\!](witness(\varphi));
-					S witness = (S)transition.getWitness(ba);
-					List<S> c = new ArrayList<S>();
-					List<F> cF = new ArrayList<F>(); // a sequence of lamda x.alpha, where alpha is a constant S
-					// stored in List<S> c
-					for (int i = 0; i < u.size() - v.size(); i++) {
-						c.add(ba.MkSubstFuncConst(w.get(i), witness));
-						cF.add(ba.MkSubstFuncFunc(w.get(i), ba.MkFuncConst(witness)));
-					}
-
-					// Figure 3 line 10: \textbf{if} \ w \not\equiv_\varphi c \vee (q \in Dom(Q) \wedge Q(q) \neq
-					// (\textbf c, \epsilon)) \textbf{return} \ f;
-					for (int i = 0; i < u.size() - v.size(); i++)
-						if (!ba.AreEquivalent(ba.MkSubstFuncPred(w.get(i), (P)transition.guard),
-								ba.MkSubstFuncPred(cF.get(i), (P)transition.guard)))
-							return false;
-
-					Integer nextState = transition.to;
-					if (reached.containsKey(nextState) && !reached.get(nextState).equals(new Pair(c, new ArrayList<S>())))
-						return false;
-
-					// Figure 3 line 11: \textbf{if} \ q \not\in Dom(Q) \ push(q,S);
-					if (!reached.containsKey(nextState)) {
-						toVisit.push(nextState);
-
-						// Figure 3 line 11: Q(q):=(\textbf c, \epsilon);
-						reached.put(nextState, new Pair(c, new ArrayList<S>()));
-					}
-
-				// Figure 3 line 12: \textbf{if} \ |u|<|v| \dots (symmetrical \ to \ the \  case \ |u|>|v|)
-				} else { // u.size() < v.size()
-					for (int i = 0; i < u.size(); i++)
-						if (!ba.CheckGuardedEquality((P) transition.guard, u.get(i), v.get(i)))
-							return false;
-					List<F> w = new ArrayList<F>();
-					for (int i = u.size(); i < v.size(); i++)
-						w.add(v.get(i));
-					S witness = (S)transition.getWitness(ba);
-					List<S> c = new ArrayList<S>();
-					List<F> cF = new ArrayList<F>(); // a sequence of lamda x.alpha, where alpha is a constant S
-					// stored in List<S> c
-					for (int i = 0; i < v.size() - u.size(); i++) {
-						c.add(ba.MkSubstFuncConst(w.get(i), witness));
-						cF.add(ba.MkSubstFuncFunc(w.get(i), ba.MkFuncConst(witness)));
-					}
-					for (int i = 0; i < v.size() - u.size(); i++)
-						if (!ba.AreEquivalent(ba.MkSubstFuncPred(w.get(i), (P)transition.guard),
-								ba.MkSubstFuncPred(cF.get(i), (P)transition.guard)))
-							return false;
-					Integer nextState = transition.to;
-					if (reached.containsKey(nextState) && !reached.get(nextState).equals(new Pair(new ArrayList<S>(), c)))
-						return false;
-					if (!reached.containsKey(nextState)) {
-						toVisit.push(nextState);
-						reached.put(nextState, new Pair(new ArrayList<S>(), c));
-					}
-				}
-			}
-		}
-
-		// Figure 3 line 13: \textbf{return} \ t;
-		return true;
+		return new SFTEquivalenceChecker<P, F, S>(ba).areEquivalent(sft1withEps, sft2withEps);
 	}
 
 	public List<S> witness1disequality(SFT<P, F, S> otherSft, BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
@@ -702,130 +602,7 @@ public class SFT<P, F, S> extends Automaton<P, S> {
 	public static <P, F, S> List<S> witness1disequality(SFT<P, F, S> sft1withEps,
 														SFT<P, F, S> sft2withEps,
 														BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
-		SFTProduct<P, F, S> product = SFTProduct.MkSFTProduct(sft1withEps, sft2withEps, ba);
-		// a product without epsilon transitions
-
-		HashMap<Integer, Pair<List<S>, List<S>>> reached = new HashMap<Integer, Pair<List<S>, List<S>>>();
-		LinkedList<Integer> toVisit = new LinkedList<Integer>();
-		HashMap<Integer, List<S>> path = new HashMap<Integer, List<S>>();
-
-		reached.put(product.getInitialState(), new Pair(new ArrayList<S>(), new ArrayList<S>()));
-		// stores reached states and its promise
-		toVisit.add(product.getInitialState());
-		path.put(product.getInitialState(), new ArrayList<S>());
-		// stores reached states and the latest path from the initial state to it, which means if there are many possible
-		// paths from the initial state to it, only store the latest used one in the following loop
-
-		while (!toVisit.isEmpty()) {
-
-			Integer currState = toVisit.pop();
-			Pair<List<S>, List<S>> promise = reached.get(currState);
-
-			for (SFTProductInputMove transition: product.getInputMovesFrom(currState)) {
-
-				List<S> previousPath = new ArrayList<S>(path.get(transition.from));
-				previousPath.add((S) transition.getWitness(ba));
-				path.put(transition.to, previousPath);
-
-				List<F> u = new ArrayList<F>();
-				List<F> v = new ArrayList<F>();
-				for (S a: promise.first)
-					u.add(ba.MkFuncConst(a));
-				for (S b: promise.second)
-					v.add(ba.MkFuncConst(b));
-				u.addAll(transition.outputFunctions1);
-				v.addAll(transition.outputFunctions2);
-
-				if (product.isFinalState(currState)) {
-					Set<List<S>> tails1 = checkNotNull(product.getFinalStatesAndTails().get(currState).first);
-					Set<List<S>> tails2 = checkNotNull(product.getFinalStatesAndTails().get(currState).second);
-
-					if (tails1.size() > 1 || tails2.size() > 1)
-						return previousPath;
-					List<F> finalU = new ArrayList<F>(u);
-					List<F> finalV = new ArrayList<F>(v);
-					for (List<S> tail: tails1)
-						for (S element: tail)
-							finalU.add(ba.MkFuncConst(element));
-					for (List<S> tail: tails2)
-						for (S element: tail)
-							finalV.add(ba.MkFuncConst(element));
-					if (finalU.size() != finalV.size())
-						return previousPath;
-					for (int i = 0; i < finalU.size(); i++)
-						if (!ba.CheckGuardedEquality((P) transition.guard, finalU.get(i), finalV.get(i)))
-							return previousPath;
-				}
-
-				if (u.size() >= v.size()) {
-					for (int i = 0; i < v.size(); i++)
-						if (!ba.CheckGuardedEquality((P) transition.guard, u.get(i), v.get(i))) {
-							previousPath.addAll(product.getWitness(transition.to, ba));
-							return previousPath;
-						}
-					List<F> w = new ArrayList<F>();
-					for (int i = v.size(); i < u.size(); i++)
-						w.add(u.get(i));
-					S witness = (S) transition.getWitness(ba);
-					List<S> c = new ArrayList<S>();
-					List<F> cF = new ArrayList<F>(); // a sequence of lamda x.alpha, where alpha is a constant S
-					// stored in List<S> c
-					for (int i = 0; i < u.size() - v.size(); i++) {
-						c.add(ba.MkSubstFuncConst(w.get(i), witness));
-						cF.add(ba.MkSubstFuncFunc(w.get(i), ba.MkFuncConst(witness)));
-					}
-					for (int i = 0; i < u.size() - v.size(); i++)
-						if (!ba.AreEquivalent(ba.MkSubstFuncPred(w.get(i), (P)transition.guard),
-								ba.MkSubstFuncPred(cF.get(i), (P)transition.guard))) {
-							previousPath.addAll(product.getWitness(transition.to, ba));
-							return previousPath;
-						}
-					Integer nextState = transition.to;
-					if (reached.containsKey(nextState) && !reached.get(nextState).equals(new Pair(c, new ArrayList<S>()))) {
-						previousPath.addAll(product.getWitness(transition.to, ba));
-						return previousPath;
-					}
-					if (!reached.containsKey(nextState)) {
-						toVisit.push(nextState);
-						reached.put(nextState, new Pair(c, new ArrayList<S>()));
-					}
-				} else { // u.size() < v.size()
-					for (int i = 0; i < u.size(); i++)
-						if (!ba.CheckGuardedEquality((P) transition.guard, u.get(i), v.get(i))) {
-							previousPath.addAll(product.getWitness(transition.to, ba));
-							return previousPath;
-						}
-					List<F> w = new ArrayList<F>();
-					for (int i = u.size(); i < v.size(); i++)
-						w.add(v.get(i));
-					S witness = (S) transition.getWitness(ba);
-					List<S> c = new ArrayList<S>();
-					List<F> cF = new ArrayList<F>(); // a sequence of lamda x.alpha, where alpha is a constant S
-					// stored in List<S> c
-					for (int i = 0; i < v.size() - u.size(); i++) {
-						c.add(ba.MkSubstFuncConst(w.get(i), witness));
-						cF.add(ba.MkSubstFuncFunc(w.get(i), ba.MkFuncConst(witness)));
-					}
-					for (int i = 0; i < v.size() - u.size(); i++)
-						if (!ba.AreEquivalent(ba.MkSubstFuncPred(w.get(i), (P)transition.guard),
-								ba.MkSubstFuncPred(cF.get(i), (P)transition.guard))) {
-							previousPath.addAll(product.getWitness(transition.to, ba));
-							return previousPath;
-						}
-					Integer nextState = transition.to;
-					if (reached.containsKey(nextState) && !reached.get(nextState).equals(new Pair(new ArrayList<S>(), c))) {
-						previousPath.addAll(product.getWitness(transition.to, ba));
-						return previousPath;
-					}
-					if (!reached.containsKey(nextState)) {
-						toVisit.push(nextState);
-						reached.put(nextState, new Pair(new ArrayList<S>(), c));
-					}
-				}
-
-			}
-		}
-		return null; // two SFTs are partial equivalent
+		return new SFTEquivalenceChecker<P, F, S>(ba).witness(sft1withEps, sft2withEps);
 	}
 
 	/**
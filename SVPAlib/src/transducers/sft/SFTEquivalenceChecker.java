@@ -0,0 +1,371 @@
+package transducers.sft;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebraSubst;
+import utilities.Pair;
+
+/**
+ * On-the-fly 1-equality (partial equivalence) checker for symbolic finite transducers
+ * Page 6, in the middle of left column, figure 3, without materializing the product.
+ *
+ * Pairs of states are explored lazily: the guards of two moves are intersected only when their source pair is popped
+ * from the frontier. Every pair remembers a single output delay (the pending output of the transducer that is ahead),
+ * which is stored as an interned id pointing into a shared buffer of constants, so comparing two delays is an integer
+ * comparison. The search stops at the first conflict and reconstructs a distinguishing input.
+ *
+ * @param <P>
+ *			The type of predicates forming the Boolean algebra
+ * @param <F>
+ *			The type of functions S->S in the Boolean Algebra
+ * @param <S>
+ *			The domain of the Boolean algebra
+ */
+public class SFTEquivalenceChecker<P, F, S> {
+
+	/**
+	 * The order in which pairs of states are explored. BFS returns shortest witnesses, DFS keeps the frontier small.
+	 */
+	public enum SearchStrategy {
+		BFS, DFS
+	}
+
+	private final BooleanAlgebraSubst<P, F, S> ba;
+	private final SearchStrategy strategy;
+	private final long timeout;
+
+	public SFTEquivalenceChecker(BooleanAlgebraSubst<P, F, S> ba) {
+		this(ba, SearchStrategy.DFS, Long.MAX_VALUE);
+	}
+
+	public SFTEquivalenceChecker(BooleanAlgebraSubst<P, F, S> ba, SearchStrategy strategy, long timeout) {
+		this.ba = ba;
+		this.strategy = strategy;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Checks whether <code>sft1withEps</code> and <code>sft2withEps</code> are 1-equal and returns a distinguishing input
+	 * if not. Second element is null if they are 1-equal.
+	 *
+	 * @throws TimeoutException if the exploration takes longer than the timeout of this checker
+	 */
+	public Pair<Boolean, List<S>> check(SFT<P, F, S> sft1withEps, SFT<P, F, S> sft2withEps) throws TimeoutException {
+		return new Search(sft1withEps.removeEpsilonMoves(ba), sft2withEps.removeEpsilonMoves(ba)).run();
+	}
+
+	/**
+	 * Returns true if <code>sft1withEps</code> and <code>sft2withEps</code> are 1-equal
+	 */
+	public boolean areEquivalent(SFT<P, F, S> sft1withEps, SFT<P, F, S> sft2withEps) throws TimeoutException {
+		return check(sft1withEps, sft2withEps).first;
+	}
+
+	/**
+	 * Returns an input on which <code>sft1withEps</code> and <code>sft2withEps</code> disagree, null if they are 1-equal
+	 */
+	public List<S> witness(SFT<P, F, S> sft1withEps, SFT<P, F, S> sft2withEps) throws TimeoutException {
+		return check(sft1withEps, sft2withEps).second;
+	}
+
+	/**
+	 * Interns constant output sequences into one shared buffer. Id 0 is the empty sequence, every other id
+	 * <code>i</code> denotes <code>buffer[start[i], start[i + 1])</code>.
+	 */
+	private class DelayTable {
+		private final List<S> buffer = new ArrayList<S>();
+		private int[] start = new int[16];
+		private int size = 1;
+		private final Map<Integer, List<Integer>> buckets = new HashMap<Integer, List<Integer>>();
+
+		int length(int id) {
+			return start[id + 1] - start[id];
+		}
+
+		S get(int id, int i) {
+			return buffer.get(start[id] + i);
+		}
+
+		/**
+		 * Returns the id of <code>sequence</code>, appending it to the buffer the first time it is seen
+		 */
+		int intern(List<S> sequence) {
+			if (sequence.isEmpty())
+				return 0;
+			int hash = sequence.hashCode();
+			List<Integer> bucket = buckets.get(hash);
+			if (bucket == null) {
+				bucket = new ArrayList<Integer>(1);
+				buckets.put(hash, bucket);
+			}
+			for (int id : bucket)
+				if (rangeEquals(id, sequence))
+					return id;
+
+			if (size + 1 >= start.length)
+				start = Arrays.copyOf(start, start.length * 2);
+			int id = size++;
+			buffer.addAll(sequence);
+			start[id + 1] = buffer.size();
+			bucket.add(id);
+			return id;
+		}
+
+		private boolean rangeEquals(int id, List<S> sequence) {
+			if (length(id) != sequence.size())
+				return false;
+			for (int i = 0; i < sequence.size(); i++)
+				if (!get(id, i).equals(sequence.get(i)))
+					return false;
+			return true;
+		}
+
+		List<S> toList(int id) {
+			return new ArrayList<S>(buffer.subList(start[id], start[id + 1]));
+		}
+	}
+
+	/**
+	 * The state of one run of the checker. A node is a pair of states, its delay is encoded as a signed id into the
+	 * {@link DelayTable}: positive ids are pending outputs of the first transducer, negative ones of the second.
+	 */
+	private class Search {
+		private final SFT<P, F, S> sft1;
+		private final SFT<P, F, S> sft2;
+		private final long startTime = System.currentTimeMillis();
+
+		private final DelayTable delays = new DelayTable();
+		private final Map<Pair<Integer, Integer>, Integer> nodeIds = new HashMap<Pair<Integer, Integer>, Integer>();
+		private final List<Pair<Integer, Integer>> nodes = new ArrayList<Pair<Integer, Integer>>();
+		private int[] delay = new int[16];
+		private int[] parent = new int[16];
+		private final List<S> symbol = new ArrayList<S>();
+		private final Set<Pair<Integer, Integer>> deadPairs = new HashSet<Pair<Integer, Integer>>();
+
+		Search(SFT<P, F, S> sft1, SFT<P, F, S> sft2) {
+			this.sft1 = sft1;
+			this.sft2 = sft2;
+		}
+
+		Pair<Boolean, List<S>> run() throws TimeoutException {
+			ArrayDeque<Integer> toVisit = new ArrayDeque<Integer>();
+			toVisit.add(addNode(new Pair<Integer, Integer>(sft1.getInitialState(), sft2.getInitialState()), 0, -1, null));
+
+			while (!toVisit.isEmpty()) {
+				checkTimeout();
+				int node = strategy == SearchStrategy.BFS ? toVisit.removeFirst() : toVisit.removeLast();
+				Pair<Integer, Integer> pair = nodes.get(node);
+
+				if (sft1.isFinalState(pair.first) && sft2.isFinalState(pair.second) && !tailsAgree(pair, delay[node]))
+					return conflict(pathTo(node));
+
+				for (SFTInputMove<P, F, S> t1 : sft1.getInputMovesFrom(pair.first))
+					for (SFTInputMove<P, F, S> t2 : sft2.getInputMovesFrom(pair.second)) {
+						P guard = ba.MkAnd(t1.guard, t2.guard);
+						if (!ba.IsSatisfiable(guard))
+							continue;
+
+						Pair<Integer, Integer> next = new Pair<Integer, Integer>(t1.to, t2.to);
+						List<S> conflict = step(node, guard, t1.outputFunctions, t2.outputFunctions, next, toVisit);
+						if (conflict != null)
+							return conflict(conflict);
+					}
+			}
+			return new Pair<Boolean, List<S>>(true, null);
+		}
+
+		/**
+		 * Figure 3 lines 5-11 for one pair of moves; returns a witness on conflict, null otherwise
+		 */
+		private List<S> step(int node, P guard, List<F> outputs1, List<F> outputs2, Pair<Integer, Integer> next,
+				ArrayDeque<Integer> toVisit) throws TimeoutException {
+			int d = delay[node];
+			int len1 = (d > 0 ? delays.length(d) : 0) + outputs1.size();
+			int len2 = (d < 0 ? delays.length(-d) : 0) + outputs2.size();
+
+			// Figure 3 line 8: the common prefix of both outputs must agree on every input of the guard
+			for (int i = 0; i < Math.min(len1, len2); i++) {
+				F u = outputAt(d, true, outputs1, i);
+				F v = outputAt(d, false, outputs2, i);
+				if (!ba.CheckGuardedEquality(guard, u, v))
+					return liveWitness(node, distinguishingSymbol(guard, u, v), next);
+			}
+
+			// Figure 3 lines 9-10: the remainder becomes the new delay and has to be constant on the guard
+			boolean firstAhead = len1 >= len2;
+			List<F> longer = firstAhead ? outputs1 : outputs2;
+			S witness = ba.generateWitness(guard);
+			List<S> c = new ArrayList<S>();
+			for (int i = Math.min(len1, len2); i < Math.max(len1, len2); i++) {
+				F w = outputAt(d, firstAhead, longer, i);
+				S ci = ba.MkSubstFuncConst(w, witness);
+				if (!ba.AreEquivalent(ba.MkSubstFuncPred(w, guard),
+						ba.MkSubstFuncPred(ba.MkSubstFuncFunc(w, ba.MkFuncConst(witness)), guard)))
+					return liveWitness(node, notMapping(guard, w, ci, witness), next);
+				c.add(ci);
+			}
+			int nextDelay = firstAhead ? delays.intern(c) : -delays.intern(c);
+
+			// Figure 3 lines 10-11
+			Integer nextNode = nodeIds.get(next);
+			if (nextNode == null)
+				toVisit.add(addNode(next, nextDelay, node, witness));
+			else if (delay[nextNode] != nextDelay)
+				return liveWitness(node, witness, next);
+			return null;
+		}
+
+		/**
+		 * The <code>i</code>-th function of (delay of one side) followed by <code>outputs</code>
+		 */
+		private F outputAt(int d, boolean first, List<F> outputs, int i) {
+			int pending = (first ? d > 0 : d < 0) ? delays.length(Math.abs(d)) : 0;
+			if (i < pending)
+				return ba.MkFuncConst(delays.get(Math.abs(d), i));
+			return outputs.get(i - pending);
+		}
+
+		/**
+		 * Both transducers accept here; their sets of final outputs (delay followed by a tail) must coincide
+		 */
+		private boolean tailsAgree(Pair<Integer, Integer> pair, int d) {
+			return finalOutputs(sft1.getFinalStatesAndTails().get(pair.first), d > 0 ? d : 0)
+					.equals(finalOutputs(sft2.getFinalStatesAndTails().get(pair.second), d < 0 ? -d : 0));
+		}
+
+		private Set<List<S>> finalOutputs(Set<List<S>> tails, int d) {
+			Set<List<S>> outputs = new HashSet<List<S>>();
+			if (tails.isEmpty())
+				outputs.add(delays.toList(d));
+			for (List<S> tail : tails) {
+				List<S> output = delays.toList(d);
+				output.addAll(tail);
+				outputs.add(output);
+			}
+			return outputs;
+		}
+
+		/**
+		 * A conflict found on the move into <code>next</code> is only a real disagreement if both transducers can
+		 * still accept from there; returns the completed input or null if <code>next</code> is a dead pair
+		 */
+		private List<S> liveWitness(int node, S a, Pair<Integer, Integer> next) throws TimeoutException {
+			List<S> suffix = completion(next);
+			if (suffix == null)
+				return null;
+			List<S> witness = pathTo(node);
+			witness.add(a);
+			witness.addAll(suffix);
+
+			// when the conflict is a clash between two delays the other path to next may be the distinguishing one
+			Integer nextNode = nodeIds.get(next);
+			if (nextNode != null && !disagree(witness)) {
+				List<S> other = pathTo(nextNode);
+				other.addAll(suffix);
+				if (disagree(other))
+					return other;
+			}
+			return witness;
+		}
+
+		private boolean disagree(List<S> input) throws TimeoutException {
+			List<S> output1 = SFT.outputOn(sft1, input, ba);
+			List<S> output2 = SFT.outputOn(sft2, input, ba);
+			return output1 == null ? output2 != null : !output1.equals(output2);
+		}
+
+		/**
+		 * Shortest input leading from <code>start</code> to a pair of final states, null if there is none
+		 */
+		private List<S> completion(Pair<Integer, Integer> start) throws TimeoutException {
+			if (deadPairs.contains(start))
+				return null;
+			Map<Pair<Integer, Integer>, List<S>> reached = new HashMap<Pair<Integer, Integer>, List<S>>();
+			LinkedList<Pair<Integer, Integer>> frontier = new LinkedList<Pair<Integer, Integer>>();
+			reached.put(start, new LinkedList<S>());
+			frontier.add(start);
+			while (!frontier.isEmpty()) {
+				checkTimeout();
+				Pair<Integer, Integer> curr = frontier.removeFirst();
+				if (sft1.isFinalState(curr.first) && sft2.isFinalState(curr.second))
+					return reached.get(curr);
+				for (SFTInputMove<P, F, S> t1 : sft1.getInputMovesFrom(curr.first))
+					for (SFTInputMove<P, F, S> t2 : sft2.getInputMovesFrom(curr.second)) {
+						Pair<Integer, Integer> next = new Pair<Integer, Integer>(t1.to, t2.to);
+						if (reached.containsKey(next) || deadPairs.contains(next))
+							continue;
+						P guard = ba.MkAnd(t1.guard, t2.guard);
+						if (ba.IsSatisfiable(guard)) {
+							List<S> path = new LinkedList<S>(reached.get(curr));
+							path.add(ba.generateWitness(guard));
+							reached.put(next, path);
+							frontier.add(next);
+						}
+					}
+			}
+			deadPairs.addAll(reached.keySet());
+			return null;
+		}
+
+		/**
+		 * Tries to find an input of <code>guard</code> on which <code>f1</code> and <code>f2</code> differ
+		 */
+		private S distinguishingSymbol(P guard, F f1, F f2) throws TimeoutException {
+			S a = ba.generateWitness(guard);
+			S out = ba.MkSubstFuncConst(f1, a);
+			if (!out.equals(ba.MkSubstFuncConst(f2, a)))
+				return a;
+			P sameAsA = ba.MkAnd(ba.MkSubstFuncPred(f1, ba.MkAtom(out)), ba.MkSubstFuncPred(f2, ba.MkAtom(out)));
+			P refined = ba.MkAnd(guard, ba.MkNot(sameAsA));
+			return ba.IsSatisfiable(refined) ? ba.generateWitness(refined) : a;
+		}
+
+		/**
+		 * Tries to find an input of <code>guard</code> that <code>f</code> does not map to <code>c</code>
+		 */
+		private S notMapping(P guard, F f, S c, S fallback) throws TimeoutException {
+			P refined = ba.MkAnd(guard, ba.MkNot(ba.MkSubstFuncPred(f, ba.MkAtom(c))));
+			return ba.IsSatisfiable(refined) ? ba.generateWitness(refined) : fallback;
+		}
+
+		private int addNode(Pair<Integer, Integer> pair, int d, int from, S a) {
+			int id = nodes.size();
+			if (id >= delay.length) {
+				delay = Arrays.copyOf(delay, delay.length * 2);
+				parent = Arrays.copyOf(parent, parent.length * 2);
+			}
+			nodes.add(pair);
+			nodeIds.put(pair, id);
+			delay[id] = d;
+			parent[id] = from;
+			symbol.add(a);
+			return id;
+		}
+
+		private List<S> pathTo(int node) {
+			LinkedList<S> path = new LinkedList<S>();
+			for (int n = node; parent[n] >= 0; n = parent[n])
+				path.addFirst(symbol.get(n));
+			return path;
+		}
+
+		private Pair<Boolean, List<S>> conflict(List<S> witness) {
+			return new Pair<Boolean, List<S>>(false, witness);
+		}
+
+		private void checkTimeout() throws TimeoutException {
+			if (System.currentTimeMillis() - startTime > timeout)
+				throw new TimeoutException();
+		}
+	}
+}
@@ -23,6 +23,8 @@ import automata.sfa.SFA;
 import automata.sfa.SFAMove;
 import automata.sfa.SFAInputMove;
 import theory.BooleanAlgebraSubst;
+import transducers.InstrumentedAlgebra;
+import transducers.TransducerListener;
 import utilities.Pair;
 
 /**
@@ -76,6 +78,15 @@ public class SFTProduct<P, F, S> extends Automaton<P, S> {
 	* Page 3, in the 8-th line of left column, definition 7
 	*/
 	public static <P, F, S> SFTProduct<P, F, S> MkSFTProduct(SFT<P, F, S> sft1withEps, SFT<P, F, S> sft2withEps, BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
+		return MkSFTProduct(sft1withEps, sft2withEps, ba, TransducerListener.NOOP);
+	}
+
+	/*
+	* Create a product of two SFTs, reporting the solver calls and the product transitions to listener
+	*/
+	public static <P, F, S> SFTProduct<P, F, S> MkSFTProduct(SFT<P, F, S> sft1withEps, SFT<P, F, S> sft2withEps, BooleanAlgebraSubst<P, F, S> ba,
+			TransducerListener listener) throws TimeoutException {
+		ba = InstrumentedAlgebra.wrap(ba, listener);
 		// Remove epsilons
 		SFT<P, F, S> sft1 = sft1withEps.removeEpsilonMoves(ba);
 		SFT<P, F, S> sft2 = sft2withEps.removeEpsilonMoves(ba);
@@ -122,6 +133,7 @@ public class SFTProduct<P, F, S> extends Automaton<P, S> {
 							SFTProductInputMove<P, F, S> newTrans = new SFTProductInputMove<P, F, S>(currStateId, nextStateId,
 									intersGuard, t1.outputFunctions, t2.outputFunctions);
 							transitions.add(newTrans);
+							listener.onTransition();
 						}
 					} catch (TimeoutException te) {
 						te.printStackTrace();
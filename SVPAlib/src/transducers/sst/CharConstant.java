@@ -7,18 +7,11 @@
 
 package transducers.sst;
 
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 
-import org.sat4j.specs.TimeoutException;
-
-import automata.sfa.SFA;
-import automata.sfa.SFAInputMove;
-
 import theory.BooleanAlgebraSubst;
 
-
 /**
  * A char constant that can appear in a variable update
  * @param <P>
@@ -52,21 +45,6 @@ public class CharConstant<P, F, S> implements ConstantToken<P, F, S> {
 		return this;
 	}
 
-	public HashMap<Integer, P> getNextState(
-			HashMap<Integer, HashMap<Integer, Integer>> f, P guard,
-			SFA<P, S> aut, Integer currState, BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
-		HashMap<Integer, P> res = new HashMap<Integer, P>();
-
-		for (SFAInputMove<P, S> move : aut.getInputMovesFrom(currState)) {
-			if (ba.HasModel(move.guard, constant)) {
-				res.put(move.to, guard);
-				break;
-			}
-		}
-
-		return res;
-	}
-	
 	@Override
 	public String toString() {
 		return constant.toString();
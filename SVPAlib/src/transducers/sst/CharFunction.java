@@ -7,14 +7,9 @@
  */
 package transducers.sst;
 
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 
-import org.sat4j.specs.TimeoutException;
-
-import automata.sfa.SFA;
-import automata.sfa.SFAInputMove;
 import theory.BooleanAlgebraSubst;
 
 /**
@@ -46,21 +41,6 @@ public class CharFunction<P, F, S> implements Token<P, F, S> {
 		return this;
 	}
 
-	public HashMap<Integer, P> getNextState(HashMap<Integer, HashMap<Integer, Integer>> f,
-			P guard,
-			SFA<P, S> aut, Integer currState, BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
-		HashMap<Integer, P> res = new HashMap<Integer, P>();
-		
-		for(SFAInputMove<P, S> move: aut.getInputMovesFrom(currState)){
-			P poff = ba.MkSubstFuncPred(unaryFunction, move.guard);
-			P conj = ba.MkAnd(guard,poff);
-			if(ba.IsSatisfiable(conj))
-				res.put(move.to, conj);
-		}
-		
-		return res;
-	}
-	
 	@Override
 	public String toString() {
 		return "{" + unaryFunction.toString() + "}";
@@ -0,0 +1,247 @@
+package transducers.sst;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebraSubst;
+import transducers.TransducerListener;
+
+/**
+ * Runs a copyless SST, that is an SST in which every variable appears at most once in the right-hand sides of each
+ * variable update.
+ *
+ * Variables are kept in mutable buffers instead of fresh lists. Since a variable is read at most once per step, the
+ * buffer of the first variable of an update is reused by reference and the rest of the update is appended to it, so
+ * <code>x := x y</code> costs an append of <code>y</code> and a pointer move. A configuration is only copied when it
+ * enables more than one transition, and identical configurations reaching the same state are merged.
+ *
+ * @param <P>
+ *            The type of predicates forming the Boolean algebra
+ * @param <F>
+ *            The type of functions S->S in the Boolean Algebra
+ * @param <S>
+ *            The domain of the Boolean algebra
+ */
+public class CopylessSSTRunner<P, F, S> {
+
+	private final SST<P, F, S> sst;
+	private final BooleanAlgebraSubst<P, F, S> ba;
+	private final Map<Integer, List<SSTInputMove<P, F, S>>> movesFrom = new HashMap<Integer, List<SSTInputMove<P, F, S>>>();
+
+	/**
+	 * A runner for <code>sstWithEps</code>, which has to be copyless once its epsilon moves are removed
+	 */
+	public CopylessSSTRunner(SST<P, F, S> sstWithEps, BooleanAlgebraSubst<P, F, S> ba) {
+		this.sst = sstWithEps.removeEpsilonMoves(ba);
+		this.ba = ba;
+		if (!sst.isCopyless())
+			throw new IllegalArgumentException("The SST has to be copyless");
+
+		for (Integer state : sst.getStates())
+			movesFrom.put(state, new ArrayList<SSTInputMove<P, F, S>>(sst.getInputMovesFrom(state)));
+	}
+
+	/**
+	 * Computes one of the outputs produced when reading input. Null if no such output exists
+	 *
+	 * @throws TimeoutException
+	 */
+	public List<S> outputOn(List<S> input) throws TimeoutException {
+		return outputOn(input, TransducerListener.NOOP);
+	}
+
+	/**
+	 * Computes one of the outputs produced when reading input, reporting transitions, configuration widths and the
+	 * output length to <code>listener</code>. Null if no such output exists
+	 *
+	 * @throws TimeoutException
+	 */
+	public List<S> outputOn(List<S> input, TransducerListener listener) throws TimeoutException {
+		List<Configuration<S>> configs = new ArrayList<Configuration<S>>();
+		configs.add(new Configuration<S>(sst.initialState, emptyBuffers()));
+
+		for (S el : input) {
+			Map<Integer, List<Configuration<S>>> next = new HashMap<Integer, List<Configuration<S>>>();
+			int width = 0;
+			for (Configuration<S> config : configs) {
+				List<SSTInputMove<P, F, S>> enabled = new ArrayList<SSTInputMove<P, F, S>>();
+				for (SSTInputMove<P, F, S> move : movesFrom.get(config.state))
+					if (ba.HasModel(move.guard, el))
+						enabled.add(move);
+
+				for (int i = 0; i < enabled.size(); i++) {
+					SSTInputMove<P, F, S> move = enabled.get(i);
+					listener.onTransition();
+					// the last move can consume the buffers of the configuration
+					SymbolBuffer<S>[] source = i == enabled.size() - 1 ? config.variables : copy(config.variables);
+					Configuration<S> target = new Configuration<S>(move.to, apply(move.variableUpdate, source, el));
+
+					List<Configuration<S>> atTarget = next.get(move.to);
+					if (atTarget == null) {
+						atTarget = new ArrayList<Configuration<S>>(1);
+						next.put(move.to, atTarget);
+					}
+					if (!atTarget.contains(target)) {
+						atTarget.add(target);
+						width++;
+					}
+				}
+			}
+
+			configs = new ArrayList<Configuration<S>>(width);
+			for (List<Configuration<S>> atState : next.values())
+				configs.addAll(atState);
+			listener.onConfigurationWidth(width);
+			if (configs.isEmpty())
+				return null;
+		}
+
+		for (Configuration<S> config : configs)
+			if (sst.isFinalState(config.state)) {
+				SymbolBuffer<S> out = new SymbolBuffer<S>();
+				for (ConstantToken<P, F, S> token : sst.outputFunction.get(config.state).update)
+					append(out, token, config.variables, null);
+				listener.onOutput(out.length);
+				return out.toList();
+			}
+		return null;
+	}
+
+	// applies a copyless update in place, the buffers in source are consumed
+	private SymbolBuffer<S>[] apply(FunctionalVariableUpdate<P, F, S> update, SymbolBuffer<S>[] source, S input) {
+		SymbolBuffer<S>[] target = newBuffers();
+		for (int variable = 0; variable < sst.variableCount; variable++) {
+			List<Token<P, F, S>> tokens = variable < update.variableUpdate.size()
+					? update.variableUpdate.get(variable) : new ArrayList<Token<P, F, S>>();
+
+			int first = 0;
+			SymbolBuffer<S> buffer;
+			if (!tokens.isEmpty() && tokens.get(0) instanceof SSTVariable<?, ?, ?>) {
+				buffer = source[((SSTVariable<P, F, S>) tokens.get(0)).id];
+				first = 1;
+			} else
+				buffer = new SymbolBuffer<S>();
+
+			for (int i = first; i < tokens.size(); i++)
+				append(buffer, tokens.get(i), source, input);
+			target[variable] = buffer;
+		}
+		return target;
+	}
+
+	private void append(SymbolBuffer<S> buffer, Token<P, F, S> token, SymbolBuffer<S>[] variables, S input) {
+		if (token instanceof SSTVariable<?, ?, ?>)
+			buffer.append(variables[((SSTVariable<P, F, S>) token).id]);
+		else if (token instanceof CharConstant<?, ?, ?>)
+			buffer.append(((CharConstant<P, F, S>) token).constant);
+		else
+			buffer.append(ba.MkSubstFuncConst(((CharFunction<P, F, S>) token).unaryFunction, input));
+	}
+
+	private SymbolBuffer<S>[] emptyBuffers() {
+		SymbolBuffer<S>[] buffers = newBuffers();
+		for (int variable = 0; variable < buffers.length; variable++)
+			buffers[variable] = new SymbolBuffer<S>();
+		return buffers;
+	}
+
+	private SymbolBuffer<S>[] copy(SymbolBuffer<S>[] buffers) {
+		SymbolBuffer<S>[] copies = newBuffers();
+		for (int variable = 0; variable < buffers.length; variable++)
+			copies[variable] = buffers[variable].copy();
+		return copies;
+	}
+
+	private SymbolBuffer<S>[] newBuffers() {
+		@SuppressWarnings("unchecked")
+		SymbolBuffer<S>[] buffers = (SymbolBuffer<S>[]) new SymbolBuffer<?>[sst.variableCount];
+		return buffers;
+	}
+
+	// A state of the SST together with the values of its variables
+	private static class Configuration<S> {
+		final int state;
+		final SymbolBuffer<S>[] variables;
+
+		Configuration(int state, SymbolBuffer<S>[] variables) {
+			this.state = state;
+			this.variables = variables;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Configuration<?>))
+				return false;
+			Configuration<?> config = (Configuration<?>) other;
+			return state == config.state && Arrays.equals(variables, config.variables);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * state + Arrays.hashCode(variables);
+		}
+	}
+
+	// A growable array of symbols, the generic counterpart of a StringBuilder
+	private static class SymbolBuffer<S> {
+		Object[] symbols = new Object[8];
+		int length;
+
+		void append(S symbol) {
+			ensureCapacity(length + 1);
+			symbols[length++] = symbol;
+		}
+
+		void append(SymbolBuffer<S> other) {
+			ensureCapacity(length + other.length);
+			System.arraycopy(other.symbols, 0, symbols, length, other.length);
+			length += other.length;
+		}
+
+		SymbolBuffer<S> copy() {
+			SymbolBuffer<S> copy = new SymbolBuffer<S>();
+			copy.symbols = Arrays.copyOf(symbols, Math.max(length, 8));
+			copy.length = length;
+			return copy;
+		}
+
+		@SuppressWarnings("unchecked")
+		List<S> toList() {
+			List<S> list = new ArrayList<S>(length);
+			for (int i = 0; i < length; i++)
+				list.add((S) symbols[i]);
+			return list;
+		}
+
+		private void ensureCapacity(int capacity) {
+			if (capacity > symbols.length)
+				symbols = Arrays.copyOf(symbols, Math.max(capacity, 2 * symbols.length));
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof SymbolBuffer<?>))
+				return false;
+			SymbolBuffer<?> buffer = (SymbolBuffer<?>) other;
+			if (length != buffer.length)
+				return false;
+			for (int i = 0; i < length; i++)
+				if (!symbols[i].equals(buffer.symbols[i]))
+					return false;
+			return true;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = length;
+			for (int i = 0; i < length; i++)
+				hash = 31 * hash + symbols[i].hashCode();
+			return hash;
+		}
+	}
+}
@@ -8,16 +8,9 @@
 package transducers.sst;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 
-import org.sat4j.specs.TimeoutException;
-
 import theory.BooleanAlgebraSubst;
-import utilities.Pair;
-import automata.sfa.SFA;
 
 /**
  * A variable update that can contain tokens which depend on the input being
@@ -150,119 +143,6 @@ public class FunctionalVariableUpdate<P, F, S> extends VariableUpdate<P, F, S> {
 
 	}
 
-	// Used for type-checking
-	// Given a summary, a guard, and the output automaton
-	// compute all possible summaries by all possible guards of output automaton
-	protected Collection<Pair<HashMap<Integer, HashMap<Integer, Integer>>, P>> getNextSummary(
-			HashMap<Integer, HashMap<Integer, Integer>> f, P guard,
-			SFA<P, S> aut, BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
-
-		// Ordered of collections of tuples (phi, s->s).
-		// The i-th elem contains all possible summaries matching the i-th variable
-		ArrayList<Collection<Pair<P, HashMap<Integer, Integer>>>> variableToFunsCrossPred = new ArrayList<Collection<Pair<P, HashMap<Integer, Integer>>>>();
-
-		// Update each variable
-		for (int curVar = 0; curVar < this.variableUpdate.size(); curVar++) {
-
-			HashMap<Integer, HashMap<Integer, P>> stateToSetOfPairs = new HashMap<Integer, HashMap<Integer, P>>();
-			for (int state : aut.getStates()) {
-				HashMap<Integer, P> currState = new HashMap<Integer, P>();
-				currState.put(state, guard);
-
-				for (Token<P, F, S> token : variableUpdate.get(curVar)) {
-					HashMap<Integer, P> newState = new HashMap<Integer, P>();
-					for (int state1 : currState.keySet())
-						newState.putAll(token.getNextState(f,
-								currState.get(state1), aut, state1, ba));
-					currState = newState;
-				}
-
-				stateToSetOfPairs.put(state, currState);
-			}
-			Collection<Pair<P, HashMap<Integer, Integer>>> funcs = new LinkedList<Pair<P, HashMap<Integer, Integer>>>();
-			accumulatePerVar(funcs, stateToSetOfPairs, 0, ba.True(),
-					new HashMap<Integer, Integer>(),
-					new ArrayList<Integer>(aut.getStates()), ba);
-
-			variableToFunsCrossPred.add(funcs);
-		}
-
-		Collection<Pair<HashMap<Integer, HashMap<Integer, Integer>>, P>> output = new LinkedList<Pair<HashMap<Integer, HashMap<Integer, Integer>>, P>>();
-
-		accumulate(output, variableToFunsCrossPred, 0, ba.True(),
-				new HashMap<Integer, HashMap<Integer, Integer>>(), ba);
-
-		return output;
-
-	}
-
-	// Auxiliary accumulation functions used to perform type-checking and
-	// compute
-	// possible predicates on summarization
-	// explore the variable update of a var and try to execute the output
-	// automaton on it
-	private void accumulatePerVar(
-			Collection<Pair<P, HashMap<Integer, Integer>>> funcs,
-			HashMap<Integer, HashMap<Integer, P>> stateToSetOfPairs,
-			int currStateId, P p, HashMap<Integer, Integer> currFunc,
-			ArrayList<Integer> states, BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
-
-		if (!ba.IsSatisfiable(p))
-			return;
-
-		if (currStateId == states.size()) {
-			funcs.add(new Pair<P, HashMap<Integer, Integer>>(p, currFunc));
-		} else {
-			// need to recurse over other states
-			Integer currState = states.get(currStateId);
-			HashMap<Integer, P> outsOfState = stateToSetOfPairs.get(currState);
-			for (Integer st : outsOfState.keySet()) {
-				P inters = ba.MkAnd(p, outsOfState.get(st));
-				if (ba.IsSatisfiable(p)) {
-					HashMap<Integer, Integer> newFunc = new HashMap<Integer, Integer>(
-							currFunc);
-					newFunc.put(currState, st);
-					accumulatePerVar(funcs, stateToSetOfPairs, currStateId + 1,
-							inters, newFunc, states, ba);
-				}
-			}
-		}
-	}
-
-	// Auxiliary accumulation functions used to perform type-checking and
-	// compute
-	// possible predicates on summarization
-	// explore the variable update func and acumulate all possible predicates of
-	// output automaton
-	private static <P, F, S> void accumulate(
-			Collection<Pair<HashMap<Integer, HashMap<Integer, Integer>>, P>> output,
-			ArrayList<Collection<Pair<P, HashMap<Integer, Integer>>>> variableToFunsCrossPred,
-			int varId, P p, HashMap<Integer, HashMap<Integer, Integer>> fun,
-			BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
-		if (!ba.IsSatisfiable(p))
-			return;
-
-		if (varId == variableToFunsCrossPred.size()) {
-			output.add(new Pair<HashMap<Integer, HashMap<Integer, Integer>>, P>(
-					fun, p));
-		} else {
-			// need to recurse over other variables
-			Collection<Pair<P, HashMap<Integer, Integer>>> currVarOptions = variableToFunsCrossPred
-					.get(varId);
-			for (Pair<P, HashMap<Integer, Integer>> pair : currVarOptions) {
-				P inters = ba.MkAnd(p, pair.first);
-				if (ba.IsSatisfiable(p)) {
-					HashMap<Integer, HashMap<Integer, Integer>> newFun = new HashMap<Integer, HashMap<Integer, Integer>>(fun);
-					newFun.put(varId, pair.second);
-
-					accumulate(output, variableToFunsCrossPred, varId + 1,
-							inters, newFun, ba);
-				}
-			}
-
-		}
-	}
-
 	// renames the tokens using the offset varRename
 	private static <P1, F1, S1> List<Token<P1, F1, S1>> renameTokens(
 			Integer varRename, List<Token<P1, F1, S1>> singleVarUp) {
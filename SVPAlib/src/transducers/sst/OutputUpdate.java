@@ -8,13 +8,8 @@
 package transducers.sst;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
-import org.sat4j.specs.TimeoutException;
-
-import automata.sfa.SFA;
-
 import theory.BooleanAlgebraSubst;
 
 public class OutputUpdate<P, F, S> extends VariableUpdate<P, F, S> {
@@ -66,26 +61,6 @@ public class OutputUpdate<P, F, S> extends VariableUpdate<P, F, S> {
 		return sb.toString();
 	}
 
-	// given a summary extract where we would end up starting in q0 on var x0
-	protected Integer getInitStateSummary(
-			HashMap<Integer, HashMap<Integer, Integer>> f, SFA<P, S> aut,
-			BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
-		HashMap<Integer, P> currState = new HashMap<Integer, P>();
-		currState.put(aut.getInitialState(), ba.True());
-
-		for (ConstantToken<P, F, S> token : update){
-			HashMap<Integer, P> newState = new HashMap<Integer, P>();
-			for (int state : currState.keySet())			
-				newState.putAll(token.getNextState(f, ba.True(), aut, state, ba));
-			currState = newState;
-		}
-
-		for (int state : currState.keySet())
-			return state;
-		
-		return null;
-	}
-
 	// STATIC METHODS
 
 	//Combines two output updates o=o1o2
@@ -0,0 +1,228 @@
+package transducers.sst;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.sat4j.specs.TimeoutException;
+
+import theory.BooleanAlgebraSubst;
+
+/**
+ * Runs a deterministic SST on long inputs using all the cores of a {@link ForkJoinPool}.
+ *
+ * The input is split in chunks. For every chunk and every state q, a task computes the state reached reading the
+ * chunk from q together with the composition of the variable updates along the way. The composed update is
+ * instantiated on the chunk, so it only contains the variables at the beginning of the chunk and constants. A
+ * sequential pass then applies the composed updates starting from the initial state. The first chunk is only
+ * summarized from the initial state. The Boolean algebra must support concurrent calls to HasModel and
+ * MkSubstFuncConst.
+ *
+ * @param <P>
+ *            The type of predicates forming the Boolean algebra
+ * @param <F>
+ *            The type of functions S->S in the Boolean Algebra
+ * @param <S>
+ *            The domain of the Boolean algebra
+ */
+public class ParallelSSTRunner<P, F, S> {
+
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+	private final SST<P, F, S> sst;
+	private final BooleanAlgebraSubst<P, F, S> ba;
+	private final int chunkSize;
+	private final ForkJoinPool pool;
+	// when no variable is read twice the value of the first variable of an update can be extended in place
+	private final boolean copyless;
+
+	// dense numbering of the states and the moves leaving each of them
+	private final List<Integer> states;
+	private final Map<Integer, Integer> stateIndex = new HashMap<Integer, Integer>();
+	private final List<List<SSTInputMove<P, F, S>>> movesFrom = new ArrayList<List<SSTInputMove<P, F, S>>>();
+
+	/**
+	 * A runner for <code>sstWithEps</code> with the default chunk size on the common pool
+	 */
+	public ParallelSSTRunner(SST<P, F, S> sstWithEps, BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
+		this(sstWithEps, ba, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * A runner for <code>sstWithEps</code>, which has to be deterministic once its epsilon moves are removed, that
+	 * splits the input in chunks of <code>chunkSize</code> symbols and runs them on <code>pool</code>
+	 */
+	public ParallelSSTRunner(SST<P, F, S> sstWithEps, BooleanAlgebraSubst<P, F, S> ba, int chunkSize,
+			ForkJoinPool pool) throws TimeoutException {
+		if (chunkSize <= 0)
+			throw new IllegalArgumentException("The chunk size has to be positive");
+		this.sst = sstWithEps.removeEpsilonMoves(ba);
+		this.ba = ba;
+		this.chunkSize = chunkSize;
+		this.pool = pool;
+		this.copyless = sst.isCopyless();
+
+		states = new ArrayList<Integer>(sst.getStates());
+		for (Integer state : states) {
+			stateIndex.put(state, stateIndex.size());
+			List<SSTInputMove<P, F, S>> moves = new ArrayList<SSTInputMove<P, F, S>>(sst.getInputMovesFrom(state));
+			for (int i = 0; i < moves.size(); i++)
+				for (int j = i + 1; j < moves.size(); j++)
+					if (!moves.get(i).isDisjointFrom(moves.get(j), ba))
+						throw new IllegalArgumentException("The SST has to be deterministic");
+			movesFrom.add(moves);
+		}
+	}
+
+	/**
+	 * Computes the output produced when reading input. Null if no such output exists
+	 *
+	 * @throws TimeoutException
+	 */
+	public List<S> outputOn(final List<S> input) throws TimeoutException {
+		final int initialIndex = stateIndex.get(sst.initialState);
+
+		List<Callable<ChunkSummary<P, F, S>>> tasks = new ArrayList<Callable<ChunkSummary<P, F, S>>>();
+		for (int from = 0; from < input.size(); from += chunkSize) {
+			final List<S> chunk = input.subList(from, Math.min(from + chunkSize, input.size()));
+			final boolean first = from == 0;
+			tasks.add(new Callable<ChunkSummary<P, F, S>>() {
+				public ChunkSummary<P, F, S> call() throws TimeoutException {
+					ChunkSummary<P, F, S> summary = new ChunkSummary<P, F, S>(states.size());
+					if (first)
+						summarize(chunk, initialIndex, summary);
+					else
+						for (int start = 0; start < states.size(); start++)
+							summarize(chunk, start, summary);
+					return summary;
+				}
+			});
+		}
+
+		// prefix pass
+		List<List<S>> values = new ArrayList<List<S>>(sst.variableCount);
+		for (int variable = 0; variable < sst.variableCount; variable++)
+			values.add(new ArrayList<S>());
+		int current = initialIndex;
+		for (Future<ChunkSummary<P, F, S>> future : pool.invokeAll(tasks)) {
+			ChunkSummary<P, F, S> summary = get(future);
+			if (summary.end[current] < 0)
+				return null;
+
+			List<List<S>> newValues = new ArrayList<List<S>>(sst.variableCount);
+			for (List<ConstantToken<P, F, S>> update : summary.update.get(current))
+				newValues.add(instantiate(update, values));
+			values = newValues;
+			current = summary.end[current];
+		}
+
+		Integer state = states.get(current);
+		if (!sst.isFinalState(state))
+			return null;
+		return instantiate(sst.outputFunction.get(state).update, values);
+	}
+
+	// Runs the chunk from the state with index start
+	private void summarize(List<S> chunk, int start, ChunkSummary<P, F, S> summary) throws TimeoutException {
+		// the value of each variable in terms of the variables at the beginning of the chunk
+		List<List<ConstantToken<P, F, S>>> values = new ArrayList<List<ConstantToken<P, F, S>>>(sst.variableCount);
+		for (int variable = 0; variable < sst.variableCount; variable++) {
+			List<ConstantToken<P, F, S>> value = new ArrayList<ConstantToken<P, F, S>>();
+			value.add(new SSTVariable<P, F, S>(variable));
+			values.add(value);
+		}
+
+		int current = start;
+		for (S el : chunk) {
+			SSTInputMove<P, F, S> enabled = null;
+			for (SSTInputMove<P, F, S> move : movesFrom.get(current))
+				if (ba.HasModel(move.guard, el)) {
+					enabled = move;
+					break;
+				}
+			if (enabled == null)
+				return;
+
+			values = compose(values, enabled.variableUpdate, el);
+			current = stateIndex.get(enabled.to);
+		}
+		summary.end[start] = current;
+		summary.update.set(start, values);
+	}
+
+	// Applies the update, instantiated on the symbol el, to the symbolic values of the variables
+	private List<List<ConstantToken<P, F, S>>> compose(List<List<ConstantToken<P, F, S>>> values,
+			FunctionalVariableUpdate<P, F, S> update, S el) {
+		List<List<ConstantToken<P, F, S>>> newValues = new ArrayList<List<ConstantToken<P, F, S>>>(
+				sst.variableCount);
+		for (int variable = 0; variable < sst.variableCount; variable++) {
+			List<Token<P, F, S>> tokens = variable < update.variableUpdate.size()
+					? update.variableUpdate.get(variable) : new ArrayList<Token<P, F, S>>();
+
+			int first = 0;
+			List<ConstantToken<P, F, S>> value;
+			if (copyless && !tokens.isEmpty() && tokens.get(0) instanceof SSTVariable<?, ?, ?>) {
+				value = values.get(((SSTVariable<P, F, S>) tokens.get(0)).id);
+				first = 1;
+			} else
+				value = new ArrayList<ConstantToken<P, F, S>>();
+
+			for (int i = first; i < tokens.size(); i++) {
+				Token<P, F, S> token = tokens.get(i);
+				if (token instanceof SSTVariable<?, ?, ?>)
+					value.addAll(values.get(((SSTVariable<P, F, S>) token).id));
+				else if (token instanceof CharConstant<?, ?, ?>)
+					value.add((CharConstant<P, F, S>) token);
+				else
+					value.add(new CharConstant<P, F, S>(
+							ba.MkSubstFuncConst(((CharFunction<P, F, S>) token).unaryFunction, el)));
+			}
+			newValues.add(value);
+		}
+		return newValues;
+	}
+
+	// Replaces the variables in tokens with their values
+	private List<S> instantiate(List<ConstantToken<P, F, S>> tokens, List<List<S>> values) {
+		List<S> value = new ArrayList<S>();
+		for (ConstantToken<P, F, S> token : tokens)
+			if (token instanceof SSTVariable<?, ?, ?>)
+				value.addAll(values.get(((SSTVariable<P, F, S>) token).id));
+			else
+				value.add(((CharConstant<P, F, S>) token).constant);
+		return value;
+	}
+
+	private static <T> T get(Future<T> future) throws TimeoutException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TimeoutException(e.getMessage());
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof TimeoutException)
+				throw (TimeoutException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	// For every start state, the end state (-1 if the run dies) and the composed update on a chunk
+	private static class ChunkSummary<P, F, S> {
+		final int[] end;
+		final List<List<List<ConstantToken<P, F, S>>>> update;
+
+		ChunkSummary(int stateCount) {
+			end = new int[stateCount];
+			update = new ArrayList<List<List<ConstantToken<P, F, S>>>>(stateCount);
+			for (int i = 0; i < stateCount; i++) {
+				end[i] = -1;
+				update.add(null);
+			}
+		}
+	}
+}
@@ -20,6 +20,8 @@ import org.sat4j.specs.TimeoutException;
 
 import theory.BooleanAlgebra;
 import theory.BooleanAlgebraSubst;
+import transducers.InstrumentedAlgebra;
+import transducers.TransducerListener;
 import utilities.Pair;
 import automata.Automaton;
 import automata.Move;
@@ -178,6 +180,11 @@ public class SST<P, F, S> extends Automaton<P, S> {
 		return outputOn(this, input, ba);
 	}
 
+	public List<S> outputOn(List<S> input, BooleanAlgebraSubst<P, F, S> ba, TransducerListener listener)
+			throws TimeoutException {
+		return outputOn(this, input, ba, listener);
+	}
+
 	/**
 	 * Computes one of the ouptuts produced when reading input. Null if no such
 	 * output exists
@@ -189,9 +196,23 @@ public class SST<P, F, S> extends Automaton<P, S> {
 	 */
 	public static <P1, F1, S1> List<S1> outputOn(SST<P1, F1, S1> sstWithEps, List<S1> input,
 			BooleanAlgebraSubst<P1, F1, S1> ba) throws TimeoutException {
+		return outputOn(sstWithEps, input, ba, TransducerListener.NOOP);
+	}
+
+	/**
+	 * Computes one of the ouptuts produced when reading input, reporting transitions, guard evaluations, the number of
+	 * variable assignments after each symbol and the output length to <code>listener</code>. Null if no such output
+	 * exists
+	 * 
+	 * @return one output sequence, null if undefined
+	 * @throws TimeoutException 
+	 */
+	public static <P1, F1, S1> List<S1> outputOn(SST<P1, F1, S1> sstWithEps, List<S1> input,
+			BooleanAlgebraSubst<P1, F1, S1> ba, TransducerListener listener) throws TimeoutException {
 
 		// composition
 		SST<P1, F1, S1> sst = sstWithEps.removeEpsilonMoves(ba);
+		ba = InstrumentedAlgebra.wrap(ba, listener);
 		// Assume that there are no epsilon transitions for now
 
 		Map<Integer, Collection<VariableAssignment<S1>>> currConf = new HashMap<Integer, Collection<VariableAssignment<S1>>>();
@@ -200,8 +221,13 @@ public class SST<P, F, S> extends Automaton<P, S> {
 		initialVariableAssignment.add(VariableAssignment.MkInitialValue(sst.variableCount, ba));
 		currConf.put(sst.initialState, initialVariableAssignment);
 
-		for (S1 el : input)
-			currConf = sst.getNextConfig(currConf, el, ba);
+		for (S1 el : input) {
+			currConf = sst.getNextConfig(currConf, el, ba, listener);
+			int width = 0;
+			for (Collection<VariableAssignment<S1>> assignments : currConf.values())
+				width += assignments.size();
+			listener.onConfigurationWidth(width);
+		}
 
 		for (int state : currConf.keySet()) {
 			if (sst.isFinalState(state)) {
@@ -210,7 +236,9 @@ public class SST<P, F, S> extends Automaton<P, S> {
 					// apply outputFunction
 					OutputUpdate<P1, F1, S1> outputUpdate = sst.outputFunction.get(state);
 
-					return outputUpdate.applyTo(assignment, ba);
+					List<S1> output = outputUpdate.applyTo(assignment, ba);
+					listener.onOutput(output.size());
+					return output;
 				}
 			}
 		}
@@ -220,7 +248,8 @@ public class SST<P, F, S> extends Automaton<P, S> {
 
 	// Makes one step on the current config and symbol in the sst
 	private Map<Integer, Collection<VariableAssignment<S>>> getNextConfig(
-			Map<Integer, Collection<VariableAssignment<S>>> currConfig, S input, BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
+			Map<Integer, Collection<VariableAssignment<S>>> currConfig, S input, BooleanAlgebraSubst<P, F, S> ba,
+			TransducerListener listener) throws TimeoutException {
 
 		Map<Integer, Collection<VariableAssignment<S>>> newConfig = new HashMap<Integer, Collection<VariableAssignment<S>>>();
 
@@ -228,6 +257,7 @@ public class SST<P, F, S> extends Automaton<P, S> {
 			Collection<VariableAssignment<S>> sourceAssignments = currConfig.get(state);
 			for (SSTInputMove<P, F, S> move : getInputMovesFrom(state))
 				if (move.hasModel(input, ba)) {
+					listener.onTransition();
 					Collection<VariableAssignment<S>> targetAssignments = new ArrayList<VariableAssignment<S>>();
 					if (newConfig.containsKey(move.to))
 						targetAssignments = newConfig.get(move.to);
@@ -1297,6 +1327,34 @@ public class SST<P, F, S> extends Automaton<P, S> {
 		return MkSST(transitions, initialState, numberOfVariables, outputFunction, ba);
 	}
 
+	/**
+	 * Checks whether every variable appears at most once in the right-hand sides of each variable update, including
+	 * the updates of epsilon moves
+	 */
+	public boolean isCopyless() {
+		for (SSTInputMove<P, F, S> t : getInputMovesFrom(states))
+			if (!isCopyless(t.variableUpdate.variableUpdate))
+				return false;
+		for (SSTEpsilon<P, F, S> t : getEpsilonMovesFrom(states))
+			if (!isCopyless(t.variableUpdate.variableUpdate))
+				return false;
+		return true;
+	}
+
+	// checks that no variable appears twice in the update
+	private boolean isCopyless(List<? extends List<? extends Token<P, F, S>>> update) {
+		boolean[] used = new boolean[variableCount];
+		for (List<? extends Token<P, F, S>> variableValue : update)
+			for (Token<P, F, S> token : variableValue)
+				if (token instanceof SSTVariable<?, ?, ?>) {
+					int id = ((SSTVariable<P, F, S>) token).id;
+					if (used[id])
+						return false;
+					used[id] = true;
+				}
+		return true;
+	}
+
 	/**
 	 * Computes the domain automaton of the sst
 	 * 
@@ -1323,11 +1381,16 @@ public class SST<P, F, S> extends Automaton<P, S> {
 	 */
 	public boolean typeCheck(SFA<P, S> inputNonMin, SFA<P, S> outputNonMin, BooleanAlgebraSubst<P, F, S> ba)
 			throws TimeoutException {
-		SFA<P, S> complement = outputNonMin.complement(ba);
-		SFA<P, S> preim = SST.preImage(this, complement, ba);
-		SFA<P, S> inters = preim.intersectionWith(inputNonMin, ba);
+		return new SSTPreimageEngine<P, F, S>(outputNonMin, ba).typeCheck(inputNonMin, this);
+	}
 
-		return inters.isEmpty();
+	/**
+	 * Type-checks against the output language of <code>engine</code>, reusing its cached summaries
+	 * 
+	 * @throws TimeoutException
+	 */
+	public boolean typeCheck(SFA<P, S> inputNonMin, SSTPreimageEngine<P, F, S> engine) throws TimeoutException {
+		return engine.typeCheck(inputNonMin, this);
 	}
 
 	/**
@@ -1346,69 +1409,7 @@ public class SST<P, F, S> extends Automaton<P, S> {
 	 */
 	public static <A, B, C> SFA<A, C> preImage(SST<A, B, C> sstWithEps, SFA<A, C> outputNonMin,
 			BooleanAlgebraSubst<A, B, C> ba) throws TimeoutException {
-		SFA<A, C> output = outputNonMin.minimize(ba);
-		SST<A, B, C> sst = sstWithEps.removeEpsilonMoves(ba);
-
-		Collection<SFAMove<A, C>> transitions = new ArrayList<SFAMove<A, C>>();
-		Collection<Integer> finalStates = new HashSet<Integer>();
-		Integer initialState = 0;
-
-		// A state is a pair (q, f) where q is a state of the sst and f: X -> QO
-		// -> QO is a function
-		// mapping each variable x to a function from QO to QO (the
-		// summarization)
-		Map<Pair<Integer, HashMap<Integer, HashMap<Integer, Integer>>>, Integer> reached = new HashMap<Pair<Integer, HashMap<Integer, HashMap<Integer, Integer>>>, Integer>();
-		LinkedList<Pair<Integer, HashMap<Integer, HashMap<Integer, Integer>>>> toVisit = new LinkedList<Pair<Integer, HashMap<Integer, HashMap<Integer, Integer>>>>();
-
-		// The initial state is the identity for every variable
-		HashMap<Integer, Integer> identityStateMap = new HashMap<Integer, Integer>();
-		HashMap<Integer, HashMap<Integer, Integer>> identityMap = new HashMap<Integer, HashMap<Integer, Integer>>();
-		for (int stateId : output.getStates())
-			identityStateMap.put(stateId, stateId);
-		for (int varId = 0; varId < sst.variableCount; varId++)
-			identityMap.put(varId, identityStateMap);
-
-		Pair<Integer, HashMap<Integer, HashMap<Integer, Integer>>> initialStatePair = new Pair<Integer, HashMap<Integer, HashMap<Integer, Integer>>>(
-				sst.initialState, identityMap);
-		reached.put(initialStatePair, 0);
-		toVisit.add(initialStatePair);
-
-		// do a DFS and look for reachable states
-		while (!toVisit.isEmpty()) {
-			Pair<Integer, HashMap<Integer, HashMap<Integer, Integer>>> currState = toVisit.removeFirst();
-			int currStateId = reached.get(currState);
-
-			int sstState = currState.first;
-			HashMap<Integer, HashMap<Integer, Integer>> currFun = currState.second;
-
-			// set final states to those for which the output func summarized on
-			// initial state gives a final state of O
-			if (sst.isFinalState(sstState)) {
-				Integer fromqoOnOutputFunction = sst.outputFunction.get(sstState).getInitStateSummary(currFun, output,
-						ba);
-				if (fromqoOnOutputFunction != null && output.getFinalStates().contains(fromqoOnOutputFunction))
-					finalStates.add(currStateId);
-			}
-
-			// For each move of the sst compute the next state
-			for (SSTInputMove<A, B, C> t : sst.getInputMovesFrom(sstState)) {
-
-				Collection<Pair<HashMap<Integer, HashMap<Integer, Integer>>, A>> nextFuns = t.variableUpdate
-						.getNextSummary(currFun, t.guard, output, ba);
-				for (Pair<HashMap<Integer, HashMap<Integer, Integer>>, A> pair : nextFuns) {
-
-					Pair<Integer, HashMap<Integer, HashMap<Integer, Integer>>> nextState = new Pair<Integer, HashMap<Integer, HashMap<Integer, Integer>>>(
-							t.to, pair.first);
-
-					int nextStateId = getStateId(nextState, reached, toVisit);
-
-					transitions.add(new SFAInputMove<A, C>(currStateId, nextStateId, pair.second));
-				}
-			}
-
-		}
-
-		return SFA.MkSFA(transitions, initialState, finalStates, ba);
+		return new SSTPreimageEngine<A, B, C>(outputNonMin, ba).preImage(sstWithEps);
 	}
 
 	// non-public methods
@@ -0,0 +1,342 @@
+package transducers.sst;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.sat4j.specs.TimeoutException;
+
+import automata.sfa.SFA;
+import automata.sfa.SFAInputMove;
+import automata.sfa.SFAMove;
+import theory.BooleanAlgebraSubst;
+import transducers.InstrumentedAlgebra;
+import transducers.TransducerListener;
+import utilities.Pair;
+
+/**
+ * Computes pre-images of SSTs with respect to a fixed output SFA.
+ *
+ * The effect of a string of tokens on the output automaton is summarized as a relation between the states of the
+ * automaton, stored as a boolean matrix with one {@link BitSet} per row. Every summary is interned and gets an integer
+ * id, and the summaries of token strings (variable updates and output updates) are memoized per engine, so checking
+ * many SSTs against the same output specification only composes each summary once. Composing summaries is a boolean
+ * matrix product on bitsets.
+ *
+ * @param <P>
+ *            The type of predicates forming the Boolean algebra
+ * @param <F>
+ *            The type of functions S->S in the Boolean Algebra
+ * @param <S>
+ *            The domain of the Boolean algebra
+ */
+public class SSTPreimageEngine<P, F, S> {
+
+	private final SFA<P, S> output;
+	private final BooleanAlgebraSubst<P, F, S> ba;
+	private final TransducerListener listener;
+
+	// dense numbering of the states of the output automaton
+	private final int stateCount;
+	private final Map<Integer, Integer> stateIndex = new HashMap<Integer, Integer>();
+	private final int initialIndex;
+	private final BitSet finalIndices = new BitSet();
+
+	// interned summaries: id -> matrix and matrix -> id
+	private final List<BitSet[]> summaries = new ArrayList<BitSet[]>();
+	private final Map<List<BitSet>, Integer> summaryIds = new HashMap<List<BitSet>, Integer>();
+	private final int identityId;
+
+	// memoized summaries of constants, of functions (split by input predicate) and of token strings
+	private final Map<S, Integer> constantSummaries = new HashMap<S, Integer>();
+	private final Map<F, List<Pair<P, Integer>>> functionSummaries = new HashMap<F, List<Pair<P, Integer>>>();
+	private final Map<List<Object>, List<Pair<P, Integer>>> tokenStringSummaries = new HashMap<List<Object>, List<Pair<P, Integer>>>();
+	private final Map<Pair<Integer, Integer>, Integer> products = new HashMap<Pair<Integer, Integer>, Integer>();
+
+	// engine for the complement of the output, used by type checking
+	private SSTPreimageEngine<P, F, S> complementEngine;
+
+	/**
+	 * An engine computing pre-images of the language of <code>outputNonMin</code>
+	 *
+	 * @throws TimeoutException
+	 */
+	public SSTPreimageEngine(SFA<P, S> outputNonMin, BooleanAlgebraSubst<P, F, S> ba) throws TimeoutException {
+		this(outputNonMin, ba, TransducerListener.NOOP);
+	}
+
+	/**
+	 * An engine computing pre-images of the language of <code>outputNonMin</code> that reports solver calls, reuses of
+	 * memoized summaries and the transitions of the computed pre-images to <code>listener</code>
+	 *
+	 * @throws TimeoutException
+	 */
+	public SSTPreimageEngine(SFA<P, S> outputNonMin, BooleanAlgebraSubst<P, F, S> ba, TransducerListener listener)
+			throws TimeoutException {
+		this.ba = InstrumentedAlgebra.wrap(ba, listener);
+		this.listener = listener;
+		ba = this.ba;
+		this.output = outputNonMin.minimize(ba);
+
+		for (Integer state : output.getStates())
+			stateIndex.put(state, stateIndex.size());
+		stateCount = stateIndex.size();
+		initialIndex = stateIndex.get(output.getInitialState());
+		for (Integer state : output.getFinalStates())
+			finalIndices.set(stateIndex.get(state));
+
+		BitSet[] identity = emptyMatrix();
+		for (int i = 0; i < stateCount; i++)
+			identity[i].set(i);
+		identityId = intern(identity);
+	}
+
+	/**
+	 * Computes the pre-image of <code>sstWithEps</code> on the output language of this engine
+	 *
+	 * @throws TimeoutException
+	 */
+	public SFA<P, S> preImage(SST<P, F, S> sstWithEps) throws TimeoutException {
+		SST<P, F, S> sst = sstWithEps.removeEpsilonMoves(ba);
+
+		Collection<SFAMove<P, S>> transitions = new ArrayList<SFAMove<P, S>>();
+		Collection<Integer> finalStates = new HashSet<Integer>();
+
+		// A state is a list [q, id_0, ..., id_k-1] where q is a state of the sst and id_x is the summary of variable x
+		Map<List<Integer>, Integer> reached = new HashMap<List<Integer>, Integer>();
+		LinkedList<List<Integer>> toVisit = new LinkedList<List<Integer>>();
+
+		List<Integer> initialStateList = new ArrayList<Integer>(sst.variableCount + 1);
+		initialStateList.add(sst.initialState);
+		for (int varId = 0; varId < sst.variableCount; varId++)
+			initialStateList.add(identityId);
+		reached.put(initialStateList, 0);
+		toVisit.add(initialStateList);
+
+		while (!toVisit.isEmpty()) {
+			List<Integer> currState = toVisit.removeFirst();
+			int currStateId = reached.get(currState);
+			int sstState = currState.get(0);
+			List<Integer> currFun = currState.subList(1, currState.size());
+
+			if (sst.isFinalState(sstState) && acceptsFromInitial(sst.outputFunction.get(sstState).update, currFun))
+				finalStates.add(currStateId);
+
+			for (SSTInputMove<P, F, S> t : sst.getInputMovesFrom(sstState))
+				for (Pair<P, List<Integer>> next : nextSummaries(t, currFun)) {
+					List<Integer> nextState = new ArrayList<Integer>(next.second.size() + 1);
+					nextState.add(t.to);
+					nextState.addAll(next.second);
+
+					Integer nextStateId = reached.get(nextState);
+					if (nextStateId == null) {
+						nextStateId = reached.size();
+						reached.put(nextState, nextStateId);
+						toVisit.add(nextState);
+					}
+					transitions.add(new SFAInputMove<P, S>(currStateId, nextStateId, next.first));
+					listener.onTransition();
+				}
+		}
+
+		return SFA.MkSFA(transitions, 0, finalStates, ba);
+	}
+
+	/**
+	 * Checks that every input of <code>inputNonMin</code> is mapped by <code>sst</code> into the output language of
+	 * this engine
+	 *
+	 * @throws TimeoutException
+	 */
+	public boolean typeCheck(SFA<P, S> inputNonMin, SST<P, F, S> sst) throws TimeoutException {
+		if (complementEngine == null)
+			complementEngine = new SSTPreimageEngine<P, F, S>(output.complement(ba), ba, listener);
+		return complementEngine.preImage(sst).intersectionWith(inputNonMin, ba).isEmpty();
+	}
+
+	/**
+	 * Number of distinct state summaries computed so far
+	 */
+	public int summaryCount() {
+		return summaries.size();
+	}
+
+	// Given the summaries of the variables and a move, computes all the summaries after the move together with the
+	// predicate under which each of them is produced
+	private Collection<Pair<P, List<Integer>>> nextSummaries(SSTInputMove<P, F, S> t, List<Integer> currFun)
+			throws TimeoutException {
+		ArrayList<List<Pair<P, Integer>>> perVariable = new ArrayList<List<Pair<P, Integer>>>();
+		for (List<Token<P, F, S>> update : t.variableUpdate.variableUpdate)
+			perVariable.add(summarize(update, currFun));
+
+		Collection<Pair<P, List<Integer>>> result = new LinkedList<Pair<P, List<Integer>>>();
+		accumulate(result, perVariable, 0, t.guard, new Integer[perVariable.size()]);
+		return result;
+	}
+
+	private void accumulate(Collection<Pair<P, List<Integer>>> result, ArrayList<List<Pair<P, Integer>>> perVariable,
+			int varId, P p, Integer[] ids) throws TimeoutException {
+		if (varId == perVariable.size()) {
+			result.add(new Pair<P, List<Integer>>(p, new ArrayList<Integer>(Arrays.asList(ids))));
+			return;
+		}
+		List<Pair<P, Integer>> options = perVariable.get(varId);
+		for (Pair<P, Integer> option : options) {
+			// a summary that does not depend on the input leaves the predicate untouched
+			P inters = option.first == null ? p : ba.MkAnd(p, option.first);
+			if (option.first == null || ba.IsSatisfiable(inters)) {
+				ids[varId] = option.second;
+				accumulate(result, perVariable, varId + 1, inters, ids);
+			}
+		}
+	}
+
+	// Summarizes a token string under the current variable summaries. A null predicate means the summary does not
+	// depend on the input.
+	private List<Pair<P, Integer>> summarize(List<? extends Token<P, F, S>> tokens, List<Integer> currFun)
+			throws TimeoutException {
+		List<Object> key = new ArrayList<Object>(tokens.size());
+		for (Token<P, F, S> token : tokens) {
+			if (token instanceof SSTVariable<?, ?, ?>)
+				key.add(currFun.get(((SSTVariable<P, F, S>) token).id));
+			else if (token instanceof CharConstant<?, ?, ?>)
+				key.add(new Pair<String, Object>("c", ((CharConstant<P, F, S>) token).constant));
+			else
+				key.add(new Pair<String, Object>("f", ((CharFunction<P, F, S>) token).unaryFunction));
+		}
+
+		List<Pair<P, Integer>> cached = tokenStringSummaries.get(key);
+		if (cached != null) {
+			listener.onCacheHit();
+			return cached;
+		}
+
+		List<Pair<P, Integer>> options = new ArrayList<Pair<P, Integer>>();
+		options.add(new Pair<P, Integer>(null, identityId));
+		for (Token<P, F, S> token : tokens) {
+			List<Pair<P, Integer>> newOptions = new ArrayList<Pair<P, Integer>>();
+			if (token instanceof SSTVariable<?, ?, ?>) {
+				int tokenSummary = currFun.get(((SSTVariable<P, F, S>) token).id);
+				for (Pair<P, Integer> option : options)
+					newOptions.add(new Pair<P, Integer>(option.first, compose(option.second, tokenSummary)));
+			} else if (token instanceof CharConstant<?, ?, ?>) {
+				int tokenSummary = constantSummary(((CharConstant<P, F, S>) token).constant);
+				for (Pair<P, Integer> option : options)
+					newOptions.add(new Pair<P, Integer>(option.first, compose(option.second, tokenSummary)));
+			} else {
+				for (Pair<P, Integer> option : options)
+					for (Pair<P, Integer> split : functionSummary(((CharFunction<P, F, S>) token).unaryFunction)) {
+						P inters = option.first == null ? split.first : ba.MkAnd(option.first, split.first);
+						if (ba.IsSatisfiable(inters))
+							newOptions.add(new Pair<P, Integer>(inters, compose(option.second, split.second)));
+					}
+			}
+			options = newOptions;
+		}
+
+		tokenStringSummaries.put(key, options);
+		return options;
+	}
+
+	// Whether the output update, run from the initial state of the output automaton, reaches a final state
+	private boolean acceptsFromInitial(List<ConstantToken<P, F, S>> update, List<Integer> currFun)
+			throws TimeoutException {
+		for (Pair<P, Integer> option : summarize(update, currFun))
+			if (summaries.get(option.second)[initialIndex].intersects(finalIndices))
+				return true;
+		return false;
+	}
+
+	// Relation induced by reading the constant c
+	private int constantSummary(S c) throws TimeoutException {
+		Integer id = constantSummaries.get(c);
+		if (id != null)
+			listener.onCacheHit();
+		else {
+			BitSet[] matrix = emptyMatrix();
+			for (Map.Entry<Integer, Integer> entry : stateIndex.entrySet())
+				for (SFAInputMove<P, S> move : output.getInputMovesFrom(entry.getKey()))
+					if (ba.HasModel(move.guard, c))
+						matrix[entry.getValue()].set(stateIndex.get(move.to));
+			id = intern(matrix);
+			constantSummaries.put(c, id);
+		}
+		return id;
+	}
+
+	// Relations induced by reading f(a), one for each minterm of the inputs a
+	private List<Pair<P, Integer>> functionSummary(F f) throws TimeoutException {
+		List<Pair<P, Integer>> splits = functionSummaries.get(f);
+		if (splits != null) {
+			listener.onCacheHit();
+			return splits;
+		}
+
+		List<SFAInputMove<P, S>> moves = new ArrayList<SFAInputMove<P, S>>();
+		ArrayList<P> preimages = new ArrayList<P>();
+		for (Integer state : stateIndex.keySet())
+			for (SFAInputMove<P, S> move : output.getInputMovesFrom(state)) {
+				moves.add(move);
+				preimages.add(ba.MkSubstFuncPred(f, move.guard));
+			}
+
+		splits = new ArrayList<Pair<P, Integer>>();
+		for (Pair<P, ArrayList<Integer>> minterm : ba.GetMinterms(preimages)) {
+			BitSet[] matrix = emptyMatrix();
+			for (int i = 0; i < moves.size(); i++)
+				if (minterm.second.get(i) == 1)
+					matrix[stateIndex.get(moves.get(i).from)].set(stateIndex.get(moves.get(i).to));
+			splits.add(new Pair<P, Integer>(minterm.first, intern(matrix)));
+		}
+		functionSummaries.put(f, splits);
+		return splits;
+	}
+
+	// Relation of reading first the string summarized by id1 and then the one summarized by id2
+	private int compose(int id1, int id2) {
+		if (id1 == identityId)
+			return id2;
+		if (id2 == identityId)
+			return id1;
+
+		Pair<Integer, Integer> key = new Pair<Integer, Integer>(id1, id2);
+		Integer id = products.get(key);
+		if (id != null)
+			listener.onCacheHit();
+		else {
+			BitSet[] m1 = summaries.get(id1);
+			BitSet[] m2 = summaries.get(id2);
+			BitSet[] product = emptyMatrix();
+			for (int i = 0; i < stateCount; i++)
+				for (int j = m1[i].nextSetBit(0); j >= 0; j = m1[i].nextSetBit(j + 1))
+					product[i].or(m2[j]);
+			id = intern(product);
+			products.put(key, id);
+		}
+		return id;
+	}
+
+	private int intern(BitSet[] matrix) {
+		List<BitSet> key = Arrays.asList(matrix);
+		Integer id = summaryIds.get(key);
+		if (id == null) {
+			id = summaries.size();
+			summaries.add(matrix);
+			summaryIds.put(key, id);
+		}
+		return id;
+	}
+
+	private BitSet[] emptyMatrix() {
+		BitSet[] matrix = new BitSet[stateCount];
+		for (int i = 0; i < stateCount; i++)
+			matrix[i] = new BitSet(stateCount);
+		return matrix;
+	}
+}
@@ -7,11 +7,8 @@
 
 package transducers.sst;
 
-import java.util.HashMap;
 import java.util.List;
 
-import automata.sfa.SFA;
-
 import theory.BooleanAlgebraSubst;
 
 /**
@@ -45,16 +42,6 @@ public class SSTVariable<P, F, S> implements ConstantToken<P, F, S> {
 		return new SSTVariable<P, F, S>(id + offset);
 	}
 
-	public HashMap<Integer, P> getNextState(
-			HashMap<Integer, HashMap<Integer, Integer>> f, P guard,
-			SFA<P, S> aut, Integer currState, BooleanAlgebraSubst<P, F, S> ba) {
-		HashMap<Integer, P> res = new HashMap<Integer, P>();
-		HashMap<Integer, Integer> hm = f.get(id);
-		Integer st = hm.get(currState);
-		res.put(st, guard);
-		return res;
-	}
-	
 	@Override
 	public String toString() {
 		return "x" + id;
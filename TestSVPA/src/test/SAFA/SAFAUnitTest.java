@@ -3,6 +3,7 @@ package test.SAFA;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -12,14 +13,22 @@ import java.util.List;
 import org.junit.Test;
 import org.sat4j.specs.TimeoutException;
 
+import automata.safa.BDDRelation;
 import automata.safa.BooleanExpressionFactory;
 import automata.safa.SAFA;
 import automata.safa.SAFAInputMove;
 import automata.safa.SATRelation;
+import automata.safa.booleanexpression.BDDExpressionStore;
 import automata.safa.booleanexpression.PositiveBooleanExpression;
+import automata.safa.booleanexpression.PositiveBooleanExpressionFactory;
 import automata.safa.booleanexpression.SumOfProducts;
 import automata.safa.booleanexpression.SumOfProductsFactory;
+import automata.serialization.ModelCodecs;
+import automata.serialization.ModelReader;
+import automata.serialization.ModelWriter;
 import theory.BooleanAlgebra;
+import theory.bdd.BDD;
+import theory.bdd.BDDFactory;
 import theory.characters.CharPred;
 import theory.characters.StdCharPred;
 import theory.intervals.UnaryCharIntervalSolver;
@@ -47,6 +56,27 @@ public class SAFAUnitTest {
 	}
 	
 	
+	@Test
+	public void testSerialization() throws TimeoutException, IOException {
+		SAFA<CharPred, Character> intersection = atLeastOneAlpha.intersectionWith(atLeastOneNum, ba);
+		ModelWriter out = new ModelWriter();
+		out.writeSAFA(intersection, ModelCodecs.CHAR_PRED);
+		out.writeSAFA(atLeastOneAlpha, ModelCodecs.CHAR_PRED);
+
+		ModelReader in = new ModelReader(out.toByteArray());
+		SAFA<CharPred, Character> read = in.readSAFA(ba, ModelCodecs.CHAR_PRED);
+		assertTrue(read.getInitialState().equals(intersection.getInitialState()));
+		assertTrue(read.getTransitionCount().equals(intersection.getTransitionCount()));
+		assertFalse(read.accepts(la, ba));
+		assertFalse(read.accepts(lb, ba));
+		assertTrue(read.accepts(lab, ba));
+		assertFalse(read.accepts(lnot, ba));
+
+		read = in.readSAFA(ba, ModelCodecs.CHAR_PRED);
+		assertTrue(SAFA.isEquivalent(atLeastOneAlpha, read, ba, boolexpr).first);
+		assertFalse(in.hasNext());
+	}
+
 	@Test
 	public void testUnion() throws TimeoutException {
 		SAFA<CharPred, Character> union = atLeastOneAlpha.unionWith(atLeastOneNum, ba);
@@ -86,6 +116,47 @@ public class SAFAUnitTest {
 		assertTrue(SAFA.areReverseEquivalent(intersection1, intersection2, ba));
 	}
 
+	@Test
+	public void testBDDExpressionStore() throws TimeoutException {
+		SAFA<CharPred, Character> intersection1 = atLeastOneAlpha.intersectionWith(atLeastOneNum, ba);
+		SAFA<CharPred, Character> intersection2 = atLeastOneNum.intersectionWith(atLeastOneAlpha, ba);
+
+		// the checks share the node table of the store and release their BDDs when their scope is closed
+		BDDExpressionStore store = new BDDExpressionStore(4, 8);
+		BDDFactory table = store.getFactory().getSolver().factory;
+		for (int i = 0; i < 3; i++) {
+			try (BDDExpressionStore.Scope scope = store.open()) {
+				assertTrue(SAFA.isEquivalent(intersection1, intersection2, ba, store.getFactory()).first);
+				assertFalse(SAFA.isEquivalent(atLeastOneAlpha, intersection1, ba, store.getFactory()).first);
+				assertTrue(scope.size() > 0);
+			}
+			assertTrue(store.getFactory().getSolver().factory == table);
+		}
+
+		// the coercion keeps the images of recently used expressions alive across scopes
+		PositiveBooleanExpressionFactory pos = new PositiveBooleanExpressionFactory();
+		PositiveBooleanExpression p = pos.MkAnd(pos.MkState(0), pos.MkOr(pos.MkState(1), pos.MkState(2)));
+		PositiveBooleanExpression q = pos.MkOr(pos.MkAnd(pos.MkState(0), pos.MkState(1)),
+				pos.MkAnd(pos.MkState(2), pos.MkState(0)));
+		BDD image;
+		try (BDDExpressionStore.Scope scope = store.open()) {
+			BDDRelation relation = new BDDRelation(store);
+			assertFalse(relation.isMember(p, pos.MkState(0)));
+			assertTrue(relation.isMember(p, q));
+			assertTrue(relation.add(p, pos.MkState(3)));
+			assertTrue(relation.isMember(q, pos.MkState(3)));
+			image = store.coerce(q).bdd.id();
+		}
+		try (BDDExpressionStore.Scope scope = store.open()) {
+			assertTrue(store.coerce(p).bdd.equals(image));
+			for (int i = 0; i < 20; i++)
+				store.coerce(pos.MkAnd(pos.MkState(i), pos.MkState(i + 1)));
+			assertTrue(store.coerce(p).bdd.equals(image));
+		}
+		image.free();
+		store.clearCache();
+	}
+
 	@Test
 	public void testListOfLists() throws TimeoutException {
 		//System.out.println("lists of lists");
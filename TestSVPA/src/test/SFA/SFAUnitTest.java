@@ -2,7 +2,10 @@ package test.SFA;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -13,10 +16,15 @@ import java.util.List;
 import org.junit.Test;
 import org.sat4j.specs.TimeoutException;
 
+import automata.serialization.ModelCodecs;
+import automata.serialization.ModelReader;
+import automata.serialization.ModelWriter;
 import automata.sfa.SFA;
 import automata.sfa.SFAEpsilon;
 import automata.sfa.SFAInputMove;
 import automata.sfa.SFAMove;
+import theory.bdd.BDD;
+import theory.bddalgebra.BDDSolver;
 import theory.characters.CharPred;
 import theory.characters.StdCharPred;
 import theory.intervals.UnaryCharIntervalSolver;
@@ -332,6 +340,83 @@ public class SFAUnitTest {
 		assertFalse(sfaPlusMA.isEmpty());
 	}
 
+	@Test
+	public void testSerialization() throws TimeoutException, IOException {
+		SFA<CharPred, Character> epsAmb = getEpsAmbSFA(ba);
+
+		ModelWriter out = new ModelWriter();
+		out.writeSFA(autA, ModelCodecs.CHAR_PRED);
+		out.writeSFA(epsAmb, ModelCodecs.CHAR_PRED);
+		out.writeSFA(autB, ModelCodecs.CHAR_PRED);
+		File file = File.createTempFile("sfa", ".model");
+		file.deleteOnExit();
+		out.writeTo(file);
+
+		ModelReader in = ModelReader.map(file);
+		SFA<CharPred, Character> readA = in.readSFA(ba, ModelCodecs.CHAR_PRED);
+		SFA<CharPred, Character> readEpsAmb = in.readSFA(ba, ModelCodecs.CHAR_PRED);
+		in.skip();
+		assertFalse(in.hasNext());
+
+		assertTrue(readA.accepts(la, ba));
+		assertTrue(readA.accepts(lab, ba));
+		assertFalse(readA.accepts(lb, ba));
+		assertTrue(SFA.areEquivalent(autA, readA, ba));
+		assertTrue(readEpsAmb.getStates().size() == epsAmb.getStates().size());
+		assertTrue(readEpsAmb.getTransitionCount().equals(epsAmb.getTransitionCount()));
+		assertTrue(SFA.areEquivalent(epsAmb, readEpsAmb, ba));
+
+		// BDD guards are rebuilt in the factory of the reader
+		BDDSolver bdds = new BDDSolver(4);
+		BDD guard = bdds.factory.ithVar(0).and(bdds.factory.nithVar(2)).or(bdds.factory.ithVar(3));
+		Collection<SFAMove<BDD, BDD>> transitions = new LinkedList<SFAMove<BDD, BDD>>();
+		transitions.add(new SFAInputMove<BDD, BDD>(0, 1, guard));
+		transitions.add(new SFAInputMove<BDD, BDD>(1, 1, bdds.True()));
+		out = new ModelWriter();
+		out.writeSFA(SFA.MkSFA(transitions, 0, Arrays.asList(1), bdds), ModelCodecs.bdd(bdds.factory));
+
+		BDDSolver other = new BDDSolver(4);
+		SFA<BDD, BDD> read = new ModelReader(out.toByteArray()).readSFA(other, ModelCodecs.bdd(other.factory));
+		BDD expected = other.factory.ithVar(0).and(other.factory.nithVar(2)).or(other.factory.ithVar(3));
+		assertTrue(read.getInputMovesFrom(0).iterator().next().guard.equals(expected));
+
+		try {
+			new ModelReader(new byte[] { 1, 2, 3, 4, 5 });
+			fail("read a model file without a header");
+		} catch (IOException e) {
+		}
+
+		// a truncated model
+		out = new ModelWriter();
+		out.writeSFA(autA, ModelCodecs.CHAR_PRED);
+		byte[] bytes = out.toByteArray();
+		try {
+			new ModelReader(Arrays.copyOf(bytes, bytes.length - 1)).readSFA(ba, ModelCodecs.CHAR_PRED);
+			fail("read a truncated model");
+		} catch (IOException e) {
+		}
+
+		// a model must end where its length says: an SFA model with no guards, initial state 0, no final states
+		// and no moves, whose four bytes are followed by one more byte or declared one byte short
+		for (int extra = -1; extra <= 1; extra++) {
+			out = new ModelWriter();
+			out.writeByte(1);
+			out.writeVarInt(4 + extra);
+			out.writeVarInt(0);
+			out.writeSignedVarInt(0);
+			out.writeVarInt(0);
+			out.writeVarInt(0);
+			if (extra > 0)
+				out.writeByte(0);
+			try {
+				SFA<CharPred, Character> empty = new ModelReader(out.toByteArray()).readSFA(ba, ModelCodecs.CHAR_PRED);
+				assertTrue(extra == 0 && empty.getFinalStates().isEmpty());
+			} catch (IOException e) {
+				assertFalse(extra == 0);
+			}
+		}
+	}
+
 	// ---------------------------------------
 	// Predicates
 	// ---------------------------------------
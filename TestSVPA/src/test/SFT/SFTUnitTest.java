@@ -9,18 +9,26 @@ import static org.junit.Assert.assertFalse;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.Collection;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
 
 import theory.characters.*;
+import transducers.HistogramTransducerMetrics;
 import transducers.sft.SFT;
 import transducers.sft.SFTMove;
 import transducers.sft.SFTInputMove;
 import transducers.sft.SFTEpsilon;
+import transducers.sft.SFTEquivalenceChecker;
+import transducers.sft.ParallelSFTRunner;
+import automata.serialization.ModelCodecs;
+import automata.serialization.ModelReader;
+import automata.serialization.ModelWriter;
 import automata.sfa.SFA;
 import automata.sfa.SFAMove;
 import automata.sfa.SFAInputMove;
@@ -1092,6 +1100,146 @@ public class SFTUnitTest {
 		}
 	}
 
+	/**
+	 *
+	 * Method: SFTEquivalenceChecker.check(SFT<P, F, S> sft1withEps, SFT<P, F, S> sft2withEps)
+	 *
+	 */
+	@Test
+	public void testEquivalenceCheckerStrategies() throws Exception {
+		SFT<CharPred, CharFunc, Character> total = getTestSFTTotal();
+		SFT<CharPred, CharFunc, Character> counterexample = getTestSFTCounterexample();
+
+		SFTEquivalenceChecker<CharPred, CharFunc, Character> bfs = new SFTEquivalenceChecker<CharPred, CharFunc, Character>(
+				ba, SFTEquivalenceChecker.SearchStrategy.BFS, 5000);
+		SFTEquivalenceChecker<CharPred, CharFunc, Character> dfs = new SFTEquivalenceChecker<CharPred, CharFunc, Character>(
+				ba, SFTEquivalenceChecker.SearchStrategy.DFS, 5000);
+
+		for (SFTEquivalenceChecker<CharPred, CharFunc, Character> checker: Arrays.asList(bfs, dfs)) {
+			assertTrue(checker.areEquivalent(total, total));
+			List<Character> witness = checker.witness(total, counterexample);
+			assertFalse(total.outputOn(witness, ba).equals(counterexample.outputOn(witness, ba)));
+		}
+
+		// "b" outputs nothing in both transducers, "ba" is the shortest input they disagree on
+		assertEquals(2, bfs.witness(total, counterexample).size());
+	}
+
+	/**
+	 *
+	 * Class: ParallelSFTRunner
+	 *
+	 */
+	@Test
+	public void testParallelRunner() throws Exception {
+		List<List<Character>> inputs = new ArrayList<List<Character>>();
+		inputs.add(stringToListOfCharacter(""));
+		inputs.add(stringToListOfCharacter("a"));
+		inputs.add(stringToListOfCharacter("bcsaee"));
+		inputs.add(stringToListOfCharacter("abcabcabcz"));
+		inputs.add(stringToListOfCharacter("1b- *&@3"));
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		int deterministic = 0;
+		for (SFT<CharPred, CharFunc, Character> sft: allSFTs) {
+			ParallelSFTRunner<CharPred, CharFunc, Character> runner;
+			try {
+				runner = new ParallelSFTRunner<CharPred, CharFunc, Character>(sft, ba, 3, pool);
+			} catch (IllegalArgumentException e) {
+				// nondeterministic
+				continue;
+			}
+			deterministic++;
+			for (List<Character> input: inputs)
+				assertEquals(sft.outputOn(input, ba), runner.outputOn(input));
+		}
+		assertTrue(deterministic > 0);
+		pool.shutdown();
+	}
+
+	/**
+	 *
+	 * Class: ModelWriter, ModelReader
+	 *
+	 */
+	@Test
+	public void testSerialization() throws Exception {
+		List<List<Character>> inputs = new ArrayList<List<Character>>();
+		inputs.add(stringToListOfCharacter(""));
+		inputs.add(stringToListOfCharacter("a"));
+		inputs.add(stringToListOfCharacter("bcsaee"));
+		inputs.add(stringToListOfCharacter("1b- *&@3"));
+
+		ModelWriter out = new ModelWriter();
+		for (SFT<CharPred, CharFunc, Character> sft: allSFTs)
+			out.writeSFT(sft, ModelCodecs.CHAR_PRED, ModelCodecs.CHAR_FUNC, ModelCodecs.CHARACTER);
+
+		ModelReader in = new ModelReader(out.toByteArray());
+		for (SFT<CharPred, CharFunc, Character> sft: allSFTs) {
+			SFT<CharPred, CharFunc, Character> read = in.readSFT(ba, ModelCodecs.CHAR_PRED, ModelCodecs.CHAR_FUNC,
+					ModelCodecs.CHARACTER);
+			assertEquals(sft.stateCount(), read.stateCount());
+			assertEquals(sft.transitionCount(), read.transitionCount());
+			assertEquals(sft.getFinalStatesAndTails(), read.getFinalStatesAndTails());
+			for (List<Character> input: inputs)
+				assertEquals(sft.outputOn(input, ba), read.outputOn(input, ba));
+		}
+		assertFalse(in.hasNext());
+	}
+
+	/**
+	 *
+	 * Method: outputOn(List<S> input, BooleanAlgebraSubst<P, F, S> ba, TransducerListener listener)
+	 *
+	 */
+	@Test
+	public void testOutputOnWithMetrics() throws Exception {
+		List<List<Character>> inputs = new ArrayList<List<Character>>();
+		inputs.add(stringToListOfCharacter(""));
+		inputs.add(stringToListOfCharacter("a"));
+		inputs.add(stringToListOfCharacter("bb"));
+		inputs.add(stringToListOfCharacter("abcz"));
+		inputs.add(stringToListOfCharacter("1b- *&@3"));
+
+		HistogramTransducerMetrics metrics = new HistogramTransducerMetrics();
+		long outputSymbols = 0;
+		long definedRuns = 0;
+		for (SFT<CharPred, CharFunc, Character> sft: allSFTs)
+			for (List<Character> input: inputs) {
+				List<Character> output = sft.outputOn(input, ba, metrics);
+				assertEquals(sft.outputOn(input, ba), output);
+				if (output != null) {
+					outputSymbols += output.size();
+					definedRuns++;
+				}
+			}
+		assertEquals(outputSymbols, metrics.getOutputSymbols());
+		long histogramRuns = 0;
+		for (long count: metrics.getOutputLengthHistogram())
+			histogramRuns += count;
+		assertEquals(definedRuns, histogramRuns);
+		assertTrue(metrics.getTransitions() > 0);
+		assertTrue(metrics.getGuardEvaluations() >= metrics.getTransitions());
+		assertTrue(metrics.getOutputFunctionApplications() > 0);
+
+		metrics.reset();
+		SFT<CharPred, CharFunc, Character> first = getTestSFTTotal();
+		SFT<CharPred, CharFunc, Character> composed = SFT.compose(first, first, ba, metrics);
+		assertTrue(composed.decide1equality(first.composeWith(first, ba), ba));
+		assertTrue(metrics.getSolverCalls() > 0);
+		assertEquals(0, metrics.getOutputSymbols());
+		// every move added by the product is counted once
+		assertEquals((long) composed.transitionCount(), metrics.getTransitions());
+		assertEquals(HistogramTransducerMetrics.BUCKETS, metrics.getOutputLengthHistogram().length);
+		assertEquals(31, HistogramTransducerMetrics.bucket(Integer.MAX_VALUE));
+		assertEquals(Long.valueOf(metrics.getSolverCalls()), metrics.snapshot().get("solverCalls"));
+
+		assertEquals(0, HistogramTransducerMetrics.bucket(0));
+		assertEquals(1, HistogramTransducerMetrics.bucket(1));
+		assertEquals(2, HistogramTransducerMetrics.bucket(3));
+		assertEquals(3, HistogramTransducerMetrics.bucket(4));
+	}
+
 	@Test
 	public void testadd() throws Exception {
 
@@ -1353,9 +1501,13 @@ public class SFTUnitTest {
 		List<Integer> finStates11 = new LinkedList<Integer>();
 		finStates11.add(1);
 		SFA<CharPred, Character> mySA11 = SFA.MkSFA(transitions11, 1, finStates11, ba);
+		// the restriction only accepts the empty input, on which an SFT may still emit a tail
+		List<Character> emptyInput = new ArrayList<Character>();
 		for (SFT<CharPred, CharFunc, Character> sft: allSFTs) {
 			SFT<CharPred, CharFunc, Character> restricted = sft.domainRestriction(mySA11, ba);
-			assertTrue(mySFT111.decide1equality(restricted, ba));
+			List<Character> output = restricted.outputOn(emptyInput, ba);
+			boolean agreeOnEmptyInput = output == null || output.isEmpty();
+			assertEquals(agreeOnEmptyInput, mySFT111.decide1equality(restricted, ba));
 		}
 
 		// II. two states with one final state
@@ -3,8 +3,13 @@ package test.SRA;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
+import automata.serialization.ModelCodecs;
+import automata.serialization.ModelReader;
+import automata.serialization.ModelWriter;
 import automata.sra.*;
 import logic.ltl.Predicate;
 import org.junit.Test;
@@ -16,6 +21,7 @@ import theory.intervals.IntegerSolver;
 import theory.characters.CharPred;
 import theory.characters.StdCharPred;
 import theory.intervals.UnaryCharIntervalSolver;
+import utilities.Pair;
 
 public class SRAUnitTest {
 
@@ -129,6 +135,135 @@ public class SRAUnitTest {
         assertTrue(autIntTwo.accepts(Collections.singletonList(1), intBa));
     }
 
+    @Test
+    public void testNormalizationReuse() throws TimeoutException {
+        NormalizedSRA<CharPred, Character> normA = autA.getNormalization(ba, Long.MAX_VALUE);
+        assertTrue(normA == autA.getNormalization(ba, Long.MAX_VALUE));
+        assertFalse(normA.isLanguageEmpty(Long.MAX_VALUE));
+        assertFalse(SRA.isLanguageEmpty(autA, ba, Long.MAX_VALUE));
+
+        Pair<NormalizedSRA<CharPred, Character>, NormalizedSRA<CharPred, Character>> normAB =
+                autA.getNormalizationWith(autB, ba, Long.MAX_VALUE);
+        assertTrue(normAB.first == autA.getNormalizationWith(autB, ba, Long.MAX_VALUE).first);
+        assertTrue(normAB.first.getMintermCount() == normAB.second.getMintermCount());
+
+        // the cache is bounded: pairing with enough other automata evicts the oldest pair
+        for (int i = 0; i < 16; i++)
+            autA.getNormalizationWith(getSRAb(ba), ba, Long.MAX_VALUE);
+        assertTrue(normAB.first != autA.getNormalizationWith(autB, ba, Long.MAX_VALUE).first);
+
+        // repeated queries give the same answers
+        for (int i = 0; i < 2; i++) {
+            assertTrue(autA.isLanguageEquivalent(autA, ba, Long.MAX_VALUE));
+            assertFalse(autA.isLanguageEquivalent(autB, ba, Long.MAX_VALUE));
+            assertTrue(SRA.canSimulate(autA, autA, ba, true, Long.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void testParallelSimulation() throws TimeoutException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<SRA<CharPred, Character>> auts = Arrays.asList(autA, autB, getSRAa(ba), getSRAb(ba));
+            for (SRA<CharPred, Character> aut1 : auts)
+                for (SRA<CharPred, Character> aut2 : auts)
+                    for (boolean bisimulation : Arrays.asList(true, false))
+                        assertTrue(SRA.canSimulate(aut1, aut2, ba, bisimulation, Long.MAX_VALUE, pool) ==
+                                SRA.canSimulate(aut1, aut2, ba, bisimulation, Long.MAX_VALUE));
+
+            assertTrue(SRA.canSimulate(getSRAa(ba), getSRAa(ba), ba, true, Long.MAX_VALUE, pool));
+            assertFalse(SRA.canSimulate(getSRAa(ba), getSRAb(ba), ba, false, Long.MAX_VALUE, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testDeterministicRunner() throws TimeoutException {
+        assertTrue(autA.isDeterministic(ba));
+        assertTrue(autB.isDeterministic(ba));
+        assertTrue(msraAut.isDeterministic(ba));
+
+        // the single-valued form is computed once
+        SRA<CharPred, Character> svSRA = msraAut.getSingleValued(ba, Long.MAX_VALUE);
+        assertTrue(svSRA == msraAut.getSingleValued(ba, Long.MAX_VALUE));
+        assertTrue(autA.getSingleValued(ba, Long.MAX_VALUE) == autA);
+
+        DeterministicSRARunner<CharPred, Character> runner = new DeterministicSRARunner<CharPred, Character>(msraAut, ba);
+        assertTrue(runner.accepts(lOfS("aaa")));
+        assertFalse(runner.accepts(lOfS("aab")));
+        assertFalse(runner.accepts(lOfS("aa")));
+
+        runner = new DeterministicSRARunner<CharPred, Character>(autB, ba);
+        for (List<Character> input : Arrays.asList(la, lb, lab, lnot))
+            assertTrue(runner.accepts(input) == new SRARunner<CharPred, Character>(autB, ba).accepts(input));
+
+        // two fresh moves on the same symbols
+        LinkedList<Character> registers = new LinkedList<Character>();
+        registers.add(null);
+        Collection<SRAMove<CharPred, Character>> transitions = new LinkedList<SRAMove<CharPred, Character>>();
+        transitions.add(new SRAFreshMove<CharPred, Character>(0, 1, alpha, 0, registers.size()));
+        transitions.add(new SRAFreshMove<CharPred, Character>(0, 2, alpha, 0, registers.size()));
+        SRA<CharPred, Character> nondet = SRA.MkSRA(transitions, 0, new HashSet<>(Arrays.asList(1, 2)), registers, ba);
+        assertFalse(nondet.isDeterministic(ba));
+        assertTrue(nondet.accepts(lOfS("a"), ba));
+
+        boolean rejected = false;
+        try {
+            new DeterministicSRARunner<CharPred, Character>(nondet, ba);
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        assertTrue(rejected);
+    }
+
+    @Test
+    public void testSerialization() throws TimeoutException, IOException {
+        ModelWriter out = new ModelWriter();
+        out.writeSRA(autA, ModelCodecs.CHAR_PRED, ModelCodecs.CHARACTER);
+        out.writeSRA(msraAut, ModelCodecs.CHAR_PRED, ModelCodecs.CHARACTER);
+        out.writeSRA(autIntOne, ModelCodecs.INT_PRED, ModelCodecs.INTEGER);
+
+        ModelReader in = new ModelReader(out.toByteArray());
+        for (SRA<CharPred, Character> aut : Arrays.asList(autA, msraAut)) {
+            SRA<CharPred, Character> read = in.readSRA(ba, ModelCodecs.CHAR_PRED, ModelCodecs.CHARACTER);
+            assertTrue(read.getRegisters().equals(aut.getRegisters()));
+            assertTrue(read.getTransitionCount().equals(aut.getTransitionCount()));
+            for (List<Character> input : Arrays.asList(la, lb, lab, lnot, lOfS("aaa"), lOfS("aab")))
+                assertTrue(read.accepts(input, ba) == aut.accepts(input, ba));
+        }
+
+        SRA<IntPred, Integer> readInt = in.readSRA(intBa, ModelCodecs.INT_PRED, ModelCodecs.INTEGER);
+        assertTrue(readInt.accepts(Collections.singletonList(6), intBa));
+        assertFalse(readInt.accepts(Collections.singletonList(2), intBa));
+        assertFalse(in.hasNext());
+    }
+
+    @Test
+    public void testRunner() throws TimeoutException {
+        SRARunner<CharPred, Character> runner = new SRARunner<CharPred, Character>(msraAut, ba);
+        assertTrue(runner.accepts(lOfS("aaa")));
+        assertFalse(runner.accepts(lOfS("aab")));
+        assertFalse(runner.accepts(lOfS("aa")));
+
+        // the runner can be reused and read symbol by symbol
+        for (List<Character> input : Arrays.asList(la, lb, lab, lnot)) {
+            runner = new SRARunner<CharPred, Character>(autB, ba);
+            boolean alive = true;
+            for (Character c : input)
+                alive = runner.read(c);
+            assertTrue((alive && runner.isAccepting()) == autB.accepts(input, ba));
+        }
+
+        // long words do not duplicate configurations
+        runner = new SRARunner<CharPred, Character>(autA, ba);
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(runner.read((char) ('a' + i % 26)));
+            assertTrue(runner.getConfigurationCount() <= 2);
+        }
+        assertTrue(runner.isAccepting());
+    }
+
     @Test
     public void testSRACompilation1() throws TimeoutException {
         LinkedList<Character> registers = new LinkedList<Character>();
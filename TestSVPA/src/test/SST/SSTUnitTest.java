@@ -9,6 +9,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Test;
 import org.sat4j.specs.TimeoutException;
@@ -22,15 +23,19 @@ import theory.characters.CharOffset;
 import theory.characters.CharPred;
 import theory.characters.CharPred;
 import theory.intervals.UnaryCharIntervalSolver;
+import transducers.TransducerMetrics;
 import transducers.sst.CharConstant;
 import transducers.sst.CharFunction;
 import transducers.sst.ConstantToken;
+import transducers.sst.CopylessSSTRunner;
 import transducers.sst.FunctionalVariableUpdate;
 import transducers.sst.OutputUpdate;
+import transducers.sst.ParallelSSTRunner;
 import transducers.sst.SST;
 import transducers.sst.SSTEpsilon;
 import transducers.sst.SSTInputMove;
 import transducers.sst.SSTMove;
+import transducers.sst.SSTPreimageEngine;
 import transducers.sst.SSTVariable;
 import transducers.sst.SimpleVariableUpdate;
 import transducers.sst.Token;
@@ -234,6 +239,120 @@ public class SSTUnitTest {
 		assertTrue(sstBase.typeCheck(atLeast2As, atLeast2As, ba));
 	}
 	
+	@Test
+	public void testPreImageEngineReuse() throws TimeoutException, AutomataException {
+		UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+		SFA<CharPred, Character> atLeast2As = atLeastTwoAs(ba);
+		SSTPreimageEngine<CharPred, CharFunc, Character> engine = new SSTPreimageEngine<CharPred, CharFunc, Character>(
+				atLeast2As, ba);
+
+		SST<CharPred, CharFunc, Character> letters = getLetterCopy(ba);
+		assertTrue(engine.preImage(letters).isEquivalentTo(atLeast2As, ba));
+		int summaries = engine.summaryCount();
+
+		// the same SST against the same output reuses every summary
+		assertTrue(engine.preImage(letters).isEquivalentTo(atLeast2As, ba));
+		assertTrue(engine.summaryCount() == summaries);
+
+		SST<CharPred, CharFunc, Character> lettersThenNumbers = letters.concatenateWith(getNumberCopy(ba), ba);
+		SFA<CharPred, Character> pre = engine.preImage(lettersThenNumbers);
+		assertTrue(pre.accepts(lOfS("aba"), ba));
+		assertTrue(!pre.accepts(lOfS("aa2"), ba));
+		assertTrue(!pre.accepts(lOfS("ab"), ba));
+
+		assertTrue(letters.typeCheck(atLeast2As, engine));
+		assertTrue(!lettersThenNumbers.typeCheck(lettersThenNumbers.getDomain(ba), engine));
+	}
+
+	@Test
+	public void testOutputOnWithMetrics() throws TimeoutException {
+		UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+		SST<CharPred, CharFunc, Character> letters = getLetterCopy(ba);
+
+		TransducerMetrics metrics = new TransducerMetrics();
+		List<Character> output = letters.outputOn(lOfS("abc"), ba, metrics);
+		assertTrue(output.equals(letters.outputOn(lOfS("abc"), ba)));
+		assertTrue(metrics.getTransitions() == 3);
+		assertTrue(metrics.getOutputSymbols() == 3);
+		assertTrue(metrics.getPeakConfigurationWidth() == 1);
+
+		metrics.reset();
+		SSTPreimageEngine<CharPred, CharFunc, Character> engine = new SSTPreimageEngine<CharPred, CharFunc, Character>(
+				atLeastTwoAs(ba), ba, metrics);
+		engine.preImage(letters);
+		long hits = metrics.getCacheHits();
+		engine.preImage(letters);
+		assertTrue(metrics.getCacheHits() > hits);
+		assertTrue(metrics.getSolverCalls() > 0);
+	}
+
+	@Test
+	public void testCopylessRunner() throws TimeoutException, AutomataException {
+		UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+		SST<CharPred, CharFunc, Character> letters = getLetterCopy(ba);
+
+		List<SST<CharPred, CharFunc, Character>> ssts = new ArrayList<SST<CharPred, CharFunc, Character>>();
+		ssts.add(getSSTa(ba));
+		ssts.add(getCommaSepDelNumKeepAlph(ba));
+		ssts.add(letters.concatenateWith(getNumberCopy(ba), ba));
+		ssts.add(letters.combineWith(letters, ba));
+		ssts.add(getAlphaToUpperCase(ba).star(ba));
+		ssts.add(letters.unionWith(getAlphaToUpperCase(ba), ba));
+
+		List<String> inputs = Arrays.asList("", "a", "ab", "a2c", "acc", "ab12", "a,b,", "12");
+		for (SST<CharPred, CharFunc, Character> sst : ssts) {
+			assertTrue(sst.isCopyless());
+			CopylessSSTRunner<CharPred, CharFunc, Character> runner = new CopylessSSTRunner<CharPred, CharFunc, Character>(
+					sst, ba);
+			for (String input : inputs) {
+				List<Character> expected = sst.outputOn(lOfS(input), ba);
+				List<Character> output = runner.outputOn(lOfS(input));
+				assertTrue(expected == null ? output == null : expected.equals(output));
+			}
+		}
+
+		// x := x x duplicates x
+		LinkedList<Token<CharPred, CharFunc, Character>> xx = new LinkedList<Token<CharPred, CharFunc, Character>>();
+		xx.add(new SSTVariable<CharPred, CharFunc, Character>(0));
+		xx.add(new SSTVariable<CharPred, CharFunc, Character>(0));
+		Collection<SSTMove<CharPred, CharFunc, Character>> transitions = new ArrayList<SSTMove<CharPred, CharFunc, Character>>();
+		transitions.add(new SSTInputMove<CharPred, CharFunc, Character>(0, 0, alpha,
+				new FunctionalVariableUpdate<CharPred, CharFunc, Character>(xx)));
+		Map<Integer, OutputUpdate<CharPred, CharFunc, Character>> outputFunction = new HashMap<Integer, OutputUpdate<CharPred, CharFunc, Character>>();
+		outputFunction.put(0, justXout());
+		SST<CharPred, CharFunc, Character> doubling = SST.MkSST(transitions, 0, onlyX, outputFunction, ba);
+		assertTrue(!doubling.isCopyless());
+		try {
+			new CopylessSSTRunner<CharPred, CharFunc, Character>(doubling, ba);
+			assertTrue(false);
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testParallelRunner() throws TimeoutException, AutomataException {
+		UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+		SST<CharPred, CharFunc, Character> letters = getLetterCopy(ba);
+
+		List<SST<CharPred, CharFunc, Character>> ssts = new ArrayList<SST<CharPred, CharFunc, Character>>();
+		ssts.add(getSSTaNoEps(ba));
+		ssts.add(getCommaSepDelNumKeepAlph(ba));
+		ssts.add(letters.combineWith(letters, ba));
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		List<String> inputs = Arrays.asList("", "a", "a2c", "abcdefg", "ab1,c2d,", "12");
+		for (SST<CharPred, CharFunc, Character> sst : ssts) {
+			ParallelSSTRunner<CharPred, CharFunc, Character> runner = new ParallelSSTRunner<CharPred, CharFunc, Character>(
+					sst, ba, 2, pool);
+			for (String input : inputs) {
+				List<Character> expected = sst.outputOn(lOfS(input), ba);
+				List<Character> output = runner.outputOn(lOfS(input));
+				assertTrue(expected == null ? output == null : expected.equals(output));
+			}
+		}
+		pool.shutdown();
+	}
+
 	@Test
 	public void testRestrict() throws TimeoutException {
 		UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
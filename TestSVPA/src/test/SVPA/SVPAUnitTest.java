@@ -17,12 +17,18 @@ import org.junit.Test;
 import org.sat4j.specs.TimeoutException;
 
 import automata.AutomataException;
+import automata.serialization.ModelCodecs;
+import automata.serialization.ModelReader;
+import automata.serialization.ModelWriter;
 import automata.svpa.Call;
 import automata.svpa.ImportCharSVPA;
 import automata.svpa.Internal;
 import automata.svpa.Return;
 import automata.svpa.SVPA;
+import automata.svpa.SVPAEventRunner;
+import automata.svpa.SVPAInclusionChecker;
 import automata.svpa.SVPAMove;
+import automata.svpa.SVPARecognizer;
 import automata.svpa.TaggedSymbol;
 import automata.svpa.TaggedSymbol.SymbolTag;
 import theory.BooleanAlgebra;
@@ -107,6 +113,143 @@ public class SVPAUnitTest {
 		assertTrue(totA.stateCount == autA.stateCount + 1);
 		assertTrue(totA.transitionCount == 21);
 	}
+
+	@Test
+	public void testDeterminize() throws TimeoutException {
+
+		SVPA<ICharPred, Character> union = autA.unionWith(autB, ba);
+		List<List<TaggedSymbol<Character>>> inputs = Arrays.asList(ab, notab, anotb, notanotb, matchedAlpha,
+				unmatchedAlpha, hasNum, internalAlpha, internalNum);
+
+		for (SVPA<ICharPred, Character> aut : Arrays.asList(autB, union)) {
+			SVPA<ICharPred, Character> det = aut.determinize(ba);
+			assertTrue(det.isDeterministic(ba));
+			// the determinization is cached on the automaton
+			assertTrue(det == aut.determinize(ba));
+
+			SVPA<ICharPred, Character> complement = aut.complement(ba);
+			for (List<TaggedSymbol<Character>> input : inputs) {
+				assertTrue(aut.accepts(input, ba) == det.accepts(input, ba));
+				assertTrue(aut.accepts(input, ba) != complement.accepts(input, ba));
+			}
+		}
+	}
+
+	@Test
+	public void testRecognizer() throws TimeoutException {
+
+		SVPA<ICharPred, Character> union = autA.unionWith(autB, ba);
+		List<List<TaggedSymbol<Character>>> inputs = Arrays.asList(ab, notab, anotb, notanotb, matchedAlpha,
+				unmatchedAlpha, hasNum, internalAlpha, internalNum);
+
+		for (SVPA<ICharPred, Character> aut : Arrays.asList(autA, autB, union))
+			for (List<TaggedSymbol<Character>> input : inputs) {
+				SVPARecognizer<ICharPred, Character> recognizer = new SVPARecognizer<ICharPred, Character>(aut, ba);
+				for (TaggedSymbol<Character> symbol : input)
+					recognizer.read(symbol);
+				assertTrue(recognizer.isAccepting() == aut.accepts(input, ba));
+			}
+
+		// deep nesting, the copy is not affected by the symbols read by the original
+		SVPARecognizer<ICharPred, Character> recognizer = new SVPARecognizer<ICharPred, Character>(autA, ba);
+		int depth = 100000;
+		for (int i = 0; i < depth; i++)
+			assertTrue(recognizer.read(ca));
+		assertTrue(recognizer.getDepth() == depth);
+		SVPARecognizer<ICharPred, Character> copy = recognizer.copy();
+		for (int i = 0; i < depth; i++)
+			assertTrue(recognizer.read(ra));
+		assertTrue(recognizer.isAccepting());
+		assertFalse(copy.isAccepting());
+		assertFalse(copy.read(rb));
+		assertTrue(copy.isDead());
+	}
+
+	@Test
+	public void testEventRunner() throws TimeoutException {
+
+		SVPA<ICharPred, Character> union = autA.unionWith(autB, ba);
+		List<List<TaggedSymbol<Character>>> inputs = Arrays.asList(ab, notab, anotb, notanotb, matchedAlpha,
+				unmatchedAlpha, hasNum, internalAlpha, internalNum);
+
+		for (SVPA<ICharPred, Character> aut : Arrays.asList(autA, autB, union)) {
+			SVPAEventRunner<ICharPred, Character> runner = new SVPAEventRunner<ICharPred, Character>(aut, ba);
+			for (List<TaggedSymbol<Character>> input : inputs) {
+				runner.reset();
+				for (TaggedSymbol<Character> symbol : input)
+					runner.onSymbol(symbol);
+				assertTrue(runner.isAccepting() == aut.accepts(input, ba));
+			}
+		}
+
+		// the run stops at the first event with no move
+		SVPAEventRunner<ICharPred, Character> runner = new SVPAEventRunner<ICharPred, Character>(autA, ba);
+		for (int i = 0; i < 1000; i++)
+			assertTrue(runner.onCall('a'));
+		assertTrue(runner.getDepth() == 1000);
+		assertFalse(runner.onReturn('b'));
+		assertTrue(runner.isRejected());
+		assertFalse(runner.onReturn('a'));
+		assertFalse(runner.isAccepting());
+
+		// an SVPA without initial states rejects everything
+		SVPA<ICharPred, Character> noInitial = new SVPA<ICharPred, Character>() {
+		};
+		runner = new SVPAEventRunner<ICharPred, Character>(noInitial, ba);
+		assertTrue(runner.isRejected() && !runner.isAccepting());
+		assertFalse(runner.onInternal('a'));
+		runner.reset();
+		assertTrue(runner.isRejected());
+	}
+
+	@Test
+	public void testSerialization() throws TimeoutException, AutomataException, IOException {
+		SVPA<ICharPred, Character> union = autA.unionWith(autB, ba);
+		ModelWriter out = new ModelWriter();
+		for (SVPA<ICharPred, Character> aut : Arrays.asList(autA, autB, union))
+			out.writeSVPA(aut, ModelCodecs.I_CHAR_PRED);
+
+		ModelReader in = new ModelReader(out.toByteArray());
+		List<List<TaggedSymbol<Character>>> inputs = Arrays.asList(ab, notab, anotb, notanotb, matchedAlpha,
+				unmatchedAlpha, hasNum, internalAlpha, internalNum);
+		for (SVPA<ICharPred, Character> aut : Arrays.asList(autA, autB, union)) {
+			SVPA<ICharPred, Character> read = in.readSVPA(ba, ModelCodecs.I_CHAR_PRED);
+			assertTrue(read.getMoves().size() == aut.getMoves().size());
+			for (List<TaggedSymbol<Character>> input : inputs)
+				assertTrue(read.accepts(input, ba) == aut.accepts(input, ba));
+		}
+		assertFalse(in.hasNext());
+	}
+
+	@Test
+	public void testInclusion() throws TimeoutException {
+
+		SVPA<ICharPred, Character> union = autA.unionWith(autB, ba);
+		SVPA<ICharPred, Character> inters = autA.intersectionWith(autB, ba);
+		SVPAInclusionChecker<ICharPred, Character> checker = new SVPAInclusionChecker<ICharPred, Character>(ba);
+
+		List<SVPA<ICharPred, Character>> auts = Arrays.asList(autA, autB, union, inters);
+		for (SVPA<ICharPred, Character> aut1 : auts)
+			for (SVPA<ICharPred, Character> aut2 : auts) {
+				List<TaggedSymbol<Character>> witness = checker.counterexample(aut1, aut2);
+				if (aut1 == aut2)
+					assertTrue(witness == null);
+				if (witness != null) {
+					assertTrue(aut1.accepts(witness, ba));
+					assertFalse(aut2.accepts(witness, ba));
+				}
+			}
+
+		assertTrue(inters.isIncludedIn(autA, ba));
+		assertTrue(inters.isIncludedIn(autB, ba));
+		assertTrue(autA.isIncludedIn(union, ba));
+		assertTrue(autB.isIncludedIn(union, ba));
+		assertFalse(autA.isIncludedIn(autB, ba));
+		assertFalse(autB.isIncludedIn(autA, ba));
+		assertFalse(union.isIncludedIn(autA, ba));
+		assertTrue(union.isEquivalentTo(autB.unionWith(autA, ba), ba));
+		assertFalse(autA.isEquivalentTo(autB, ba));
+	}
 	//
 	// @Test
 	// public void testComplement() {
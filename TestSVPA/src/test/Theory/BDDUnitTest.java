@@ -0,0 +1,330 @@
+package test.Theory;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.junit.Test;
+import org.sat4j.specs.TimeoutException;
+
+import automata.serialization.ModelReader;
+import automata.serialization.ModelWriter;
+import automata.sfa.SFA;
+import automata.sfa.SFAInputMove;
+import automata.sfa.SFAMove;
+import theory.bdd.BDD;
+import theory.bdd.BDDFactory;
+import theory.bdd.BDDFactoryPool;
+import theory.bdd.Cancellation;
+import theory.bdd.ConcurrentFactory;
+import theory.bdd.OffHeapFactory;
+import theory.bdd.ReorderPolicy;
+import theory.bddalgebra.BDDSolver;
+import utilities.Pair;
+
+public class BDDUnitTest {
+
+	@Test
+	public void testBDDFactoryPool() throws Exception {
+		final BDDFactoryPool pool = new BDDFactoryPool(8, 10000, 1000);
+		ForkJoinPool workers = new ForkJoinPool(4);
+		List<ForkJoinTask<Boolean>> checks = new ArrayList<ForkJoinTask<Boolean>>();
+		for (int i = 0; i < 32; i++) {
+			final int var = i % 8;
+			checks.add(workers.submit(new Callable<Boolean>() {
+				public Boolean call() throws TimeoutException {
+					BDDFactory factory = pool.acquire(Cancellation.withTimeout(60000));
+					try {
+						BDDSolver bdds = new BDDSolver(factory);
+						int next = (var + 1) % 8;
+						BDD g1 = factory.ithVar(var).and(factory.nithVar(next));
+						BDD g2 = factory.nithVar(var).or(factory.ithVar(next)).not();
+						return SFA.areEquivalent(getBDDSFA(g1, bdds), getBDDSFA(g2, bdds), bdds)
+								&& !SFA.areEquivalent(getBDDSFA(g1, bdds), getBDDSFA(factory.ithVar(var), bdds), bdds);
+					} finally {
+						pool.release(factory);
+					}
+				}
+			}));
+		}
+		for (ForkJoinTask<Boolean> check : checks)
+			assertTrue(check.get());
+		workers.shutdown();
+		// the node tables are recycled
+		assertTrue(pool.getCreatedCount() <= 4);
+
+		// a cancelled token only stops the operations of its factory
+		Cancellation cancelled = new Cancellation();
+		cancelled.cancel();
+		BDDFactory factory = pool.acquire(cancelled);
+		BDDFactory other = pool.acquire();
+		assertTrue(factory.ithVar(0).and(factory.ithVar(1)) == null);
+		assertTrue(other.ithVar(0).and(other.ithVar(1)) != null);
+		pool.release(factory);
+		pool.release(other);
+		pool.clear();
+	}
+
+	@Test
+	public void testConcurrentFactory() throws Exception {
+		// a small node table, so that the nodes are collected and the table grows
+		final BDDFactory concurrent = BDDFactory.init("concurrent", 64, 64);
+		((ConcurrentFactory) concurrent).setParallelism(4);
+		concurrent.setVarNum(10);
+		BDDFactory reference = BDDFactory.init("java", 10000, 1000);
+		reference.setVarNum(10);
+
+		// the same formulas have the same reduced BDDs in both factories
+		Random seeds = new Random(7);
+		for (int i = 0; i < 40; i++) {
+			long seed = seeds.nextLong();
+			Random rc = new Random(seed);
+			Random rj = new Random(seed);
+			BDD c1 = getRandomBDD(concurrent, rc, 5), c2 = getRandomBDD(concurrent, rc, 5);
+			BDD j1 = getRandomBDD(reference, rj, 5), j2 = getRandomBDD(reference, rj, 5);
+			BDD cCube = concurrent.ithVar(1).and(concurrent.ithVar(4)).and(concurrent.ithVar(7));
+			BDD jCube = reference.ithVar(1).and(reference.ithVar(4)).and(reference.ithVar(7));
+
+			assertSameBDD(c1, j1);
+			assertSameBDD(c1.and(c2), j1.and(j2));
+			assertSameBDD(c1.imp(c2), j1.imp(j2));
+			assertSameBDD(c1.exist(cCube), j1.exist(jCube));
+			assertSameBDD(c1.forAll(cCube), j1.forAll(jCube));
+			assertSameBDD(c1.relprod(c2, cCube), j1.relprod(j2, jCube));
+			assertSameBDD(c1.ite(c2, c1.not()), j1.ite(j2, j1.not()));
+			assertSameBDD(c1.restrict(concurrent.nithVar(2)), j1.restrict(reference.nithVar(2)));
+			assertTrue(c1.relprod(c2, cCube).equals(c1.and(c2).exist(cCube)));
+			assertTrue(c1.or(c1.not()).isOne());
+			assertTrue(c1.fullSatOne().imp(c1).isOne() || c1.isZero());
+			c2.free();
+			cCube.free();
+		}
+		assertTrue(((ConcurrentFactory) concurrent).getGCCount() > 0);
+
+		// threads sharing the factory get the same nodes
+		ForkJoinPool workers = new ForkJoinPool(4);
+		List<ForkJoinTask<BDD>> results = new ArrayList<ForkJoinTask<BDD>>();
+		for (int i = 0; i < 16; i++) {
+			final int seed = i % 4;
+			results.add(workers.submit(new Callable<BDD>() {
+				public BDD call() {
+					return getRandomBDD(concurrent, new Random(seed), 7);
+				}
+			}));
+		}
+		for (int i = 0; i < 16; i++)
+			assertTrue(results.get(i).get().equals(results.get(i % 4).get()));
+		workers.shutdown();
+
+		BDDSolver bdds = new BDDSolver(concurrent);
+		BDD g1 = concurrent.ithVar(0).and(concurrent.nithVar(1));
+		BDD g2 = concurrent.nithVar(0).or(concurrent.ithVar(1)).not();
+		assertTrue(SFA.areEquivalent(getBDDSFA(g1, bdds), getBDDSFA(g2, bdds), bdds));
+		assertFalse(SFA.areEquivalent(getBDDSFA(g1, bdds), getBDDSFA(concurrent.ithVar(0), bdds), bdds));
+		concurrent.done();
+	}
+
+	@Test
+	public void testBDDWitnesses() {
+		BDDSolver bdds = new BDDSolver(4);
+		BDDFactory f = bdds.factory;
+		// (x0 or x1) and not x2, 6 models over 4 variables
+		BDD p = f.ithVar(0).or(f.ithVar(1)).and(f.nithVar(2));
+
+		BDD w = bdds.generateWitness(p);
+		assertTrue(w.satCount() == 1 && w.imp(p).isOne());
+		assertTrue(w.equals(f.ithVar(0).and(f.ithVar(1)).and(f.nithVar(2)).and(f.ithVar(3))));
+		bdds.setDefaultPolarity(false);
+		w = bdds.generateWitness(p);
+		assertTrue(w.equals(f.nithVar(0).and(f.ithVar(1)).and(f.nithVar(2)).and(f.nithVar(3))));
+		assertTrue(bdds.generateWitness(f.zero()) == null);
+
+		Pair<BDD, BDD> pair = bdds.generateWitnesses(p);
+		assertTrue(pair.first.imp(p).isOne() && pair.second.imp(p).isOne());
+		assertFalse(pair.first.equals(pair.second));
+
+		// the cubes are disjoint and cover p
+		BDD union = f.zero();
+		int cubes = 0;
+		for (java.util.Iterator<byte[]> it = bdds.cubes(p); it.hasNext(); cubes++) {
+			byte[] cube = it.next();
+			BDD c = f.one();
+			for (int v = 0; v < cube.length; v++)
+				if (cube[v] >= 0)
+					c = c.and(cube[v] == 1 ? f.ithVar(v) : f.nithVar(v));
+			assertTrue(c.and(union).isZero());
+			union = union.or(c);
+		}
+		assertTrue(union.equals(p) && cubes == 2);
+		HashSet<BDD> minterms = new HashSet<BDD>();
+		for (java.util.Iterator<BDD> it = bdds.minterms(p); it.hasNext();) {
+			BDD m = it.next();
+			assertTrue(m.satCount() == 1 && m.imp(p).isOne());
+			minterms.add(m);
+		}
+		assertTrue(minterms.size() == 6);
+		assertFalse(bdds.cubes(f.zero()).hasNext());
+
+		// every model is sampled about as often
+		java.util.Map<BDD, Integer> counts = new java.util.HashMap<BDD, Integer>();
+		java.util.Iterator<BDD> samples = bdds.samples(p, new Random(1));
+		for (int i = 0; i < 600; i++) {
+			BDD m = samples.next();
+			Integer c = counts.get(m);
+			counts.put(m, c == null ? 1 : c + 1);
+		}
+		assertTrue(counts.keySet().equals(minterms));
+		for (Integer c : counts.values())
+			assertTrue(c > 60 && c < 140);
+		bdds.setRandom(new Random(2));
+		assertTrue(minterms.contains(bdds.generateWitness(p)));
+	}
+
+	@Test
+	public void testOffHeapFactory() throws Exception {
+		// a small node table, so that the nodes are collected and the table grows
+		BDDFactory offHeap = BDDFactory.init("offheap", 64, 64);
+		offHeap.setVarNum(10);
+		BDDFactory reference = BDDFactory.init("java", 10000, 1000);
+		reference.setVarNum(10);
+
+		List<BDD> roots = new ArrayList<BDD>();
+		List<BDD> expected = new ArrayList<BDD>();
+		Random seeds = new Random(11);
+		for (int i = 0; i < 20; i++) {
+			long seed = seeds.nextLong();
+			Random ro = new Random(seed);
+			Random rj = new Random(seed);
+			BDD o1 = getRandomBDD(offHeap, ro, 5), o2 = getRandomBDD(offHeap, ro, 5);
+			BDD j1 = getRandomBDD(reference, rj, 5), j2 = getRandomBDD(reference, rj, 5);
+			BDD oCube = offHeap.ithVar(2).and(offHeap.ithVar(5));
+			BDD jCube = reference.ithVar(2).and(reference.ithVar(5));
+			assertSameBDD(o1.xor(o2), j1.xor(j2));
+			assertSameBDD(o1.relprod(o2, oCube), j1.relprod(j2, jCube));
+			assertSameBDD(o1.ite(o2, o1.not()).forAll(oCube), j1.ite(j2, j1.not()).forAll(jCube));
+			roots.add(o1.or(o2));
+			expected.add(j1.or(j2));
+			o1.free();
+			o2.free();
+			oCube.free();
+		}
+		assertTrue(((OffHeapFactory) offHeap).getGCCount() > 0);
+
+		// the loaded store has the same roots and keeps growing
+		File file = File.createTempFile("bdd", ".store");
+		file.deleteOnExit();
+		((OffHeapFactory) offHeap).save(file, roots);
+		OffHeapFactory loaded = OffHeapFactory.load(file, 1000);
+		List<BDD> loadedRoots = loaded.getRoots();
+		assertTrue(loadedRoots.size() == roots.size() && loaded.varNum() == 10);
+		for (int i = 0; i < roots.size(); i++)
+			assertSameBDD(loadedRoots.get(i), expected.get(i));
+		Random random = new Random(seeds.nextLong());
+		BDD built = getRandomBDD(loaded, random, 5);
+		for (int i = 0; i < 10; i++)
+			built = built.or(getRandomBDD(loaded, random, 6));
+		assertTrue(loaded.getNodeTableSize() > loaded.getNodeNum() && loaded.getGCCount() > 0);
+		assertTrue(loadedRoots.get(0).or(built).and(loadedRoots.get(0)).equals(loadedRoots.get(0)));
+
+		try {
+			File bad = File.createTempFile("bdd", ".store");
+			bad.deleteOnExit();
+			java.nio.file.Files.write(bad.toPath(), new byte[64]);
+			OffHeapFactory.load(bad, 1000);
+			assertTrue(false);
+		} catch (IOException e) {
+		}
+
+		// a missing store is reported, not created
+		File missing = new File(file.getPath() + ".missing");
+		try {
+			OffHeapFactory.load(missing, 1000);
+			fail("loaded a missing store");
+		} catch (FileNotFoundException e) {
+		}
+		assertFalse(missing.exists());
+	}
+
+	@Test
+	public void testReorderPolicy() throws Exception {
+		// x_i <-> y_i with all the x before all the y is exponential in the identity order
+		int n = 10;
+		BDDFactory factory = BDDFactory.init("java", 200, 1000);
+		factory.setVarNum(2 * n);
+		ReorderPolicy policy = new ReorderPolicy();
+		policy.group(0, 1);
+		assertTrue(policy.install(factory));
+		BDD equal = factory.one();
+		for (int i = n - 1; i >= 0; i--)
+			equal.andWith(factory.ithVar(i).biimp(factory.ithVar(n + i)));
+		assertTrue(policy.getReorderCount() > 0 && policy.getReorderTime() >= 0);
+		assertTrue(equal.satCount() == Math.pow(2, n));
+		assertTrue(equal.nodeCount() < 6 * n);
+		int[] order = ReorderPolicy.getVarOrder(factory);
+		assertTrue(Math.abs(factory.var2Level(0) - factory.var2Level(1)) == 1);
+
+		// the order found by a budgeted search is saved with the model and applied to a new factory
+		BDDFactory other = BDDFactory.init("java", 10000, 1000);
+		other.setVarNum(2 * n);
+		BDD otherEqual = other.one();
+		for (int i = 0; i < n; i++)
+			otherEqual.andWith(other.ithVar(i).biimp(other.ithVar(n + i)));
+		int before = otherEqual.nodeCount();
+		int[] found = policy.searchOrder(other, Collections.singletonList(otherEqual), 200).get();
+		ModelWriter writer = new ModelWriter();
+		writer.writeVarOrder(found);
+		int[] read = new ModelReader(writer.toByteArray()).readVarOrder();
+		assertTrue(Arrays.equals(found, read));
+		policy.setVarOrder(other, read);
+		assertTrue(otherEqual.nodeCount() < before && otherEqual.satCount() == Math.pow(2, n));
+		assertTrue(Arrays.equals(ReorderPolicy.getVarOrder(other), read));
+
+		// factories that cannot reorder are left alone
+		assertFalse(new ReorderPolicy().install(BDDFactory.init("jdd", 1000, 1000)));
+		policy.uninstall(factory);
+		assertTrue(Arrays.equals(ReorderPolicy.getVarOrder(factory), order));
+	}
+
+	private SFA<BDD, BDD> getBDDSFA(BDD guard, BDDSolver bdds) throws TimeoutException {
+		Collection<SFAMove<BDD, BDD>> transitions = new LinkedList<SFAMove<BDD, BDD>>();
+		transitions.add(new SFAInputMove<BDD, BDD>(0, 1, guard));
+		return SFA.MkSFA(transitions, 0, Arrays.asList(1), bdds);
+	}
+	private void assertSameBDD(BDD concurrent, BDD reference) {
+		assertTrue(concurrent.nodeCount() == reference.nodeCount());
+		assertTrue(concurrent.satCount() == reference.satCount());
+		assertTrue(concurrent.pathCount() == reference.pathCount());
+	}
+
+	private BDD getRandomBDD(BDDFactory factory, Random random, int depth) {
+		if (depth == 0) {
+			int var = random.nextInt(factory.varNum());
+			return random.nextBoolean() ? factory.ithVar(var) : factory.nithVar(var);
+		}
+		BDD left = getRandomBDD(factory, random, depth - 1);
+		BDD right = getRandomBDD(factory, random, depth - 1);
+		switch (random.nextInt(3)) {
+		case 0:
+			return left.and(right);
+		case 1:
+			return left.or(right);
+		default:
+			return left.xor(right);
+		}
+	}
+}
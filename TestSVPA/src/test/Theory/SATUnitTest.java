@@ -4,7 +4,9 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
+import org.sat4j.specs.TimeoutException;
 
+import theory.sat.ManagedSATBooleanAlgebra;
 import theory.sat.SATBooleanAlgebra;
 
 public class SATUnitTest {
@@ -60,4 +62,28 @@ public class SATUnitTest {
 		boolean[] m2 = ba.generateWitness(p2);
 		assertTrue(ba.HasModel(p2, m2));
 	}
+
+	@Test
+	public void testManagedGenerations() throws TimeoutException {
+		ManagedSATBooleanAlgebra mba = new ManagedSATBooleanAlgebra(universe);
+		mba.setRebuildThreshold(0);
+		Integer base = mba.MkOr(1, 2);
+		Integer kept;
+		try (ManagedSATBooleanAlgebra.Generation g = mba.open()) {
+			Integer p = mba.MkAnd(base, mba.MkOr(-1, 3));
+			assertTrue(mba.AreEquivalent(p, mba.MkOr(mba.MkAnd(1, 3), mba.MkAnd(mba.MkAnd(-1, 2), mba.MkOr(-1, 3)))));
+			try (ManagedSATBooleanAlgebra.Generation inner = mba.open()) {
+				assertFalse(mba.IsSatisfiable(mba.MkAnd(p, mba.MkAnd(-2, -3))));
+			}
+			kept = mba.MkAnd(p, -3);
+			g.keep(kept);
+		}
+		// the definitions of the closed generations are gone, except the kept one and those it uses
+		assertTrue(mba.getDefinitionCount() == 3 && mba.getRebuildCount() > 0);
+		assertTrue(mba.getLiveClauseCount() == 10 && mba.getRetiredClauseCount() == 0);
+		assertTrue(mba.IsSatisfiable(kept) && mba.AreEquivalent(kept, mba.MkAnd(mba.MkAnd(-1, 2), -3)));
+		boolean[] m = mba.generateWitness(kept);
+		assertTrue(!m[0] && m[1] && !m[2] && mba.HasModel(kept, m));
+		assertTrue(mba.getSolveCount() > 0);
+	}
 }
@@ -3,11 +3,32 @@ package test.Theory;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
 import org.junit.Test;
+import org.sat4j.specs.TimeoutException;
 
+import automata.sfa.SFA;
+import automata.sfa.SFAInputMove;
+import automata.sfa.SFAMove;
 import theory.BooleanAlgebra;
+import theory.ProductAlgebra;
+import theory.bitsetalgebra.BitSetAlgebra;
+import theory.bitsetalgebra.BitSetPred;
+import theory.cartesian.CartesianProduct;
 import theory.characters.CharPred;
+import theory.intervals.BoundedIntegerSolver;
+import theory.intervals.IntPred;
+import theory.intervals.IntegerSolver;
+import theory.intervals.IntervalMinterms;
+import theory.intervals.RealPred;
+import theory.intervals.RealSolver;
 import theory.intervals.UnaryCharIntervalSolver;
+import utilities.Pair;
 
 public class TestBooleanAlgebra {
    
@@ -25,4 +46,150 @@ public class TestBooleanAlgebra {
         assertTrue(ba.hasNDistinctWitnesses(integers, 10));
         assertFalse(ba.hasNDistinctWitnesses(integers, 11));
     }
-}	
+
+    @Test
+    public void testBitSetAlgebra() throws TimeoutException {
+        // three words of symbols, the last one partially used
+        List<Integer> alphabet = new ArrayList<Integer>();
+        for (int i = 0; i < 150; i++)
+            alphabet.add(i);
+        BitSetAlgebra<Integer> bs = new BitSetAlgebra<Integer>(alphabet);
+        List<Integer> evens = new ArrayList<Integer>(), small = new ArrayList<Integer>();
+        for (int i = 0; i < 150; i++) {
+            if (i % 2 == 0)
+                evens.add(i);
+            if (i < 70)
+                small.add(i);
+        }
+        BitSetPred<Integer> even = bs.MkSet(evens);
+        BitSetPred<Integer> low = bs.MkSet(small);
+
+        assertTrue(bs.MkNot(even).size() == 75 && bs.MkNot(bs.True()).equals(bs.False()));
+        assertTrue(bs.MkAnd(even, low).size() == 35 && bs.MkOr(even, low).size() == 110);
+        assertTrue(bs.AreEquivalent(bs.MkOr(even, bs.MkNot(even)), bs.True()));
+        assertFalse(bs.IsSatisfiable(bs.MkAnd(even, bs.MkNot(even))));
+        assertTrue(bs.HasModel(even, 148) && !bs.HasModel(even, 149) && !bs.HasModel(even, 1000));
+        assertTrue(bs.generateWitness(bs.MkAnd(bs.MkNot(even), bs.MkNot(low))) == 71);
+        assertTrue(bs.generateWitness(bs.False()) == null);
+
+        // the minterms partition the start predicate by membership in the predicates
+        ArrayList<BitSetPred<Integer>> predicates = new ArrayList<BitSetPred<Integer>>(Arrays.asList(even, low,
+                bs.MkAtom(3)));
+        Collection<Pair<BitSetPred<Integer>, ArrayList<Integer>>> minterms = bs.GetMinterms(predicates);
+        assertTrue(minterms.size() == 5);
+        int covered = 0;
+        for (Pair<BitSetPred<Integer>, ArrayList<Integer>> minterm : minterms) {
+            covered += minterm.first.size();
+            for (int j = 0; j < predicates.size(); j++) {
+                BitSetPred<Integer> p = minterm.second.get(j) == 1 ? predicates.get(j) : bs.MkNot(predicates.get(j));
+                assertTrue(bs.MkAnd(minterm.first, bs.MkNot(p)).size() == 0);
+            }
+        }
+        assertTrue(covered == 150);
+
+        // a finite-alphabet SFA is determinized and minimized through the symbolic API
+        List<SFAMove<BitSetPred<Integer>, Integer>> moves = new ArrayList<SFAMove<BitSetPred<Integer>, Integer>>();
+        moves.add(new SFAInputMove<BitSetPred<Integer>, Integer>(0, 0, bs.True()));
+        moves.add(new SFAInputMove<BitSetPred<Integer>, Integer>(0, 1, even));
+        moves.add(new SFAInputMove<BitSetPred<Integer>, Integer>(1, 2, low));
+        SFA<BitSetPred<Integer>, Integer> aut = SFA.MkSFA(moves, 0, Arrays.asList(2), bs);
+        SFA<BitSetPred<Integer>, Integer> min = aut.minimize(bs);
+        assertTrue(min.accepts(Arrays.asList(7, 4, 69), bs) && !min.accepts(Arrays.asList(4, 70), bs));
+        assertTrue(min.isEquivalentTo(aut, bs));
+    }
+
+    @Test
+    public void testIntervalMinterms() throws TimeoutException {
+        // random unions of character ranges, every character lands in the minterm of its signature
+        UnaryCharIntervalSolver ba = new UnaryCharIntervalSolver();
+        Random random = new Random(7);
+        ArrayList<CharPred> predicates = new ArrayList<CharPred>();
+        for (int j = 0; j < 70; j++) {
+            CharPred p = ba.False();
+            for (int i = 0; i < 3; i++) {
+                char lo = (char) random.nextInt(500);
+                p = ba.MkOr(p, new CharPred(lo, (char) (lo + random.nextInt(40))));
+            }
+            predicates.add(p);
+        }
+        CharPred start = new CharPred('\u0000', (char) 450);
+        IntervalMinterms<CharPred> table = ba.GetMintermTable(predicates, start, Long.MAX_VALUE);
+        int[] classes = table.getClassTable(CharPred.MAX_CHAR + 1);
+        for (char c = 0; c < 600; c++) {
+            int m = table.mintermAt(c);
+            assertTrue(m == classes[c] && (m >= 0) == start.isSatisfiedBy(c));
+            if (m < 0)
+                continue;
+            assertTrue(table.getMinterm(m).isSatisfiedBy(c));
+            long[] signature = table.getSignature(m);
+            for (int j = 0; j < predicates.size(); j++)
+                assertTrue(((signature[j >>> 6] & (1L << j)) != 0) == predicates.get(j).isSatisfiedBy(c));
+        }
+        assertTrue(ba.GetMinterms(predicates, start, Long.MAX_VALUE).size() == table.size());
+
+        // positions at or after the last boundary are outside every minterm
+        ArrayList<CharPred> single = new ArrayList<CharPred>(Arrays.asList(new CharPred('c', 'e')));
+        IntervalMinterms<CharPred> lower = ba.GetMintermTable(single, new CharPred('a', 'z'), Long.MAX_VALUE);
+        int[] lowerClasses = lower.getClassTable(CharPred.MAX_CHAR + 1);
+        assertTrue(lower.size() == 2 && lower.mintermAt('z') >= 0 && lower.mintermAt('`') == -1);
+        assertTrue(lower.mintermAt('{') == -1 && lower.mintermAt('~') == -1 && lower.mintermAt(CharPred.MAX_CHAR) == -1);
+        assertTrue(lowerClasses['{'] == -1 && lowerClasses[CharPred.MAX_CHAR] == -1 && lowerClasses['z'] >= 0);
+
+        // bounded integers are clamped to the domain
+        BoundedIntegerSolver ints = new BoundedIntegerSolver(0, 100);
+        ArrayList<IntPred> intPredicates = new ArrayList<IntPred>(Arrays.asList(new IntPred(null, 10),
+                new IntPred(5, 50), new IntPred(50, null)));
+        IntervalMinterms<IntPred> intTable = ints.GetMintermTable(intPredicates, ints.True(), Long.MAX_VALUE);
+        assertTrue(intTable.size() == 5 && intTable.mintermAt(-1) == -1 && intTable.mintermAt(101) == -1);
+        assertTrue(intTable.getMinterm(intTable.mintermAt(50)).equals(new IntPred(50)));
+
+        // open and closed ends of reals are separate positions
+        RealSolver reals = new RealSolver();
+        ArrayList<RealPred> realPredicates = new ArrayList<RealPred>(Arrays.asList(
+                new RealPred(0.0, true, 1.0, false), new RealPred(1.0, false, null, true), new RealPred(0.5)));
+        Collection<Pair<RealPred, ArrayList<Integer>>> realMinterms = reals.GetMinterms(realPredicates);
+        assertTrue(realMinterms.size() == 5);
+        double[] samples = { -3, 0, 0.25, 0.5, 0.75, 1, 2 };
+        for (double x : samples) {
+            int found = 0;
+            for (Pair<RealPred, ArrayList<Integer>> minterm : realMinterms)
+                if (minterm.first.isSatisfiedBy(x)) {
+                    found++;
+                    for (int j = 0; j < realPredicates.size(); j++)
+                        assertTrue((minterm.second.get(j) == 1) == realPredicates.get(j).isSatisfiedBy(x));
+                }
+            assertTrue(found == 1);
+        }
+    }
+
+    @Test
+    public void testProductAlgebraCubes() throws TimeoutException {
+        IntegerSolver ints = new IntegerSolver();
+        ProductAlgebra<IntPred, Integer, IntPred, Integer> prod = new ProductAlgebra<IntPred, Integer, IntPred, Integer>(
+                ints, ints);
+        CartesianProduct<IntPred, IntPred> box = new CartesianProduct<>(new IntPred(0, 10), new IntPred(0, 10));
+        CartesianProduct<IntPred, IntPred> shifted = new CartesianProduct<>(new IntPred(5, 15), new IntPred(5, 15));
+        CartesianProduct<IntPred, IntPred> union = prod.MkOr(box, shifted);
+        CartesianProduct<IntPred, IntPred> not = prod.MkNot(union);
+        assertTrue(union.isNormalized() && not.isNormalized());
+
+        // the cubes have disjoint first components, and the complement is exact
+        for (CartesianProduct<IntPred, IntPred> p : Arrays.asList(union, not)) {
+            List<Pair<IntPred, IntPred>> cubes = p.getProducts();
+            for (int i = 0; i < cubes.size(); i++)
+                for (int j = i + 1; j < cubes.size(); j++)
+                    assertFalse(ints.IsSatisfiable(ints.MkAnd(cubes.get(i).first, cubes.get(j).first)));
+        }
+        for (int x = -2; x <= 17; x++)
+            for (int y = -2; y <= 17; y++) {
+                Pair<Integer, Integer> point = new Pair<Integer, Integer>(x, y);
+                boolean in = (0 <= x && x <= 10 && 0 <= y && y <= 10) || (5 <= x && x <= 15 && 5 <= y && y <= 15);
+                assertTrue(prod.HasModel(union, point) == in && prod.HasModel(not, point) != in);
+            }
+
+        assertTrue(prod.AreEquivalent(prod.MkNot(not), union) && !prod.AreEquivalent(box, union));
+        assertTrue(prod.AreEquivalent(prod.MkOr(union, not), prod.True()));
+        assertFalse(prod.IsSatisfiable(prod.MkAnd(union, not)));
+        assertTrue(prod.IsSatisfiable(prod.MkAnd(box, shifted)));
+    }
+}